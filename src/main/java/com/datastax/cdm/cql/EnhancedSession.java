@@ -71,6 +71,15 @@ public class EnhancedSession {
         return cqlTable;
     }
 
+    /**
+     * Prepared statements shared by all job sessions on this CqlSession. The statement wrappers of the getters below
+     * belong to this session (its CqlTable, PK factory and properties) and take their prepared statement from the
+     * registry.
+     */
+    public StatementRegistry getStatementRegistry() {
+        return StatementRegistry.forSession(cqlSession);
+    }
+
     public OriginSelectByPartitionRangeStatement getOriginSelectByPartitionRangeStatement() {
         if (!isOrigin)
             throw new RuntimeException("This is not an origin session");
@@ -0,0 +1,128 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.cql;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+
+/**
+ * Prepared statements of one CqlSession, shared by every job session of the executor that uses that CqlSession.
+ *
+ * A job session is created for every slice and builds its own statement wrappers, as they depend on its table, PK
+ * factory and properties. Their CQL is prepared once, by the first slice, and later slices get the prepared statement
+ * from the registry. Prepared statements are keyed by CQL text and session keyspace. The registry of a CqlSession is
+ * dropped once the session is closed, as the Spark Cassandra connector does with sessions that were not used for a
+ * while.
+ */
+public class StatementRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(StatementRegistry.class);
+
+    private static final ConcurrentMap<CqlSession, StatementRegistry> registries = new ConcurrentHashMap<>();
+
+    private final CqlSession cqlSession;
+    private final ConcurrentMap<Key, PreparedStatement> preparedStatements = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    StatementRegistry(CqlSession cqlSession) {
+        this.cqlSession = cqlSession;
+    }
+
+    public static StatementRegistry forSession(CqlSession cqlSession) {
+        StatementRegistry registry = registries.get(cqlSession);
+        if (registry == null) {
+            registries.keySet().removeIf(CqlSession::isClosed);
+            registry = registries.computeIfAbsent(cqlSession, StatementRegistry::new);
+        }
+        return registry;
+    }
+
+    /**
+     * The prepared statement of the CQL text, prepared on the first call only.
+     */
+    public PreparedStatement prepare(String cql) {
+        Key key = new Key(cql, keyspace());
+        PreparedStatement prepared = preparedStatements.get(key);
+        if (prepared != null) {
+            hits.incrementAndGet();
+            return prepared;
+        }
+        // Concurrent first calls may all prepare, the driver hands out the same statement anyway
+        misses.incrementAndGet();
+        prepared = cqlSession.prepare(cql);
+        PreparedStatement previous = preparedStatements.putIfAbsent(key, prepared);
+        logger.debug("Prepared statement {} ({})", cql, this);
+        return (previous != null) ? previous : prepared;
+    }
+
+    private String keyspace() {
+        Optional<CqlIdentifier> keyspace = cqlSession.getKeyspace();
+        return (keyspace != null && keyspace.isPresent()) ? keyspace.get().asInternal() : "";
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "statement registry: " + preparedStatements.size() + " prepared, " + hits.get() + " hits, "
+                + misses.get() + " misses";
+    }
+
+    static void clear() {
+        registries.clear();
+    }
+
+    private static final class Key {
+        private final String cql;
+        private final String keyspace;
+
+        Key(String cql, String keyspace) {
+            this.cql = cql;
+            this.keyspace = keyspace;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return cql.equals(other.cql) && keyspace.equals(other.keyspace);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cql, keyspace);
+        }
+    }
+}
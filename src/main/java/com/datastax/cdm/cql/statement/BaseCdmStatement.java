@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.datastax.cdm.cql.EnhancedSession;
+import com.datastax.cdm.cql.StatementRegistry;
 import com.datastax.cdm.properties.IPropertyHelper;
 import com.datastax.cdm.schema.CqlTable;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
@@ -40,12 +41,15 @@ public class BaseCdmStatement {
         this.session = session;
     }
 
+    /**
+     * The prepared statement, from the statement registry of the session so that it is prepared once per executor.
+     */
     public PreparedStatement prepareStatement() {
         if (null == session || null == session.getCqlSession())
             throw new RuntimeException("Session is not set");
         if (null == statement || statement.isEmpty())
             throw new RuntimeException("Statement is not set");
-        return session.getCqlSession().prepare(statement);
+        return StatementRegistry.forSession(session.getCqlSession()).prepare(statement);
     }
 
     public String getCQL() {
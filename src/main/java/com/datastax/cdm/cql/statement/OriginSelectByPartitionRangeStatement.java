@@ -16,6 +16,7 @@
 package com.datastax.cdm.cql.statement;
 
 import java.math.BigInteger;
+import java.util.Optional;
 
 import com.datastax.cdm.cql.EnhancedSession;
 import com.datastax.cdm.feature.Featureset;
@@ -23,12 +24,37 @@ import com.datastax.cdm.feature.OriginFilterCondition;
 import com.datastax.cdm.properties.IPropertyHelper;
 import com.datastax.cdm.properties.KnownProperties;
 import com.datastax.cdm.properties.PropertyHelper;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.Token;
 
 public class OriginSelectByPartitionRangeStatement extends OriginSelectStatement {
+    private final int prefetchPages;
+    private final long prefetchMaxBytes;
+
     public OriginSelectByPartitionRangeStatement(IPropertyHelper propertyHelper, EnhancedSession session) {
         super(propertyHelper, session);
+        Number pages = propertyHelper.getNumber(KnownProperties.PERF_PREFETCH_PAGES);
+        Number maxMB = propertyHelper.getNumber(KnownProperties.PERF_PREFETCH_MAX_MB);
+        this.prefetchPages = (pages != null) ? pages.intValue() : 2;
+        this.prefetchMaxBytes = ((maxMB != null) ? maxMB.longValue() : 32) * 1024 * 1024;
+    }
+
+    /**
+     * Runs the range scan asynchronously, with the following pages requested while the current one is processed. With
+     * a prefetch depth of 0 the pages are fetched one at a time, as the driver's synchronous ResultSet does.
+     */
+    @Override
+    public ResultSet execute(BoundStatement boundStatement) {
+        if (prefetchPages <= 0) {
+            return super.execute(boundStatement);
+        }
+        return new PrefetchingResultSet(session.getCqlSession().executeAsync(boundStatement), prefetchPages,
+                prefetchMaxBytes);
     }
 
     @Override
@@ -42,10 +68,39 @@ public class OriginSelectByPartitionRangeStatement extends OriginSelectStatement
 
         PreparedStatement preparedStatement = prepareStatement();
         // random partitioner uses BigInteger, the normal partitioner uses long
-        return preparedStatement
+        BoundStatement boundStatement = preparedStatement
                 .bind(cqlTable.hasRandomPartitioner() ? min : min.longValueExact(),
                         cqlTable.hasRandomPartitioner() ? max : max.longValueExact())
                 .setConsistencyLevel(cqlTable.getReadConsistencyLevel()).setPageSize(cqlTable.getFetchSizeInRows());
+        Token routingToken = getRoutingToken(max);
+        if (routingToken == null) {
+            return boundStatement;
+        }
+        // The token-aware policy looks up the replicas of the routing token in the routing keyspace
+        String keyspace = cqlTable.getKeyspaceName();
+        if (keyspace != null && !keyspace.isEmpty()) {
+            boundStatement = boundStatement.setRoutingKeyspace(CqlIdentifier.fromInternal(keyspace));
+        }
+        return boundStatement.setRoutingToken(routingToken);
+    }
+
+    /**
+     * Token of the end of the range. A range query has no routing key, so without it the driver sends the query to any
+     * node; with it the query goes to a replica of the range (all tokens of a replica-aligned split share them). The
+     * end is used rather than the start because ring ranges exclude their start token: a split that begins right at
+     * the start of a ring range would otherwise be routed to the replicas of the previous one.
+     */
+    private Token getRoutingToken(BigInteger max) {
+        Metadata metadata = session.getCqlSession().getMetadata();
+        Optional<TokenMap> tokenMap = (metadata != null) ? metadata.getTokenMap() : Optional.empty();
+        if (tokenMap == null || !tokenMap.isPresent()) {
+            return null;
+        }
+        try {
+            return tokenMap.get().parse(max.toString());
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 
     @Override
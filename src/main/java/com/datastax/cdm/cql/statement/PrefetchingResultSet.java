@@ -0,0 +1,194 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.cql.statement;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.datastax.oss.driver.api.core.DriverExecutionException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+/**
+ * A ResultSet that asks for the following pages of an asynchronous query ahead of time, so that the next page is on
+ * its way while the rows of the current one are processed.
+ *
+ * The synchronous ResultSet of the driver only requests page N+1 once the last row of page N was consumed, so the
+ * reader waits for Cassandra after every page. Here up to prefetchPages pages are requested ahead, as long as the pages
+ * received but not yet consumed stay below maxBufferedBytes (as reported by the driver for each response).
+ *
+ * Like the driver's ResultSet, it is meant to be iterated once, by a single thread.
+ */
+class PrefetchingResultSet implements ResultSet {
+
+    private final int prefetchPages;
+    private final long maxBufferedBytes;
+
+    private final Object lock = new Object();
+    // Pages requested or received, but not consumed yet, in order
+    private final Deque<CompletableFuture<AsyncResultSet>> pages = new ArrayDeque<>();
+    // The last page received, as long as its next page was not requested yet
+    private AsyncResultSet tail;
+    private boolean fetching;
+    private boolean fullyFetched;
+    private long bufferedBytes;
+
+    private final CompletableFuture<AsyncResultSet> firstPage;
+    private final List<ExecutionInfo> executionInfos = new CopyOnWriteArrayList<>();
+    private AsyncResultSet currentPage;
+    private Iterator<Row> currentRows = Collections.emptyIterator();
+
+    PrefetchingResultSet(CompletionStage<AsyncResultSet> firstPage, int prefetchPages, long maxBufferedBytes) {
+        this.prefetchPages = Math.max(1, prefetchPages);
+        this.maxBufferedBytes = (maxBufferedBytes > 0) ? maxBufferedBytes : Long.MAX_VALUE;
+        this.firstPage = firstPage.toCompletableFuture();
+        request(this.firstPage);
+    }
+
+    private void request(CompletableFuture<AsyncResultSet> page) {
+        synchronized (lock) {
+            pages.addLast(page);
+            fetching = true;
+        }
+        page.whenComplete((received, error) -> {
+            synchronized (lock) {
+                fetching = false;
+                if (received != null) {
+                    tail = received;
+                    fullyFetched = !received.hasMorePages();
+                    bufferedBytes += responseSize(received);
+                    prefetch();
+                }
+            }
+        });
+    }
+
+    // Caller holds the lock
+    private void prefetch() {
+        if (fetching || tail == null || !tail.hasMorePages() || pages.size() >= prefetchPages
+                || bufferedBytes >= maxBufferedBytes) {
+            return;
+        }
+        AsyncResultSet last = tail;
+        tail = null;
+        request(last.fetchNextPage().toCompletableFuture());
+    }
+
+    private boolean nextPage() {
+        CompletableFuture<AsyncResultSet> next;
+        synchronized (lock) {
+            next = pages.pollFirst();
+        }
+        if (next == null) {
+            return false;
+        }
+        AsyncResultSet page = await(next);
+        synchronized (lock) {
+            bufferedBytes -= responseSize(page);
+            prefetch();
+        }
+        executionInfos.add(page.getExecutionInfo());
+        currentPage = page;
+        currentRows = page.currentPage().iterator();
+        return true;
+    }
+
+    private static AsyncResultSet await(CompletableFuture<AsyncResultSet> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new DriverExecutionException(cause);
+        }
+    }
+
+    private static long responseSize(AsyncResultSet page) {
+        ExecutionInfo info = page.getExecutionInfo();
+        return (info != null) ? Math.max(0, info.getResponseSizeInBytes()) : 0;
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                while (!currentRows.hasNext()) {
+                    if (!nextPage()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return currentRows.next();
+            }
+        };
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        return await(firstPage).getColumnDefinitions();
+    }
+
+    @Override
+    public List<ExecutionInfo> getExecutionInfos() {
+        return executionInfos;
+    }
+
+    @Override
+    public boolean isFullyFetched() {
+        synchronized (lock) {
+            return fullyFetched && !fetching;
+        }
+    }
+
+    @Override
+    public int getAvailableWithoutFetching() {
+        int available = (currentPage != null) ? currentPage.remaining() : 0;
+        synchronized (lock) {
+            for (CompletableFuture<AsyncResultSet> page : pages) {
+                if (page.isDone() && !page.isCompletedExceptionally()) {
+                    available += page.join().remaining();
+                }
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public boolean wasApplied() {
+        return await(firstPage).wasApplied();
+    }
+}
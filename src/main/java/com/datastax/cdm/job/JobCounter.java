@@ -30,8 +30,8 @@ public class JobCounter implements Serializable {
     private static final long serialVersionUID = 7016816604237020549L;
 
     public enum CounterType {
-        READ, WRITE, MISMATCH, CORRECTED_MISMATCH, MISSING, CORRECTED_MISSING, VALID, SKIPPED, LARGE, ERROR, UNFLUSHED,
-        PARTITIONS_PASSED, PARTITIONS_FAILED
+        READ, WRITE, MISMATCH, CORRECTED_MISMATCH, MISSING, CORRECTED_MISSING, VALID, SKIPPED, LARGE, ERROR, RETRIES,
+        UNFLUSHED, PARTITIONS_PASSED, PARTITIONS_FAILED
     }
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
@@ -41,7 +41,8 @@ public class JobCounter implements Serializable {
         switch (jobType) {
         case MIGRATE:
             setRegisteredTypes(CounterType.READ, CounterType.WRITE, CounterType.SKIPPED, CounterType.ERROR,
-                    CounterType.UNFLUSHED, CounterType.PARTITIONS_PASSED, CounterType.PARTITIONS_FAILED);
+                    CounterType.RETRIES, CounterType.UNFLUSHED, CounterType.PARTITIONS_PASSED,
+                    CounterType.PARTITIONS_FAILED);
             break;
         case VALIDATE:
             setRegisteredTypes(CounterType.READ, CounterType.VALID, CounterType.MISMATCH,
@@ -159,7 +160,8 @@ public class JobCounter implements Serializable {
                 if (type == CounterType.UNFLUSHED) {
                     continue;
                 }
-                if (type == CounterType.PARTITIONS_PASSED || type == CounterType.PARTITIONS_FAILED) {
+                if (type == CounterType.PARTITIONS_PASSED || type == CounterType.PARTITIONS_FAILED
+                        || type == CounterType.RETRIES) {
                     logger.info("Final " + printFriendlyCase(type.name()) + ": {}", counterMap.get(type).getCount());
                 } else {
                     logger.info("Final " + printFriendlyCase(type.name()) + " Record Count: {}",
@@ -17,6 +17,9 @@ package com.datastax.cdm.job;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import com.datastax.cdm.job.IJobSessionFactory.JobType;
 
@@ -25,11 +28,22 @@ public class PartitionRange implements Serializable {
 
     private final BigInteger min;
     private final BigInteger max;
+    private final List<String> preferredLocations; // Hosts of the replicas of the range, empty when unknown
     protected JobCounter jobCounter;
+    // Run time after which the slice leaves the rest of its range to new slices: 0 until the executor has a median
+    // slice time (see SkewMonitor), -1 for never
+    private long cutOffMillis;
+    private String slice; // Job slice the range was left over from, null for a job slice
+    private RangeProgress progress; // Set by the job session once the range was processed
 
     public PartitionRange(BigInteger min, BigInteger max, JobType jobType) {
+        this(min, max, jobType, Collections.emptyList());
+    }
+
+    public PartitionRange(BigInteger min, BigInteger max, JobType jobType, List<String> preferredLocations) {
         this.min = min;
         this.max = max;
+        this.preferredLocations = new ArrayList<>(preferredLocations);
         jobCounter = new JobCounter(jobType);
     }
 
@@ -41,10 +55,46 @@ public class PartitionRange implements Serializable {
         return max;
     }
 
+    public List<String> getPreferredLocations() {
+        return preferredLocations;
+    }
+
     public JobCounter getJobCounter() {
         return jobCounter;
     }
 
+    public long getCutOffMillis() {
+        return cutOffMillis;
+    }
+
+    public void setCutOffMillis(long cutOffMillis) {
+        this.cutOffMillis = cutOffMillis;
+    }
+
+    /**
+     * Token range of the job slice this range belongs to: its own range for a job slice, the range of the job slice it
+     * was left over from for the new slices of range stealing.
+     */
+    public String getSlice() {
+        return (slice != null) ? slice : min + " to " + max;
+    }
+
+    public boolean isLeftOver() {
+        return slice != null;
+    }
+
+    public void setSlice(String slice) {
+        this.slice = slice;
+    }
+
+    public RangeProgress getProgress() {
+        return progress;
+    }
+
+    public void setProgress(RangeProgress progress) {
+        this.progress = progress;
+    }
+
     public String toString() {
         return "Processing partition for token range " + min + " to " + max;
     }
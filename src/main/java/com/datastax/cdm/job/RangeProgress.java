@@ -0,0 +1,111 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.job;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of one slice as reported to the driver: the rows it read, how long it took, whether it failed, and the parts
+ * of its token range it left to new slices because it fell behind the others (see {@link SkewMonitor}).
+ */
+public class RangeProgress implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final BigInteger min;
+    private final BigInteger max;
+    private final String slice;
+    private final boolean leftOver;
+    private final long rows;
+    private final long elapsedMillis;
+    private final boolean failed;
+    private final List<PartitionRange> remainders;
+
+    public RangeProgress(PartitionRange range, long rows, long elapsedMillis, boolean failed,
+            List<PartitionRange> remainders) {
+        this.min = range.getMin();
+        this.max = range.getMax();
+        this.slice = range.getSlice();
+        this.leftOver = range.isLeftOver();
+        this.rows = rows;
+        this.elapsedMillis = elapsedMillis;
+        this.failed = failed;
+        this.remainders = new ArrayList<>(remainders);
+    }
+
+    public BigInteger getMin() {
+        return min;
+    }
+
+    public BigInteger getMax() {
+        return max;
+    }
+
+    /**
+     * @see PartitionRange#getSlice()
+     */
+    public String getSlice() {
+        return slice;
+    }
+
+    public boolean isLeftOver() {
+        return leftOver;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public double getRowsPerSecond() {
+        return (elapsedMillis > 0) ? rows * 1000.0 / elapsedMillis : 0;
+    }
+
+    /**
+     * Unprocessed parts of the range, each starting at the token where its scan was cut off. Empty when the whole
+     * range was processed.
+     */
+    public List<PartitionRange> getRemainders() {
+        return remainders;
+    }
+
+    public boolean isCut() {
+        return !remainders.isEmpty();
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Token range ").append(min).append(" to ").append(max).append(": ").append(rows)
+                .append(" rows in ").append(elapsedMillis).append(" ms (")
+                .append(String.format("%.0f", getRowsPerSecond())).append(" rows/s)");
+        if (failed) {
+            sb.append(", failed");
+        }
+        for (PartitionRange remainder : remainders) {
+            sb.append(", cut at ").append(remainder.getMin());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.job;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.job.IJobSessionFactory.JobType;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.yugabyte.statement.YugabyteWriteMode;
+
+/**
+ * Tells a running slice when it has fallen behind the other slices, so that it can stop and leave the rest of its
+ * token range to new slices.
+ *
+ * A slice is behind once it ran longer than ratio times the median duration of the completed job slices, and at least
+ * {@link #MIN_RUNTIME_MILLIS}. No slice is cut off until {@link #MIN_SAMPLES} job slices have completed.
+ *
+ * The cut-off moves while the slices run. Every slice that completes on an executor adds its duration to the
+ * executor-wide {@link SliceTimes}, and running slices poll it, so slices started before there was a median are cut
+ * off too. Until the executor has enough samples of its own, a slice uses the cut-off the driver gave it when the round
+ * started, computed from the {@link RangeProgress} that every slice reports through an accumulator.
+ */
+public class SkewMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(SkewMonitor.class);
+
+    static final int MIN_SAMPLES = 5;
+    static final long MIN_RUNTIME_MILLIS = 10_000L;
+
+    private static final SliceTimes executorSliceTimes = new SliceTimes();
+
+    private final int ratio;
+    private final long driverCutOffMillis;
+    private final SliceTimes sliceTimes; // Null to use the driver cut-off only
+    private final long startNanos;
+
+    /**
+     * Durations of the job slices completed in this JVM. The median is recomputed when a slice completes, so that the
+     * running slices read it without locking.
+     */
+    public static final class SliceTimes {
+        private final List<Long> durations = new ArrayList<>();
+        private volatile long medianMillis = -1;
+
+        public synchronized void add(RangeProgress progress) {
+            if (!counts(progress)) {
+                return;
+            }
+            int index = Collections.binarySearch(durations, progress.getElapsedMillis());
+            durations.add((index < 0) ? -index - 1 : index, progress.getElapsedMillis());
+            if (durations.size() >= MIN_SAMPLES) {
+                medianMillis = durations.get(durations.size() / 2);
+            }
+        }
+
+        /**
+         * @return median duration of the completed job slices, or -1 while there are too few of them
+         */
+        public long getMedianMillis() {
+            return medianMillis;
+        }
+    }
+
+    /**
+     * A slice that polls nothing but the cut-off the driver gave it.
+     *
+     * @param cutOffMillis
+     *            how long the slice may run before it is behind, 0 for never
+     * @param startNanos
+     *            System.nanoTime() at the start of the slice
+     */
+    public SkewMonitor(long cutOffMillis, long startNanos) {
+        this(0, cutOffMillis, null, startNanos);
+    }
+
+    /**
+     * @param ratio
+     *            steal ratio, see {@link #stealRatio(IPropertyHelper)}
+     * @param driverCutOffMillis
+     *            cut-off the driver gave the slice, used while sliceTimes has too few samples; 0 for never
+     * @param sliceTimes
+     *            slice durations to poll, usually {@link #executorSliceTimes()}
+     * @param startNanos
+     *            System.nanoTime() at the start of the slice
+     */
+    public SkewMonitor(int ratio, long driverCutOffMillis, SliceTimes sliceTimes, long startNanos) {
+        this.ratio = ratio;
+        this.driverCutOffMillis = driverCutOffMillis;
+        this.sliceTimes = sliceTimes;
+        this.startNanos = startNanos;
+    }
+
+    public static SliceTimes executorSliceTimes() {
+        return executorSliceTimes;
+    }
+
+    /**
+     * @return how long the slice may run before it is behind, 0 for never
+     */
+    public long getCutOffMillis() {
+        long median = (sliceTimes != null && ratio > 0) ? sliceTimes.getMedianMillis() : -1;
+        return (median >= 0) ? Math.max(MIN_RUNTIME_MILLIS, ratio * median) : driverCutOffMillis;
+    }
+
+    public boolean isBehind(long nowNanos) {
+        long cutOffMillis = getCutOffMillis();
+        return cutOffMillis > 0 && (nowNanos - startNanos) / 1_000_000 > cutOffMillis;
+    }
+
+    /**
+     * @return the configured steal ratio, or 0 when range stealing is off or the write mode is not safe to re-run
+     */
+    public static int stealRatio(IPropertyHelper propertyHelper) {
+        Number configuredStealRatio = propertyHelper.getNumber(KnownProperties.PERF_STEAL_RATIO);
+        int ratio = (configuredStealRatio != null) ? configuredStealRatio.intValue() : 0;
+        if (ratio > 0 && !YugabyteWriteMode.fromProperties(propertyHelper).isRerunSafe()) {
+            // The rows of the partition at a cut-off point are written again by the slice that takes over
+            logger.warn("Range stealing disabled: the write mode is not safe to re-run");
+            return 0;
+        }
+        return Math.max(0, ratio);
+    }
+
+    /**
+     * @return the cut-off time the driver gives the slices of a round, or 0 (never) while too few job slices have
+     *         completed
+     */
+    public static long cutOffMillis(Collection<RangeProgress> progress, int ratio) {
+        long median = medianMillis(progress);
+        if (ratio <= 0 || median < 0) {
+            return 0;
+        }
+        return Math.max(MIN_RUNTIME_MILLIS, ratio * median);
+    }
+
+    /**
+     * @return median duration of the job slices that processed their whole range, or -1 while there are too few of
+     *         them. Left-over slices are smaller than job slices, so they are not part of the median.
+     */
+    static long medianMillis(Collection<RangeProgress> progress) {
+        List<Long> durations = new ArrayList<>();
+        for (RangeProgress p : progress) {
+            if (counts(p)) {
+                durations.add(p.getElapsedMillis());
+            }
+        }
+        if (durations.size() < MIN_SAMPLES) {
+            return -1;
+        }
+        Collections.sort(durations);
+        return durations.get(durations.size() / 2);
+    }
+
+    private static boolean counts(RangeProgress progress) {
+        return !progress.isLeftOver() && !progress.isCut() && !progress.isFailed();
+    }
+
+    /**
+     * A job slice that was cut off is counted once all the slices of its range have run: as passed when none of them
+     * failed, as failed otherwise. Neither the cut-off job slice nor its left-over slices count themselves.
+     *
+     * @return the flushed partition counts of the job slices that were cut off
+     */
+    public static JobCounter cutOffSliceCounts(Collection<RangeProgress> progress, JobType jobType) {
+        Map<String, Boolean> failedBySlice = new LinkedHashMap<>();
+        for (RangeProgress p : progress) {
+            if (!p.isLeftOver() && p.isCut()) {
+                failedBySlice.put(p.getSlice(), false);
+            }
+        }
+        for (RangeProgress p : progress) {
+            if (p.isLeftOver() && p.isFailed()) {
+                failedBySlice.computeIfPresent(p.getSlice(), (slice, failed) -> true);
+            }
+        }
+        JobCounter counter = new JobCounter(jobType);
+        for (boolean failed : failedBySlice.values()) {
+            counter.increment(failed ? JobCounter.CounterType.PARTITIONS_FAILED
+                    : JobCounter.CounterType.PARTITIONS_PASSED);
+        }
+        counter.flush();
+        return counter;
+    }
+}
@@ -16,19 +16,109 @@
 package com.datastax.cdm.job;
 
 import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.cdm.job.IJobSessionFactory.JobType;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
 
 public class SplitPartitions {
 
     public static Logger logger = LoggerFactory.getLogger(SplitPartitions.class.getName());
 
+    private static final String ESTIMATE_COLUMNS = "SELECT range_start, range_end, partitions_count, "
+            + "mean_partition_size";
+    // Cassandra 4.0+ keeps the estimates of the primary ranges in table_estimates, older versions in size_estimates
+    private static final String TABLE_ESTIMATES_CQL = ESTIMATE_COLUMNS
+            + " FROM system.table_estimates WHERE keyspace_name = ? AND table_name = ? AND range_type = 'primary'";
+    private static final String SIZE_ESTIMATES_CQL = ESTIMATE_COLUMNS
+            + " FROM system.size_estimates WHERE keyspace_name = ? AND table_name = ?";
+    static final int SAMPLE_ROWS = 100;
+
+    /**
+     * Estimated number of partitions and bytes of the origin table within a token range, both bounds inclusive.
+     */
+    public static class SizeEstimate {
+        private final BigInteger min;
+        private final BigInteger max;
+        private final double partitions;
+        private final double bytes;
+        private final List<String> locations;
+
+        public SizeEstimate(BigInteger min, BigInteger max, double partitions, double bytes, List<String> locations) {
+            this.min = min;
+            this.max = max;
+            this.partitions = partitions;
+            this.bytes = bytes;
+            this.locations = locations;
+        }
+
+        public BigInteger getMin() {
+            return min;
+        }
+
+        public BigInteger getMax() {
+            return max;
+        }
+
+        public double getPartitions() {
+            return partitions;
+        }
+
+        public double getBytes() {
+            return bytes;
+        }
+
+        public List<String> getLocations() {
+            return locations;
+        }
+
+        private BigInteger width() {
+            return max.subtract(min).add(BigInteger.ONE);
+        }
+
+        private List<SizeEstimate> split(int pieces) {
+            BigInteger width = width();
+            List<SizeEstimate> splits = new ArrayList<>();
+            for (int i = 0; i < pieces; i++) {
+                BigInteger lo = min.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(pieces)));
+                BigInteger hi = min.add(width.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(pieces)))
+                        .subtract(BigInteger.ONE);
+                splits.add(new SizeEstimate(lo, hi, partitions / pieces, bytes / pieces, locations));
+            }
+            return splits;
+        }
+
+        private SizeEstimate merge(SizeEstimate next) {
+            return new SizeEstimate(min, next.max, partitions + next.partitions, bytes + next.bytes, locations);
+        }
+    }
+
     public static List<PartitionRange> getRandomSubPartitions(int numSplits, BigInteger min, BigInteger max,
             int coveragePercent, JobType jobType) {
         logger.info("ThreadID: {} Splitting min: {} max: {}", Thread.currentThread().getId(), min, max);
@@ -38,6 +128,339 @@ public class SplitPartitions {
         return partitions;
     }
 
+    /**
+     * Split the token ring on the boundaries of the token ranges (vnodes) of the cluster, so that every split is owned
+     * by a single replica set, and attach the replica hosts to each split as its preferred locations. Each token range
+     * is cut into as many equal pieces as needed to reach about numSplits splits in total.
+     *
+     * Falls back to {@link #getRandomSubPartitions} when the token ranges cannot be expressed as numeric tokens.
+     */
+    public static List<PartitionRange> getReplicaAlignedSubPartitions(TokenMap tokenMap, CqlIdentifier keyspace,
+            int numSplits, BigInteger min, BigInteger max, int coveragePercent, JobType jobType) {
+        Set<TokenRange> tokenRanges = tokenMap.getTokenRanges();
+        List<PartitionRange> partitions = new ArrayList<>();
+        try {
+            int splitsPerRange = Math.max(1, (numSplits + tokenRanges.size() - 1) / Math.max(1, tokenRanges.size()));
+            for (TokenRange tokenRange : tokenRanges) {
+                List<String> locations = getReplicaHosts(tokenMap.getReplicas(keyspace, tokenRange));
+                for (TokenRange piece : tokenRange.unwrap()) {
+                    // Token ranges exclude their start and include their end
+                    BigInteger lo = tokenRange.isFullRing() ? min
+                            : new BigInteger(tokenMap.format(piece.getStart())).add(BigInteger.ONE);
+                    BigInteger hi = tokenRange.isFullRing() ? max : new BigInteger(tokenMap.format(piece.getEnd()));
+                    if (hi.compareTo(lo) < 0) {
+                        hi = max; // Ends at the minimum token, i.e. at the end of the ring
+                    }
+                    lo = lo.max(min);
+                    hi = hi.min(max);
+                    if (lo.compareTo(hi) > 0) {
+                        continue;
+                    }
+                    for (PartitionRange split : getSubPartitions(splitsPerRange, lo, hi, coveragePercent, jobType)) {
+                        partitions.add(new PartitionRange(split.getMin(), split.getMax(), jobType, locations));
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Tokens of partitioner {} are not numeric, splitting the ring evenly",
+                    tokenMap.getPartitionerName());
+            return getRandomSubPartitions(numSplits, min, max, coveragePercent, jobType);
+        }
+        logger.info("Split {} token ranges into {} replica-aligned partitions", tokenRanges.size(), partitions.size());
+        Collections.shuffle(partitions);
+        return partitions;
+    }
+
+    /**
+     * Split the token ring so that every split holds about the same share of the estimated partitions and bytes of the
+     * table, and order the splits largest first so that the longest tasks start early.
+     *
+     * A token range holding more than its share is cut into equal pieces; neighbouring ranges holding less are joined
+     * as long as they share their replicas and stay within one share.
+     *
+     * @param estimates
+     *            estimates covering the token range to migrate, see {@link #readSizeEstimates} and
+     *            {@link #sampleSizeEstimates}
+     */
+    public static List<PartitionRange> getBalancedSubPartitions(List<SizeEstimate> estimates, int numSplits,
+            int coveragePercent, JobType jobType) {
+        if (coveragePercent < 1 || coveragePercent > 100) {
+            coveragePercent = 100;
+        }
+        int splits = Math.max(1, numSplits);
+        double totalPartitions = estimates.stream().mapToDouble(SizeEstimate::getPartitions).sum();
+        double totalBytes = estimates.stream().mapToDouble(SizeEstimate::getBytes).sum();
+        ToDoubleFunction<SizeEstimate> share = e -> Math.max(
+                (totalPartitions > 0) ? e.getPartitions() / totalPartitions : 0,
+                (totalBytes > 0) ? e.getBytes() / totalBytes : 0);
+
+        List<SizeEstimate> pieces = new ArrayList<>();
+        for (SizeEstimate estimate : estimates) {
+            double wanted = Math.ceil(share.applyAsDouble(estimate) * splits);
+            int count = (int) Math.max(1, Math.min(Math.min(wanted, splits), estimate.width().doubleValue()));
+            pieces.addAll(estimate.split(count));
+        }
+        pieces.sort(Comparator.comparing(SizeEstimate::getMin));
+
+        List<SizeEstimate> balanced = new ArrayList<>();
+        SizeEstimate current = null;
+        for (SizeEstimate piece : pieces) {
+            if (current != null && current.getMax().add(BigInteger.ONE).equals(piece.getMin())
+                    && current.getLocations().equals(piece.getLocations())
+                    && share.applyAsDouble(current) + share.applyAsDouble(piece) <= 1.0 / splits) {
+                current = current.merge(piece);
+            } else {
+                if (current != null) {
+                    balanced.add(current);
+                }
+                current = piece;
+            }
+        }
+        if (current != null) {
+            balanced.add(current);
+        }
+        balanced.sort(Comparator.comparingDouble(share).reversed());
+
+        List<PartitionRange> partitions = new ArrayList<>();
+        for (SizeEstimate estimate : balanced) {
+            BigInteger range = estimate.getMax().subtract(estimate.getMin());
+            BigInteger covered = range.multiply(BigInteger.valueOf(coveragePercent)).divide(BigInteger.valueOf(100));
+            partitions.add(new PartitionRange(estimate.getMin(), estimate.getMin().add(covered), jobType,
+                    estimate.getLocations()));
+        }
+        logger.info("Split {} estimated token ranges ({} partitions, {} bytes) into {} balanced partitions",
+                estimates.size(), (long) totalPartitions, (long) totalBytes, partitions.size());
+        return partitions;
+    }
+
+    /**
+     * Read the size estimates Cassandra keeps for the primary token ranges of every node of the origin cluster.
+     * Ranges not covered by an estimate, e.g. those of a node that is down, are given the average density of the rest.
+     *
+     * @param withLocations
+     *            whether to attach the replica hosts of each range as its preferred locations
+     *
+     * @return the estimates clipped to [min, max], or an empty list when Cassandra has no estimates for the table yet
+     */
+    public static List<SizeEstimate> readSizeEstimates(CqlSession session, String keyspace, String table,
+            BigInteger min, BigInteger max, boolean withLocations) {
+        CqlIdentifier keyspaceId = CqlIdentifier.fromCql(keyspace);
+        String keyspaceName = keyspaceId.asInternal();
+        String tableName = CqlIdentifier.fromCql(table).asInternal();
+        Map<List<String>, Row> ranges = new LinkedHashMap<>();
+        for (Node node : session.getMetadata().getNodes().values()) {
+            if (node.getState() == NodeState.DOWN) {
+                continue;
+            }
+            for (Row row : readSizeEstimates(session, node, keyspaceName, tableName)) {
+                ranges.putIfAbsent(Arrays.asList(row.getString("range_start"), row.getString("range_end")), row);
+            }
+        }
+
+        Optional<TokenMap> tokenMap = withLocations ? session.getMetadata().getTokenMap() : Optional.empty();
+        List<SizeEstimate> estimates = new ArrayList<>();
+        try {
+            for (Row row : ranges.values()) {
+                String end = row.getString("range_end");
+                double partitions = row.getLong("partitions_count");
+                double bytes = partitions * row.getLong("mean_partition_size");
+                List<String> locations = tokenMap
+                        .map(t -> getReplicaHosts(t.getReplicas(keyspaceId, t.parse(end))))
+                        .orElse(Collections.emptyList());
+                addSizeEstimate(estimates, new BigInteger(row.getString("range_start")), new BigInteger(end),
+                        partitions, bytes, locations, min, max);
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Size estimates of {}.{} do not have numeric tokens, not using them", keyspace, table);
+            return Collections.emptyList();
+        }
+        logger.info("Read {} size estimates of {}.{} from {} nodes", ranges.size(), keyspace, table,
+                session.getMetadata().getNodes().size());
+        return completeSizeEstimates(estimates, min, max);
+    }
+
+    private static List<Row> readSizeEstimates(CqlSession session, Node node, String keyspace, String table) {
+        for (String cql : new String[] { TABLE_ESTIMATES_CQL, SIZE_ESTIMATES_CQL }) {
+            try {
+                List<Row> rows = session.execute(SimpleStatement.newInstance(cql, keyspace, table).setNode(node))
+                        .all();
+                if (!rows.isEmpty()) {
+                    return rows;
+                }
+            } catch (DriverException e) {
+                logger.debug("Could not read size estimates from {}: {}", node, e.getMessage());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Add the estimate of the token range (start, end], which wraps around the ring when end is not after start. The
+     * estimate is spread over the range by token count, so a piece clipped to [min, max] keeps its part of it.
+     */
+    static void addSizeEstimate(List<SizeEstimate> estimates, BigInteger start, BigInteger end, double partitions,
+            double bytes, List<String> locations, BigInteger min, BigInteger max) {
+        List<BigInteger[]> pieces = new ArrayList<>();
+        if (end.compareTo(start) > 0) {
+            pieces.add(new BigInteger[] { start.add(BigInteger.ONE), end });
+        } else {
+            pieces.add(new BigInteger[] { start.add(BigInteger.ONE), max });
+            if (end.compareTo(min) > 0) {
+                pieces.add(new BigInteger[] { min, end });
+            }
+        }
+        double width = 0;
+        for (BigInteger[] piece : pieces) {
+            width += Math.max(0, piece[1].subtract(piece[0]).add(BigInteger.ONE).doubleValue());
+        }
+        for (BigInteger[] piece : pieces) {
+            BigInteger lo = piece[0].max(min);
+            BigInteger hi = piece[1].min(max);
+            if (lo.compareTo(hi) > 0 || width <= 0) {
+                continue;
+            }
+            double fraction = hi.subtract(lo).add(BigInteger.ONE).doubleValue() / width;
+            estimates.add(new SizeEstimate(lo, hi, partitions * fraction, bytes * fraction, locations));
+        }
+    }
+
+    /**
+     * Sort the estimates and fill the gaps between them, so that together they cover [min, max] exactly once.
+     */
+    static List<SizeEstimate> completeSizeEstimates(List<SizeEstimate> estimates, BigInteger min, BigInteger max) {
+        double totalPartitions = estimates.stream().mapToDouble(SizeEstimate::getPartitions).sum();
+        if (totalPartitions <= 0) {
+            return Collections.emptyList();
+        }
+        double totalBytes = estimates.stream().mapToDouble(SizeEstimate::getBytes).sum();
+        double coveredWidth = estimates.stream().mapToDouble(e -> e.width().doubleValue()).sum();
+
+        List<SizeEstimate> sorted = new ArrayList<>(estimates);
+        sorted.sort(Comparator.comparing(SizeEstimate::getMin));
+        List<SizeEstimate> complete = new ArrayList<>();
+        BigInteger next = min;
+        for (SizeEstimate estimate : sorted) {
+            if (estimate.getMin().compareTo(next) > 0) {
+                complete.add(gapEstimate(next, estimate.getMin().subtract(BigInteger.ONE), totalPartitions,
+                        totalBytes, coveredWidth));
+            }
+            if (estimate.getMax().compareTo(next) >= 0) {
+                complete.add(estimate.getMin().compareTo(next) >= 0 ? estimate
+                        : new SizeEstimate(next, estimate.getMax(), estimate.getPartitions(), estimate.getBytes(),
+                                estimate.getLocations()));
+                next = estimate.getMax().add(BigInteger.ONE);
+            }
+        }
+        if (next.compareTo(max) <= 0) {
+            complete.add(gapEstimate(next, max, totalPartitions, totalBytes, coveredWidth));
+        }
+        return complete;
+    }
+
+    private static SizeEstimate gapEstimate(BigInteger lo, BigInteger hi, double totalPartitions, double totalBytes,
+            double coveredWidth) {
+        double fraction = hi.subtract(lo).add(BigInteger.ONE).doubleValue() / coveredWidth;
+        return new SizeEstimate(lo, hi, totalPartitions * fraction, totalBytes * fraction, Collections.emptyList());
+    }
+
+    /**
+     * Estimate the size of the table by sampling, for when Cassandra has no size estimates: the token range is cut
+     * into the given number of windows, and up to {@value #SAMPLE_ROWS} rows are read from the start of each. A window
+     * holding more rows than that is estimated from the token span of the rows read.
+     *
+     * @return an estimate per window, or an empty list when the table is empty or cannot be read
+     */
+    public static List<SizeEstimate> sampleSizeEstimates(CqlSession session, String keyspace, String table,
+            BigInteger min, BigInteger max, int samples) {
+        Optional<TableMetadata> tableMetadata = session.getMetadata().getKeyspace(CqlIdentifier.fromCql(keyspace))
+                .flatMap(k -> k.getTable(CqlIdentifier.fromCql(table)));
+        if (samples <= 0 || !tableMetadata.isPresent()) {
+            return Collections.emptyList();
+        }
+        String partitionKey = tableMetadata.get().getPartitionKey().stream().map(c -> c.getName().asCql(true))
+                .collect(Collectors.joining(","));
+        boolean randomPartitioner = session.getMetadata().getTokenMap()
+                .map(t -> t.getPartitionerName().endsWith("RandomPartitioner")).orElse(false);
+
+        List<SizeEstimate> estimates = new ArrayList<>();
+        try {
+            PreparedStatement statement = session.prepare("SELECT TOKEN(" + partitionKey + ") FROM "
+                    + tableMetadata.get().getKeyspace().asCql(true) + "." + tableMetadata.get().getName().asCql(true)
+                    + " WHERE TOKEN(" + partitionKey + ") >= ? AND TOKEN(" + partitionKey + ") <= ? LIMIT "
+                    + SAMPLE_ROWS);
+            BigInteger width = max.subtract(min).add(BigInteger.ONE);
+            for (int i = 0; i < samples; i++) {
+                BigInteger lo = min.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(samples)));
+                BigInteger hi = min.add(width.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(samples)))
+                        .subtract(BigInteger.ONE);
+                if (lo.compareTo(hi) > 0) {
+                    continue;
+                }
+                List<Row> rows = session.execute(statement.bind(randomPartitioner ? lo : lo.longValueExact(),
+                        randomPartitioner ? hi : hi.longValueExact())).all();
+                double rowCount = rows.size();
+                if (rows.size() >= SAMPLE_ROWS) {
+                    BigInteger last = new BigInteger(String.valueOf(rows.get(rows.size() - 1).getObject(0)));
+                    rowCount = rows.size() * hi.subtract(lo).add(BigInteger.ONE).doubleValue()
+                            / last.subtract(lo).add(BigInteger.ONE).doubleValue();
+                }
+                estimates.add(new SizeEstimate(lo, hi, rowCount, 0, Collections.emptyList()));
+            }
+        } catch (DriverException | NumberFormatException | ArithmeticException e) {
+            // A token the sampling cannot handle (e.g. of an unexpected partitioner) falls back to uniform splits
+            logger.warn("Could not sample {}.{} to estimate its size, splitting uniformly: {}", keyspace, table,
+                    e.getMessage());
+            return Collections.emptyList();
+        }
+        logger.info("Sampled {} token windows of {}.{}", estimates.size(), keyspace, table);
+        return completeSizeEstimates(estimates, min, max);
+    }
+
+    /**
+     * Split the unprocessed remainders of slices that fell behind into new slices. Each remainder is cut into equal
+     * pieces by token count, at most one per token, keeping the preferred locations and the job slice of the
+     * remainder.
+     */
+    public static List<PartitionRange> splitRemainders(List<PartitionRange> remainders, int piecesPerRemainder,
+            JobType jobType) {
+        List<PartitionRange> partitions = new ArrayList<>();
+        for (PartitionRange remainder : remainders) {
+            BigInteger width = remainder.getMax().subtract(remainder.getMin()).add(BigInteger.ONE);
+            if (width.signum() <= 0) {
+                continue;
+            }
+            BigInteger pieces = width.min(BigInteger.valueOf(Math.max(1, piecesPerRemainder)));
+            for (int i = 0; i < pieces.intValue(); i++) {
+                BigInteger lo = remainder.getMin().add(width.multiply(BigInteger.valueOf(i)).divide(pieces));
+                BigInteger hi = remainder.getMin().add(width.multiply(BigInteger.valueOf(i + 1)).divide(pieces))
+                        .subtract(BigInteger.ONE);
+                PartitionRange piece = new PartitionRange(lo, hi, jobType, remainder.getPreferredLocations());
+                piece.setSlice(remainder.getSlice());
+                partitions.add(piece);
+            }
+        }
+        logger.info("Split {} unprocessed remainders into {} partitions", remainders.size(), partitions.size());
+        return partitions;
+    }
+
+    /**
+     * Host names and addresses of the replicas, in the form Spark matches against the executor hosts.
+     */
+    static List<String> getReplicaHosts(Set<Node> replicas) {
+        Set<String> hosts = new LinkedHashSet<>();
+        for (Node node : replicas) {
+            SocketAddress address = node.getEndPoint().resolve();
+            if (address instanceof InetSocketAddress) {
+                InetSocketAddress inetAddress = (InetSocketAddress) address;
+                hosts.add(inetAddress.getHostString());
+                if (inetAddress.getAddress() != null) {
+                    hosts.add(inetAddress.getAddress().getHostAddress());
+                }
+            }
+        }
+        return new ArrayList<>(hosts);
+    }
+
     private static List<PartitionRange> getSubPartitions(int numSplits, BigInteger min, BigInteger max,
             int coveragePercent, JobType jobType) {
         if (coveragePercent < 1 || coveragePercent > 100) {
@@ -17,9 +17,16 @@ package com.datastax.cdm.job;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.ThreadContext;
 import org.slf4j.Logger;
@@ -29,16 +36,25 @@ import com.datastax.cdm.cql.statement.OriginSelectByPartitionRangeStatement;
 import com.datastax.cdm.data.PKFactory;
 import com.datastax.cdm.data.Record;
 import com.datastax.cdm.feature.TrackRun;
+import com.datastax.cdm.job.IJobSessionFactory.JobType;
 import com.datastax.cdm.properties.KnownProperties;
 import com.datastax.cdm.properties.PropertyHelper;
 import com.datastax.cdm.schema.CqlTable;
 import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.YugabyteSessionRegistry;
+import com.datastax.cdm.yugabyte.YugabyteWritePipeline;
 import com.datastax.cdm.yugabyte.error.CentralizedPerformanceLogger;
 import com.datastax.cdm.yugabyte.error.FailedRecordLogger;
+import com.datastax.cdm.yugabyte.statement.AdaptiveBatchSizer;
+import com.datastax.cdm.yugabyte.statement.BatchBisector;
+import com.datastax.cdm.yugabyte.statement.YugabyteBatchWriter;
+import com.datastax.cdm.yugabyte.statement.YugabyteCopyStatement;
+import com.datastax.cdm.yugabyte.statement.YugabyteTabletRouter;
 import com.datastax.cdm.yugabyte.statement.YugabyteUpsertStatement;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
 
 /**
  * High-performance YugabyteDB Copy Job Session with Phase 1+2 optimizations.
@@ -54,18 +70,33 @@ import com.datastax.oss.driver.api.core.cql.Row;
  */
 public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> implements Serializable {
 
+    // Origin rows read between two checks whether the slice fell behind
+    private static final int SKEW_CHECK_ROWS = 1000;
+
     private final PKFactory pkFactory;
     private final boolean isCounterTable;
     private final Integer fetchSize;
     private final Integer batchSize;
     public Logger logger = LoggerFactory.getLogger(this.getClass().getName());
-    private YugabyteUpsertStatement yugabyteUpsertStatement;
+    private final boolean useCopy;
+    private final int writerThreads;
+    private final int subRangeWorkers;
+    private final int stealRatio; // 0 when range stealing is off
+    private final long maxInFlightRows;
+    private final long maxInFlightBytes;
+    private final String loadMethod;
+    private final BatchBisector batchBisector;
+    private YugabyteBatchWriter batchWriter;
+    private YugabyteCopyStatement yugabyteCopyStatement;
     private YugabyteSession yugabyteSession;
     private FailedRecordLogger failedRecordLogger;
 
     // Batch processing tracking
     private int recordsInCurrentBatch = 0;
     private List<Record> currentBatchRecords = new ArrayList<>(); // For error tracking
+    private final AtomicLong retries = new AtomicLong(); // Retries of the slice made by writer workers and COPY replays
+    private volatile boolean scanCancelled; // Set when a sub-range worker of the slice failed
+    private List<String> sliceLocations = Collections.emptyList(); // Preferred locations of the current slice
 
     protected YugabyteCopyJobSession(CqlSession originSession, PropertyHelper propHelper) {
         super(originSession, null, propHelper); // No target CqlSession for YugabyteDB
@@ -92,15 +123,53 @@ public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> i
         Number configuredBatchSize = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE);
         this.batchSize = (configuredBatchSize != null) ? configuredBatchSize.intValue() : 25;
 
-        // Initialize YugabyteDB session with connection sharing
-        this.yugabyteSession = new YugabyteSession(propertyHelper, false);
-        this.yugabyteUpsertStatement = this.yugabyteSession.getYugabyteUpsertStatement();
+        String configuredLoadMethod = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_LOAD_METHOD);
+        this.loadMethod = (configuredLoadMethod != null && !configuredLoadMethod.trim().isEmpty())
+                ? configuredLoadMethod.trim().toUpperCase() : "UPSERT";
+        this.useCopy = loadMethod.equals("COPY");
+        this.batchBisector = BatchBisector.fromProperties(propertyHelper);
+
+        Number configuredWriterThreads = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_WRITER_THREADS);
+        this.writerThreads = (configuredWriterThreads != null) ? Math.max(0, configuredWriterThreads.intValue()) : 0;
+        Number configuredSubRangeWorkers = propertyHelper.getNumber(KnownProperties.PERF_SUB_RANGE_WORKERS);
+        this.subRangeWorkers = (configuredSubRangeWorkers != null) ? Math.max(1, configuredSubRangeWorkers.intValue())
+                : 1;
+        this.stealRatio = SkewMonitor.stealRatio(propertyHelper);
+        Number configuredMaxRows = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_ROWS);
+        this.maxInFlightRows = (configuredMaxRows != null) ? configuredMaxRows.longValue() : 0L;
+        Number configuredMaxBytes = propertyHelper
+                .getNumber(KnownProperties.TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_BYTES);
+        this.maxInFlightBytes = (configuredMaxBytes != null) ? configuredMaxBytes.longValue() : 64L * 1024 * 1024;
+
+        // Borrow the executor-wide YugabyteDB session (pool, table metadata) instead of building one per slice
+        this.yugabyteSession = YugabyteSessionRegistry.acquire(propertyHelper);
 
         // Log connection info for debugging
         logger.info("=========================================================================");
         logger.info("YugabyteCopyJobSession initialized with HIGH-PERFORMANCE settings:");
         logger.info("  Thread ID: {}", Thread.currentThread().getId());
+        logger.info("  Load Method: {}", useCopy ? "COPY FROM STDIN (fallback: UPSERT)" : loadMethod);
         logger.info("  Batch Size: {} records per batch", batchSize);
+        logger.info("  Writer Threads: {}", writerThreads > 0 ? writerThreads : "none (write on reader thread)");
+        if (subRangeWorkers > 1) {
+            logger.info("  Sub-range Workers: {} concurrent origin scans per slice", subRangeWorkers);
+        }
+        if (stealRatio > 0) {
+            logger.info("  Range Stealing: slices running over {}x the median slice time are cut off", stealRatio);
+        }
+        Boolean tabletRouting = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_TABLET_ROUTING);
+        if (tabletRouting != null && tabletRouting && !usesPipeline()) {
+            logger.warn("  Tablet Routing: needs writerThreads > 0 or subRangeWorkers > 1, batches are written in "
+                    + "arrival order");
+        }
+        Number commitGroupBatches = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES);
+        if (commitGroupBatches != null && commitGroupBatches.intValue() > 1 && usesPipeline() && !useCopy) {
+            // The workers count a batch as written when it returns, so each pipeline batch is committed on its own
+            logger.warn("  Commit Groups: not used with writerThreads > 0 or subRangeWorkers > 1, each batch is "
+                    + "committed on its own");
+        }
+        logger.info("  Failed Batch Bisection: {}",
+                batchBisector.getMaxDepth() > 0 ? "up to depth " + batchBisector.getMaxDepth() : "DISABLED");
         logger.info("  Fetch Size: {} rows", fetchSize);
         logger.info("  Rate Limiting: BATCH-LEVEL (not per-record)");
         logger.info("=========================================================================");
@@ -116,7 +185,6 @@ public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> i
         CentralizedPerformanceLogger.initialize(logDir);
 
         logger.info("CQL -- origin select: {}", this.originSession.getOriginSelectByPartitionRangeStatement().getCQL());
-        logger.info("SQL -- yugabyte upsert: {}", this.yugabyteUpsertStatement.getSQL());
     }
 
     /**
@@ -151,75 +219,90 @@ public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> i
         JobCounter jobCounter = range.getJobCounter();
         recordsInCurrentBatch = 0;
         currentBatchRecords.clear();
+        // The statements belong to this executor thread and stay warm across slices. With writer threads, the
+        // writers use their own statements and this thread only reads.
+        if (!usesPipeline()) {
+            batchWriter = yugabyteSession.getThreadBatchWriter();
+            if (useCopy) {
+                yugabyteCopyStatement = yugabyteSession.getThreadCopyStatement();
+            }
+        }
+        YugabyteWritePipeline pipeline = null;
+        retries.set(0);
+        scanCancelled = false;
+        long sliceStart = System.nanoTime();
+        sliceLocations = range.getPreferredLocations();
+        // The cut-off follows the slices completing on this executor, starting from the one the driver set
+        SkewMonitor skewMonitor = (stealRatio > 0 && range.getCutOffMillis() >= 0)
+                ? new SkewMonitor(stealRatio, range.getCutOffMillis(), SkewMonitor.executorSliceTimes(), sliceStart)
+                : null;
+        List<PartitionRange> remainders = new ArrayList<>();
+        long batchWriterRetries = (batchWriter != null) ? batchWriter.getTotalRetries() : 0;
 
         try {
-            OriginSelectByPartitionRangeStatement originSelectByPartitionRangeStatement = this.originSession
-                    .getOriginSelectByPartitionRangeStatement();
-            ResultSet resultSet = originSelectByPartitionRangeStatement
-                    .execute(originSelectByPartitionRangeStatement.bind(min, max));
-
-            for (Row originRow : resultSet) {
-                // Rate limit origin reads (per-record is fine for reads)
-                rateLimiterOrigin.acquire(1);
-                jobCounter.increment(JobCounter.CounterType.READ);
-
-                Record record = new Record(pkFactory.getTargetPK(originRow), originRow, null);
-                if (originSelectByPartitionRangeStatement.shouldFilterRecord(record)) {
-                    jobCounter.increment(JobCounter.CounterType.SKIPPED);
-                    continue;
+            if (usesPipeline()) {
+                pipeline = createPipeline();
+                pipeline.start();
+            }
+
+            if (subRangeWorkers > 1) {
+                remainders.addAll(scanSubRanges(min, max, jobCounter, pipeline, skewMonitor));
+            } else {
+                PartitionRange remainder = readRange(min, max, jobCounter, pipeline, skewMonitor);
+                if (remainder != null) {
+                    remainders.add(remainder);
                 }
+            }
 
-                for (Record r : pkFactory.toValidRecordList(record)) {
-                    try {
-                        // Phase 2: Add to batch instead of immediate execute
-                        boolean batchWasFlushed = yugabyteUpsertStatement.addToBatch(r);
-                        recordsInCurrentBatch++;
-                        currentBatchRecords.add(r);
+            // Wait for the writer workers to drain the pipeline
+            if (pipeline != null) {
+                pipeline.finish();
+                jobCounter.increment(JobCounter.CounterType.WRITE, pipeline.getWritten());
+                jobCounter.increment(JobCounter.CounterType.ERROR, pipeline.getErrors());
+                pipeline = null;
+            }
 
-                        // If batch was flushed (reached batch size), apply rate limiting and update counters
-                        if (batchWasFlushed) {
-                            // Phase 2: Batch-level rate limiting (much more efficient!)
-                            rateLimiterTarget.acquire(recordsInCurrentBatch);
-                            jobCounter.increment(JobCounter.CounterType.WRITE, recordsInCurrentBatch);
-
-                            // Reset batch tracking
-                            recordsInCurrentBatch = 0;
-                            currentBatchRecords.clear();
-                        }
-
-                    } catch (SQLException e) {
-                        logger.error("Error adding record to batch for YugabyteDB: {}", r, e);
-                        jobCounter.increment(JobCounter.CounterType.ERROR);
-
-                        // Log failed record to separate files
-                        if (failedRecordLogger != null) {
-                            failedRecordLogger.logFailedRecord(r, e);
-                            failedRecordLogger.logFailedKey(r, e);
-                        }
-                    }
+            // Complete the last COPY chunk
+            if (yugabyteCopyStatement != null && yugabyteCopyStatement.getCurrentChunkCount() > 0) {
+                try {
+                    yugabyteCopyStatement.flush();
+                    rateLimiterTarget.acquire(currentBatchRecords.size());
+                    jobCounter.increment(JobCounter.CounterType.WRITE, currentBatchRecords.size());
+                    currentBatchRecords.clear();
+                } catch (SQLException e) {
+                    replayChunkWithUpsert(e, jobCounter);
                 }
             }
 
             // Flush any remaining records in the batch
-            if (yugabyteUpsertStatement.getCurrentBatchCount() > 0) {
+            if (batchWriter != null && batchWriter.getCurrentBatchCount() > 0) {
                 try {
-                    yugabyteUpsertStatement.flush();
+                    batchWriter.flush();
                     rateLimiterTarget.acquire(recordsInCurrentBatch);
                     jobCounter.increment(JobCounter.CounterType.WRITE, recordsInCurrentBatch);
                 } catch (SQLException e) {
                     logger.error("Error flushing final batch", e);
-                    // Mark all remaining records as errors
-                    for (Record r : currentBatchRecords) {
-                        jobCounter.increment(JobCounter.CounterType.ERROR);
-                        if (failedRecordLogger != null) {
-                            failedRecordLogger.logFailedRecord(r, e);
-                            failedRecordLogger.logFailedKey(r, e);
-                        }
-                    }
+                    recoverFailedBatch(e, jobCounter);
                 }
             }
+            if (batchWriter != null) {
+                commitOpenGroup(jobCounter);
+            }
 
-            jobCounter.increment(JobCounter.CounterType.PARTITIONS_PASSED);
+            jobCounter.increment(JobCounter.CounterType.RETRIES, takeRetries(batchWriterRetries));
+            for (PartitionRange remainder : remainders) {
+                remainder.setSlice(range.getSlice());
+            }
+            range.setProgress(new RangeProgress(range, jobCounter.getCount(JobCounter.CounterType.READ, true),
+                    (System.nanoTime() - sliceStart) / 1_000_000, false, remainders));
+            if (skewMonitor != null) {
+                SkewMonitor.executorSliceTimes().add(range.getProgress());
+            }
+            // A job slice that was cut off is counted by the driver, once the slices of its remainders have run
+            boolean counted = remainders.isEmpty() && !range.isLeftOver();
+            if (counted) {
+                jobCounter.increment(JobCounter.CounterType.PARTITIONS_PASSED);
+            }
             jobCounter.flush();
 
             // Update performance metrics
@@ -234,7 +317,7 @@ public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> i
             CentralizedPerformanceLogger.updateMetrics(jobCounter.getCount(JobCounter.CounterType.READ),
                     jobCounter.getCount(JobCounter.CounterType.WRITE),
                     jobCounter.getCount(JobCounter.CounterType.ERROR),
-                    jobCounter.getCount(JobCounter.CounterType.SKIPPED), 1, // partitions processed
+                    jobCounter.getCount(JobCounter.CounterType.SKIPPED), counted ? 1 : 0, // partitions processed
                     0 // partitions failed
             );
 
@@ -243,29 +326,56 @@ public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> i
             }
 
             // Log batch statistics
-            if (logger.isInfoEnabled()) {
+            if (usesPipeline()) {
+                logger.info("Partition complete. Records written by {} writer threads: {}", pipelineWriters(),
+                        jobCounter.getCount(JobCounter.CounterType.WRITE));
+            } else if (useCopy && logger.isInfoEnabled()) {
+                logger.info("Partition complete. Total COPY chunks: {} ({} failed), Total records copied: {}",
+                        yugabyteCopyStatement.getTotalChunksExecuted(), yugabyteCopyStatement.getTotalChunksFailed(),
+                        yugabyteCopyStatement.getTotalRecordsWritten());
+            } else if (logger.isInfoEnabled()) {
                 logger.info("Partition complete. Total batches: {}, Total records written: {}",
-                        yugabyteUpsertStatement.getTotalBatchesExecuted(),
-                        yugabyteUpsertStatement.getTotalRecordsWritten());
+                        batchWriter.getTotalBatchesExecuted(), batchWriter.getTotalRecordsWritten());
             }
 
         } catch (Exception e) {
+            if (pipeline != null) {
+                // Count what the writers completed; everything else is counted as an error below
+                pipeline.abort();
+                jobCounter.increment(JobCounter.CounterType.WRITE, pipeline.getWritten());
+            } else if (batchWriter != null) {
+                // The thread's writer serves the next slice too: drop the records it holds for this one. Those of the
+                // rolled back commit group were counted as written, so they are counted as errors below instead.
+                jobCounter.increment(JobCounter.CounterType.WRITE, -batchWriter.rollbackGroup());
+                recordsInCurrentBatch = 0;
+                currentBatchRecords.clear();
+            }
             jobCounter.increment(JobCounter.CounterType.ERROR,
                     jobCounter.getCount(JobCounter.CounterType.READ, true)
                             - jobCounter.getCount(JobCounter.CounterType.WRITE, true)
                             - jobCounter.getCount(JobCounter.CounterType.SKIPPED, true));
-            jobCounter.increment(JobCounter.CounterType.PARTITIONS_FAILED);
+            if (!range.isLeftOver()) {
+                jobCounter.increment(JobCounter.CounterType.PARTITIONS_FAILED);
+            }
+            jobCounter.increment(JobCounter.CounterType.RETRIES, takeRetries(batchWriterRetries));
+            if (useCopy && yugabyteCopyStatement != null) {
+                // Records of the open chunk are counted as errors above, so they must not be committed later
+                yugabyteCopyStatement.cancel();
+                currentBatchRecords.clear();
+            }
             logger.error("Error with PartitionRange -- ThreadID: {} Processing min: {} max: {}",
                     Thread.currentThread().getId(), min, max, e);
             logger.error("Error stats " + jobCounter.getMetrics(true));
             jobCounter.flush();
+            range.setProgress(new RangeProgress(range, jobCounter.getCount(JobCounter.CounterType.READ),
+                    (System.nanoTime() - sliceStart) / 1_000_000, true, Collections.emptyList()));
 
             // Update centralized performance logger with partition failure
             CentralizedPerformanceLogger.updateMetrics(jobCounter.getCount(JobCounter.CounterType.READ),
                     jobCounter.getCount(JobCounter.CounterType.WRITE),
                     jobCounter.getCount(JobCounter.CounterType.ERROR),
                     jobCounter.getCount(JobCounter.CounterType.SKIPPED), 0, // partitions processed
-                    1 // partitions failed
+                    range.isLeftOver() ? 0 : 1 // partitions failed
             );
 
             if (null != trackRunFeature) {
@@ -276,18 +386,390 @@ public class YugabyteCopyJobSession extends AbstractJobSession<PartitionRange> i
         }
     }
 
+    private boolean usesPipeline() {
+        // Sub-range workers share the slice's writers, so they always write through the pipeline
+        return writerThreads > 0 || subRangeWorkers > 1;
+    }
+
+    private int pipelineWriters() {
+        return Math.max(1, writerThreads);
+    }
+
+    /**
+     * Read the origin rows of [min, max] and write their records: through the pipeline when there is one, otherwise on
+     * this thread.
+     *
+     * @param skewMonitor
+     *            when set, the scan stops once the slice fell behind the others
+     *
+     * @return the unprocessed rest of the range when the scan was cut off, null when the whole range was read
+     */
+    private PartitionRange readRange(BigInteger min, BigInteger max, JobCounter jobCounter,
+            YugabyteWritePipeline pipeline, SkewMonitor skewMonitor) {
+        OriginSelectByPartitionRangeStatement originSelectByPartitionRangeStatement = this.originSession
+                .getOriginSelectByPartitionRangeStatement();
+        ResultSet resultSet = originSelectByPartitionRangeStatement
+                .execute(originSelectByPartitionRangeStatement.bind(min, max));
+
+        long rowsSinceSkewCheck = 0;
+        for (Row originRow : resultSet) {
+            if (scanCancelled) {
+                throw new CancellationException("Scan of " + min + ".." + max + " stopped, another sub-range failed");
+            }
+            if (skewMonitor != null && ++rowsSinceSkewCheck >= SKEW_CHECK_ROWS) {
+                rowsSinceSkewCheck = 0;
+                if (skewMonitor.isBehind(System.nanoTime())) {
+                    // Leave the rest of the range, from the partition of this row on, to new slices
+                    BigInteger token = tokenOf(originRow);
+                    if (token != null && token.compareTo(min) > 0) {
+                        logger.info("Token range {} to {} fell behind, leaving {} to {} to new slices", min, max,
+                                token, max);
+                        return new PartitionRange(token, max, JobType.MIGRATE, sliceLocations);
+                    }
+                }
+            }
+            // Rate limit origin reads (per-record is fine for reads)
+            rateLimiterOrigin.acquire(1);
+            jobCounter.increment(JobCounter.CounterType.READ);
+
+            Record record = new Record(pkFactory.getTargetPK(originRow), originRow, null);
+            if (originSelectByPartitionRangeStatement.shouldFilterRecord(record)) {
+                jobCounter.increment(JobCounter.CounterType.SKIPPED);
+                continue;
+            }
+
+            for (Record r : pkFactory.toValidRecordList(record)) {
+                if (pipeline != null) {
+                    pipeline.submit(r);
+                    continue;
+                }
+                if (useCopy) {
+                    copyRecord(r, jobCounter);
+                    continue;
+                }
+                try {
+                    // Phase 2: Add to batch instead of immediate execute
+                    boolean batchWasFlushed = batchWriter.addToBatch(r);
+                    recordsInCurrentBatch++;
+                    currentBatchRecords.add(r);
+
+                    // If batch was flushed (reached batch size), apply rate limiting and update counters
+                    if (batchWasFlushed) {
+                        // Phase 2: Batch-level rate limiting (much more efficient!)
+                        rateLimiterTarget.acquire(recordsInCurrentBatch);
+                        jobCounter.increment(JobCounter.CounterType.WRITE, recordsInCurrentBatch);
+
+                        // Reset batch tracking
+                        recordsInCurrentBatch = 0;
+                        currentBatchRecords.clear();
+                    }
+
+                } catch (SQLException e) {
+                    if (batchWriter.getCurrentBatchCount() == 0) {
+                        // The batch (with this record) was written and failed: recover its good records
+                        currentBatchRecords.add(r);
+                        recoverFailedBatch(e, jobCounter);
+                        recordsInCurrentBatch = 0;
+                        continue;
+                    }
+                    logger.error("Error adding record to batch for YugabyteDB: {}", r, e);
+                    jobCounter.increment(JobCounter.CounterType.ERROR);
+
+                    // Log failed record to separate files
+                    logFailedRecord(r, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Token of the partition of an origin row, or null when it cannot be computed.
+     */
+    private BigInteger tokenOf(Row row) {
+        try {
+            Optional<TokenMap> tokenMap = originSession.getCqlSession().getMetadata().getTokenMap();
+            if (!tokenMap.isPresent()) {
+                return null;
+            }
+            List<String> partitionKey = originSession.getCqlTable().getPartitionKeyNames(true);
+            ByteBuffer[] components = new ByteBuffer[partitionKey.size()];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = row.getBytesUnsafe(partitionKey.get(i));
+            }
+            return new BigInteger(tokenMap.get().format(tokenMap.get().newToken(components)));
+        } catch (RuntimeException e) {
+            logger.debug("Could not compute the token of an origin row", e);
+            return null;
+        }
+    }
+
+    /**
+     * Scan the slice as subRangeWorkers equal sub-ranges at once, all feeding the slice's write pipeline. Each worker
+     * counts its rows in its own counter, which is added to the slice's counter once all workers are done; the first
+     * failure stops the other workers and fails the slice as a whole.
+     */
+    private List<PartitionRange> scanSubRanges(BigInteger min, BigInteger max, JobCounter jobCounter,
+            YugabyteWritePipeline pipeline, SkewMonitor skewMonitor) throws Exception {
+        String label = ThreadContext.get(THREAD_CONTEXT_LABEL);
+        BigInteger width = max.subtract(min).add(BigInteger.ONE);
+        BigInteger workers = BigInteger.valueOf(subRangeWorkers);
+        List<JobCounter> counters = new ArrayList<>();
+        List<Future<PartitionRange>> scans = new ArrayList<>();
+        for (int i = 0; i < subRangeWorkers; i++) {
+            BigInteger lo = min.add(width.multiply(BigInteger.valueOf(i)).divide(workers));
+            BigInteger hi = min.add(width.multiply(BigInteger.valueOf(i + 1)).divide(workers)).subtract(BigInteger.ONE);
+            if (lo.compareTo(hi) > 0) {
+                continue;
+            }
+            JobCounter counter = new JobCounter(JobType.MIGRATE);
+            counters.add(counter);
+            scans.add(yugabyteSession.getScanExecutor().submit(() -> {
+                ThreadContext.put(THREAD_CONTEXT_LABEL, label);
+                try {
+                    return readRange(lo, hi, counter, pipeline, skewMonitor);
+                } catch (RuntimeException e) {
+                    scanCancelled = true;
+                    throw e;
+                } finally {
+                    ThreadContext.remove(THREAD_CONTEXT_LABEL);
+                }
+            }));
+        }
+
+        Exception failure = null;
+        List<PartitionRange> remainders = new ArrayList<>();
+        for (Future<PartitionRange> scan : scans) {
+            try {
+                PartitionRange remainder = scan.get();
+                if (remainder != null) {
+                    remainders.add(remainder);
+                }
+            } catch (ExecutionException e) {
+                scanCancelled = true;
+                Exception cause = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                // Report the failure that stopped the others rather than one of the stops
+                if (failure == null || failure instanceof CancellationException) {
+                    failure = cause;
+                }
+            }
+        }
+        for (JobCounter counter : counters) {
+            jobCounter.increment(JobCounter.CounterType.READ, counter.getCount(JobCounter.CounterType.READ, true));
+            jobCounter.increment(JobCounter.CounterType.SKIPPED,
+                    counter.getCount(JobCounter.CounterType.SKIPPED, true));
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return remainders;
+    }
+
+    private YugabyteWritePipeline createPipeline() {
+        // With COPY, each pipeline batch is one COPY chunk
+        Number copyChunkSize = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COPY_CHUNK_SIZE);
+        // With adaptive sizing, batches are cut at the largest size and each writer flushes at its current size
+        int pipelineBatchRows = useCopy ? (copyChunkSize != null ? copyChunkSize.intValue() : 10000)
+                : AdaptiveBatchSizer.getMaxBatchSize(propertyHelper, batchSize);
+        long maxRows = maxInFlightRows > 0 ? maxInFlightRows : 4L * pipelineWriters() * pipelineBatchRows;
+        // With tablet routing, each batch holds the rows of one tablet; the open batches are capped like the queue
+        YugabyteTabletRouter router = yugabyteSession.getTabletRouter();
+        return new YugabyteWritePipeline(yugabyteSession.getWriterExecutor(), pipelineWriters(), pipelineBatchRows,
+                maxRows,
+                maxInFlightBytes, this::writeBatchOnWorker, (router != null) ? router::tabletOf : null, maxRows);
+    }
+
+    /**
+     * Write one pipeline batch on a writer worker thread, with the statements owned by that thread. The batch is
+     * committed before it is counted, so commit groups do not span pipeline batches.
+     *
+     * @return number of records written; failed records are logged here. Records of an earlier batch of the thread
+     *         that were rolled back and could not be written again are subtracted, as they were counted as written.
+     */
+    private long writeBatchOnWorker(List<Record> batch) {
+        if (useCopy) {
+            YugabyteCopyStatement copy = yugabyteSession.getThreadCopyStatement();
+            try {
+                for (Record r : batch) {
+                    copy.addToChunk(r);
+                }
+                copy.flush();
+                rateLimiterTarget.acquire(batch.size());
+                return batch.size();
+            } catch (SQLException e) {
+                return replayWithUpsert(batch, e, yugabyteSession.getThreadUpsertStatement());
+            }
+        }
+
+        YugabyteBatchWriter writer = yugabyteSession.getThreadBatchWriter();
+        long writerRetries = writer.getTotalRetries();
+        int flushed = 0; // Records written by the batches flushed so far
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                if (writer.addToBatch(batch.get(i))) {
+                    flushed = i + 1;
+                }
+            }
+            writer.flush();
+            flushed = batch.size();
+            writer.commit();
+            rateLimiterTarget.acquire(batch.size());
+            return batch.size();
+        } catch (SQLException e) {
+            logger.error("Error writing batch of {} records to YugabyteDB", batch.size(), e);
+            // Flushed records whose commit group was rolled back are recovered with the unwritten ones
+            List<Record> rolledBack = writer.takeRolledBackRecords();
+            List<Record> failed = new ArrayList<>(rolledBack);
+            failed.addAll(batch.subList(flushed, batch.size()));
+            long written = flushed - rolledBack.size()
+                    + batchBisector.recover(writer, failed, e, this::logFailedRecord);
+            if (written > 0) {
+                rateLimiterTarget.acquire((int) written);
+            }
+            return written;
+        } finally {
+            retries.addAndGet(writer.getTotalRetries() - writerRetries);
+        }
+    }
+
+    /**
+     * Batch retries made for the current slice: those of the thread's batch writer since the slice started, and those
+     * of the writer workers and COPY replays.
+     */
+    private long takeRetries(long batchWriterRetries) {
+        long sliceRetries = retries.getAndSet(0);
+        if (batchWriter != null && !usesPipeline() && !useCopy) {
+            sliceRetries += batchWriter.getTotalRetries() - batchWriterRetries;
+        }
+        return sliceRetries;
+    }
+
+    /**
+     * Recover the failed batch held in currentBatchRecords by bisecting it: the good records are written again and
+     * only the records that still fail are counted as errors and logged.
+     */
+    private void recoverFailedBatch(SQLException cause, JobCounter jobCounter) {
+        // Earlier batches of the commit group that were rolled back with it, already counted as written
+        List<Record> rolledBack = batchWriter.takeRolledBackRecords();
+        currentBatchRecords.addAll(0, rolledBack);
+        long written = batchBisector.recover(batchWriter, currentBatchRecords, cause, this::logFailedRecord);
+        if (written > 0) {
+            rateLimiterTarget.acquire((int) written);
+        }
+        jobCounter.increment(JobCounter.CounterType.WRITE, written - rolledBack.size());
+        jobCounter.increment(JobCounter.CounterType.ERROR, currentBatchRecords.size() - written);
+        currentBatchRecords.clear();
+    }
+
+    /**
+     * Commit the batches of the open commit group at the end of the slice. Batches whose commit is lost are recovered
+     * like a failed batch.
+     */
+    private void commitOpenGroup(JobCounter jobCounter) {
+        try {
+            batchWriter.commit();
+        } catch (SQLException e) {
+            logger.error("Error committing the final commit group", e);
+            currentBatchRecords.clear();
+            recoverFailedBatch(e, jobCounter);
+        }
+    }
+
+    private void logFailedRecord(Record r, SQLException e) {
+        if (failedRecordLogger != null) {
+            failedRecordLogger.logFailedRecord(r, e);
+            failedRecordLogger.logFailedKey(r, e);
+        }
+    }
+
+    /**
+     * Stream a record into the current COPY chunk. The records of the chunk are kept in currentBatchRecords until the
+     * chunk is committed, so that a failed chunk can be replayed through the upsert path.
+     */
+    private void copyRecord(Record r, JobCounter jobCounter) {
+        currentBatchRecords.add(r);
+        try {
+            if (yugabyteCopyStatement.addToChunk(r)) {
+                rateLimiterTarget.acquire(currentBatchRecords.size());
+                jobCounter.increment(JobCounter.CounterType.WRITE, currentBatchRecords.size());
+                currentBatchRecords.clear();
+            }
+        } catch (SQLException e) {
+            replayChunkWithUpsert(e, jobCounter);
+        }
+    }
+
+    private void replayChunkWithUpsert(SQLException cause, JobCounter jobCounter) {
+        long replayed = replayWithUpsert(currentBatchRecords, cause, yugabyteSession.getThreadUpsertStatement());
+        jobCounter.increment(JobCounter.CounterType.WRITE, replayed);
+        jobCounter.increment(JobCounter.CounterType.ERROR, currentBatchRecords.size() - replayed);
+        currentBatchRecords.clear();
+    }
+
+    /**
+     * Replay the records of a failed COPY chunk one by one through the upsert statement. Part of the chunk may already
+     * be committed (ROWS_PER_TRANSACTION), which the upsert handles, and records that still fail are logged
+     * individually by the FailedRecordLogger.
+     *
+     * @return number of records written
+     */
+    private long replayWithUpsert(List<Record> records, SQLException cause, YugabyteUpsertStatement upsert) {
+        logger.warn("COPY chunk of {} records failed, replaying it through UPSERT: {}", records.size(),
+                cause.getMessage());
+        long replayed = 0;
+        long upsertRetries = upsert.getTotalRetries();
+        for (Record r : records) {
+            try {
+                upsert.addToBatch(r);
+                upsert.flush();
+                upsert.commit();
+                rateLimiterTarget.acquire(1);
+                replayed++;
+            } catch (SQLException e) {
+                logger.error("Error writing record to YugabyteDB: {}", r, e);
+                logFailedRecord(r, e);
+            }
+        }
+        retries.addAndGet(upsert.getTotalRetries() - upsertRetries);
+        return replayed;
+    }
+
     @Override
     public void close() {
-        // Close the upsert statement (flushes remaining batch and closes PreparedStatement)
-        if (yugabyteUpsertStatement != null) {
-            yugabyteUpsertStatement.close();
+        // The batch writer is shared by later slices on this thread, so flush it but leave it open
+        if (batchWriter != null && batchWriter.getCurrentBatchCount() > 0) {
+            try {
+                batchWriter.flush();
+            } catch (SQLException e) {
+                logger.error("Error flushing remaining batch records on close", e);
+            }
+        }
+        if (batchWriter != null) {
+            try {
+                batchWriter.commit();
+            } catch (SQLException e) {
+                logger.error("Error committing remaining batches on close", e);
+            }
+        }
+
+        // Same for the COPY statement
+        if (yugabyteCopyStatement != null && yugabyteCopyStatement.getCurrentChunkCount() > 0) {
+            try {
+                yugabyteCopyStatement.flush();
+            } catch (SQLException e) {
+                logger.error("Error completing remaining COPY chunk on close", e);
+            }
         }
 
         if (failedRecordLogger != null) {
             failedRecordLogger.close();
         }
         if (yugabyteSession != null) {
-            yugabyteSession.close();
+            YugabyteSessionRegistry.release(yugabyteSession);
+            yugabyteSession = null;
+        }
+        if (originSession != null) {
+            logger.debug("Origin {}", originSession.getStatementRegistry());
         }
         super.close();
     }
@@ -36,6 +36,7 @@ import com.datastax.cdm.feature.TrackRun;
 import com.datastax.cdm.properties.PropertyHelper;
 import com.datastax.cdm.schema.CqlTable;
 import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.YugabyteSessionRegistry;
 import com.datastax.cdm.yugabyte.error.FailedRecordLogger;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.Row;
@@ -73,7 +74,7 @@ public class YugabyteValidateJobSession extends AbstractJobSession<PartitionRang
         fetchSize = this.originSession.getCqlTable().getFetchSizeInRows();
 
         // Initialize YugabyteDB session for validation
-        this.yugabyteSession = new YugabyteSession(propertyHelper, false);
+        this.yugabyteSession = YugabyteSessionRegistry.acquire(propertyHelper);
 
         // Initialize failed record logger for validation results
         String logDir = propertyHelper.getString("spark.cdm.log.directory");
@@ -270,7 +271,8 @@ public class YugabyteValidateJobSession extends AbstractJobSession<PartitionRang
             failedRecordLogger.close();
         }
         if (yugabyteSession != null) {
-            yugabyteSession.close();
+            YugabyteSessionRegistry.release(yugabyteSession);
+            yugabyteSession = null;
         }
         super.close();
     }
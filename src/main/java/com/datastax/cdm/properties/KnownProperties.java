@@ -69,8 +69,11 @@ public class KnownProperties {
     // YugabyteDB YSQL Connection Pooling configuration (HikariCP)
     public static final String TARGET_YUGABYTE_POOL_MAX_SIZE = "spark.cdm.connect.target.yugabyte.pool.maxSize";
     public static final String TARGET_YUGABYTE_POOL_MIN_SIZE = "spark.cdm.connect.target.yugabyte.pool.minSize";
+    public static final String TARGET_YUGABYTE_POOL_AUTO_SIZE = "spark.cdm.connect.target.yugabyte.pool.autoSize";
+    public static final String TARGET_YUGABYTE_POOL_GLOBAL_BUDGET = "spark.cdm.connect.target.yugabyte.pool.globalBudget";
     public static final String TARGET_YUGABYTE_ADDITIONAL_ENDPOINTS = "spark.cdm.connect.target.yugabyte.additionalEndpoints";
     public static final String TARGET_YUGABYTE_TOPOLOGY_KEYS = "spark.cdm.connect.target.yugabyte.topologyKeys";
+    public static final String TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS = "spark.cdm.connect.target.yugabyte.session.idleTimeoutMs";
 
     // YugabyteDB YSQL Performance Tuning (Phase 1+2 optimizations)
     public static final String TARGET_YUGABYTE_BATCH_SIZE = "spark.cdm.connect.target.yugabyte.batchSize";
@@ -79,6 +82,55 @@ public class KnownProperties {
     public static final String TARGET_YUGABYTE_PREPARE_THRESHOLD = "spark.cdm.connect.target.yugabyte.prepareThreshold";
     public static final String TARGET_YUGABYTE_SOCKET_TIMEOUT = "spark.cdm.connect.target.yugabyte.socketTimeout";
     public static final String TARGET_YUGABYTE_TCP_KEEPALIVE = "spark.cdm.connect.target.yugabyte.tcpKeepAlive";
+    public static final String TARGET_YUGABYTE_CONNECTION_IDLE_VALIDATION_MS = "spark.cdm.connect.target.yugabyte.connection.idleValidationMs";
+    public static final String TARGET_YUGABYTE_MULTI_ROW_SHAPES = "spark.cdm.connect.target.yugabyte.multiRowShapes";
+
+    // YugabyteDB YSQL adaptive batch sizing (AIMD on batch latency, timeouts and conflicts)
+    public static final String TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE = "spark.cdm.connect.target.yugabyte.batchSize.adaptive";
+    public static final String TARGET_YUGABYTE_BATCH_SIZE_MIN = "spark.cdm.connect.target.yugabyte.batchSize.min";
+    public static final String TARGET_YUGABYTE_BATCH_SIZE_MAX = "spark.cdm.connect.target.yugabyte.batchSize.max";
+    public static final String TARGET_YUGABYTE_BATCH_SIZE_INCREMENT = "spark.cdm.connect.target.yugabyte.batchSize.increment";
+    public static final String TARGET_YUGABYTE_BATCH_SIZE_TARGET_LATENCY_MS = "spark.cdm.connect.target.yugabyte.batchSize.targetLatencyMs";
+
+    // YugabyteDB YSQL failed batch recovery (bisect a failed batch to isolate the failing records)
+    public static final String TARGET_YUGABYTE_BISECT_MAX_DEPTH = "spark.cdm.connect.target.yugabyte.bisect.maxDepth";
+
+    // YugabyteDB YSQL tablet-aware batching (group the rows of a batch by target tablet)
+    public static final String TARGET_YUGABYTE_TABLET_ROUTING = "spark.cdm.connect.target.yugabyte.tabletRouting";
+
+    // YugabyteDB YSQL write semantics (conflict handling and session-level write settings)
+    public static final String TARGET_YUGABYTE_WRITE_MODE = "spark.cdm.connect.target.yugabyte.writeMode";
+    public static final String TARGET_YUGABYTE_NON_TRANSACTIONAL_WRITES = "spark.cdm.connect.target.yugabyte.nonTransactionalWrites";
+
+    // YugabyteDB YSQL commit grouping (several upsert batches per transaction)
+    public static final String TARGET_YUGABYTE_COMMIT_GROUP_BATCHES = "spark.cdm.connect.target.yugabyte.commitGroup.batches";
+    public static final String TARGET_YUGABYTE_COMMIT_GROUP_MAX_MS = "spark.cdm.connect.target.yugabyte.commitGroup.maxMs";
+    public static final String TARGET_YUGABYTE_COMMIT_GROUP_MAX_ROWS = "spark.cdm.connect.target.yugabyte.commitGroup.maxRows";
+
+    // YugabyteDB YSQL retry of transient batch failures (conflicts, read restarts, broken connections)
+    public static final String TARGET_YUGABYTE_RETRY_MAX_ATTEMPTS = "spark.cdm.connect.target.yugabyte.retry.maxAttempts";
+    public static final String TARGET_YUGABYTE_RETRY_BACKOFF_MS = "spark.cdm.connect.target.yugabyte.retry.backoffMs";
+    public static final String TARGET_YUGABYTE_RETRY_MAX_BACKOFF_MS = "spark.cdm.connect.target.yugabyte.retry.maxBackoffMs";
+    public static final String TARGET_YUGABYTE_RETRY_STORM_LIMIT = "spark.cdm.connect.target.yugabyte.retry.stormLimit";
+
+    // YugabyteDB YSQL secondary index deferral (drop before the load, rebuild after it)
+    public static final String TARGET_YUGABYTE_DEFER_INDEXES = "spark.cdm.connect.target.yugabyte.deferIndexes";
+    public static final String TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE = "spark.cdm.connect.target.yugabyte.deferIndexes.stateFile";
+    public static final String TARGET_YUGABYTE_DEFER_INDEXES_REBUILD = "spark.cdm.connect.target.yugabyte.deferIndexes.rebuild";
+
+    // YugabyteDB YSQL load method (UPSERT batches or COPY FROM STDIN bulk load)
+    public static final String TARGET_YUGABYTE_LOAD_METHOD = "spark.cdm.connect.target.yugabyte.loadMethod";
+    public static final String TARGET_YUGABYTE_COPY_FORMAT = "spark.cdm.connect.target.yugabyte.copy.format";
+    public static final String TARGET_YUGABYTE_COPY_CHUNK_SIZE = "spark.cdm.connect.target.yugabyte.copy.chunkSize";
+    public static final String TARGET_YUGABYTE_COPY_ROWS_PER_TRANSACTION = "spark.cdm.connect.target.yugabyte.copy.rowsPerTransaction";
+
+    // YugabyteDB YSQL collection values in text columns (driver string form, or JSON as for json/jsonb columns)
+    public static final String TARGET_YUGABYTE_COLLECTIONS_JSON_IN_TEXT = "spark.cdm.connect.target.yugabyte.collections.jsonInText";
+
+    // YugabyteDB YSQL reader/writer pipeline (writer workers per Spark task)
+    public static final String TARGET_YUGABYTE_WRITER_THREADS = "spark.cdm.connect.target.yugabyte.writerThreads";
+    public static final String TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_ROWS = "spark.cdm.connect.target.yugabyte.pipeline.maxInFlightRows";
+    public static final String TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_BYTES = "spark.cdm.connect.target.yugabyte.pipeline.maxInFlightBytes";
 
     // ==========================================================================
     // Astra DevOps API Parameters
@@ -145,8 +197,14 @@ public class KnownProperties {
         defaults.put(TARGET_YUGABYTE_POOL_MAX_SIZE, "20"); // Increased for better parallelism
         types.put(TARGET_YUGABYTE_POOL_MIN_SIZE, PropertyType.NUMBER);
         defaults.put(TARGET_YUGABYTE_POOL_MIN_SIZE, "5"); // Increased minimum idle
+        types.put(TARGET_YUGABYTE_POOL_AUTO_SIZE, PropertyType.BOOLEAN);
+        defaults.put(TARGET_YUGABYTE_POOL_AUTO_SIZE, "false"); // Size from cores, writer threads and tservers
+        types.put(TARGET_YUGABYTE_POOL_GLOBAL_BUDGET, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_POOL_GLOBAL_BUDGET, "0"); // Connections of the whole job, 0 = no limit
         types.put(TARGET_YUGABYTE_ADDITIONAL_ENDPOINTS, PropertyType.STRING);
         types.put(TARGET_YUGABYTE_TOPOLOGY_KEYS, PropertyType.STRING);
+        types.put(TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS, "300000"); // Keep shared pool warm between slices
 
         // YugabyteDB YSQL Performance Tuning (Phase 1+2 optimizations)
         types.put(TARGET_YUGABYTE_BATCH_SIZE, PropertyType.NUMBER);
@@ -161,6 +219,66 @@ public class KnownProperties {
         defaults.put(TARGET_YUGABYTE_SOCKET_TIMEOUT, "60000"); // 60 seconds
         types.put(TARGET_YUGABYTE_TCP_KEEPALIVE, PropertyType.BOOLEAN);
         defaults.put(TARGET_YUGABYTE_TCP_KEEPALIVE, "true");
+        types.put(TARGET_YUGABYTE_CONNECTION_IDLE_VALIDATION_MS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_CONNECTION_IDLE_VALIDATION_MS, "30000"); // Validate only after 30s idle
+        types.put(TARGET_YUGABYTE_MULTI_ROW_SHAPES, PropertyType.NUMBER_LIST); // e.g. 1,8,32,128; unset = disabled
+        types.put(TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE, PropertyType.BOOLEAN);
+        defaults.put(TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE, "false"); // Fixed batchSize unless enabled
+        types.put(TARGET_YUGABYTE_BATCH_SIZE_MIN, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_BATCH_SIZE_MIN, "10");
+        types.put(TARGET_YUGABYTE_BATCH_SIZE_MAX, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_BATCH_SIZE_MAX, "1000");
+        types.put(TARGET_YUGABYTE_BATCH_SIZE_INCREMENT, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_BATCH_SIZE_INCREMENT, "5"); // Records added after each fast batch
+        types.put(TARGET_YUGABYTE_BATCH_SIZE_TARGET_LATENCY_MS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_BATCH_SIZE_TARGET_LATENCY_MS, "200"); // executeBatch + commit
+        types.put(TARGET_YUGABYTE_BISECT_MAX_DEPTH, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_BISECT_MAX_DEPTH, "10"); // 0 = log the whole failed batch
+        types.put(TARGET_YUGABYTE_TABLET_ROUTING, PropertyType.BOOLEAN);
+        defaults.put(TARGET_YUGABYTE_TABLET_ROUTING, "false"); // Needs writerThreads > 0
+        types.put(TARGET_YUGABYTE_WRITE_MODE, PropertyType.STRING);
+        defaults.put(TARGET_YUGABYTE_WRITE_MODE, "DO_UPDATE"); // INSERT, DO_NOTHING, DO_UPDATE or UPSERT_MODE
+        types.put(TARGET_YUGABYTE_NON_TRANSACTIONAL_WRITES, PropertyType.BOOLEAN);
+        defaults.put(TARGET_YUGABYTE_NON_TRANSACTIONAL_WRITES, "false"); // yb_disable_transactional_writes
+        types.put(TARGET_YUGABYTE_COMMIT_GROUP_BATCHES, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_COMMIT_GROUP_BATCHES, "1"); // 1 = commit every batch
+        types.put(TARGET_YUGABYTE_COMMIT_GROUP_MAX_MS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_COMMIT_GROUP_MAX_MS, "0"); // 0 = no time limit
+        types.put(TARGET_YUGABYTE_COMMIT_GROUP_MAX_ROWS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_COMMIT_GROUP_MAX_ROWS, "5000"); // Keeps transactions small for YugabyteDB
+        types.put(TARGET_YUGABYTE_RETRY_MAX_ATTEMPTS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_RETRY_MAX_ATTEMPTS, "5"); // Retries per batch, 0 = no retry
+        types.put(TARGET_YUGABYTE_RETRY_BACKOFF_MS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_RETRY_BACKOFF_MS, "50");
+        types.put(TARGET_YUGABYTE_RETRY_MAX_BACKOFF_MS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_RETRY_MAX_BACKOFF_MS, "2000");
+        types.put(TARGET_YUGABYTE_RETRY_STORM_LIMIT, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_RETRY_STORM_LIMIT, "1000"); // Retries per minute per executor, 0 = unlimited
+        types.put(TARGET_YUGABYTE_DEFER_INDEXES, PropertyType.BOOLEAN);
+        defaults.put(TARGET_YUGABYTE_DEFER_INDEXES, "false");
+        types.put(TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE, PropertyType.STRING); // Required with deferIndexes
+        types.put(TARGET_YUGABYTE_DEFER_INDEXES_REBUILD, PropertyType.STRING);
+        defaults.put(TARGET_YUGABYTE_DEFER_INDEXES_REBUILD, "NONCONCURRENTLY"); // or CONCURRENTLY
+
+        // YugabyteDB YSQL load method
+        types.put(TARGET_YUGABYTE_LOAD_METHOD, PropertyType.STRING);
+        defaults.put(TARGET_YUGABYTE_LOAD_METHOD, "UPSERT"); // UPSERT, COPY or UNNEST
+        types.put(TARGET_YUGABYTE_COPY_FORMAT, PropertyType.STRING);
+        defaults.put(TARGET_YUGABYTE_COPY_FORMAT, "TEXT"); // TEXT or BINARY
+        types.put(TARGET_YUGABYTE_COPY_CHUNK_SIZE, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_COPY_CHUNK_SIZE, "10000"); // Rows per COPY command
+        types.put(TARGET_YUGABYTE_COPY_ROWS_PER_TRANSACTION, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_COPY_ROWS_PER_TRANSACTION, "10000"); // 0 = server default
+        types.put(TARGET_YUGABYTE_COLLECTIONS_JSON_IN_TEXT, PropertyType.BOOLEAN);
+        defaults.put(TARGET_YUGABYTE_COLLECTIONS_JSON_IN_TEXT, "false");
+
+        // YugabyteDB YSQL reader/writer pipeline
+        types.put(TARGET_YUGABYTE_WRITER_THREADS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_WRITER_THREADS, "0"); // 0 = write on the reader thread
+        types.put(TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_ROWS, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_ROWS, "0"); // 0 = 4 batches per writer
+        types.put(TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_BYTES, PropertyType.NUMBER);
+        defaults.put(TARGET_YUGABYTE_PIPELINE_MAX_INFLIGHT_BYTES, "67108864"); // 64MB per Spark task
 
         // Astra DevOps API parameters
         types.put(ORIGIN_ASTRA_DATABASE_ID, PropertyType.STRING);
@@ -224,6 +342,9 @@ public class KnownProperties {
     public static final String PREV_RUN_ID = "spark.cdm.trackRun.previousRunId";
 
     public static final String PERF_NUM_PARTS = "spark.cdm.perfops.numParts"; // 5000, was spark.splitSize
+    public static final String PERF_REPLICA_ALIGNED_SPLITS = "spark.cdm.perfops.replicaAlignedSplits"; // per job
+    public static final String PERF_SIZE_ESTIMATED_SPLITS = "spark.cdm.perfops.sizeEstimatedSplits"; // per job
+    public static final String PERF_SIZE_ESTIMATE_SAMPLES = "spark.cdm.perfops.sizeEstimateSamples"; // 128
     public static final String PERF_BATCH_SIZE = "spark.cdm.perfops.batchSize"; // 5
     public static final String PERF_RATELIMIT_ORIGIN = "spark.cdm.perfops.ratelimit.origin"; // 20000
     public static final String PERF_RATELIMIT_TARGET = "spark.cdm.perfops.ratelimit.target"; // 20000
@@ -231,6 +352,14 @@ public class KnownProperties {
     public static final String READ_CL = "spark.cdm.perfops.consistency.read";
     public static final String WRITE_CL = "spark.cdm.perfops.consistency.write";
     public static final String PERF_FETCH_SIZE = "spark.cdm.perfops.fetchSizeInRows";
+    public static final String PERF_PREFETCH_PAGES = "spark.cdm.perfops.prefetchPages"; // 2
+    public static final String PERF_PREFETCH_MAX_MB = "spark.cdm.perfops.prefetchMaxMB"; // 32
+    public static final String PERF_SUB_RANGE_WORKERS = "spark.cdm.perfops.subRangeWorkers"; // 1
+    public static final String PERF_STEAL_RATIO = "spark.cdm.perfops.steal.ratio"; // 0
+    public static final String PERF_STEAL_MAX_ROUNDS = "spark.cdm.perfops.steal.maxRounds"; // 3
+    public static final String PERF_PROJECTION_PUSHDOWN = "spark.cdm.perfops.projectionPushdown"; // false
+    // Origin columns left out by projection pushdown, set by the job on the driver
+    public static final String PERF_PROJECTION_PRUNED_COLUMNS = "spark.cdm.perfops.projectionPushdown.prunedColumns";
 
     static {
         types.put(AUTOCORRECT_MISSING, PropertyType.BOOLEAN);
@@ -248,6 +377,10 @@ public class KnownProperties {
 
         types.put(PERF_NUM_PARTS, PropertyType.NUMBER);
         defaults.put(PERF_NUM_PARTS, "5000");
+        types.put(PERF_REPLICA_ALIGNED_SPLITS, PropertyType.BOOLEAN); // Default: per job, see BasePartitionJob
+        types.put(PERF_SIZE_ESTIMATED_SPLITS, PropertyType.BOOLEAN); // Default: per job, see BasePartitionJob
+        types.put(PERF_SIZE_ESTIMATE_SAMPLES, PropertyType.NUMBER);
+        defaults.put(PERF_SIZE_ESTIMATE_SAMPLES, "128");
         types.put(PERF_BATCH_SIZE, PropertyType.NUMBER);
         defaults.put(PERF_BATCH_SIZE, "5");
         types.put(PERF_RATELIMIT_ORIGIN, PropertyType.NUMBER);
@@ -261,6 +394,19 @@ public class KnownProperties {
         defaults.put(WRITE_CL, "LOCAL_QUORUM");
         types.put(PERF_FETCH_SIZE, PropertyType.NUMBER);
         defaults.put(PERF_FETCH_SIZE, "1000");
+        types.put(PERF_PREFETCH_PAGES, PropertyType.NUMBER);
+        defaults.put(PERF_PREFETCH_PAGES, "2");
+        types.put(PERF_PREFETCH_MAX_MB, PropertyType.NUMBER);
+        defaults.put(PERF_PREFETCH_MAX_MB, "32");
+        types.put(PERF_SUB_RANGE_WORKERS, PropertyType.NUMBER);
+        defaults.put(PERF_SUB_RANGE_WORKERS, "1");
+        types.put(PERF_STEAL_RATIO, PropertyType.NUMBER);
+        defaults.put(PERF_STEAL_RATIO, "0");
+        types.put(PERF_STEAL_MAX_ROUNDS, PropertyType.NUMBER);
+        defaults.put(PERF_STEAL_MAX_ROUNDS, "3");
+        types.put(PERF_PROJECTION_PUSHDOWN, PropertyType.BOOLEAN);
+        defaults.put(PERF_PROJECTION_PUSHDOWN, "false");
+        types.put(PERF_PROJECTION_PRUNED_COLUMNS, PropertyType.STRING_LIST);
     }
 
     // ==========================================================================
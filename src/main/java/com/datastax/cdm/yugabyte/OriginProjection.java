@@ -0,0 +1,169 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.CqlTable;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.type.DataType;
+
+/**
+ * Keeps the origin range scans to the columns the YugabyteDB target uses.
+ *
+ * An origin column is read when it is part of the primary key, when the target table has a column of the same name, or
+ * when a feature refers to it (filter column, explode map, extract JSON, writetime/TTL columns, column renames). The
+ * other columns are added to {@link KnownProperties#ORIGIN_COLUMN_NAMES_TO_SKIP} on the driver, before the properties
+ * are sent to the executors, so that every origin CqlTable, select statement and bind plan leaves them out.
+ *
+ * A target column without an origin column of the same name is normally bound to the origin column at its position.
+ * Once columns are pruned those positions no longer line up, so the pruned columns are recorded in
+ * {@link KnownProperties#PERF_PROJECTION_PRUNED_COLUMNS} and the COPY and upsert statements then bind such a column as
+ * NULL instead. Projection is opt-in: it reads the target table on the driver before the job starts.
+ */
+public final class OriginProjection {
+    private static final Logger logger = LoggerFactory.getLogger(OriginProjection.class);
+
+    private OriginProjection() {
+    }
+
+    /**
+     * Add the origin columns the target does not use to the skipped columns. Does nothing unless projection pushdown is
+     * enabled.
+     *
+     * @return the origin columns skipped because of the target
+     */
+    public static List<String> apply(IPropertyHelper propertyHelper, CqlSession originSession) {
+        Boolean enabled = propertyHelper.getBoolean(KnownProperties.PERF_PROJECTION_PUSHDOWN);
+        if (enabled == null || !enabled) {
+            return Collections.emptyList();
+        }
+
+        CqlTable origin = new CqlTable(propertyHelper, true, originSession);
+        List<String> targetColumns;
+        YugabyteSession session = YugabyteSessionRegistry.acquire(propertyHelper);
+        try {
+            targetColumns = session.getYugabyteTable().getAllColumnNames();
+        } finally {
+            YugabyteSessionRegistry.release(session);
+        }
+
+        List<String> originColumns = origin.getColumnNames(false);
+        List<String> unused = unusedColumns(originColumns, origin.getPKNames(false), targetColumns, propertyHelper);
+        if (unused.isEmpty()) {
+            logger.info("Projection pushdown: all {} origin columns are used by the target", originColumns.size());
+            return unused;
+        }
+
+        List<String> skipColumns = new ArrayList<>();
+        List<String> configured = propertyHelper.getStringList(KnownProperties.ORIGIN_COLUMN_NAMES_TO_SKIP);
+        if (configured != null) {
+            skipColumns.addAll(configured);
+        }
+        List<String> pruned = new ArrayList<>();
+        for (String column : unused) {
+            skipColumns.add(CqlIdentifier.fromInternal(column).asCql(true));
+            DataType type = origin.getColumnCqlTypes().get(originColumns.indexOf(column));
+            pruned.add(column + " " + type.asCql(false, true));
+        }
+        propertyHelper.setProperty(KnownProperties.ORIGIN_COLUMN_NAMES_TO_SKIP, skipColumns);
+        propertyHelper.setProperty(KnownProperties.PERF_PROJECTION_PRUNED_COLUMNS, unused);
+        logger.info("Projection pushdown: reading {} of {} origin columns, not reading {}",
+                originColumns.size() - unused.size(), originColumns.size(), pruned);
+        return unused;
+    }
+
+    /**
+     * Whether projection pushdown left origin columns out, in which case origin columns can no longer be matched to
+     * target columns by position.
+     */
+    public static boolean hasPrunedColumns(IPropertyHelper propertyHelper) {
+        List<String> pruned = propertyHelper.getStringList(KnownProperties.PERF_PROJECTION_PRUNED_COLUMNS);
+        return pruned != null && !pruned.isEmpty();
+    }
+
+    /**
+     * Origin columns that are neither key columns, nor target columns, nor used by a feature. Names are matched
+     * without regard to case, as PostgreSQL folds unquoted names to lower case.
+     *
+     * @return the unused origin columns
+     */
+    static List<String> unusedColumns(List<String> originColumns, List<String> keyColumns, List<String> targetColumns,
+            IPropertyHelper propertyHelper) {
+        Set<String> used = lowerCase(keyColumns);
+        used.addAll(lowerCase(targetColumns));
+        addName(used, propertyHelper.getString(KnownProperties.FILTER_COLUMN_NAME));
+        addName(used, propertyHelper.getString(KnownProperties.EXPLODE_MAP_ORIGIN_COLUMN_NAME));
+        addName(used, propertyHelper.getString(KnownProperties.EXTRACT_JSON_ORIGIN_COLUMN_NAME));
+        used.addAll(lowerCase(unFormat(propertyHelper.getStringList(KnownProperties.ORIGIN_WRITETIME_NAMES))));
+        used.addAll(lowerCase(unFormat(propertyHelper.getStringList(KnownProperties.ORIGIN_TTL_NAMES))));
+        List<String> renames = propertyHelper.getStringList(KnownProperties.ORIGIN_COLUMN_NAMES_TO_TARGET);
+        if (renames != null) {
+            for (String rename : renames) {
+                addMappedName(used, rename);
+            }
+        }
+
+        List<String> unused = new ArrayList<>();
+        for (String column : originColumns) {
+            if (!used.contains(column.toLowerCase(Locale.ROOT))) {
+                unused.add(column);
+            }
+        }
+        return unused;
+    }
+
+    private static List<String> unFormat(List<String> names) {
+        return (names != null) ? CqlTable.unFormatNames(names) : Collections.emptyList();
+    }
+
+    private static Set<String> lowerCase(Collection<String> names) {
+        Set<String> lower = new LinkedHashSet<>();
+        for (String name : names) {
+            lower.add(name.toLowerCase(Locale.ROOT));
+        }
+        return lower;
+    }
+
+    private static void addName(Set<String> names, String name) {
+        if (name != null && !name.trim().isEmpty()) {
+            names.add(CqlTable.unFormatName(name.trim()).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // Origin column of a "from:to" mapping
+    private static void addMappedName(Set<String> names, String mapping) {
+        if (mapping == null) {
+            return;
+        }
+        String[] parts = mapping.split(":");
+        if (parts.length == 2) {
+            addName(names, parts[0]);
+        }
+    }
+}
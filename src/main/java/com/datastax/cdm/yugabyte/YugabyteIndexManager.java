@@ -0,0 +1,302 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+
+/**
+ * Drops the secondary indexes of the target table before the load and recreates them after it, so the load does not
+ * pay for the index writes of every row.
+ *
+ * Indexes that back a constraint (the primary key, UNIQUE constraints) and unique indexes are left in place, so the
+ * load still enforces uniqueness. The DDL of the dropped indexes is saved to the configured state file before anything
+ * is dropped, and each index is removed from the file once it has been recreated. The file must survive the driver, so
+ * there is no default location. A run that finds the file (the previous run failed or was killed between the two
+ * phases) keeps the saved DDL, so indexes dropped by that run are still recreated at the end of this one.
+ *
+ * Runs on the Spark driver, around the slices.
+ */
+public class YugabyteIndexManager {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteIndexManager.class);
+
+    static final String LIST_INDEXES_SQL = "SELECT c.relname, x.indisvalid, pg_get_indexdef(c.oid) FROM pg_index x"
+            + " JOIN pg_class c ON c.oid = x.indexrelid JOIN pg_class t ON t.oid = x.indrelid"
+            + " JOIN pg_namespace n ON n.oid = t.relnamespace WHERE n.nspname = ? AND t.relname = ?"
+            + " AND NOT x.indisunique AND NOT EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = x.indexrelid) ORDER BY c.relname";
+
+    private final IPropertyHelper propertyHelper;
+    private final boolean concurrently;
+
+    /**
+     * Secondary index of the target table, as read from the catalog.
+     */
+    static final class IndexDefinition {
+        final String name;
+        final String ddl;
+        final boolean valid;
+
+        IndexDefinition(String name, String ddl, boolean valid) {
+            this.name = name;
+            this.ddl = ddl;
+            this.valid = valid;
+        }
+    }
+
+    YugabyteIndexManager(IPropertyHelper propertyHelper, boolean concurrently) {
+        this.propertyHelper = propertyHelper;
+        this.concurrently = concurrently;
+    }
+
+    /**
+     * Index manager for the configured target table, or null when index deferral is disabled.
+     *
+     * @throws IllegalArgumentException
+     *             if index deferral is enabled without a state file
+     */
+    public static YugabyteIndexManager fromProperties(IPropertyHelper propertyHelper) {
+        Boolean defer = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES);
+        if (defer == null || !defer) {
+            return null;
+        }
+        String stateFile = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE);
+        if (stateFile == null || stateFile.trim().isEmpty()) {
+            throw new IllegalArgumentException(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES
+                    + " needs " + KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE
+                    + ": a durable path that keeps the DDL of the dropped indexes until they are rebuilt");
+        }
+        String rebuild = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_REBUILD);
+        boolean concurrently = rebuild != null && rebuild.trim().equalsIgnoreCase("CONCURRENTLY");
+        return new YugabyteIndexManager(propertyHelper, concurrently);
+    }
+
+    /**
+     * Save and drop the secondary indexes of the target table.
+     *
+     * @return number of indexes to rebuild after the load, including any left over by an earlier run
+     */
+    public int deferIndexes() {
+        return withTable(this::deferIndexes);
+    }
+
+    /**
+     * Recreate the indexes saved by {@link #deferIndexes()}, and remove the state file once all of them exist.
+     *
+     * @return number of indexes recreated
+     */
+    public int rebuildIndexes() {
+        return withTable(this::rebuildIndexes);
+    }
+
+    private int withTable(TableAction action) {
+        YugabyteSession session = YugabyteSessionRegistry.acquire(propertyHelper);
+        try (Connection connection = session.getConnection()) {
+            YugabyteTable table = session.getYugabyteTable();
+            boolean autoCommit = connection.getAutoCommit();
+            // CREATE INDEX CONCURRENTLY cannot run in a transaction block
+            connection.setAutoCommit(true);
+            try {
+                return action.apply(connection, table.getSchemaName(), table.getTableName());
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to manage secondary indexes of the YugabyteDB target table", e);
+        } finally {
+            YugabyteSessionRegistry.release(session);
+        }
+    }
+
+    @FunctionalInterface
+    private interface TableAction {
+        int apply(Connection connection, String schema, String table) throws SQLException;
+    }
+
+    int deferIndexes(Connection connection, String schema, String table) throws SQLException {
+        Path stateFile = getStateFile(schema, table);
+        Map<String, String> deferred = readState(stateFile);
+        if (!deferred.isEmpty()) {
+            logger.warn("Found {} index(es) deferred by an earlier run in {}, they will be rebuilt after this load",
+                    deferred.size(), stateFile);
+        }
+        List<IndexDefinition> existing = listIndexes(connection, schema, table);
+        for (IndexDefinition index : existing) {
+            deferred.put(index.name, index.ddl);
+        }
+        if (deferred.isEmpty()) {
+            logger.info("Target table {}.{} has no secondary indexes to defer", schema, table);
+            return 0;
+        }
+        // Saved before anything is dropped, so a crash from here on loses no DDL
+        writeState(stateFile, deferred);
+
+        try (Statement statement = connection.createStatement()) {
+            for (IndexDefinition index : existing) {
+                logger.info("Dropping index {} until the load completes: {}", index.name, index.ddl);
+                statement.execute("DROP INDEX IF EXISTS " + quote(schema) + "." + quote(index.name));
+            }
+        }
+        logger.info("Deferred {} index(es) of {}.{}, DDL saved to {}", deferred.size(), schema, table, stateFile);
+        return deferred.size();
+    }
+
+    int rebuildIndexes(Connection connection, String schema, String table) throws SQLException {
+        Path stateFile = getStateFile(schema, table);
+        Map<String, String> remaining = readState(stateFile);
+        if (remaining.isEmpty()) {
+            return 0;
+        }
+        Map<String, Boolean> existing = new LinkedHashMap<>();
+        for (IndexDefinition index : listIndexes(connection, schema, table)) {
+            existing.put(index.name, index.valid);
+        }
+
+        int rebuilt = 0;
+        List<String> failed = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> index : new ArrayList<>(remaining.entrySet())) {
+                String name = index.getKey();
+                Boolean valid = existing.get(name);
+                try {
+                    if (valid != null && !valid) {
+                        // Left behind by a failed CONCURRENTLY build
+                        statement.execute("DROP INDEX IF EXISTS " + quote(schema) + "." + quote(name));
+                    }
+                    if (valid == null || !valid) {
+                        String ddl = toRebuildDdl(index.getValue(), concurrently);
+                        logger.info("Rebuilding index {}: {}", name, ddl);
+                        long start = System.nanoTime();
+                        statement.execute(ddl);
+                        logger.info("Rebuilt index {} in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+                        rebuilt++;
+                    }
+                    remaining.remove(name);
+                    writeState(stateFile, remaining);
+                } catch (SQLException e) {
+                    logger.error("Failed to rebuild index {}: {}", name, e.getMessage());
+                    failed.add(name);
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new SQLException("Failed to rebuild index(es) " + failed + " of " + schema + "." + table
+                    + "; their DDL is kept in " + stateFile + " and is retried by the next run");
+        }
+        logger.info("Rebuilt {} deferred index(es) of {}.{}", rebuilt, schema, table);
+        return rebuilt;
+    }
+
+    static List<IndexDefinition> listIndexes(Connection connection, String schema, String table)
+            throws SQLException {
+        List<IndexDefinition> indexes = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(LIST_INDEXES_SQL)) {
+            statement.setString(1, schema);
+            statement.setString(2, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    indexes.add(new IndexDefinition(rs.getString(1), rs.getString(3), rs.getBoolean(2)));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * The saved CREATE INDEX statement with the configured build mode. YugabyteDB builds indexes concurrently (with an
+     * online backfill) unless told otherwise; NONCONCURRENTLY is faster when nothing else writes to the table.
+     */
+    static String toRebuildDdl(String ddl, boolean concurrently) {
+        String mode = concurrently ? "CONCURRENTLY " : "NONCONCURRENTLY ";
+        return ddl.replaceFirst("(?i)^\\s*CREATE\\s+(UNIQUE\\s+)?INDEX\\s+(?!(NON)?CONCURRENTLY)",
+                "CREATE $1INDEX " + mode);
+    }
+
+    Path getStateFile(String schema, String table) {
+        String configured = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE);
+        if (configured == null || configured.trim().isEmpty()) {
+            throw new IllegalStateException("No deferred index state file configured for " + schema + "." + table);
+        }
+        return Paths.get(configured.trim()).toAbsolutePath();
+    }
+
+    /**
+     * Read the saved DDL, one {@code name<TAB>ddl} line per index. A missing file means nothing is deferred.
+     */
+    static Map<String, String> readState(Path stateFile) {
+        Map<String, String> state = new LinkedHashMap<>();
+        if (!Files.exists(stateFile)) {
+            return state;
+        }
+        try {
+            for (String line : Files.readAllLines(stateFile, StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (line.startsWith("#") || tab <= 0) {
+                    continue;
+                }
+                state.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read deferred index state " + stateFile, e);
+        }
+        return state;
+    }
+
+    /**
+     * Replace the state file atomically, or delete it when nothing is left to rebuild.
+     */
+    static void writeState(Path stateFile, Map<String, String> state) {
+        try {
+            if (state.isEmpty()) {
+                Files.deleteIfExists(stateFile);
+                return;
+            }
+            List<String> lines = new ArrayList<>();
+            lines.add("# Secondary indexes dropped by CDM until the load completes: name<TAB>DDL");
+            state.forEach((name, ddl) -> lines.add(name + "\t" + ddl.replace('\n', ' ')));
+            Path absolute = stateFile.toAbsolutePath();
+            Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write deferred index state " + stateFile, e);
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
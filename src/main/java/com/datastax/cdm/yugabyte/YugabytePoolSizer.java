@@ -0,0 +1,208 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.SparkEnv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sizes the connection pool of an executor from the work it runs, instead of a fixed size per session.
+ *
+ * Every task thread of the executor writes itself or through a pipeline of max(1, writerThreads) writer workers (a
+ * slice scanned by sub-range workers always uses a pipeline). Each writing thread holds one pooled connection, two with
+ * the COPY load method, whose thread also keeps the upsert statement it falls back to. One more is kept for metadata
+ * queries. With Smart Driver load balancing the size is rounded up to a multiple of the tserver count, so every tserver
+ * gets the same number of connections. A global connection budget is divided evenly across the executors and caps the
+ * result; a share below the connections the writing threads hold is refused.
+ */
+final class YugabytePoolSizer {
+    private static final Logger logger = LoggerFactory.getLogger(YugabytePoolSizer.class);
+
+    static final String COUNT_TSERVERS_SQL = "SELECT count(*) FROM yb_servers()";
+
+    private static final Pattern LOCAL_MASTER = Pattern.compile("local\\[(\\*|\\d+)(,\\d+)?\\]");
+
+    private YugabytePoolSizer() {
+    }
+
+    /**
+     * Pool size of one executor.
+     *
+     * @param executorCores
+     *            task threads of the executor
+     * @param writerThreads
+     *            writer workers per task thread, 0 when the task thread writes itself
+     * @param connectionsPerWriter
+     *            connections held by each writing thread
+     * @param tservers
+     *            tservers the connections are balanced across, 1 without load balancing
+     * @param executors
+     *            executors sharing the global budget
+     * @param globalBudget
+     *            connections allowed for the whole job, 0 for no limit
+     *
+     * @throws IllegalArgumentException
+     *             when the executor's share of the budget is below the connections its writing threads hold, as they
+     *             would wait for a connection until the pool times out
+     */
+    static int poolSize(int executorCores, int writerThreads, int connectionsPerWriter, int tservers, int executors,
+            int globalBudget) {
+        int held = Math.max(1, executorCores) * Math.max(1, writerThreads) * Math.max(1, connectionsPerWriter);
+        int size = held + 1;
+        if (tservers > 1) {
+            size = (size + tservers - 1) / tservers * tservers;
+        }
+        if (globalBudget > 0) {
+            int share = globalBudget / Math.max(1, executors);
+            if (share < held) {
+                throw new IllegalArgumentException("Connection budget of " + globalBudget + " leaves " + share
+                        + " connections to each of " + executors + " executors, but their writing threads hold "
+                        + held + " (" + executorCores + " cores x " + Math.max(1, writerThreads) + " writers x "
+                        + Math.max(1, connectionsPerWriter) + " connections): raise "
+                        + "spark.cdm.connect.target.yugabyte.pool.globalBudget to at least " + held * executors
+                        + " or lower writerThreads");
+            }
+            size = Math.min(size, share);
+        }
+        return size;
+    }
+
+    /**
+     * Task threads of this executor: spark.executor.cores, the threads of a local master, or the available processors.
+     */
+    static int executorCores() {
+        SparkConf conf = sparkConf();
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (conf == null) {
+            return processors;
+        }
+        if (conf.contains("spark.executor.cores")) {
+            return conf.getInt("spark.executor.cores", processors);
+        }
+        return localThreads(conf.get("spark.master", ""), processors);
+    }
+
+    /**
+     * Task threads of a local master: 1 for local, N for local[N] and local[N,F], the processors for local[*].
+     */
+    static int localThreads(String master, int processors) {
+        if ("local".equals(master)) {
+            return 1;
+        }
+        Matcher matcher = LOCAL_MASTER.matcher(master);
+        if (!matcher.matches() || "*".equals(matcher.group(1))) {
+            return processors;
+        }
+        return Math.max(1, Integer.parseInt(matcher.group(1)));
+    }
+
+    /**
+     * Executors of the job: the maximum under dynamic allocation, otherwise spark.executor.instances.
+     */
+    static int executors() {
+        SparkConf conf = sparkConf();
+        if (conf == null) {
+            return 1;
+        }
+        int instances = conf.getInt("spark.executor.instances", 1);
+        if (conf.getBoolean("spark.dynamicAllocation.enabled", false)) {
+            return conf.getInt("spark.dynamicAllocation.maxExecutors", instances);
+        }
+        return instances;
+    }
+
+    private static SparkConf sparkConf() {
+        SparkEnv env = SparkEnv.get();
+        return (env != null) ? env.conf() : null;
+    }
+
+    /**
+     * Number of tservers of the cluster, or 1 when yb_servers() is not available.
+     */
+    static int countTservers(Connection connection) {
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery(COUNT_TSERVERS_SQL)) {
+            return rs.next() ? Math.max(1, rs.getInt(1)) : 1;
+        } catch (SQLException e) {
+            logger.warn("Could not count the tservers with yb_servers(): {}", e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Open the given number of connections in parallel, so that a new pool is full before the first slice needs it
+     * rather than being filled one connection at a time.
+     *
+     * @return number of connections opened
+     */
+    static int warmUp(DataSource dataSource, int connections) {
+        if (connections <= 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(connections, 16), runnable -> {
+            Thread thread = new Thread(runnable, "cdm-yb-pool-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Connection>> opening = new ArrayList<>();
+        List<Connection> opened = new ArrayList<>();
+        try {
+            // Connections are only returned once all are open, so each task opens a new one
+            for (int i = 0; i < connections; i++) {
+                opening.add(executor.submit(() -> dataSource.getConnection()));
+            }
+            for (Future<Connection> future : opening) {
+                try {
+                    opened.add(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    logger.warn("Pool warm-up could not open a connection: {}", e.getMessage());
+                }
+            }
+            logger.info("Warmed up {} of {} pool connections in {} ms", opened.size(), connections,
+                    (System.nanoTime() - start) / 1_000_000);
+            return opened.size();
+        } finally {
+            executor.shutdownNow();
+            for (Connection connection : opened) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.debug("Error returning a warm-up connection", e);
+                }
+            }
+        }
+    }
+}
@@ -15,13 +15,22 @@
  */
 package com.datastax.cdm.yugabyte;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -32,7 +41,12 @@ import com.datastax.cdm.data.PKFactory;
 import com.datastax.cdm.properties.IPropertyHelper;
 import com.datastax.cdm.properties.KnownProperties;
 import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.statement.YugabyteBatchWriter;
+import com.datastax.cdm.yugabyte.statement.YugabyteCopyStatement;
+import com.datastax.cdm.yugabyte.statement.YugabyteTabletRouter;
+import com.datastax.cdm.yugabyte.statement.YugabyteUnnestStatement;
 import com.datastax.cdm.yugabyte.statement.YugabyteUpsertStatement;
+import com.datastax.cdm.yugabyte.statement.YugabyteWriteMode;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import com.zaxxer.hikari.util.DriverDataSource;
@@ -55,6 +69,17 @@ public class YugabyteSession {
     private final boolean isOrigin;
     private PKFactory pkFactory;
     private HikariDataSource dataSource; // Connection pool - use this for getting connections!
+    // One warmed upsert statement per executor thread, kept for the lifetime of the session
+    private final Map<Thread, YugabyteUpsertStatement> threadUpsertStatements = new ConcurrentHashMap<>();
+    private final Map<Thread, YugabyteCopyStatement> threadCopyStatements = new ConcurrentHashMap<>();
+    private final Map<Thread, YugabyteUnnestStatement> threadUnnestStatements = new ConcurrentHashMap<>();
+    // Writer threads of the reader/writer pipeline; idle threads are retired after a minute
+    private ExecutorService writerExecutor;
+    // Origin sub-range scanners of the slices; idle threads are retired after a minute
+    private ExecutorService scanExecutor;
+    // Tablet partitioning of the target table, read once on first use (null when not routing)
+    private YugabyteTabletRouter tabletRouter;
+    private boolean tabletRouterLoaded = false;
 
     public YugabyteSession(IPropertyHelper propertyHelper, boolean isOrigin) {
         this.propertyHelper = propertyHelper;
@@ -114,6 +139,195 @@ public class YugabyteSession {
         return new YugabyteUpsertStatement(propertyHelper, this);
     }
 
+    /**
+     * Get the upsert statement owned by the calling thread, creating it on first use. The statement (and the pooled
+     * connection it holds) is reused by every slice the thread processes and is closed with this session, so callers
+     * must flush it but not close it.
+     */
+    public YugabyteUpsertStatement getThreadUpsertStatement() {
+        Thread current = Thread.currentThread();
+        YugabyteUpsertStatement statement = threadUpsertStatements.get(current);
+        if (statement == null) {
+            closeStatementsOfDeadThreads();
+            statement = getYugabyteUpsertStatement();
+            threadUpsertStatements.put(current, statement);
+            logger.info("Created upsert statement for thread {} ({} threads active on this session)", current.getName(),
+                    threadUpsertStatements.size());
+        }
+        return statement;
+    }
+
+    /**
+     * Get the COPY bulk-load statement owned by the calling thread, creating it on first use. Like
+     * {@link #getThreadUpsertStatement()}, it lives as long as this session.
+     */
+    public YugabyteCopyStatement getThreadCopyStatement() {
+        if (isOrigin)
+            throw new RuntimeException("This is not a target session");
+        Thread current = Thread.currentThread();
+        YugabyteCopyStatement statement = threadCopyStatements.get(current);
+        if (statement == null) {
+            closeStatementsOfDeadThreads();
+            // Constant columns are parsed once, by the upsert statement that also serves as the COPY fallback
+            statement = new YugabyteCopyStatement(propertyHelper, this,
+                    getThreadUpsertStatement().getConstantColumnValues());
+            threadCopyStatements.put(current, statement);
+            logger.info("Created COPY statement for thread {} ({} threads active on this session)", current.getName(),
+                    threadCopyStatements.size());
+        }
+        return statement;
+    }
+
+    /**
+     * Get the columnar UNNEST writer owned by the calling thread, creating it on first use. Like
+     * {@link #getThreadUpsertStatement()}, it lives as long as this session.
+     */
+    public YugabyteUnnestStatement getThreadUnnestStatement() {
+        if (isOrigin)
+            throw new RuntimeException("This is not a target session");
+        Thread current = Thread.currentThread();
+        YugabyteUnnestStatement statement = threadUnnestStatements.get(current);
+        if (statement == null) {
+            closeStatementsOfDeadThreads();
+            statement = new YugabyteUnnestStatement(propertyHelper, this);
+            threadUnnestStatements.put(current, statement);
+            logger.info("Created UNNEST statement for thread {} ({} threads active on this session)", current.getName(),
+                    threadUnnestStatements.size());
+        }
+        return statement;
+    }
+
+    /**
+     * Get the batch writer of the calling thread for the configured load method: the UNNEST writer for
+     * {@code loadMethod=UNNEST}, the upsert statement otherwise.
+     */
+    public YugabyteBatchWriter getThreadBatchWriter() {
+        String loadMethod = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_LOAD_METHOD);
+        if (loadMethod != null && loadMethod.trim().equalsIgnoreCase("UNNEST")) {
+            return getThreadUnnestStatement();
+        }
+        return getThreadUpsertStatement();
+    }
+
+    /**
+     * Thread pool that runs the writer workers of {@link YugabyteWritePipeline}. Pipelines of every slice share it, so
+     * the per-thread statements of the writer threads stay warm across slices. Every task thread of the executor runs
+     * at most one pipeline, so the pool is bounded to the executor cores times the writers of a pipeline.
+     */
+    public synchronized ExecutorService getWriterExecutor() {
+        if (writerExecutor == null) {
+            Number writerThreads = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_WRITER_THREADS);
+            int perTask = Math.max(1, (writerThreads != null) ? writerThreads.intValue() : 0);
+            writerExecutor = boundedExecutor(YugabytePoolSizer.executorCores() * perTask, "CDM-YugabyteWriter-", true);
+        }
+        return writerExecutor;
+    }
+
+    /**
+     * Thread pool that runs the concurrent origin sub-range scans of a slice. Each slice submits at most its number of
+     * sub-range workers, so the pool is bounded to the executor cores times that number.
+     */
+    public synchronized ExecutorService getScanExecutor() {
+        if (scanExecutor == null) {
+            Number subRangeWorkers = propertyHelper.getNumber(KnownProperties.PERF_SUB_RANGE_WORKERS);
+            int perTask = Math.max(1, (subRangeWorkers != null) ? subRangeWorkers.intValue() : 1);
+            scanExecutor = boundedExecutor(YugabytePoolSizer.executorCores() * perTask, "CDM-OriginScanner-", false);
+        }
+        return scanExecutor;
+    }
+
+    /**
+     * Fixed number of daemon threads that time out when idle. Each thread holds a pooled connection while it works, so
+     * the bound also caps the connections the pool is asked for; tasks beyond it wait in the queue.
+     *
+     * @param closeStatementsOnExit
+     *            close the per-thread statements of a thread when it exits, returning its connections to the pool
+     */
+    private ExecutorService boundedExecutor(int threads, String namePrefix, boolean closeStatementsOnExit) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Runnable body = closeStatementsOnExit ? () -> {
+                        try {
+                            r.run();
+                        } finally {
+                            closeThreadStatements(Thread.currentThread());
+                        }
+                    } : r;
+                    Thread t = new Thread(body, namePrefix + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("Created executor {} with at most {} threads", namePrefix + "*", threads);
+        return executor;
+    }
+
+    /**
+     * Get the tablet router of the target table when tablet routing is enabled, or null. The partitioning is read on
+     * the first call and kept for the lifetime of the session.
+     */
+    public synchronized YugabyteTabletRouter getTabletRouter() {
+        if (!tabletRouterLoaded) {
+            tabletRouterLoaded = true;
+            Boolean enabled = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_TABLET_ROUTING);
+            if (enabled != null && enabled && !isOrigin) {
+                try (Connection connection = dataSource.getConnection()) {
+                    tabletRouter = YugabyteTabletRouter.load(connection, yugabyteTable);
+                } catch (SQLException e) {
+                    logger.warn("Tablet routing disabled: cannot get a connection: {}", e.getMessage());
+                }
+            }
+        }
+        return tabletRouter;
+    }
+
+    /**
+     * Close the statements owned by the thread, returning their connections to the pool.
+     */
+    private void closeThreadStatements(Thread thread) {
+        YugabyteCopyStatement copyStatement = threadCopyStatements.remove(thread);
+        if (copyStatement != null) {
+            copyStatement.close();
+        }
+        YugabyteUnnestStatement unnestStatement = threadUnnestStatements.remove(thread);
+        if (unnestStatement != null) {
+            unnestStatement.close();
+        }
+        YugabyteUpsertStatement upsertStatement = threadUpsertStatements.remove(thread);
+        if (upsertStatement != null) {
+            upsertStatement.close();
+        }
+    }
+
+    /**
+     * Spark retires idle task threads, so statements owned by threads that no longer exist are closed to return their
+     * connections to the pool. Writer threads close theirs when they exit.
+     */
+    private void closeStatementsOfDeadThreads() {
+        threadUpsertStatements.entrySet().removeIf(e -> {
+            if (e.getKey().isAlive()) {
+                return false;
+            }
+            e.getValue().close();
+            return true;
+        });
+        threadCopyStatements.entrySet().removeIf(e -> {
+            if (e.getKey().isAlive()) {
+                return false;
+            }
+            e.getValue().close();
+            return true;
+        });
+        threadUnnestStatements.entrySet().removeIf(e -> {
+            if (e.getKey().isAlive()) {
+                return false;
+            }
+            e.getValue().close();
+            return true;
+        });
+    }
+
     /**
      * Initialize the HikariCP connection pool with YugabyteDB Smart Driver.
      *
@@ -194,6 +408,13 @@ public class YugabyteSession {
             // INSERT INTO t VALUES (1), (2), (3);
             // This reduces network round-trips dramatically (10-50x improvement)
             Boolean rewriteBatched = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_REWRITE_BATCHED_INSERTS);
+            List<Number> multiRowShapes = propertyHelper
+                    .getNumberList(KnownProperties.TARGET_YUGABYTE_MULTI_ROW_SHAPES);
+            if (multiRowShapes != null && !multiRowShapes.isEmpty()) {
+                // Explicit multi-row statements replace the driver rewrite, so statement shapes stay deterministic
+                rewriteBatched = false;
+                logger.info("  multiRowShapes: {} (driver rewrite disabled)", multiRowShapes);
+            }
             if (rewriteBatched == null || rewriteBatched) {
                 urlParams.add("rewriteBatchedInserts=true");
             }
@@ -242,6 +463,17 @@ public class YugabyteSession {
                 logger.info("  currentSchema: {} (default schema for connection)", schema.trim());
             }
 
+            // 7. Write semantics - session settings of the write mode, sent as startup options on every connection
+            List<String> sessionSettings = YugabyteWriteMode.sessionSettings(propertyHelper);
+            if (!sessionSettings.isEmpty()) {
+                StringBuilder options = new StringBuilder();
+                for (String setting : sessionSettings) {
+                    options.append(options.length() > 0 ? " " : "").append("-c ").append(setting);
+                }
+                urlParams.add("options=" + URLEncoder.encode(options.toString(), StandardCharsets.UTF_8.name()));
+                logger.info("  Session settings: {}", sessionSettings);
+            }
+
             // ========================================================================
             // ADDITIONAL ENDPOINTS AND TOPOLOGY (for distributed clusters)
             // ========================================================================
@@ -327,6 +559,10 @@ public class YugabyteSession {
             logger.info("Batch Configuration:");
             logger.info("  Batch Size: {} records per batch", (batchSize != null) ? batchSize : 25);
 
+            Boolean autoSizeEnabled = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_POOL_AUTO_SIZE);
+            boolean autoSize = autoSizeEnabled != null && autoSizeEnabled;
+            int tservers = 1;
+
             // Explicitly load and register the YugabyteDB driver class
             // Based on: https://www.yugabyte.com/blog/automatic-failover-jdbc-smart-driver-hikari/
             // The driver must be loaded and registered before HikariCP can use it
@@ -349,6 +585,9 @@ public class YugabyteSession {
                 try (Connection testConn = yugabyteDriver.connect(finalJdbcUrl, new Properties())) {
                     if (testConn != null) {
                         logger.info("Successfully tested YugabyteDB driver connection");
+                        if (autoSize) {
+                            tservers = YugabytePoolSizer.countTservers(testConn);
+                        }
                         testConn.close();
                     }
                 } catch (SQLException e) {
@@ -367,6 +606,27 @@ public class YugabyteSession {
             // Reference: https://www.yugabyte.com/blog/automatic-failover-jdbc-smart-driver-hikari/
             // Since DriverManager.getDriver() has classloader issues in Spark, we'll use a custom DataSource
             // that wraps our already-loaded driver instance
+            if (autoSize) {
+                // Connections are only spread across the tservers with Smart Driver load balancing
+                boolean balanced = loadBalance != null && loadBalance && topologyKeys != null
+                        && !topologyKeys.trim().isEmpty();
+                Number writerThreads = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_WRITER_THREADS);
+                Number globalBudget = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_POOL_GLOBAL_BUDGET);
+                int cores = YugabytePoolSizer.executorCores();
+                int executors = YugabytePoolSizer.executors();
+                String loadMethod = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_LOAD_METHOD);
+                int connectionsPerWriter = (loadMethod != null && loadMethod.trim().equalsIgnoreCase("COPY")) ? 2
+                        : 1;
+                int size = YugabytePoolSizer.poolSize(cores, (writerThreads != null) ? writerThreads.intValue() : 0,
+                        connectionsPerWriter, balanced ? tservers : 1, executors,
+                        (globalBudget != null) ? globalBudget.intValue() : 0);
+                poolProperties.setProperty("maximumPoolSize", String.valueOf(size));
+                poolProperties.setProperty("minimumIdle", String.valueOf(size));
+                logger.info("  Pool auto-sized to {} connections ({} executor cores, writerThreads {}, {} tservers, "
+                        + "{} executors, global budget {})", size, cores, writerThreads, tservers, executors,
+                        globalBudget);
+            }
+
             HikariConfig config = new HikariConfig();
             // Set JDBC URL
             config.setJdbcUrl(finalJdbcUrl);
@@ -449,6 +709,9 @@ public class YugabyteSession {
 
             // Create HikariDataSource
             HikariDataSource ds = new HikariDataSource(config);
+            if (autoSize) {
+                YugabytePoolSizer.warmUp(ds, config.getMinimumIdle());
+            }
 
             logger.info("=========================================================================");
             logger.info("Successfully created HikariDataSource with YugabyteDB JDBC Driver");
@@ -464,6 +727,31 @@ public class YugabyteSession {
     }
 
     public void close() {
+        synchronized (this) {
+            if (writerExecutor != null) {
+                writerExecutor.shutdown();
+                writerExecutor = null;
+            }
+            if (scanExecutor != null) {
+                scanExecutor.shutdown();
+                scanExecutor = null;
+            }
+        }
+
+        // Close per-thread statements first so their connections are returned before the pool shuts down
+        for (YugabyteCopyStatement statement : threadCopyStatements.values()) {
+            statement.close();
+        }
+        threadCopyStatements.clear();
+        for (YugabyteUnnestStatement statement : threadUnnestStatements.values()) {
+            statement.close();
+        }
+        threadUnnestStatements.clear();
+        for (YugabyteUpsertStatement statement : threadUpsertStatements.values()) {
+            statement.close();
+        }
+        threadUpsertStatements.clear();
+
         // Close HikariCP data source to properly cleanup the connection pool
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
@@ -0,0 +1,245 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+/**
+ * JVM-wide, reference-counted registry of {@link YugabyteSession} instances.
+ *
+ * Spark calls the job session factory once per slice, and building a YugabyteSession is expensive: it registers the
+ * driver, opens a test connection, creates a HikariCP pool and scans the table metadata. The registry keeps one session
+ * per distinct target configuration for the lifetime of the executor, so every slice (and every executor
+ * thread) shares the same pool, the same discovered YugabyteTable and its own warmed upsert statement.
+ *
+ * A session whose reference count drops to zero stays open so the next slice can reuse it; it is closed once it has
+ * been idle for {@link KnownProperties#TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS}, by {@link #closeAll()} at the end of
+ * the job, or by the JVM shutdown hook when the executor exits.
+ */
+public class YugabyteSessionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteSessionRegistry.class);
+
+    // Resolved into the readable part of the key, or not shaping the session
+    private static final Set<String> KEY_EXCLUDED_PROPERTIES = new HashSet<>(
+            Arrays.asList(KnownProperties.TARGET_KEYSPACE_TABLE, KnownProperties.ORIGIN_KEYSPACE_TABLE,
+                    KnownProperties.TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS));
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static ScheduledExecutorService idleReaper;
+    private static boolean shutdownHookRegistered = false;
+
+    // Builds the session of a new entry; replaced by tests
+    static Function<IPropertyHelper, YugabyteSession> sessionFactory = propertyHelper -> new YugabyteSession(
+            propertyHelper, false);
+
+    private static class Entry {
+        private final String key;
+        private final YugabyteSession session;
+        private final long idleTimeoutMs;
+        private int refCount = 0;
+        private long lastReleased = 0;
+
+        private Entry(String key, YugabyteSession session, long idleTimeoutMs) {
+            this.key = key;
+            this.session = session;
+            this.idleTimeoutMs = idleTimeoutMs;
+        }
+    }
+
+    private YugabyteSessionRegistry() {
+    }
+
+    /**
+     * Get the shared target session for these properties, creating it on first use. Every call must be paired with
+     * {@link #release(YugabyteSession)}.
+     */
+    public static synchronized YugabyteSession acquire(IPropertyHelper propertyHelper) {
+        String key = getKey(propertyHelper);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            registerShutdownHook();
+            logger.info("Creating shared YugabyteSession for {}", key);
+            entry = new Entry(key, sessionFactory.apply(propertyHelper), getIdleTimeoutMs(propertyHelper));
+            entries.put(key, entry);
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("Reusing shared YugabyteSession for {} (references: {})", key, entry.refCount);
+        }
+        entry.refCount++;
+        return entry.session;
+    }
+
+    /**
+     * Release a reference obtained from {@link #acquire(IPropertyHelper)}. The session is not closed immediately; it is
+     * kept warm until it has been idle for the configured timeout.
+     */
+    public static synchronized void release(YugabyteSession session) {
+        if (session == null) {
+            return;
+        }
+        for (Entry entry : entries.values()) {
+            if (entry.session == session) {
+                if (entry.refCount > 0) {
+                    entry.refCount--;
+                }
+                if (entry.refCount == 0) {
+                    entry.lastReleased = System.currentTimeMillis();
+                    scheduleIdleCheck(entry);
+                }
+                return;
+            }
+        }
+        logger.warn("Released a YugabyteSession that is not managed by the registry, closing it");
+        session.close();
+    }
+
+    /**
+     * Close every registered session, regardless of its reference count. Called at the end of the job and from the JVM
+     * shutdown hook.
+     */
+    public static void closeAll() {
+        List<Entry> toClose;
+        synchronized (YugabyteSessionRegistry.class) {
+            toClose = new ArrayList<>(entries.values());
+            entries.clear();
+            if (idleReaper != null) {
+                idleReaper.shutdownNow();
+                idleReaper = null;
+            }
+        }
+        for (Entry entry : toClose) {
+            if (entry.refCount > 0) {
+                logger.warn("Closing YugabyteSession for {} with {} active references", entry.key, entry.refCount);
+            }
+            closeEntry(entry);
+        }
+    }
+
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The key names the target table for the logs and ends with a digest of every known property. The password, pool
+     * size, batch size, write mode and the other options baked into the pool and the statements all shape the session,
+     * so two configurations only share a session when they are identical. The table names are left out of the digest
+     * as the target table is resolved above.
+     */
+    static String getKey(IPropertyHelper propertyHelper) {
+        String keyspaceTable = propertyHelper.getString(KnownProperties.TARGET_KEYSPACE_TABLE);
+        if (keyspaceTable == null || keyspaceTable.trim().isEmpty()) {
+            keyspaceTable = propertyHelper.getString(KnownProperties.ORIGIN_KEYSPACE_TABLE);
+        }
+        return String.join("|", String.valueOf(propertyHelper.getString(KnownProperties.TARGET_HOST)),
+                String.valueOf(propertyHelper.getNumber(KnownProperties.TARGET_PORT)),
+                String.valueOf(propertyHelper.getString(KnownProperties.TARGET_DATABASE)),
+                String.valueOf(propertyHelper.getString(KnownProperties.TARGET_USERNAME)),
+                String.valueOf(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_SCHEMA)),
+                String.valueOf(keyspaceTable), getConfigurationDigest(propertyHelper));
+    }
+
+    private static String getConfigurationDigest(IPropertyHelper propertyHelper) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String name : new TreeSet<>(KnownProperties.getTypeMap().keySet())) {
+            if (KEY_EXCLUDED_PROPERTIES.contains(name)) {
+                continue;
+            }
+            String value = propertyHelper.getAsString(name);
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '=');
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        StringBuilder hex = new StringBuilder();
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private static long getIdleTimeoutMs(IPropertyHelper propertyHelper) {
+        Number idleTimeout = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS);
+        return (idleTimeout != null) ? idleTimeout.longValue() : 300000L;
+    }
+
+    private static void scheduleIdleCheck(Entry entry) {
+        if (entry.idleTimeoutMs <= 0) {
+            return; // Keep the session until closeAll() / shutdown
+        }
+        if (idleReaper == null) {
+            idleReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "CDM-YugabyteSession-Reaper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        idleReaper.schedule(() -> closeIfIdle(entry), entry.idleTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeIfIdle(Entry entry) {
+        synchronized (YugabyteSessionRegistry.class) {
+            if (entries.get(entry.key) != entry || entry.refCount > 0
+                    || System.currentTimeMillis() - entry.lastReleased < entry.idleTimeoutMs) {
+                return;
+            }
+            entries.remove(entry.key);
+        }
+        logger.info("Closing idle YugabyteSession for {}", entry.key);
+        closeEntry(entry);
+    }
+
+    private static void closeEntry(Entry entry) {
+        try {
+            entry.session.close();
+        } catch (Exception e) {
+            logger.error("Error closing YugabyteSession for {}", entry.key, e);
+        }
+    }
+
+    private static void registerShutdownHook() {
+        if (shutdownHookRegistered) {
+            return;
+        }
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(YugabyteSessionRegistry::closeAll, "CDM-YugabyteSession-Shutdown"));
+        shutdownHookRegistered = true;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.data.Record;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+/**
+ * Bounded producer/consumer pipeline between the origin reader and the YugabyteDB writers of one partition range.
+ *
+ * The reader thread groups records into batches and hands them to N writer workers, so origin paging and target writes
+ * overlap and one Spark task can keep several connections (and tservers) busy. Each worker runs on a thread of the
+ * session's writer pool and therefore uses its own per-thread statement and pooled connection.
+ *
+ * Backpressure is applied in rows and in (estimated) bytes: {@link #submit(Record)} blocks while the records held by
+ * the pipeline, in open batches, queued or being written, exceed either limit, which caps the memory held by the
+ * pipeline.
+ *
+ * Several readers may submit to the same pipeline (the sub-range workers of a slice); adding to the open batches is
+ * synchronized, waiting for the writers is not.
+ *
+ * Optionally, records are grouped before they are batched (e.g. by target tablet): each group fills its own batch, so
+ * every batch only holds records of one group. The open batches of all groups together hold at most maxOpenRows
+ * records; above that, or when open batches hold the whole in-flight budget, the largest one is handed over before it
+ * is full.
+ */
+public class YugabyteWritePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteWritePipeline.class);
+
+    // Fixed per-row overhead added to the serialized size of the columns
+    static final int ROW_OVERHEAD_BYTES = 64;
+
+    private static final Batch END_OF_STREAM = new Batch(new ArrayList<>(), 0);
+
+    /**
+     * Writes one batch on the calling worker thread.
+     */
+    public interface BatchWriter {
+        /**
+         * @return the number of records written; the remaining records of the batch are counted as errors and must have
+         *         been logged by the writer
+         */
+        long write(List<Record> batch) throws Exception;
+    }
+
+    private static class Batch {
+        private final List<Record> records;
+        private final long bytes;
+
+        private Batch(List<Record> records, long bytes) {
+            this.records = records;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Batch of one group that is still being filled by the reader.
+     */
+    private static class OpenBatch {
+        private final List<Record> records;
+        private long bytes = 0;
+
+        private OpenBatch(int batchRows) {
+            this.records = new ArrayList<>(batchRows);
+        }
+    }
+
+    /**
+     * Rows and bytes currently held by the pipeline. A row is always admitted when nothing is held, so a single row
+     * larger than the limits cannot block the reader forever.
+     */
+    static class InFlightBudget {
+        private final long maxRows;
+        private final long maxBytes;
+        private long rows = 0;
+        private long bytes = 0;
+        private long releases = 0;
+
+        InFlightBudget(long maxRows, long maxBytes) {
+            this.maxRows = maxRows;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Take the rows and bytes if they fit, without waiting.
+         */
+        synchronized boolean tryAcquire(long acquiredRows, long acquiredBytes) {
+            if (rows > 0 && (rows + acquiredRows > maxRows || bytes + acquiredBytes > maxBytes)) {
+                return false;
+            }
+            rows += acquiredRows;
+            bytes += acquiredBytes;
+            return true;
+        }
+
+        synchronized void release(long releasedRows, long releasedBytes) {
+            rows -= releasedRows;
+            bytes -= releasedBytes;
+            releases++;
+            notifyAll();
+        }
+
+        synchronized long getReleases() {
+            return releases;
+        }
+
+        /**
+         * Wait until something was released after {@link #getReleases()} returned the given count.
+         */
+        synchronized void awaitRelease(long seenReleases) throws InterruptedException {
+            while (releases == seenReleases) {
+                wait();
+            }
+        }
+
+        synchronized long getRows() {
+            return rows;
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int writerThreads;
+    private final int batchRows;
+    private final BatchWriter writer;
+    private final InFlightBudget budget;
+    private final BlockingQueue<Batch> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private CountDownLatch workersDone;
+
+    private final ToIntFunction<Record> groupOf; // Null when records are batched in arrival order
+    private final long maxOpenRows;
+    private final Map<Integer, OpenBatch> openBatches = new HashMap<>();
+    private long openRows = 0;
+    private long openBytes = 0;
+
+    public YugabyteWritePipeline(ExecutorService executor, int writerThreads, int batchRows, long maxInFlightRows,
+            long maxInFlightBytes, BatchWriter writer) {
+        this(executor, writerThreads, batchRows, maxInFlightRows, maxInFlightBytes, writer, null, 0);
+    }
+
+    /**
+     * @param groupOf
+     *            group of a record; batches only hold records of the same group
+     * @param maxOpenRows
+     *            records held by the open (not yet full) batches of all groups
+     */
+    public YugabyteWritePipeline(ExecutorService executor, int writerThreads, int batchRows, long maxInFlightRows,
+            long maxInFlightBytes, BatchWriter writer, ToIntFunction<Record> groupOf, long maxOpenRows) {
+        this.executor = executor;
+        this.writerThreads = Math.max(1, writerThreads);
+        long maxRows = Math.max(1, maxInFlightRows);
+        if (batchRows > maxRows) {
+            // A batch could never fill up within the cap, so batches are cut at the cap instead
+            logger.warn("In-flight row limit {} is below the batch size {}: batches hold at most {} rows", maxRows,
+                    batchRows, maxRows);
+        }
+        this.batchRows = (int) Math.max(1, Math.min(batchRows, maxRows));
+        this.writer = writer;
+        this.budget = new InFlightBudget(maxRows, Math.max(1, maxInFlightBytes));
+        this.groupOf = groupOf;
+        this.maxOpenRows = Math.max(this.batchRows, maxOpenRows);
+    }
+
+    /**
+     * Start the writer workers. Must be called once before {@link #submit(Record)}.
+     */
+    public void start() {
+        workersDone = new CountDownLatch(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            executor.execute(this::runWorker);
+        }
+    }
+
+    private void runWorker() {
+        try {
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == END_OF_STREAM) {
+                    return;
+                }
+                try {
+                    if (failure.get() == null) {
+                        long batchWritten = writer.write(batch.records);
+                        written.addAndGet(batchWritten);
+                        errors.addAndGet(batch.records.size() - batchWritten);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    logger.error("YugabyteDB writer worker failed", t);
+                } finally {
+                    budget.release(batch.records.size(), batch.bytes);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            workersDone.countDown();
+        }
+    }
+
+    /**
+     * Add a record to the current batch of its group, handing the batch to the writers once it is full. Blocks while the in-flight
+     * limits are exceeded.
+     */
+    public void submit(Record record) {
+        int group = (groupOf != null) ? groupOf.applyAsInt(record) : 0;
+        long bytes = estimateBytes(record.getOriginRow());
+        while (true) {
+            checkFailure();
+            long releases = budget.getReleases();
+            synchronized (this) {
+                if (budget.tryAcquire(1, bytes)) {
+                    add(group, record, bytes);
+                    return;
+                }
+                // Nothing is queued or being written, so nothing would be released: hand over an open batch
+                if (budget.getRows() <= openRows) {
+                    enqueue(largestOpenGroup());
+                }
+            }
+            try {
+                budget.awaitRelease(releases);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for YugabyteDB writers", e);
+            }
+        }
+    }
+
+    private void add(int group, Record record, long bytes) {
+        OpenBatch open = openBatches.computeIfAbsent(group, g -> new OpenBatch(batchRows));
+        open.records.add(record);
+        open.bytes += bytes;
+        openRows++;
+        openBytes += bytes;
+        if (open.records.size() >= batchRows) {
+            enqueue(group);
+        } else if (openRows > maxOpenRows) {
+            enqueue(largestOpenGroup());
+        }
+    }
+
+    private int largestOpenGroup() {
+        int largest = 0;
+        int largestSize = -1;
+        for (Map.Entry<Integer, OpenBatch> entry : openBatches.entrySet()) {
+            if (entry.getValue().records.size() > largestSize) {
+                largest = entry.getKey();
+                largestSize = entry.getValue().records.size();
+            }
+        }
+        return largest;
+    }
+
+    // The rows of the batch already hold their share of the budget, so handing it over never waits
+    private void enqueue(int group) {
+        OpenBatch open = openBatches.remove(group);
+        if (open == null || open.records.isEmpty()) {
+            return;
+        }
+        openRows -= open.records.size();
+        openBytes -= open.bytes;
+        queue.add(new Batch(open.records, open.bytes));
+    }
+
+    /**
+     * Hand over the last partial batches and wait until the writers have drained the pipeline.
+     *
+     * @throws RuntimeException
+     *             if a writer worker failed
+     */
+    public void finish() {
+        try {
+            synchronized (this) {
+                for (Integer group : new ArrayList<>(openBatches.keySet())) {
+                    enqueue(group);
+                }
+            }
+        } finally {
+            stopWorkers();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stop the pipeline after a reader error. Batches that have not been picked up by a worker are dropped; batches
+     * already being written are completed.
+     */
+    public void abort() {
+        failure.compareAndSet(null, new RuntimeException("Pipeline aborted"));
+        synchronized (this) {
+            openBatches.clear();
+            budget.release(openRows, openBytes);
+            openRows = 0;
+            openBytes = 0;
+        }
+        stopWorkers();
+    }
+
+    private void stopWorkers() {
+        for (int i = 0; i < writerThreads; i++) {
+            queue.add(END_OF_STREAM);
+        }
+        try {
+            workersDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for YugabyteDB writers", e);
+        }
+    }
+
+    private void checkFailure() {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new RuntimeException("YugabyteDB writer failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Estimate the memory held by a row from the serialized size of its columns, without deserializing them.
+     */
+    static long estimateBytes(Row row) {
+        long bytes = ROW_OVERHEAD_BYTES;
+        if (row == null) {
+            return bytes;
+        }
+        int columns = row.size();
+        for (int i = 0; i < columns; i++) {
+            ByteBuffer value = row.getBytesUnsafe(i);
+            if (value != null) {
+                bytes += value.remaining();
+            }
+        }
+        return bytes;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    InFlightBudget getBudget() {
+        return budget;
+    }
+}
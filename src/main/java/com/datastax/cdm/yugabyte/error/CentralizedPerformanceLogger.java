@@ -23,7 +23,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
@@ -56,6 +61,16 @@ public class CentralizedPerformanceLogger {
     private static final AtomicLong totalConnectionTime = new AtomicLong(0);
     private static final AtomicLong totalDataProcessingTime = new AtomicLong(0);
 
+    // Time spent sending batches (executeBatch) and committing them, and the number of batches per commit
+    private static final AtomicLong totalExecuteNanos = new AtomicLong(0);
+    private static final AtomicLong totalCommitNanos = new AtomicLong(0);
+    private static final AtomicLong totalCommits = new AtomicLong(0);
+    private static final AtomicLong totalCommittedBatches = new AtomicLong(0);
+
+    // Batch size distribution (power-of-two buckets) and the size each adaptive writer is currently using
+    private static final AtomicLongArray batchSizeBuckets = new AtomicLongArray(32);
+    private static final Map<String, Integer> currentBatchSizes = new ConcurrentHashMap<>();
+
     // Start time for the entire migration
     private static final long migrationStartTime = System.currentTimeMillis();
 
@@ -156,6 +171,18 @@ public class CentralizedPerformanceLogger {
                     LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")), totalReads.get(),
                     totalWrites.get(), totalErrors.get(), totalSkipped.get(), totalPartitionsProcessed.get(),
                     totalPartitionsProcessed.get() + totalPartitionsFailed.get(), currentThroughput);
+            if (!currentBatchSizes.isEmpty()) {
+                int min = Integer.MAX_VALUE;
+                int max = 0;
+                long sum = 0;
+                for (int size : currentBatchSizes.values()) {
+                    min = Math.min(min, size);
+                    max = Math.max(max, size);
+                    sum += size;
+                }
+                performanceWriter.printf("           Adaptive batch size: min %d, avg %.1f, max %d (%d writers)%n", min,
+                        (double) sum / currentBatchSizes.size(), max, currentBatchSizes.size());
+            }
             performanceWriter.flush();
 
         } catch (Exception e) {
@@ -165,6 +192,56 @@ public class CentralizedPerformanceLogger {
         }
     }
 
+    /**
+     * Record an executed target batch
+     *
+     * @param records
+     *            number of records in the batch
+     * @param latencyNanos
+     *            time spent executing and committing the batch
+     */
+    public static void recordBatch(int records, long latencyNanos) {
+        if (!initialized || records <= 0) {
+            return;
+        }
+        totalBatchesProcessed.incrementAndGet();
+        totalBatchSize.addAndGet(records);
+        totalBatchTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        batchSizeBuckets.incrementAndGet(31 - Integer.numberOfLeadingZeros(records));
+    }
+
+    /**
+     * Record the time spent in executeBatch() for one batch
+     */
+    public static void recordExecute(long executeNanos) {
+        if (!initialized) {
+            return;
+        }
+        totalExecuteNanos.addAndGet(executeNanos);
+    }
+
+    /**
+     * Record one commit of a group of batches
+     */
+    public static void recordCommit(int batches, long commitNanos) {
+        if (!initialized) {
+            return;
+        }
+        totalCommits.incrementAndGet();
+        totalCommittedBatches.addAndGet(batches);
+        totalCommitNanos.addAndGet(commitNanos);
+    }
+
+    /**
+     * Record the batch size an adaptive writer will use next
+     */
+    public static void updateBatchSize(String writer, int batchSize) {
+        if (!initialized) {
+            return;
+        }
+        currentBatchSizes.put(writer, batchSize);
+    }
+
     /**
      * Write the final comprehensive migration summary
      */
@@ -227,6 +304,8 @@ public class CentralizedPerformanceLogger {
             performanceWriter.println("Success Rate: " + String.format("%.2f%%", successRate));
             performanceWriter.println();
 
+            writeBatchSizing();
+
             // Data Quality
             performanceWriter.println("=== DATA QUALITY ===");
             if (totalErrors.get() == 0) {
@@ -283,6 +362,43 @@ public class CentralizedPerformanceLogger {
         }
     }
 
+    private static void writeBatchSizing() {
+        long batches = totalBatchesProcessed.get();
+        if (batches == 0) {
+            return;
+        }
+        performanceWriter.println("=== BATCH SIZING ===");
+        performanceWriter.println("Total Batches: " + batches);
+        performanceWriter
+                .println("Average Batch Size: " + String.format("%.1f records", (double) totalBatchSize.get() / batches));
+        performanceWriter
+                .println("Average Batch Latency: " + String.format("%.1f ms", (double) totalBatchTime.get() / batches));
+        performanceWriter.println("Batch Size Distribution:");
+        for (int bucket = 0; bucket < batchSizeBuckets.length(); bucket++) {
+            long count = batchSizeBuckets.get(bucket);
+            if (count > 0) {
+                long from = 1L << bucket;
+                long to = (1L << (bucket + 1)) - 1;
+                performanceWriter.println(String.format("  %6d - %-6d records: %d batches (%.1f%%)", from, to, count,
+                        count * 100.0 / batches));
+            }
+        }
+        long commits = totalCommits.get();
+        if (commits > 0) {
+            performanceWriter.println(String.format("Time in executeBatch: %.1f s, in commit: %.1f s",
+                    totalExecuteNanos.get() / 1e9, totalCommitNanos.get() / 1e9));
+            performanceWriter.println(String.format("Commits: %d (%.1f batches, %.1f ms per commit)", commits,
+                    (double) totalCommittedBatches.get() / commits, totalCommitNanos.get() / 1e6 / commits));
+        }
+        if (!currentBatchSizes.isEmpty()) {
+            performanceWriter.println("Final Adaptive Batch Size per Writer:");
+            for (Map.Entry<String, Integer> entry : new TreeMap<>(currentBatchSizes).entrySet()) {
+                performanceWriter.println("  " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+        performanceWriter.println();
+    }
+
     private static double calculatePeakThroughput(long totalWrites, long totalTime) {
         // Simple estimation - in a real scenario, you'd track peak throughput over time
         return totalWrites > 0 ? (totalWrites * 1000.0 / (totalTime * 0.8)) : 0.0; // Assume 80% of time was active
@@ -0,0 +1,308 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.mapping;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+
+import com.datastax.oss.driver.api.core.data.TupleValue;
+import com.datastax.oss.driver.api.core.data.UdtValue;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.ListType;
+import com.datastax.oss.driver.api.core.type.MapType;
+import com.datastax.oss.driver.api.core.type.SetType;
+import com.datastax.oss.driver.api.core.type.TupleType;
+import com.datastax.oss.driver.api.core.type.UserDefinedType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Converts Cassandra collections, tuples and UDTs to YSQL values: lists and sets of scalar values to native arrays,
+ * everything else (maps, tuples, UDTs, nested collections) to JSON for json/jsonb (or text) columns.
+ *
+ * JSON is streamed through one Jackson generator into a reused buffer, so a value costs one String and no intermediate
+ * maps. Not thread-safe: each writer (one per thread) owns its own converter.
+ */
+public class CqlCollectionConverter {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ReusableWriter buffer = new ReusableWriter();
+    private JsonGenerator generator;
+
+    public CqlCollectionConverter() {
+        this.generator = createGenerator();
+    }
+
+    private JsonGenerator createGenerator() {
+        try {
+            JsonGenerator created = JSON_FACTORY.createGenerator(buffer);
+            // Each value is a separate document
+            created.setRootValueSeparator(null);
+            return created;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether values of this CQL type are converted here rather than by the scalar mappings of the DataTypeMapper.
+     */
+    public static boolean isCollection(DataType type) {
+        return type instanceof ListType || type instanceof SetType || type instanceof MapType
+                || type instanceof TupleType || type instanceof UserDefinedType;
+    }
+
+    /**
+     * YSQL array element type for a list or set of scalar values, or null if the type is not one (and is written as
+     * JSON instead).
+     */
+    public static String arrayElementType(DataType type) {
+        DataType element;
+        if (type instanceof ListType) {
+            element = ((ListType) type).getElementType();
+        } else if (type instanceof SetType) {
+            element = ((SetType) type).getElementType();
+        } else {
+            return null;
+        }
+        if (element.equals(DataTypes.INT)) {
+            return "int4";
+        } else if (element.equals(DataTypes.BIGINT) || element.equals(DataTypes.COUNTER)) {
+            return "int8";
+        } else if (element.equals(DataTypes.SMALLINT) || element.equals(DataTypes.TINYINT)) {
+            return "int2";
+        } else if (element.equals(DataTypes.TEXT) || element.equals(DataTypes.ASCII)) {
+            return "text";
+        } else if (element.equals(DataTypes.UUID) || element.equals(DataTypes.TIMEUUID)) {
+            return "uuid";
+        } else if (element.equals(DataTypes.BOOLEAN)) {
+            return "bool";
+        } else if (element.equals(DataTypes.DOUBLE)) {
+            return "float8";
+        } else if (element.equals(DataTypes.FLOAT)) {
+            return "float4";
+        } else if (element.equals(DataTypes.DECIMAL) || element.equals(DataTypes.VARINT)) {
+            return "numeric";
+        } else if (element.equals(DataTypes.TIMESTAMP)) {
+            return "timestamp";
+        } else if (element.equals(DataTypes.DATE)) {
+            return "date";
+        } else if (element.equals(DataTypes.BLOB)) {
+            return "bytea";
+        } else if (element.equals(DataTypes.INET)) {
+            return "inet";
+        }
+        return null;
+    }
+
+    /**
+     * Elements of a list or set, converted to the classes the driver encodes for {@code createArrayOf}.
+     */
+    public static Object[] toArrayElements(Collection<?> values) {
+        Object[] elements = new Object[values.size()];
+        int i = 0;
+        for (Object value : values) {
+            elements[i++] = toArrayElement(value);
+        }
+        return elements;
+    }
+
+    private static Object toArrayElement(Object value) {
+        if (value instanceof Instant) {
+            return Timestamp.from((Instant) value);
+        } else if (value instanceof LocalDate) {
+            return java.sql.Date.valueOf((LocalDate) value);
+        } else if (value instanceof ByteBuffer) {
+            return toBytes((ByteBuffer) value);
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof InetAddress) {
+            return ((InetAddress) value).getHostAddress();
+        } else if (value instanceof Byte) {
+            return ((Byte) value).shortValue();
+        }
+        return value;
+    }
+
+    /**
+     * Array literal ({@code {"a","b"}}) of a list or set, for writers that send values as text such as COPY.
+     */
+    public static String toArrayLiteral(Collection<?> values) {
+        StringBuilder literal = new StringBuilder(values.size() * 8 + 2).append('{');
+        for (Object value : values) {
+            if (literal.length() > 1) {
+                literal.append(',');
+            }
+            Object element = toArrayElement(value);
+            if (element == null) {
+                literal.append("NULL");
+                continue;
+            }
+            String text;
+            if (element instanceof byte[]) {
+                StringBuilder hex = new StringBuilder("\\x");
+                for (byte b : (byte[]) element) {
+                    hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                text = hex.toString();
+            } else {
+                text = element.toString();
+            }
+            literal.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    literal.append('\\');
+                }
+                literal.append(c);
+            }
+            literal.append('"');
+        }
+        return literal.append('}').toString();
+    }
+
+    /**
+     * Serialize a collection, tuple or UDT value as a JSON document. Maps become objects keyed by the string form of
+     * their keys, UDTs objects keyed by field name, lists, sets and tuples arrays.
+     */
+    public String toJson(Object value) {
+        try {
+            writeJson(value);
+            generator.flush();
+            return buffer.drain();
+        } catch (IOException | RuntimeException e) {
+            // The generator is left inside the failed document: start over with a new one
+            buffer.drain();
+            generator = createGenerator();
+            throw (e instanceof IOException) ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+        }
+    }
+
+    private void writeJson(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(toKey(entry.getKey()));
+                writeJson(entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+            for (Object element : (Collection<?>) value) {
+                writeJson(element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof UdtValue) {
+            UdtValue udt = (UdtValue) value;
+            generator.writeStartObject();
+            for (int i = 0; i < udt.size(); i++) {
+                generator.writeFieldName(udt.getType().getFieldNames().get(i).asInternal());
+                writeJson(udt.getObject(i));
+            }
+            generator.writeEndObject();
+        } else if (value instanceof TupleValue) {
+            TupleValue tuple = (TupleValue) value;
+            generator.writeStartArray();
+            for (int i = 0; i < tuple.size(); i++) {
+                writeJson(tuple.getObject(i));
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                generator.writeString(value.toString()); // Not representable as a JSON number
+            } else {
+                generator.writeNumber(d);
+            }
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else {
+            generator.writeString(toKey(value));
+        }
+    }
+
+    /**
+     * String form of a scalar value, as used for JSON strings and object keys.
+     */
+    private static String toKey(Object value) {
+        if (value instanceof ByteBuffer) {
+            return Base64.getEncoder().encodeToString(toBytes((ByteBuffer) value));
+        } else if (value instanceof InetAddress) {
+            return ((InetAddress) value).getHostAddress();
+        }
+        return String.valueOf(value);
+    }
+
+    private static byte[] toBytes(ByteBuffer value) {
+        ByteBuffer buffer = value.duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writer over a StringBuilder that is emptied, not reallocated, after each document.
+     */
+    private static final class ReusableWriter extends Writer {
+        private final StringBuilder builder = new StringBuilder(256);
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            builder.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            builder.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String drain() {
+            String document = builder.toString();
+            builder.setLength(0);
+            return document;
+        }
+    }
+}
@@ -28,6 +28,9 @@ import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.oss.driver.api.core.data.TupleValue;
+import com.datastax.oss.driver.api.core.data.UdtValue;
+
 /**
  * Maps PostgreSQL data types to Java classes for YugabyteDB YSQL
  */
@@ -37,6 +40,10 @@ public class DataTypeMapper {
     private static final Map<Integer, Class<?>> SQL_TYPE_TO_JAVA_CLASS = new HashMap<>();
     private static final Map<String, Class<?>> POSTGRES_TYPE_TO_JAVA_CLASS = new HashMap<>();
 
+    // CqlCollectionConverter is not thread-safe
+    private static final ThreadLocal<CqlCollectionConverter> COLLECTION_CONVERTER = ThreadLocal
+            .withInitial(CqlCollectionConverter::new);
+
     static {
         // SQL Type mappings
         SQL_TYPE_TO_JAVA_CLASS.put(Types.BOOLEAN, Boolean.class);
@@ -58,6 +65,7 @@ public class DataTypeMapper {
         SQL_TYPE_TO_JAVA_CLASS.put(Types.BINARY, byte[].class);
         SQL_TYPE_TO_JAVA_CLASS.put(Types.VARBINARY, byte[].class);
         SQL_TYPE_TO_JAVA_CLASS.put(Types.LONGVARBINARY, byte[].class);
+        SQL_TYPE_TO_JAVA_CLASS.put(Types.ARRAY, java.sql.Array.class);
         SQL_TYPE_TO_JAVA_CLASS.put(Types.OTHER, Object.class);
 
         // PostgreSQL specific type mappings
@@ -137,17 +145,72 @@ public class DataTypeMapper {
         case "duration":
             return "interval";
         default:
-            if (lowerType.startsWith("list<") || lowerType.startsWith("set<") || lowerType.startsWith("map<")) {
-                return "text"; // Store collections as JSON text
+            if (lowerType.startsWith("frozen<") && lowerType.endsWith(">")) {
+                return mapCassandraToPostgres(lowerType.substring("frozen<".length(), lowerType.length() - 1).trim());
+            }
+            if (lowerType.startsWith("list<") || lowerType.startsWith("set<")) {
+                // Lists and sets of scalar values become native arrays, anything nested becomes JSON
+                String element = lowerType.substring(lowerType.indexOf('<') + 1, lowerType.length() - 1).trim();
+                if (isScalar(element)) {
+                    return mapCassandraToPostgres(element) + "[]";
+                }
+                return "jsonb";
+            }
+            if (lowerType.startsWith("map<") || lowerType.startsWith("tuple<")) {
+                return "jsonb";
             }
-            if (lowerType.startsWith("frozen<")) {
-                return "text"; // Store UDTs as JSON text
+            if (lowerType.matches("[a-z_][a-z0-9_]*(\\.[a-z_][a-z0-9_]*)?")) {
+                return "jsonb"; // User defined type
             }
             logger.warn("Unknown Cassandra type: {}, mapping to text", cassandraType);
             return "text";
         }
     }
 
+    private static boolean isScalar(String cassandraType) {
+        switch (cassandraType) {
+        case "text":
+        case "varchar":
+        case "ascii":
+        case "int":
+        case "bigint":
+        case "smallint":
+        case "tinyint":
+        case "counter":
+        case "float":
+        case "double":
+        case "decimal":
+        case "varint":
+        case "boolean":
+        case "uuid":
+        case "timeuuid":
+        case "timestamp":
+        case "date":
+        case "blob":
+        case "inet":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Exact decimal value of a number: only float and double go through their decimal string form.
+     */
+    static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            return BigDecimal.valueOf(value.longValue());
+        } else if (value instanceof Float) {
+            return new BigDecimal(value.toString());
+        }
+        return BigDecimal.valueOf(value.doubleValue());
+    }
+
     /**
      * Gets Java class for PostgreSQL data type
      */
@@ -181,11 +244,12 @@ public class DataTypeMapper {
 
         try {
             // Handle collections and UDTs
-            if (cassandraType != null && (cassandraType.toLowerCase().startsWith("list<")
-                    || cassandraType.toLowerCase().startsWith("set<") || cassandraType.toLowerCase().startsWith("map<")
-                    || cassandraType.toLowerCase().startsWith("frozen<"))) {
-                // Convert collections to JSON string
-                return cassandraValue.toString();
+            if (cassandraValue instanceof java.util.Collection || cassandraValue instanceof Map
+                    || cassandraValue instanceof UdtValue || cassandraValue instanceof TupleValue) {
+                if (targetJavaClass == java.sql.Array.class && cassandraValue instanceof java.util.Collection) {
+                    return CqlCollectionConverter.toArrayElements((java.util.Collection<?>) cassandraValue);
+                }
+                return COLLECTION_CONVERTER.get().toJson(cassandraValue);
             }
 
             // Handle UUID types
@@ -231,9 +295,20 @@ public class DataTypeMapper {
 
             // String conversion for most types
             if (targetJavaClass == String.class) {
+                if (cassandraValue instanceof java.net.InetAddress) {
+                    // toString() would prefix the host name
+                    return ((java.net.InetAddress) cassandraValue).getHostAddress();
+                }
                 return cassandraValue.toString();
             }
 
+            if (targetJavaClass == byte[].class && cassandraValue instanceof java.nio.ByteBuffer) {
+                java.nio.ByteBuffer buffer = ((java.nio.ByteBuffer) cassandraValue).duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            }
+
             // Numeric conversions
             if (targetJavaClass == Integer.class && cassandraValue instanceof Number) {
                 return ((Number) cassandraValue).intValue();
@@ -248,7 +323,7 @@ public class DataTypeMapper {
                 return ((Number) cassandraValue).floatValue();
             }
             if (targetJavaClass == BigDecimal.class && cassandraValue instanceof Number) {
-                return BigDecimal.valueOf(((Number) cassandraValue).doubleValue());
+                return toBigDecimal((Number) cassandraValue);
             }
 
             // Boolean conversion
@@ -0,0 +1,208 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.yugabyte.error.CentralizedPerformanceLogger;
+
+/**
+ * Additive-increase/multiplicative-decrease controller for the number of records per batch of one writer.
+ *
+ * After every successful batch whose execute + commit latency is within the target, the batch size grows by a fixed
+ * increment. A batch slower than twice the target, a timeout or a transaction conflict halves it. Other errors (data
+ * errors, constraint violations) do not say anything about load and leave the size unchanged. The size always stays
+ * within the configured bounds.
+ *
+ * Not thread-safe: each writer (one per thread) owns its own controller.
+ */
+public final class AdaptiveBatchSizer {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchSizer.class);
+    private static final AtomicInteger writerIds = new AtomicInteger();
+
+    private final String name;
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int increment;
+    private final long targetLatencyNanos;
+
+    private int batchSize;
+    private long increases = 0;
+    private long decreases = 0;
+    private long timeouts = 0;
+    private long conflicts = 0;
+
+    public AdaptiveBatchSizer(int initialBatchSize, int minBatchSize, int maxBatchSize, int increment,
+            long targetLatencyMs) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.increment = Math.max(1, increment);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMs));
+        this.batchSize = clamp(initialBatchSize);
+        this.name = "writer-" + writerIds.incrementAndGet();
+    }
+
+    /**
+     * Create a controller from the adaptive batch size properties, or return null when adaptive sizing is disabled.
+     *
+     * @param initialBatchSize
+     *            the configured fixed batch size, used as the starting point
+     */
+    public static AdaptiveBatchSizer fromProperties(IPropertyHelper propertyHelper, int initialBatchSize) {
+        Boolean enabled = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE);
+        if (enabled == null || !enabled) {
+            return null;
+        }
+        return new AdaptiveBatchSizer(initialBatchSize,
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_MIN, 10),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_MAX, 1000),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_INCREMENT, 5),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_TARGET_LATENCY_MS, 200));
+    }
+
+    /**
+     * Upper bound of the batch size, for callers that size buffers for the largest batch.
+     */
+    public static int getMaxBatchSize(IPropertyHelper propertyHelper, int fixedBatchSize) {
+        Boolean enabled = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE);
+        if (enabled == null || !enabled) {
+            return fixedBatchSize;
+        }
+        return Math.max(getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_MAX, 1000),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_MIN, 10));
+    }
+
+    private static int getInt(IPropertyHelper propertyHelper, String property, int defaultValue) {
+        Number value = propertyHelper.getNumber(property);
+        return (value != null) ? value.intValue() : defaultValue;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Record a committed batch.
+     *
+     * @param latencyNanos
+     *            time spent executing and committing the batch
+     */
+    public void onSuccess(long latencyNanos) {
+        if (latencyNanos <= targetLatencyNanos) {
+            if (batchSize < maxBatchSize) {
+                batchSize = clamp(batchSize + increment);
+                increases++;
+            }
+        } else if (latencyNanos > 2 * targetLatencyNanos) {
+            decrease("latency " + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + "ms");
+        }
+        CentralizedPerformanceLogger.updateBatchSize(name, batchSize);
+    }
+
+    /**
+     * Record a failed batch. Timeouts and transaction conflicts halve the batch size.
+     */
+    public void onFailure(SQLException e) {
+        if (isTimeout(e)) {
+            timeouts++;
+            decrease("timeout: " + e.getMessage());
+        } else if (isConflict(e)) {
+            conflicts++;
+            decrease("conflict: " + e.getMessage());
+        }
+        CentralizedPerformanceLogger.updateBatchSize(name, batchSize);
+    }
+
+    private void decrease(String reason) {
+        int previous = batchSize;
+        batchSize = clamp(batchSize / 2);
+        if (batchSize != previous) {
+            decreases++;
+            logger.info("{}: reducing batch size from {} to {} ({})", name, previous, batchSize, reason);
+        }
+    }
+
+    /**
+     * Timeouts: statement timeout or cancel (57014), driver timeouts, and broken connections (08xxx), which is how a
+     * socket timeout surfaces.
+     */
+    static boolean isTimeout(SQLException e) {
+        for (Throwable t = e; t != null; t = next(t)) {
+            if (t instanceof SQLTimeoutException) {
+                return true;
+            }
+            String state = (t instanceof SQLException) ? ((SQLException) t).getSQLState() : null;
+            if (state != null && (state.equals("57014") || state.startsWith("08"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Conflicts: serialization failures (40001, which YugabyteDB also uses for transaction conflicts and read restarts)
+     * and deadlocks (40P01).
+     */
+    static boolean isConflict(SQLException e) {
+        for (Throwable t = e; t != null; t = next(t)) {
+            String state = (t instanceof SQLException) ? ((SQLException) t).getSQLState() : null;
+            if ("40001".equals(state) || "40P01".equals(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable next(Throwable t) {
+        if (t instanceof SQLException && ((SQLException) t).getNextException() != null) {
+            return ((SQLException) t).getNextException();
+        }
+        return t.getCause() != t ? t.getCause() : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getIncreases() {
+        return increases;
+    }
+
+    public long getDecreases() {
+        return decreases;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+}
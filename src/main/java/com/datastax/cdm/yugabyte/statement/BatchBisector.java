@@ -0,0 +1,136 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+/**
+ * Recovers a failed batch by writing it again in halves, recursively, until the records that fail on their own are
+ * found. Good records are committed and only the records that still fail are reported as failed.
+ *
+ * The recursion stops at the configured maximum depth, and on timeouts or connection failures, which say nothing about
+ * the records themselves: the remaining records of that part of the batch are then reported as failed without further
+ * retries, so a target-wide outage does not multiply the number of writes. Records are only written again when they
+ * were not committed, so insert-only write modes do not see them twice.
+ *
+ * Stateless apart from its configuration; the writer passed in must belong to the calling thread.
+ */
+public class BatchBisector {
+    private static final Logger logger = LoggerFactory.getLogger(BatchBisector.class);
+
+    private final int maxDepth;
+
+    public BatchBisector(int maxDepth) {
+        this.maxDepth = Math.max(0, maxDepth);
+    }
+
+    public static BatchBisector fromProperties(IPropertyHelper propertyHelper) {
+        Number configuredMaxDepth = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BISECT_MAX_DEPTH);
+        return new BatchBisector((configuredMaxDepth != null) ? configuredMaxDepth.intValue() : 10);
+    }
+
+    /**
+     * Recover a batch whose write failed. Records of the batch still pending in the writer are discarded, as they are
+     * written again with the others.
+     *
+     * @param records
+     *            records of the failed batch
+     * @param cause
+     *            error of the failed batch
+     * @param failedRecordHandler
+     *            called once for each record that could not be written, with its error
+     *
+     * @return number of records written
+     */
+    public long recover(YugabyteBatchWriter writer, List<Record> records, SQLException cause,
+            BiConsumer<Record, SQLException> failedRecordHandler) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        writer.discardBatch();
+        if (maxDepth > 0 && records.size() > 1 && !AdaptiveBatchSizer.isTimeout(cause)) {
+            logger.warn("Batch of {} records failed ({}), bisecting it to isolate the failing records",
+                    records.size(), cause.getMessage());
+        }
+        return bisect(writer, records, cause, 0, failedRecordHandler);
+    }
+
+    private long bisect(YugabyteBatchWriter writer, List<Record> records, SQLException cause, int depth,
+            BiConsumer<Record, SQLException> failedRecordHandler) {
+        if (records.size() == 1 || depth >= maxDepth || AdaptiveBatchSizer.isTimeout(cause)) {
+            if (records.size() > 1) {
+                logger.error("Giving up on {} records at bisection depth {}: {}", records.size(), depth,
+                        cause.getMessage());
+            }
+            for (Record r : records) {
+                failedRecordHandler.accept(r, cause);
+            }
+            return 0;
+        }
+
+        int middle = records.size() / 2;
+        return retry(writer, records.subList(0, middle), depth + 1, failedRecordHandler)
+                + retry(writer, records.subList(middle, records.size()), depth + 1, failedRecordHandler);
+    }
+
+    /**
+     * Write and commit the records as one batch, or several if the writer's batch size is smaller. Only the records
+     * that were not written by one of those batches are bisected on failure. Written records that the writer rolled
+     * back with their commit group are not written again: they are reported as failed and not counted.
+     */
+    private long retry(YugabyteBatchWriter writer, List<Record> records, int depth,
+            BiConsumer<Record, SQLException> failedRecordHandler) {
+        int flushed = 0;
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                if (writer.addToBatch(records.get(i))) {
+                    flushed = i + 1;
+                }
+            }
+            writer.flush();
+            writer.commit();
+            return records.size();
+        } catch (SQLException e) {
+            // A record that failed to bind leaves the ones before it pending
+            writer.discardBatch();
+            List<Record> unwritten = records.subList(flushed, records.size());
+            Set<Record> bisected = new HashSet<>(unwritten);
+            int lost = 0;
+            for (Record r : writer.takeRolledBackRecords()) {
+                if (!bisected.contains(r)) {
+                    failedRecordHandler.accept(r, e);
+                    lost++;
+                }
+            }
+            return flushed - lost + bisect(writer, unwritten, e, depth, failedRecordHandler);
+        }
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+}
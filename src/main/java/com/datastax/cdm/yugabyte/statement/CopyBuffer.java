@@ -0,0 +1,191 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer used to encode COPY data (TEXT or BINARY format) without intermediate objects. Multi-byte
+ * integers are written in network byte order, as the PostgreSQL binary COPY format requires.
+ */
+final class CopyBuffer {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] buf;
+    private int size;
+
+    CopyBuffer(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    private void ensure(int additional) {
+        if (size + additional > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + additional));
+        }
+    }
+
+    CopyBuffer writeByte(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+        return this;
+    }
+
+    CopyBuffer writeShort(int v) {
+        ensure(2);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+        return this;
+    }
+
+    CopyBuffer writeInt(int v) {
+        ensure(4);
+        putInt(size, v);
+        size += 4;
+        return this;
+    }
+
+    CopyBuffer writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        return writeInt((int) v);
+    }
+
+    CopyBuffer writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buf, size, length);
+        size += length;
+        return this;
+    }
+
+    CopyBuffer writeBytes(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        ensure(length);
+        bytes.duplicate().get(buf, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Reserve four bytes for a length that is only known after the value has been written.
+     *
+     * @return the position to pass to {@link #putInt(int, int)}
+     */
+    int reserveInt() {
+        int position = size;
+        writeInt(0);
+        return position;
+    }
+
+    void putInt(int position, int v) {
+        buf[position] = (byte) (v >>> 24);
+        buf[position + 1] = (byte) (v >>> 16);
+        buf[position + 2] = (byte) (v >>> 8);
+        buf[position + 3] = (byte) v;
+    }
+
+    /**
+     * Write a string that is known to contain only ASCII characters that need no escaping (numbers, UUIDs, dates).
+     */
+    CopyBuffer writeAscii(String s) {
+        int length = s.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buf[size++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Write a string as UTF-8 without escaping.
+     *
+     * @return the number of bytes written
+     */
+    int writeUtf8(String s) {
+        return writeString(s, false);
+    }
+
+    /**
+     * Write a string as UTF-8, escaping the characters that are special in the COPY TEXT format.
+     */
+    CopyBuffer writeText(String s) {
+        writeString(s, true);
+        return this;
+    }
+
+    /**
+     * Write a bytea value in the COPY TEXT format: hex format with the leading backslash escaped.
+     */
+    CopyBuffer writeByteaText(ByteBuffer bytes) {
+        int start = bytes.position();
+        int end = bytes.limit();
+        ensure(3 + 2 * (end - start));
+        buf[size++] = '\\';
+        buf[size++] = '\\';
+        buf[size++] = 'x';
+        for (int i = start; i < end; i++) {
+            int b = bytes.get(i) & 0xFF;
+            buf[size++] = HEX[b >>> 4];
+            buf[size++] = HEX[b & 0x0F];
+        }
+        return this;
+    }
+
+    private int writeString(String s, boolean escape) {
+        int start = size;
+        int length = s.length();
+        // Worst case is 3 bytes per UTF-16 char (or 2 when escaped ASCII)
+        ensure(length * 3);
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (escape && (c == '\\' || c == '\t' || c == '\n' || c == '\r')) {
+                    buf[size++] = '\\';
+                    buf[size++] = (byte) (c == '\\' ? '\\' : c == '\t' ? 't' : c == '\n' ? 'n' : 'r');
+                } else {
+                    buf[size++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buf[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[size++] = '?'; // Unpaired surrogate, same replacement String.getBytes(UTF_8) uses
+            } else {
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return size - start;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import com.datastax.cdm.data.Record;
+
+/**
+ * A batching writer to the YugabyteDB target table. Records are buffered by {@link #addToBatch(Record)} and written
+ * when the batch is full or on {@link #flush()}. Written batches are committed by the flush, or, for writers that group
+ * several batches into one transaction, when the group is complete or on {@link #commit()}.
+ */
+public interface YugabyteBatchWriter {
+
+    /**
+     * Add a record to the current batch.
+     *
+     * @return true if the batch reached the batch size and was written by this call
+     */
+    boolean addToBatch(Record record) throws SQLException;
+
+    /**
+     * Write the records of the current batch, and commit them unless they join an open commit group. On error the
+     * batch is rolled back and discarded; earlier batches of the group are written again, see
+     * {@link #takeRolledBackRecords()}.
+     */
+    int[] flush() throws SQLException;
+
+    /**
+     * Commit the batches written by {@link #flush()} that are still part of an open commit group. Writers that commit
+     * every batch have nothing to do.
+     */
+    default void commit() throws SQLException {
+    }
+
+    /**
+     * Records of earlier, already flushed batches that were rolled back with a failed commit group and could not be
+     * written again. The caller counted them as written and must recover them. The list is cleared by this call.
+     */
+    default List<Record> takeRolledBackRecords() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Drop the records of the current batch without writing them, e.g. the records added before one that failed to
+     * bind. Batches already flushed are not affected.
+     */
+    void discardBatch();
+
+    /**
+     * Drop the current batch and roll back the batches of the open commit group without writing them again, e.g. when
+     * the slice that wrote them failed. Records left by {@link #takeRolledBackRecords()} are dropped too.
+     *
+     * @return records of earlier batches that are dropped, which the caller counted as written
+     */
+    default int rollbackGroup() {
+        discardBatch();
+        return takeRolledBackRecords().size();
+    }
+
+    int getCurrentBatchCount();
+
+    int getBatchSize();
+
+    int getTotalRecordsWritten();
+
+    int getTotalBatchesExecuted();
+
+    /**
+     * Number of batch retries after transient failures since initialization. Writers that do not retry return 0.
+     */
+    default long getTotalRetries() {
+        return 0;
+    }
+
+    String getSQL();
+
+    void close();
+}
@@ -0,0 +1,618 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.OriginProjection;
+import com.datastax.cdm.yugabyte.mapping.CqlCollectionConverter;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+
+/**
+ * Per-column bind plan for the target statements, compiled once from the first origin row.
+ *
+ * Each target column gets a binder with the origin column index already resolved, a converter chosen from the origin
+ * CQL type and the target bind class, and a JDBC setter chosen from the bind class. Constant columns are bound from
+ * their parsed value without looking at the row. Numeric and boolean columns whose origin type matches are read with
+ * the primitive getters and bound with the primitive setters, so they are not boxed. Collections, tuples and UDTs are
+ * bound as native arrays or JSON documents, see {@link CqlCollectionConverter}.
+ */
+final class YugabyteBindPlan {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteBindPlan.class);
+
+    private final List<String> columnNames;
+    private final List<Class<?>> bindClasses;
+    private final DataTypeMapper dataTypeMapper;
+    private final Collection<String> constantColumnNames;
+    private final Map<String, Object> constantColumnValues;
+    private final boolean bindByPosition;
+    private final Set<String> collectionStringColumns;
+
+    private ColumnBinder[] binders;
+    private CqlCollectionConverter collectionConverter; // Shared by the JSON columns, plans are used by one thread
+
+    /**
+     * Binds one target column of a row to a statement parameter, or reads its converted value.
+     */
+    interface ColumnBinder {
+        void bind(PreparedStatement statement, int parameterIndex, Row row) throws SQLException;
+
+        Object getValue(Row row);
+    }
+
+    /**
+     * JDBC setter for a non-null converted value.
+     */
+    @FunctionalInterface
+    interface ParameterSetter {
+        void set(PreparedStatement statement, int parameterIndex, Object value) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface ValueConverter {
+        Object convert(Object value);
+    }
+
+    /**
+     * @param constantColumnNames
+     *            names of the configured constant columns, whose values are taken from constantColumnValues instead of
+     *            the origin row
+     * @param constantColumnValues
+     *            parsed constant values, keyed by column name
+     */
+    YugabyteBindPlan(List<String> columnNames, List<Class<?>> bindClasses, DataTypeMapper dataTypeMapper,
+            Collection<String> constantColumnNames, Map<String, Object> constantColumnValues) {
+        this(columnNames, bindClasses, dataTypeMapper, constantColumnNames, constantColumnValues, true);
+    }
+
+    /**
+     * @param bindByPosition
+     *            whether a column without an origin column of its name is bound to the origin column at its position,
+     *            see {@link #bindsByPosition(IPropertyHelper)}
+     */
+    YugabyteBindPlan(List<String> columnNames, List<Class<?>> bindClasses, DataTypeMapper dataTypeMapper,
+            Collection<String> constantColumnNames, Map<String, Object> constantColumnValues, boolean bindByPosition) {
+        this(columnNames, bindClasses, dataTypeMapper, constantColumnNames, constantColumnValues, bindByPosition,
+                Collections.emptySet());
+    }
+
+    /**
+     * @param collectionStringColumns
+     *            columns that collection values are written to in the driver's string form instead of as JSON, see
+     *            {@link #collectionStringColumns(IPropertyHelper, YugabyteTable, List)}
+     */
+    YugabyteBindPlan(List<String> columnNames, List<Class<?>> bindClasses, DataTypeMapper dataTypeMapper,
+            Collection<String> constantColumnNames, Map<String, Object> constantColumnValues, boolean bindByPosition,
+            Set<String> collectionStringColumns) {
+        this.columnNames = columnNames;
+        this.bindClasses = bindClasses;
+        this.dataTypeMapper = dataTypeMapper;
+        this.constantColumnNames = constantColumnNames;
+        this.constantColumnValues = constantColumnValues;
+        this.bindByPosition = bindByPosition;
+        this.collectionStringColumns = collectionStringColumns;
+    }
+
+    /**
+     * Whether target columns without an origin column of their name fall back to the origin column at their position.
+     * They do unless projection pushdown pruned origin columns, as the positions of a pruned row no longer line up
+     * with the target columns. The upsert and COPY paths share this rule so they load the same data.
+     */
+    static boolean bindsByPosition(IPropertyHelper propertyHelper) {
+        return !OriginProjection.hasPrunedColumns(propertyHelper);
+    }
+
+    /**
+     * Target columns that collection, tuple and UDT values are written to in the driver's string form (e.g. [1, 2] or
+     * {k=v}), as releases before JSON support did: text-like columns, that is bound as String but not json or jsonb.
+     * Empty when collections.jsonInText is set, in which case those columns get the same JSON document as json/jsonb.
+     * The upsert and COPY paths share this rule.
+     */
+    static Set<String> collectionStringColumns(IPropertyHelper propertyHelper, YugabyteTable table,
+            List<String> columnNames) {
+        if (Boolean.TRUE.equals(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_COLLECTIONS_JSON_IN_TEXT))) {
+            return Collections.emptySet();
+        }
+        Set<String> columns = new HashSet<>();
+        for (String columnName : columnNames) {
+            String pgType = table.getPostgresType(columnName);
+            if (table.getBindClass(columnName) == String.class && !"json".equalsIgnoreCase(pgType)
+                    && !"jsonb".equalsIgnoreCase(pgType)) {
+                columns.add(columnName);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Origin index of a target column: the origin column of the same name, else the one at the same position when
+     * binding by position, else -1.
+     */
+    static int originIndex(ColumnDefinitions definitions, String columnName, int position, boolean bindByPosition) {
+        int index = definitions.firstIndexOf(columnName);
+        if (index < 0 && bindByPosition && position < definitions.size()) {
+            logger.warn("Column {} not found in origin row, binding origin column {} by position", columnName,
+                    position);
+            index = position;
+        }
+        return index;
+    }
+
+    /**
+     * Bind every target column of a row, starting after the given number of parameters.
+     */
+    void bind(PreparedStatement statement, int parameterOffset, Row originRow) throws SQLException {
+        ColumnBinder[] plan = getBinders(originRow);
+        for (int i = 0; i < plan.length; i++) {
+            plan[i].bind(statement, parameterOffset + i + 1, originRow);
+        }
+    }
+
+    /**
+     * Get the converted value of a target column, for writers that do not bind through a PreparedStatement.
+     *
+     * @param columnIndex
+     *            index of the column in the target column list
+     */
+    Object getValue(Row originRow, int columnIndex) {
+        return getBinders(originRow)[columnIndex].getValue(originRow);
+    }
+
+    private ColumnBinder[] getBinders(Row firstRow) {
+        if (binders == null) {
+            binders = compile(firstRow.getColumnDefinitions());
+        }
+        return binders;
+    }
+
+    private ColumnBinder[] compile(ColumnDefinitions definitions) {
+        ColumnBinder[] compiled = new ColumnBinder[columnNames.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            String columnName = columnNames.get(i);
+            Class<?> bindClass = bindClasses.get(i);
+            ParameterSetter setter = setterFor(bindClass);
+            int sqlType = nullTypeFor(bindClass);
+
+            if (constantColumnNames != null && constantColumnNames.contains(columnName)) {
+                // Constant values are already parsed to the correct type, use directly
+                Object value = constantColumnValues.get(columnName);
+                if (value == null) {
+                    logger.warn("Constant column {} has no parsed value, using null", columnName);
+                }
+                compiled[i] = new ConstantBinder(value, setter, sqlType);
+                continue;
+            }
+
+            if (definitions == null) {
+                // No metadata to resolve against, read by name for every row
+                compiled[i] = new ObjectBinder(columnName, i, genericConverter(bindClass), setter, sqlType);
+                continue;
+            }
+
+            int index = originIndex(definitions, columnName, i, bindByPosition);
+            if (index < 0) {
+                logger.warn("Column {} not found in origin row, it will be written as NULL", columnName);
+                compiled[i] = new ConstantBinder(null, setter, sqlType);
+                continue;
+            }
+
+            DataType cqlType = definitions.get(index).getType();
+            if (CqlCollectionConverter.isCollection(cqlType)) {
+                compiled[i] = collectionStringColumns.contains(columnName)
+                        ? new ObjectBinder(index, Object::toString, setter, sqlType)
+                        : collectionBinder(index, cqlType, bindClass, sqlType);
+                continue;
+            }
+            ColumnBinder primitive = primitiveBinder(index, cqlType, bindClass);
+            if (primitive != null) {
+                compiled[i] = primitive;
+            } else if (cqlType.equals(DataTypes.INET)) {
+                // Sent untyped, so the same string binds to inet and text columns
+                compiled[i] = new ObjectBinder(index, converterFor(cqlType, bindClass),
+                        (s, p, v) -> s.setObject(p, v, Types.OTHER), sqlType);
+            } else {
+                compiled[i] = new ObjectBinder(index, converterFor(cqlType, bindClass), setter, sqlType);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Binder that reads and binds without boxing, for origin/target type pairs that need no conversion other than
+     * widening. Returns null when the pair is not one of them.
+     */
+    static ColumnBinder primitiveBinder(int index, DataType cqlType, Class<?> bindClass) {
+        if (bindClass == Long.class) {
+            if (cqlType.equals(DataTypes.BIGINT) || cqlType.equals(DataTypes.COUNTER)) {
+                return new PrimitiveBinder(index, Types.BIGINT, (s, p, r) -> s.setLong(p, r.getLong(index)),
+                        r -> r.getLong(index));
+            }
+            if (cqlType.equals(DataTypes.INT)) {
+                return new PrimitiveBinder(index, Types.BIGINT, (s, p, r) -> s.setLong(p, r.getInt(index)),
+                        r -> (long) r.getInt(index));
+            }
+        } else if (bindClass == Integer.class) {
+            if (cqlType.equals(DataTypes.INT)) {
+                return new PrimitiveBinder(index, Types.INTEGER, (s, p, r) -> s.setInt(p, r.getInt(index)),
+                        r -> r.getInt(index));
+            }
+            if (cqlType.equals(DataTypes.SMALLINT)) {
+                return new PrimitiveBinder(index, Types.INTEGER, (s, p, r) -> s.setInt(p, r.getShort(index)),
+                        r -> (int) r.getShort(index));
+            }
+        } else if (bindClass == Short.class && cqlType.equals(DataTypes.SMALLINT)) {
+            return new PrimitiveBinder(index, Types.SMALLINT, (s, p, r) -> s.setShort(p, r.getShort(index)),
+                    r -> r.getShort(index));
+        } else if (bindClass == Double.class) {
+            if (cqlType.equals(DataTypes.DOUBLE)) {
+                return new PrimitiveBinder(index, Types.DOUBLE, (s, p, r) -> s.setDouble(p, r.getDouble(index)),
+                        r -> r.getDouble(index));
+            }
+            if (cqlType.equals(DataTypes.FLOAT)) {
+                return new PrimitiveBinder(index, Types.DOUBLE, (s, p, r) -> s.setDouble(p, r.getFloat(index)),
+                        r -> (double) r.getFloat(index));
+            }
+        } else if (bindClass == Float.class && cqlType.equals(DataTypes.FLOAT)) {
+            return new PrimitiveBinder(index, Types.REAL, (s, p, r) -> s.setFloat(p, r.getFloat(index)),
+                    r -> r.getFloat(index));
+        } else if (bindClass == Boolean.class && cqlType.equals(DataTypes.BOOLEAN)) {
+            return new PrimitiveBinder(index, Types.BOOLEAN, (s, p, r) -> s.setBoolean(p, r.getBoolean(index)),
+                    r -> r.getBoolean(index));
+        }
+        return null;
+    }
+
+    /**
+     * Binder for a collection, tuple or UDT column: lists and sets of scalar values are bound as native arrays when the
+     * target column is an array, everything else as a JSON document typed by the server (json, jsonb or text).
+     */
+    ColumnBinder collectionBinder(int index, DataType cqlType, Class<?> bindClass, int sqlType) {
+        String elementType = CqlCollectionConverter.arrayElementType(cqlType);
+        if (bindClass == java.sql.Array.class && elementType != null) {
+            return new ObjectBinder(index, value -> CqlCollectionConverter.toArrayElements((Collection<?>) value),
+                    (s, p, v) -> s.setArray(p, s.getConnection().createArrayOf(elementType, (Object[]) v)), sqlType);
+        }
+        if (collectionConverter == null) {
+            collectionConverter = new CqlCollectionConverter();
+        }
+        CqlCollectionConverter converter = collectionConverter;
+        return new ObjectBinder(index, converter::toJson, (s, p, v) -> s.setObject(p, v, Types.OTHER), sqlType);
+    }
+
+    /**
+     * Converter for an origin column, chosen once from the origin CQL type and the bind class:
+     * <ul>
+     * <li>values the driver already returns as the bind class are passed through;</li>
+     * <li>timestamps become a UTC OffsetDateTime, bound as timestamptz. The server converts them to its session time
+     * zone (the JVM zone) for timestamp columns, so no zone rules are applied per value on the client;</li>
+     * <li>varint values become a BigDecimal without going through double;</li>
+     * <li>blobs stay the driver's ByteBuffer, which the byte[] setter binds without a copy when it can;</li>
+     * <li>inet values become their address, without the host name of InetAddress.toString();</li>
+     * <li>everything else goes through the DataTypeMapper.</li>
+     * </ul>
+     */
+    ValueConverter converterFor(DataType cqlType, Class<?> bindClass) {
+        Class<?> originClass;
+        try {
+            originClass = CodecRegistry.DEFAULT.codecFor(cqlType).getJavaType().getRawType();
+        } catch (RuntimeException e) {
+            originClass = null;
+        }
+        ValueConverter generic = genericConverter(bindClass);
+        if (originClass != null && bindClass.isAssignableFrom(originClass)) {
+            return value -> bindClass.isInstance(value) ? value : generic.convert(value);
+        }
+        if (originClass == Instant.class && (bindClass == LocalDateTime.class || bindClass == OffsetDateTime.class)) {
+            return value -> (value instanceof Instant) ? ((Instant) value).atOffset(ZoneOffset.UTC)
+                    : generic.convert(value);
+        }
+        if (originClass == BigInteger.class && bindClass == BigDecimal.class) {
+            return value -> (value instanceof BigInteger) ? new BigDecimal((BigInteger) value) : generic.convert(value);
+        }
+        if (originClass == ByteBuffer.class && bindClass == byte[].class) {
+            return value -> (value instanceof ByteBuffer) ? value : generic.convert(value);
+        }
+        if (originClass == InetAddress.class && bindClass == String.class) {
+            return value -> (value instanceof InetAddress) ? ((InetAddress) value).getHostAddress()
+                    : generic.convert(value);
+        }
+        return generic;
+    }
+
+    private ValueConverter genericConverter(Class<?> bindClass) {
+        return value -> dataTypeMapper.convertValue(value, null, bindClass);
+    }
+
+    /**
+     * Setter for a bind class. When a converted value is not of the bind class (the mapper falls back to a string for
+     * values it cannot convert), the value is bound by its own type instead.
+     */
+    static ParameterSetter setterFor(Class<?> bindClass) {
+        if (bindClass == Long.class) {
+            return (s, p, v) -> {
+                if (v instanceof Long)
+                    s.setLong(p, (Long) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == Integer.class) {
+            return (s, p, v) -> {
+                if (v instanceof Integer)
+                    s.setInt(p, (Integer) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == Short.class) {
+            return (s, p, v) -> {
+                if (v instanceof Short)
+                    s.setShort(p, (Short) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == Double.class) {
+            return (s, p, v) -> {
+                if (v instanceof Double)
+                    s.setDouble(p, (Double) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == Float.class) {
+            return (s, p, v) -> {
+                if (v instanceof Float)
+                    s.setFloat(p, (Float) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == Boolean.class) {
+            return (s, p, v) -> {
+                if (v instanceof Boolean)
+                    s.setBoolean(p, (Boolean) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == String.class) {
+            return (s, p, v) -> {
+                if (v instanceof String)
+                    s.setString(p, (String) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == BigDecimal.class) {
+            return (s, p, v) -> {
+                if (v instanceof BigDecimal)
+                    s.setBigDecimal(p, (BigDecimal) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == byte[].class) {
+            return (s, p, v) -> {
+                if (v instanceof byte[])
+                    s.setBytes(p, (byte[]) v);
+                else if (v instanceof ByteBuffer)
+                    setBytes(s, p, (ByteBuffer) v);
+                else
+                    setByValueType(s, p, v);
+            };
+        } else if (bindClass == UUID.class) {
+            return (s, p, v) -> s.setObject(p, v, Types.OTHER);
+        }
+        return YugabyteBindPlan::setByValueType;
+    }
+
+    /**
+     * Bind the remaining bytes of a buffer. A buffer that wraps a whole array is bound as that array, a slice of a
+     * larger array (as the driver returns values decoded from a response frame) is streamed from it; only direct
+     * buffers are copied.
+     */
+    static void setBytes(PreparedStatement statement, int parameterIndex, ByteBuffer value) throws SQLException {
+        int length = value.remaining();
+        if (value.hasArray()) {
+            byte[] array = value.array();
+            int offset = value.arrayOffset() + value.position();
+            if (offset == 0 && length == array.length) {
+                statement.setBytes(parameterIndex, array);
+            } else {
+                statement.setBinaryStream(parameterIndex, new ByteArrayInputStream(array, offset, length), length);
+            }
+        } else {
+            byte[] bytes = new byte[length];
+            value.duplicate().get(bytes);
+            statement.setBytes(parameterIndex, bytes);
+        }
+    }
+
+    /**
+     * Pick the setter from the runtime type of the value.
+     */
+    static void setByValueType(PreparedStatement statement, int parameterIndex, Object value) throws SQLException {
+        if (value instanceof Timestamp) {
+            statement.setTimestamp(parameterIndex, (Timestamp) value);
+        } else if (value instanceof LocalDateTime) {
+            // Convert LocalDateTime to Timestamp for JDBC
+            statement.setTimestamp(parameterIndex, Timestamp.valueOf((LocalDateTime) value));
+        } else if (value instanceof java.sql.Date) {
+            statement.setDate(parameterIndex, (java.sql.Date) value);
+        } else {
+            statement.setObject(parameterIndex, value);
+        }
+    }
+
+    /**
+     * SQL type of a NULL bound for a bind class. Typed NULLs keep the parameter types of a batch stable; text-like
+     * columns (json, inet, ...) and unknown classes are sent untyped so the server infers the column type.
+     */
+    static int nullTypeFor(Class<?> bindClass) {
+        if (bindClass == Long.class)
+            return Types.BIGINT;
+        if (bindClass == Integer.class)
+            return Types.INTEGER;
+        if (bindClass == Short.class)
+            return Types.SMALLINT;
+        if (bindClass == Double.class)
+            return Types.DOUBLE;
+        if (bindClass == Float.class)
+            return Types.REAL;
+        if (bindClass == Boolean.class)
+            return Types.BOOLEAN;
+        if (bindClass == BigDecimal.class)
+            return Types.NUMERIC;
+        if (bindClass == byte[].class)
+            return Types.BINARY;
+        if (bindClass == LocalDateTime.class)
+            return Types.TIMESTAMP;
+        return Types.OTHER;
+    }
+
+    @FunctionalInterface
+    interface PrimitiveSetter {
+        void set(PreparedStatement statement, int parameterIndex, Row row) throws SQLException;
+    }
+
+    private static final class PrimitiveBinder implements ColumnBinder {
+        private final int index;
+        private final int sqlType;
+        private final PrimitiveSetter setter;
+        private final Function<Row, Object> reader;
+
+        private PrimitiveBinder(int index, int sqlType, PrimitiveSetter setter, Function<Row, Object> reader) {
+            this.index = index;
+            this.sqlType = sqlType;
+            this.setter = setter;
+            this.reader = reader;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int parameterIndex, Row row) throws SQLException {
+            if (row.isNull(index)) {
+                statement.setNull(parameterIndex, sqlType);
+            } else {
+                setter.set(statement, parameterIndex, row);
+            }
+        }
+
+        @Override
+        public Object getValue(Row row) {
+            return row.isNull(index) ? null : reader.apply(row);
+        }
+    }
+
+    private static final class ObjectBinder implements ColumnBinder {
+        private final String name; // Only set when the column is read by name
+        private final int index;
+        private final ValueConverter converter;
+        private final ParameterSetter setter;
+        private final int sqlType;
+
+        private ObjectBinder(int index, ValueConverter converter, ParameterSetter setter, int sqlType) {
+            this(null, index, converter, setter, sqlType);
+        }
+
+        private ObjectBinder(String name, int index, ValueConverter converter, ParameterSetter setter, int sqlType) {
+            this.name = name;
+            this.index = index;
+            this.converter = converter;
+            this.setter = setter;
+            this.sqlType = sqlType;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int parameterIndex, Row row) throws SQLException {
+            Object value = getValue(row);
+            if (value == null) {
+                statement.setNull(parameterIndex, sqlType);
+            } else {
+                setter.set(statement, parameterIndex, value);
+            }
+        }
+
+        @Override
+        public Object getValue(Row row) {
+            Object value = (name == null) ? row.getObject(index) : getByName(row);
+            return (value == null) ? null : converter.convert(value);
+        }
+
+        private Object getByName(Row row) {
+            try {
+                return row.getObject(name);
+            } catch (Exception e) {
+                // If that fails, try to get by index
+                try {
+                    return row.getObject(index);
+                } catch (Exception e2) {
+                    logger.warn("Could not get value for column {} from origin row", name);
+                }
+                return null;
+            }
+        }
+    }
+
+    private static final class ConstantBinder implements ColumnBinder {
+        private final Object value;
+        private final ParameterSetter setter;
+        private final int sqlType;
+
+        private ConstantBinder(Object value, ParameterSetter setter, int sqlType) {
+            this.value = value;
+            this.setter = setter;
+            this.sqlType = sqlType;
+        }
+
+        @Override
+        public void bind(PreparedStatement statement, int parameterIndex, Row row) throws SQLException {
+            if (value == null) {
+                statement.setNull(parameterIndex, sqlType);
+            } else {
+                setter.set(statement, parameterIndex, value);
+            }
+        }
+
+        @Override
+        public Object getValue(Row row) {
+            return value;
+        }
+    }
+}
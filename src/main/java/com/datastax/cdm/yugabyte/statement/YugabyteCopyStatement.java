@@ -0,0 +1,590 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.mapping.CqlCollectionConverter;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.yugabyte.PGConnection;
+import com.yugabyte.copy.CopyIn;
+import com.yugabyte.copy.CopyManager;
+
+/**
+ * Bulk-load writer that streams records into YugabyteDB with {@code COPY ... FROM STDIN}.
+ *
+ * Intended for initial loads into an empty table, where the COPY protocol is much cheaper than
+ * {@code INSERT ... ON CONFLICT DO UPDATE}. Records are grouped into chunks of
+ * {@link KnownProperties#TARGET_YUGABYTE_COPY_CHUNK_SIZE} rows, and each chunk is one COPY command. Values are encoded
+ * directly from the driver {@link Row} into a reusable byte buffer, in TEXT or BINARY format. BINARY is only used when
+ * every column has a binary encoder for its origin/target type pair; otherwise the statement falls back to TEXT.
+ *
+ * The copy connection runs in auto-commit mode so YugabyteDB can apply {@code ROWS_PER_TRANSACTION}. A failed chunk may
+ * therefore be partially committed, which is why callers replay failed chunks through the idempotent
+ * {@link YugabyteUpsertStatement}.
+ */
+public class YugabyteCopyStatement {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteCopyStatement.class);
+
+    public enum Format {
+        TEXT, BINARY
+    }
+
+    // Bytes buffered before they are handed to the driver
+    private static final int WRITE_THRESHOLD_BYTES = 64 * 1024;
+
+    // PostgreSQL binary format epoch is 2000-01-01
+    private static final long PG_EPOCH_SECONDS = 946684800L;
+    private static final long PG_EPOCH_DAYS = 10957L;
+    private static final byte[] BINARY_SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+
+    private final YugabyteSession session;
+    private final YugabyteTable yugabyteTable;
+    private final DataTypeMapper dataTypeMapper;
+    private final List<String> columnNames;
+    private final List<Class<?>> bindClasses;
+    private final Map<String, Object> constantValues;
+    private final boolean bindByPosition; // Same rule as the upsert path, see YugabyteBindPlan
+    private final Set<String> collectionStringColumns; // Same as the upsert path
+    private final Format requestedFormat;
+    private final int chunkSize;
+    private final int rowsPerTransaction;
+
+    private final CopyBuffer buffer = new CopyBuffer(WRITE_THRESHOLD_BYTES * 2);
+
+    // Compiled on the first row, once the origin column layout is known
+    private Format format;
+    private String copySQL;
+    private FieldEncoder[] encoders;
+
+    private Connection copyConnection;
+    private CopyManager copyManager;
+    private CopyIn copyIn;
+
+    private int currentChunkCount = 0;
+    private long totalRecordsWritten = 0;
+    private int totalChunksExecuted = 0;
+    private int totalChunksFailed = 0;
+
+    /**
+     * Writes one column of the current row to the buffer. Null handling is done by the caller.
+     */
+    private interface FieldEncoder {
+        void encode(Row row, CopyBuffer out);
+    }
+
+    public YugabyteCopyStatement(IPropertyHelper propertyHelper, YugabyteSession session,
+            Map<String, Object> constantValues) {
+        this.session = session;
+        this.yugabyteTable = session.getYugabyteTable();
+        this.dataTypeMapper = yugabyteTable.getDataTypeMapper();
+        this.columnNames = yugabyteTable.getAllColumnNames();
+        this.bindClasses = yugabyteTable.getBindClasses();
+        this.constantValues = (constantValues != null) ? constantValues : Collections.emptyMap();
+        this.bindByPosition = YugabyteBindPlan.bindsByPosition(propertyHelper);
+        this.collectionStringColumns = YugabyteBindPlan.collectionStringColumns(propertyHelper, yugabyteTable,
+                columnNames);
+
+        String configuredFormat = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_COPY_FORMAT);
+        this.requestedFormat = (configuredFormat != null && configuredFormat.trim().equalsIgnoreCase("BINARY"))
+                ? Format.BINARY : Format.TEXT;
+        Number configuredChunkSize = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COPY_CHUNK_SIZE);
+        this.chunkSize = (configuredChunkSize != null && configuredChunkSize.intValue() > 0)
+                ? configuredChunkSize.intValue() : 10000;
+        Number configuredRowsPerTransaction = propertyHelper
+                .getNumber(KnownProperties.TARGET_YUGABYTE_COPY_ROWS_PER_TRANSACTION);
+        this.rowsPerTransaction = (configuredRowsPerTransaction != null) ? configuredRowsPerTransaction.intValue()
+                : 10000;
+
+        logger.info("=========================================================================");
+        logger.info("YugabyteCopyStatement initialized for COPY bulk load:");
+        logger.info("  Table: {}.{}", yugabyteTable.getSchemaName(), yugabyteTable.getTableName());
+        logger.info("  Requested Format: {}", requestedFormat);
+        logger.info("  Chunk Size: {} records per COPY", chunkSize);
+        logger.info("  ROWS_PER_TRANSACTION: {}", rowsPerTransaction > 0 ? rowsPerTransaction : "server default");
+        logger.info("=========================================================================");
+    }
+
+    /**
+     * Encode a record into the current COPY chunk, starting a new COPY command if needed. The chunk is completed when
+     * it reaches the configured chunk size.
+     *
+     * @return true if the chunk was completed (and committed) by this call, false otherwise
+     *
+     * @throws SQLException
+     *             if the record cannot be encoded or the COPY fails; the chunk is aborted and must be replayed by the
+     *             caller
+     */
+    public boolean addToChunk(Record record) throws SQLException {
+        Row originRow = record.getOriginRow();
+        if (originRow == null) {
+            throw new RuntimeException("Origin row is null");
+        }
+        try {
+            if (encoders == null) {
+                compile(originRow);
+            }
+            if (copyIn == null) {
+                beginChunk();
+            }
+            encodeRow(originRow);
+            currentChunkCount++;
+            if (buffer.size() >= WRITE_THRESHOLD_BYTES) {
+                writeBuffer();
+            }
+        } catch (SQLException e) {
+            abortChunk(e);
+            throw e;
+        } catch (RuntimeException e) {
+            abortChunk(null);
+            throw new SQLException("Failed to encode record for COPY: " + e.getMessage(), e);
+        }
+
+        if (currentChunkCount >= chunkSize) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Complete the current COPY command.
+     *
+     * @return number of rows reported by the server for this chunk
+     *
+     * @throws SQLException
+     *             if the COPY fails; the chunk is aborted and must be replayed by the caller
+     */
+    public long flush() throws SQLException {
+        if (currentChunkCount == 0 || copyIn == null) {
+            return 0;
+        }
+        try {
+            if (format == Format.BINARY) {
+                buffer.writeShort(-1);
+            }
+            writeBuffer();
+            long rows = copyIn.endCopy();
+            copyIn = null;
+
+            totalRecordsWritten += currentChunkCount;
+            totalChunksExecuted++;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Completed COPY chunk: {} records (total: {} records, {} chunks)", currentChunkCount,
+                        totalRecordsWritten, totalChunksExecuted);
+            }
+            currentChunkCount = 0;
+            return rows;
+        } catch (SQLException e) {
+            abortChunk(e);
+            throw e;
+        }
+    }
+
+    private void compile(Row firstRow) {
+        ColumnDefinitions definitions = firstRow.getColumnDefinitions();
+        FieldEncoder[] textEncoders = new FieldEncoder[columnNames.size()];
+        FieldEncoder[] binaryEncoders = new FieldEncoder[columnNames.size()];
+        List<String> textOnlyColumns = new ArrayList<>();
+
+        for (int i = 0; i < columnNames.size(); i++) {
+            String columnName = columnNames.get(i);
+            String pgType = yugabyteTable.getPostgresType(columnName);
+            if (constantValues.containsKey(columnName)) {
+                textEncoders[i] = constantEncoder(constantValues.get(columnName));
+                textOnlyColumns.add(columnName);
+                continue;
+            }
+
+            int index = YugabyteBindPlan.originIndex(definitions, columnName, i, bindByPosition);
+            if (index < 0) {
+                logger.warn("Column {} not found in origin row, it will be loaded as NULL", columnName);
+                textEncoders[i] = nullEncoder();
+                binaryEncoders[i] = nullEncoder();
+                continue;
+            }
+
+            DataType cqlType = definitions.get(index).getType();
+            FieldEncoder text = textEncoder(index, cqlType, pgType, bindClasses.get(i),
+                    collectionStringColumns.contains(columnName));
+            textEncoders[i] = nullable(index, text, false);
+            FieldEncoder binary = binaryEncoder(index, cqlType, pgType);
+            if (binary != null) {
+                binaryEncoders[i] = nullable(index, binary, true);
+            } else {
+                textOnlyColumns.add(columnName);
+            }
+        }
+
+        if (requestedFormat == Format.BINARY && textOnlyColumns.isEmpty()) {
+            format = Format.BINARY;
+            encoders = binaryEncoders;
+        } else {
+            if (requestedFormat == Format.BINARY) {
+                logger.info("COPY BINARY is not supported for columns {}, using TEXT format", textOnlyColumns);
+            }
+            format = Format.TEXT;
+            encoders = textEncoders;
+        }
+
+        StringBuilder sql = new StringBuilder("COPY ");
+        sql.append(yugabyteTable.getSchemaName()).append('.').append(yugabyteTable.getTableName()).append(" (");
+        sql.append(String.join(", ", columnNames));
+        sql.append(") FROM STDIN WITH (FORMAT ").append(format == Format.BINARY ? "binary" : "text");
+        if (rowsPerTransaction > 0) {
+            sql.append(", ROWS_PER_TRANSACTION ").append(rowsPerTransaction);
+        }
+        sql.append(')');
+        copySQL = sql.toString();
+        logger.info("COPY SQL: {}", copySQL);
+    }
+
+    private void encodeRow(Row row) {
+        if (format == Format.BINARY) {
+            buffer.writeShort(encoders.length);
+            for (FieldEncoder encoder : encoders) {
+                encoder.encode(row, buffer);
+            }
+        } else {
+            for (int i = 0; i < encoders.length; i++) {
+                if (i > 0) {
+                    buffer.writeByte('\t');
+                }
+                encoders[i].encode(row, buffer);
+            }
+            buffer.writeByte('\n');
+        }
+    }
+
+    private FieldEncoder nullable(int index, FieldEncoder encoder, boolean binary) {
+        return (row, out) -> {
+            if (row.isNull(index)) {
+                writeNull(out, binary);
+            } else {
+                encoder.encode(row, out);
+            }
+        };
+    }
+
+    private FieldEncoder nullEncoder() {
+        return (row, out) -> writeNull(out, format == Format.BINARY);
+    }
+
+    private static void writeNull(CopyBuffer out, boolean binary) {
+        if (binary) {
+            out.writeInt(-1);
+        } else {
+            out.writeByte('\\');
+            out.writeByte('N');
+        }
+    }
+
+    private FieldEncoder constantEncoder(Object value) {
+        if (value == null) {
+            return nullEncoder();
+        }
+        String text = String.valueOf(value);
+        return (row, out) -> out.writeText(text);
+    }
+
+    private FieldEncoder textEncoder(int index, DataType cqlType, String pgType, Class<?> bindClass,
+            boolean collectionStringForm) {
+        if (DataTypes.INT.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(Integer.toString(row.getInt(index)));
+        } else if (DataTypes.BIGINT.equals(cqlType) || DataTypes.COUNTER.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(Long.toString(row.getLong(index)));
+        } else if (DataTypes.SMALLINT.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(Short.toString(row.getShort(index)));
+        } else if (DataTypes.TINYINT.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(Byte.toString(row.getByte(index)));
+        } else if (DataTypes.BOOLEAN.equals(cqlType)) {
+            return (row, out) -> out.writeByte(row.getBoolean(index) ? 't' : 'f');
+        } else if (DataTypes.FLOAT.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(Float.toString(row.getFloat(index)));
+        } else if (DataTypes.DOUBLE.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(Double.toString(row.getDouble(index)));
+        } else if (DataTypes.DECIMAL.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(row.getBigDecimal(index).toPlainString());
+        } else if (DataTypes.VARINT.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(row.getBigInteger(index).toString());
+        } else if (DataTypes.TEXT.equals(cqlType) || DataTypes.ASCII.equals(cqlType)) {
+            return (row, out) -> out.writeText(row.getString(index));
+        } else if (DataTypes.UUID.equals(cqlType) || DataTypes.TIMEUUID.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(row.getUuid(index).toString());
+        } else if (DataTypes.TIMESTAMP.equals(cqlType)) {
+            if ("timestamptz".equalsIgnoreCase(pgType)) {
+                return (row, out) -> out.writeAscii(row.getInstant(index).toString());
+            }
+            // Same local-time interpretation as DataTypeMapper uses for the upsert path
+            return (row, out) -> out
+                    .writeAscii(LocalDateTime.ofInstant(row.getInstant(index), ZoneId.systemDefault()).toString());
+        } else if (DataTypes.DATE.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(row.getLocalDate(index).toString());
+        } else if (DataTypes.TIME.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(row.getLocalTime(index).toString());
+        } else if (DataTypes.INET.equals(cqlType)) {
+            return (row, out) -> out.writeAscii(row.getInetAddress(index).getHostAddress());
+        } else if (DataTypes.BLOB.equals(cqlType)) {
+            return (row, out) -> out.writeByteaText(row.getByteBuffer(index));
+        }
+        if (CqlCollectionConverter.isCollection(cqlType)) {
+            if (collectionStringForm) {
+                return (row, out) -> out.writeText(row.getObject(index).toString());
+            }
+            if (bindClass == java.sql.Array.class && CqlCollectionConverter.arrayElementType(cqlType) != null) {
+                return (row, out) -> out
+                        .writeText(CqlCollectionConverter.toArrayLiteral((Collection<?>) row.getObject(index)));
+            }
+            CqlCollectionConverter converter = new CqlCollectionConverter();
+            return (row, out) -> out.writeText(converter.toJson(row.getObject(index)));
+        }
+        // Anything else goes through the same conversion as the upsert path
+        return (row, out) -> out
+                .writeText(String.valueOf(dataTypeMapper.convertValue(row.getObject(index), null, bindClass)));
+    }
+
+    private FieldEncoder binaryEncoder(int index, DataType cqlType, String pgType) {
+        if (pgType == null) {
+            return null;
+        }
+        switch (pgType.toLowerCase()) {
+        case "int2":
+            if (DataTypes.SMALLINT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(2).writeShort(row.getShort(index));
+            } else if (DataTypes.TINYINT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(2).writeShort(row.getByte(index));
+            }
+            return null;
+        case "int4":
+            if (DataTypes.INT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(4).writeInt(row.getInt(index));
+            } else if (DataTypes.SMALLINT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(4).writeInt(row.getShort(index));
+            } else if (DataTypes.TINYINT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(4).writeInt(row.getByte(index));
+            }
+            return null;
+        case "int8":
+            if (DataTypes.BIGINT.equals(cqlType) || DataTypes.COUNTER.equals(cqlType)) {
+                return (row, out) -> out.writeInt(8).writeLong(row.getLong(index));
+            } else if (DataTypes.INT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(8).writeLong(row.getInt(index));
+            }
+            return null;
+        case "float4":
+            if (DataTypes.FLOAT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(4).writeInt(Float.floatToIntBits(row.getFloat(index)));
+            }
+            return null;
+        case "float8":
+            if (DataTypes.DOUBLE.equals(cqlType)) {
+                return (row, out) -> out.writeInt(8).writeLong(Double.doubleToLongBits(row.getDouble(index)));
+            } else if (DataTypes.FLOAT.equals(cqlType)) {
+                return (row, out) -> out.writeInt(8).writeLong(Double.doubleToLongBits(row.getFloat(index)));
+            }
+            return null;
+        case "bool":
+            if (DataTypes.BOOLEAN.equals(cqlType)) {
+                return (row, out) -> out.writeInt(1).writeByte(row.getBoolean(index) ? 1 : 0);
+            }
+            return null;
+        case "text":
+        case "varchar":
+        case "bpchar":
+            if (DataTypes.TEXT.equals(cqlType) || DataTypes.ASCII.equals(cqlType)) {
+                return (row, out) -> {
+                    int lengthPosition = out.reserveInt();
+                    out.putInt(lengthPosition, out.writeUtf8(row.getString(index)));
+                };
+            }
+            return null;
+        case "uuid":
+            if (DataTypes.UUID.equals(cqlType) || DataTypes.TIMEUUID.equals(cqlType)) {
+                return (row, out) -> {
+                    UUID uuid = row.getUuid(index);
+                    out.writeInt(16).writeLong(uuid.getMostSignificantBits()).writeLong(uuid.getLeastSignificantBits());
+                };
+            }
+            return null;
+        case "bytea":
+            if (DataTypes.BLOB.equals(cqlType)) {
+                return (row, out) -> {
+                    ByteBuffer bytes = row.getByteBuffer(index);
+                    out.writeInt(bytes.remaining()).writeBytes(bytes);
+                };
+            }
+            return null;
+        case "date":
+            if (DataTypes.DATE.equals(cqlType)) {
+                return (row, out) -> out.writeInt(4)
+                        .writeInt((int) (row.getLocalDate(index).toEpochDay() - PG_EPOCH_DAYS));
+            }
+            return null;
+        case "timestamptz":
+            if (DataTypes.TIMESTAMP.equals(cqlType)) {
+                return (row, out) -> out.writeInt(8).writeLong(toPgMicros(row.getInstant(index)));
+            }
+            return null;
+        case "timestamp":
+            if (DataTypes.TIMESTAMP.equals(cqlType)) {
+                return (row, out) -> out.writeInt(8).writeLong(toPgMicros(LocalDateTime
+                        .ofInstant(row.getInstant(index), ZoneId.systemDefault()).toInstant(ZoneOffset.UTC)));
+            }
+            return null;
+        default:
+            return null;
+        }
+    }
+
+    static long toPgMicros(Instant instant) {
+        return (instant.getEpochSecond() - PG_EPOCH_SECONDS) * 1_000_000L + instant.getNano() / 1_000;
+    }
+
+    private void beginChunk() throws SQLException {
+        if (copyConnection == null || copyConnection.isClosed()) {
+            openConnection();
+        }
+        copyIn = copyManager.copyIn(copySQL);
+        buffer.reset();
+        if (format == Format.BINARY) {
+            buffer.writeBytes(BINARY_SIGNATURE, 0, BINARY_SIGNATURE.length);
+            buffer.writeInt(0); // flags
+            buffer.writeInt(0); // header extension length
+        }
+    }
+
+    private void openConnection() throws SQLException {
+        closeConnection();
+        copyConnection = session.getDataSource().getConnection();
+        // Auto-commit so the server can split the load with ROWS_PER_TRANSACTION
+        copyConnection.setAutoCommit(true);
+        copyManager = copyConnection.unwrap(PGConnection.class).getCopyAPI();
+        logger.debug("Opened connection for COPY");
+    }
+
+    private void writeBuffer() throws SQLException {
+        if (buffer.size() > 0) {
+            copyIn.writeToCopy(buffer.array(), 0, buffer.size());
+            buffer.reset();
+        }
+    }
+
+    private void abortChunk(SQLException cause) {
+        totalChunksFailed++;
+        currentChunkCount = 0;
+        buffer.reset();
+        if (copyIn != null) {
+            try {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            } catch (SQLException e) {
+                logger.debug("Error cancelling COPY", e);
+            }
+            copyIn = null;
+        }
+        if (cause != null && YugabyteUpsertStatement.isConnectionFailureState(cause)) {
+            // Reconnect lazily when the next chunk starts
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        if (copyConnection != null) {
+            try {
+                copyConnection.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing COPY connection", e);
+            }
+            copyConnection = null;
+            copyManager = null;
+        }
+    }
+
+    public int getCurrentChunkCount() {
+        return currentChunkCount;
+    }
+
+    public long getTotalRecordsWritten() {
+        return totalRecordsWritten;
+    }
+
+    public int getTotalChunksExecuted() {
+        return totalChunksExecuted;
+    }
+
+    public int getTotalChunksFailed() {
+        return totalChunksFailed;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public String getSQL() {
+        return copySQL;
+    }
+
+    /**
+     * Discard the current chunk without committing it. The connection is kept for the next chunk.
+     */
+    public void cancel() {
+        if (currentChunkCount > 0 || copyIn != null) {
+            abortChunk(null);
+        }
+    }
+
+    /**
+     * Cancel any unfinished chunk and return the connection to the pool. Callers that want the pending rows written
+     * must {@link #flush()} first.
+     */
+    public void close() {
+        if (currentChunkCount > 0) {
+            logger.warn("Closing COPY statement with {} unflushed records, cancelling the chunk", currentChunkCount);
+            abortChunk(null);
+        }
+        closeConnection();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+/**
+ * Decides whether a failed batch is retried, and how long to wait before the retry.
+ *
+ * Only transient failures are retried: serialization failures and deadlocks (40001, 40P01), broken connections (08xxx,
+ * 57P0x), and the YugabyteDB errors that older servers report without a transaction SQLSTATE ("Restart read required",
+ * "Try again", aborted or expired transactions, catalog version mismatches). Data errors are never retried.
+ *
+ * Each batch has a budget of maxAttempts retries, with exponential backoff and full jitter so that writers that failed
+ * together do not retry together. All writers of the executor also share a retry-storm limit: once more than stormLimit
+ * retries were made within a minute, failures are reported straight away until the minute is over, so that an
+ * overloaded cluster is not kept busy with retries.
+ *
+ * Each writer owns its own policy; the storm limit is shared.
+ */
+public final class YugabyteRetryPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteRetryPolicy.class);
+
+    private static final long STORM_WINDOW_MS = 60_000L;
+    private static final AtomicLong stormWindowStart = new AtomicLong();
+    private static final AtomicInteger stormWindowRetries = new AtomicInteger();
+
+    private static final String[] TRANSIENT_MESSAGES = { "restart read required", "try again",
+            "transaction aborted", "transaction expired", "conflicts with higher priority transaction",
+            "catalog version mismatch" };
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final int stormLimit;
+    private final Sleeper sleeper;
+
+    YugabyteRetryPolicy(int maxAttempts, long backoffMs, long maxBackoffMs, int stormLimit, Sleeper sleeper) {
+        this.maxAttempts = Math.max(0, maxAttempts);
+        this.backoffMs = Math.max(0, backoffMs);
+        this.maxBackoffMs = Math.max(this.backoffMs, maxBackoffMs);
+        this.stormLimit = Math.max(0, stormLimit);
+        this.sleeper = sleeper;
+    }
+
+    public static YugabyteRetryPolicy fromProperties(IPropertyHelper propertyHelper) {
+        return new YugabyteRetryPolicy(getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_RETRY_MAX_ATTEMPTS, 5),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_RETRY_BACKOFF_MS, 50),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_RETRY_MAX_BACKOFF_MS, 2000),
+                getInt(propertyHelper, KnownProperties.TARGET_YUGABYTE_RETRY_STORM_LIMIT, 1000), Thread::sleep);
+    }
+
+    private static int getInt(IPropertyHelper propertyHelper, String property, int defaultValue) {
+        Number value = propertyHelper.getNumber(property);
+        return (value != null) ? value.intValue() : defaultValue;
+    }
+
+    /**
+     * Whether the failure is worth retrying: a transaction conflict, a broken connection or a transient YugabyteDB
+     * error.
+     */
+    public static boolean isTransient(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (AdaptiveBatchSizer.isConflict(current)
+                    || YugabyteUpsertStatement.isConnectionFailureState(current)) {
+                return true;
+            }
+            String message = current.getMessage();
+            if (message != null) {
+                String lower = message.toLowerCase(Locale.ROOT);
+                for (String transientMessage : TRANSIENT_MESSAGES) {
+                    if (lower.contains(transientMessage)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wait before retry number {@code attempt} (1-based) of a failed batch, if it may be retried.
+     *
+     * @param retryable
+     *            whether the caller classified the failure as transient, see {@link #isTransient(SQLException)}
+     *
+     * @return true when the batch should be retried now, false when the failure should be reported
+     */
+    public boolean awaitRetry(boolean retryable, int attempt) {
+        if (!retryable || attempt > maxAttempts) {
+            return false;
+        }
+        if (!acquireStormPermit(stormLimit, System.currentTimeMillis())) {
+            return false;
+        }
+        long delay = backoffMillis(attempt);
+        if (delay > 0) {
+            try {
+                sleeper.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay up to backoffMs * 2^(attempt-1), capped at maxBackoffMs.
+     */
+    long backoffMillis(int attempt) {
+        if (backoffMs == 0) {
+            return 0;
+        }
+        long ceiling = backoffMs << Math.min(attempt - 1, 20);
+        ceiling = Math.min(maxBackoffMs, ceiling);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Take one retry from the executor-wide budget of the current minute.
+     */
+    static boolean acquireStormPermit(int limit, long nowMillis) {
+        if (limit <= 0) {
+            return true;
+        }
+        long windowStart = stormWindowStart.get();
+        if (nowMillis - windowStart >= STORM_WINDOW_MS && stormWindowStart.compareAndSet(windowStart, nowMillis)) {
+            stormWindowRetries.set(0);
+        }
+        int retries = stormWindowRetries.incrementAndGet();
+        if (retries == limit + 1) {
+            logger.warn("More than {} retries within a minute on this executor, failing batches without retry "
+                    + "until the minute is over", limit);
+        }
+        return retries <= limit;
+    }
+
+    static void resetStormWindow() {
+        stormWindowStart.set(0);
+        stormWindowRetries.set(0);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
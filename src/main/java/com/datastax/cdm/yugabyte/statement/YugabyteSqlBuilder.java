@@ -0,0 +1,164 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Builds the YSQL statements used to write to the target table. Kept free of JDBC so the generated SQL and the
+ * statement-shape planning can be unit tested.
+ */
+public final class YugabyteSqlBuilder {
+
+    /**
+     * Maximum number of bind parameters in one statement (the wire protocol uses a 16-bit parameter count).
+     */
+    public static final int MAX_BIND_PARAMETERS = 32767;
+
+    private YugabyteSqlBuilder() {
+    }
+
+    /**
+     * Build {@code INSERT INTO schema.table (cols) VALUES (?, ...), ... ON CONFLICT (pks) DO UPDATE SET ...} with one
+     * VALUES tuple per row.
+     */
+    public static String buildUpsert(String schema, String table, List<String> columns, List<String> primaryKeys,
+            int rows) {
+        return buildUpsert(schema, table, columns, primaryKeys, rows, YugabyteWriteMode.DO_UPDATE);
+    }
+
+    /**
+     * Build the multi-row INSERT with the conflict handling of the given write mode.
+     */
+    public static String buildUpsert(String schema, String table, List<String> columns, List<String> primaryKeys,
+            int rows, YugabyteWriteMode writeMode) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(schema).append('.').append(table).append(" (");
+        sql.append(String.join(", ", columns));
+        sql.append(") VALUES ");
+
+        for (int r = 0; r < rows; r++) {
+            if (r > 0)
+                sql.append(", ");
+            sql.append('(');
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0)
+                    sql.append(", ");
+                sql.append('?');
+            }
+            sql.append(')');
+        }
+
+        appendOnConflict(sql, columns, primaryKeys, writeMode);
+        return sql.toString();
+    }
+
+    /**
+     * Build {@code INSERT INTO schema.table (cols) SELECT * FROM UNNEST(?::type[], ...) ON CONFLICT ...}, which writes
+     * a whole batch with one array parameter per column.
+     *
+     * @param elementTypes
+     *            YSQL type name of each column, used for the array casts
+     */
+    public static String buildUnnestUpsert(String schema, String table, List<String> columns, List<String> elementTypes,
+            List<String> primaryKeys) {
+        return buildUnnestUpsert(schema, table, columns, elementTypes, primaryKeys, YugabyteWriteMode.DO_UPDATE);
+    }
+
+    /**
+     * Build the UNNEST INSERT with the conflict handling of the given write mode.
+     */
+    public static String buildUnnestUpsert(String schema, String table, List<String> columns, List<String> elementTypes,
+            List<String> primaryKeys, YugabyteWriteMode writeMode) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(schema).append('.').append(table).append(" (");
+        sql.append(String.join(", ", columns));
+        sql.append(") SELECT * FROM UNNEST(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0)
+                sql.append(", ");
+            sql.append("?::").append(elementTypes.get(i)).append("[]");
+        }
+        sql.append(')');
+        appendOnConflict(sql, columns, primaryKeys, writeMode);
+        return sql.toString();
+    }
+
+    private static void appendOnConflict(StringBuilder sql, List<String> columns, List<String> primaryKeys,
+            YugabyteWriteMode writeMode) {
+        if (writeMode == YugabyteWriteMode.DO_NOTHING) {
+            sql.append(" ON CONFLICT DO NOTHING");
+            return;
+        }
+        if (!writeMode.hasConflictClause()) {
+            return;
+        }
+        sql.append(" ON CONFLICT (").append(String.join(", ", primaryKeys)).append(") DO UPDATE SET ");
+
+        // Non-primary key columns are updated from the proposed row
+        boolean first = true;
+        for (String columnName : columns) {
+            if (!primaryKeys.contains(columnName)) {
+                if (!first)
+                    sql.append(", ");
+                sql.append(columnName).append(" = EXCLUDED.").append(columnName);
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Normalize the configured multi-row statement shapes: drop non-positive sizes and sizes that would exceed
+     * {@link #MAX_BIND_PARAMETERS} for this column count, and always include 1 so any row count can be covered.
+     *
+     * @return distinct shapes in descending order
+     */
+    public static int[] normalizeShapes(List<? extends Number> configured, int columnCount) {
+        int maxRows = Math.max(1, MAX_BIND_PARAMETERS / Math.max(1, columnCount));
+        TreeSet<Integer> shapes = new TreeSet<>();
+        shapes.add(1);
+        if (configured != null) {
+            for (Number n : configured) {
+                if (n != null && n.intValue() > 0) {
+                    shapes.add(Math.min(n.intValue(), maxRows));
+                }
+            }
+        }
+        return shapes.descendingSet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Split a number of rows into statement shapes, largest first.
+     *
+     * @param shapes
+     *            shapes in descending order, as returned by {@link #normalizeShapes(List, int)}
+     *
+     * @return the shape to use for each statement, in execution order
+     */
+    public static List<Integer> planShapes(int rows, int[] shapes) {
+        List<Integer> plan = new ArrayList<>();
+        int remaining = rows;
+        for (int shape : shapes) {
+            while (remaining >= shape) {
+                plan.add(shape);
+                remaining -= shape;
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.schema.YugabyteTable;
+
+/**
+ * Maps records to the tablet of a hash-sharded YSQL table, so that batches can be grouped per tablet and written as
+ * single-tablet transactions.
+ *
+ * The tablet is found from the YugabyteDB hash of the hash-key columns ({@code yb_hash_code()}), computed on the client:
+ * the key values are encoded like the tserver does (big-endian integers, raw text bytes, concatenated), hashed with
+ * 64-bit Jenkins hashing and folded to 16 bits. The tablet boundaries are read once from {@code yb_local_tablets}, or
+ * derived from the tablet count of {@code yb_table_properties()} (even split at creation) when the view is not
+ * available. The client hash is checked against {@code yb_hash_code()} on the server before the router is used; on any
+ * mismatch, or for hash-key types not handled here, no router is created and records are batched in arrival order.
+ *
+ * A wrong tablet only costs a multi-tablet batch, never correctness.
+ */
+public class YugabyteTabletRouter {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteTabletRouter.class);
+
+    static final int MAX_HASH = 0xFFFF;
+    private static final long HASH_SEED = 97;
+
+    private final List<String> hashColumnNames;
+    private final List<String> hashColumnTypes;
+    private final YugabyteBindPlan bindPlan;
+    private final int[] tabletStarts;
+
+    YugabyteTabletRouter(List<String> hashColumnNames, List<String> hashColumnTypes, YugabyteBindPlan bindPlan,
+            int[] tabletStarts) {
+        this.hashColumnNames = hashColumnNames;
+        this.hashColumnTypes = hashColumnTypes;
+        this.bindPlan = bindPlan;
+        this.tabletStarts = tabletStarts;
+    }
+
+    /**
+     * Read the hash partitioning of the target table and build a router for it.
+     *
+     * @return the router, or null if the table is not hash-sharded over several tablets or its hash cannot be computed
+     *         on the client
+     */
+    public static YugabyteTabletRouter load(Connection connection, YugabyteTable table) {
+        String qualifiedName = quote(table.getSchemaName()) + "." + quote(table.getTableName());
+        try {
+            int numTablets;
+            int numHashKeyColumns;
+            try (PreparedStatement statement = connection
+                    .prepareStatement("SELECT num_tablets, num_hash_key_columns FROM yb_table_properties(?::regclass)")) {
+                statement.setString(1, qualifiedName);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    numTablets = rs.getInt(1);
+                    numHashKeyColumns = rs.getInt(2);
+                }
+            }
+            if (numHashKeyColumns == 0 || numTablets <= 1) {
+                logger.info("Tablet routing: {} is not hash-sharded over several tablets ({} tablets), not routing",
+                        qualifiedName, numTablets);
+                return null;
+            }
+
+            List<String> primaryKeyNames = table.getPrimaryKeyNames();
+            if (primaryKeyNames.size() < numHashKeyColumns) {
+                return null;
+            }
+            List<String> hashColumnNames = new ArrayList<>(primaryKeyNames.subList(0, numHashKeyColumns));
+            List<String> hashColumnTypes = new ArrayList<>();
+            List<Class<?>> bindClasses = new ArrayList<>();
+            for (String column : hashColumnNames) {
+                String type = table.getPostgresType(column);
+                if (!isSupportedType(type)) {
+                    logger.info("Tablet routing: hash-key column {} of type {} is not supported, not routing", column,
+                            type);
+                    return null;
+                }
+                hashColumnTypes.add(type);
+                bindClasses.add(table.getBindClass(column));
+            }
+
+            int[] tabletStarts = readTabletStarts(connection, table, numTablets);
+            YugabyteTabletRouter router = new YugabyteTabletRouter(hashColumnNames, hashColumnTypes,
+                    new YugabyteBindPlan(hashColumnNames, bindClasses, table.getDataTypeMapper(),
+                            Collections.emptyList(), Collections.emptyMap()),
+                    tabletStarts);
+            if (!router.matchesServerHash(connection)) {
+                logger.warn("Tablet routing: client hash does not match yb_hash_code() for {}, not routing",
+                        hashColumnTypes);
+                return null;
+            }
+            logger.info("Tablet routing: ENABLED for {} ({} tablets, hash columns {})", qualifiedName,
+                    tabletStarts.length, hashColumnNames);
+            return router;
+        } catch (SQLException e) {
+            logger.warn("Tablet routing: cannot read the partitioning of {}, not routing: {}", qualifiedName,
+                    e.getMessage());
+            rollbackQuietly(connection);
+            return null;
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Tablet start hashes from yb_local_tablets, or an even split of the hash space when the view is not available or
+     * does not list every tablet.
+     */
+    private static int[] readTabletStarts(Connection connection, YugabyteTable table, int numTablets) {
+        TreeSet<Integer> starts = new TreeSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT DISTINCT partition_key_start FROM yb_local_tablets WHERE ysql_schema_name = ? AND table_name = ?")) {
+            statement.setString(1, table.getSchemaName());
+            statement.setString(2, table.getTableName());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    starts.add(decodePartitionKey(rs.getBytes(1)));
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("yb_local_tablets not available, assuming evenly split tablets", e);
+            rollbackQuietly(connection);
+        }
+        if (starts.size() == numTablets && starts.first() == 0) {
+            return starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return evenSplit(numTablets);
+    }
+
+    static int decodePartitionKey(byte[] key) {
+        if (key == null || key.length < 2) {
+            return 0;
+        }
+        return ((key[0] & 0xFF) << 8) | (key[1] & 0xFF);
+    }
+
+    /**
+     * Tablet start hashes of a table created with the given number of tablets.
+     */
+    static int[] evenSplit(int numTablets) {
+        int interval = MAX_HASH / numTablets;
+        int[] starts = new int[numTablets];
+        for (int i = 0; i < numTablets; i++) {
+            starts[i] = i * interval;
+        }
+        return starts;
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            logger.debug("Error during rollback", e);
+        }
+    }
+
+    static boolean isSupportedType(String postgresType) {
+        if (postgresType == null) {
+            return false;
+        }
+        switch (postgresType.toLowerCase()) {
+        case "int2":
+        case "int4":
+        case "int8":
+        case "text":
+        case "varchar":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Compare the client hash of sample key values with yb_hash_code() on the server.
+     */
+    private boolean matchesServerHash(Connection connection) throws SQLException {
+        Object[] samples = new Object[hashColumnTypes.size()];
+        StringBuilder sql = new StringBuilder("SELECT yb_hash_code(");
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = sampleValue(hashColumnTypes.get(i), i);
+            sql.append(i > 0 ? ", " : "").append("CAST(? AS ").append(hashColumnTypes.get(i)).append(")");
+        }
+        sql.append(")");
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < samples.length; i++) {
+                statement.setObject(i + 1, samples[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == hash(samples);
+            }
+        }
+    }
+
+    private static Object sampleValue(String postgresType, int column) {
+        switch (postgresType.toLowerCase()) {
+        case "int2":
+            return (short) (-1234 - column);
+        case "int4":
+            return -123456789 - column;
+        case "int8":
+            return 1234567890123L + column;
+        default:
+            return "cdm-tablet-routing-" + column;
+        }
+    }
+
+    /**
+     * Tablet index of a record, in [0, number of tablets).
+     */
+    public int tabletOf(Record record) {
+        Object[] values = new Object[hashColumnNames.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = bindPlan.getValue(record.getOriginRow(), i);
+        }
+        return tabletOf(hash(values));
+    }
+
+    int tabletOf(int hash) {
+        int index = Arrays.binarySearch(tabletStarts, hash);
+        return (index >= 0) ? index : -index - 2;
+    }
+
+    public int getTabletCount() {
+        return tabletStarts.length;
+    }
+
+    /**
+     * yb_hash_code() of the hash-key values.
+     */
+    static int hash(Object[] values) {
+        ByteArrayOutputStream key = new ByteArrayOutputStream();
+        for (Object value : values) {
+            encode(value, key);
+        }
+        long h = jenkins64(key.toByteArray(), HASH_SEED);
+        return (int) ((h ^ (h >>> 16) ^ (h >>> 32) ^ (h >>> 48)) & MAX_HASH);
+    }
+
+    private static void encode(Object value, ByteArrayOutputStream key) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Short) {
+            writeBigEndian(key, (Short) value, 2);
+        } else if (value instanceof Integer) {
+            writeBigEndian(key, (Integer) value, 4);
+        } else if (value instanceof Long) {
+            writeBigEndian(key, (Long) value, 8);
+        } else if (value instanceof Number) {
+            writeBigEndian(key, ((Number) value).longValue(), 8);
+        } else {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            key.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static void writeBigEndian(ByteArrayOutputStream key, long value, int bytes) {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            key.write((int) (value >>> shift) & 0xFF);
+        }
+    }
+
+    /**
+     * Bob Jenkins' 64-bit hash (lookup8 hash2), as used by YugabyteDB for partition keys.
+     */
+    static long jenkins64(byte[] k, long seed) {
+        long[] abc = { seed, seed, 0x9e3779b97f4a7c13L };
+        int offset = 0;
+        int length = k.length;
+        while (length >= 24) {
+            abc[0] += littleEndian(k, offset, 8);
+            abc[1] += littleEndian(k, offset + 8, 8);
+            abc[2] += littleEndian(k, offset + 16, 8);
+            mix(abc);
+            offset += 24;
+            length -= 24;
+        }
+
+        // The lowest byte of c is reserved for the length
+        abc[2] += k.length;
+        if (length > 16) {
+            abc[2] += littleEndian(k, offset + 16, length - 16) << 8;
+        }
+        if (length > 8) {
+            abc[1] += littleEndian(k, offset + 8, Math.min(8, length - 8));
+        }
+        if (length > 0) {
+            abc[0] += littleEndian(k, offset, Math.min(8, length));
+        }
+        mix(abc);
+        return abc[2];
+    }
+
+    private static long littleEndian(byte[] k, int offset, int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value |= (k[offset + i] & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    private static final int[] MIX_SHIFTS = { 43, 9, 8, 38, 23, 5, 35, 49, 11, 12, 18, 22 };
+
+    /**
+     * mix64 of lookup8: twelve subtract/shift rounds, rotating over a, b and c. The b rounds shift left, the others
+     * shift right (unsigned).
+     */
+    private static void mix(long[] abc) {
+        for (int round = 0; round < MIX_SHIFTS.length; round++) {
+            int x = round % 3;
+            long y = abc[(x + 1) % 3];
+            long z = abc[(x + 2) % 3];
+            abc[x] -= y;
+            abc[x] -= z;
+            abc[x] ^= (x == 1) ? (z << MIX_SHIFTS[round]) : (z >>> MIX_SHIFTS[round]);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.nio.ByteBuffer;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.feature.ConstantColumns;
+import com.datastax.cdm.feature.FeatureFactory;
+import com.datastax.cdm.feature.Featureset;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.error.CentralizedPerformanceLogger;
+
+/**
+ * Columnar batch writer: buffers each column of a batch into a typed array and writes the whole batch with a single
+ * {@code INSERT ... SELECT * FROM UNNEST(?::type[], ...) ON CONFLICT ...} statement.
+ *
+ * The number of bind parameters is the number of columns regardless of the batch size, so batches of thousands of rows
+ * run through one prepared statement without hitting the bind parameter limit. Column buffers are allocated once and
+ * reused for every batch.
+ */
+public class YugabyteUnnestStatement implements YugabyteBatchWriter {
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteUnnestStatement.class);
+
+    private final YugabyteSession session;
+    private final List<String> columnNames;
+    private final List<String> elementTypes = new ArrayList<>();
+    private final YugabyteBindPlan bindPlan;
+    private final String unnestSQL;
+    private final int batchSize;
+    private final AdaptiveBatchSizer batchSizer; // Null when the batch size is fixed
+    private final YugabyteWriteMode writeMode;
+
+    // One reusable buffer per column; the array class decides how the driver encodes the elements
+    private final Object[][] columnBuffers;
+
+    private Connection batchConnection;
+    private PreparedStatement statement;
+
+    private int currentBatchCount = 0;
+    private int totalRecordsWritten = 0;
+    private int totalBatchesExecuted = 0;
+
+    public YugabyteUnnestStatement(IPropertyHelper propertyHelper, YugabyteSession session) {
+        this.session = session;
+        YugabyteTable yugabyteTable = session.getYugabyteTable();
+        this.columnNames = yugabyteTable.getAllColumnNames();
+        List<Class<?>> bindClasses = yugabyteTable.getBindClasses();
+
+        // Constant Columns feature support, same values as the upsert path
+        ConstantColumns constantColumnFeature = (ConstantColumns) FeatureFactory
+                .getFeature(Featureset.CONSTANT_COLUMNS);
+        Map<String, Object> constantValues = null;
+        if (constantColumnFeature != null) {
+            constantColumnFeature.loadProperties(propertyHelper);
+            constantValues = YugabyteUpsertStatement.parseConstantColumns(constantColumnFeature, columnNames,
+                    bindClasses);
+        }
+        this.bindPlan = new YugabyteBindPlan(columnNames, bindClasses, yugabyteTable.getDataTypeMapper(),
+                constantValues != null ? constantValues.keySet() : null, constantValues,
+                YugabyteBindPlan.bindsByPosition(propertyHelper),
+                YugabyteBindPlan.collectionStringColumns(propertyHelper, yugabyteTable, columnNames));
+
+        Number configuredBatchSize = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE);
+        this.batchSize = (configuredBatchSize != null && configuredBatchSize.intValue() > 0)
+                ? configuredBatchSize.intValue() : 25;
+        this.batchSizer = AdaptiveBatchSizer.fromProperties(propertyHelper, batchSize);
+        int bufferSize = AdaptiveBatchSizer.getMaxBatchSize(propertyHelper, batchSize);
+
+        this.columnBuffers = new Object[columnNames.size()][];
+        for (int i = 0; i < columnNames.size(); i++) {
+            elementTypes.add(getElementType(columnNames.get(i), yugabyteTable.getPostgresType(columnNames.get(i))));
+            columnBuffers[i] = (Object[]) java.lang.reflect.Array.newInstance(getElementClass(bindClasses.get(i)),
+                    bufferSize);
+        }
+
+        this.writeMode = YugabyteWriteMode.fromProperties(propertyHelper);
+        this.unnestSQL = YugabyteSqlBuilder.buildUnnestUpsert(yugabyteTable.getSchemaName(),
+                yugabyteTable.getTableName(), columnNames, elementTypes, yugabyteTable.getPrimaryKeyNames(), writeMode);
+        initializeStatement();
+
+        logger.info("=========================================================================");
+        logger.info("YugabyteUnnestStatement initialized (columnar UNNEST batches):");
+        logger.info("  Batch Size: {} records per statement", batchSize);
+        if (batchSizer != null) {
+            logger.info("  Adaptive Batch Size: ENABLED ({}, up to {} records)", batchSizer.getName(), bufferSize);
+        }
+        logger.info("  Write Mode: {}", writeMode);
+        logger.info("  SQL: {}", unnestSQL);
+        logger.info("=========================================================================");
+    }
+
+    /**
+     * Array element class for a column. The driver has dedicated encoders for these classes; anything else is sent as
+     * an Object[] and encoded from its string form, which the array cast in the SQL parses.
+     */
+    static Class<?> getElementClass(Class<?> bindClass) {
+        if (bindClass == Long.class || bindClass == Integer.class || bindClass == Short.class
+                || bindClass == Double.class || bindClass == Float.class || bindClass == Boolean.class
+                || bindClass == String.class || bindClass == byte[].class) {
+            return bindClass;
+        }
+        return Object.class;
+    }
+
+    /**
+     * Array element type for a column, as reported by the driver metadata. Serial pseudo-types are replaced by their
+     * storage type; array columns cannot be unnested one row per element and are rejected.
+     */
+    static String getElementType(String columnName, String pgType) {
+        if (pgType == null || pgType.isEmpty()) {
+            return "text";
+        }
+        if (pgType.startsWith("_") || pgType.endsWith("[]")) {
+            throw new RuntimeException("Column " + columnName + " has array type " + pgType
+                    + ", which is not supported by loadMethod=UNNEST; use UPSERT or COPY");
+        }
+        switch (pgType.toLowerCase()) {
+        case "serial":
+            return "int4";
+        case "bigserial":
+            return "int8";
+        case "smallserial":
+            return "int2";
+        default:
+            return pgType;
+        }
+    }
+
+    private void initializeStatement() {
+        try {
+            batchConnection = session.getDataSource().getConnection();
+            batchConnection.setAutoCommit(false);
+            statement = batchConnection.prepareStatement(unnestSQL);
+        } catch (SQLException e) {
+            logger.error("Failed to initialize UNNEST PreparedStatement", e);
+            throw new RuntimeException("Failed to initialize UNNEST PreparedStatement", e);
+        }
+    }
+
+    private void reconnect() {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing old statement", e);
+        }
+        try {
+            batchConnection.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing old connection", e);
+        }
+        initializeStatement();
+    }
+
+    @Override
+    public boolean addToBatch(Record record) throws SQLException {
+        if (record == null || record.getOriginRow() == null) {
+            throw new RuntimeException("Record or origin row is null");
+        }
+        if (currentBatchCount == 0 && batchConnection.isClosed()) {
+            logger.warn("Connection is closed, reinitializing UNNEST PreparedStatement");
+            reconnect();
+        }
+
+        for (int i = 0; i < columnBuffers.length; i++) {
+            Object value = bindPlan.getValue(record.getOriginRow(), i);
+            try {
+                columnBuffers[i][currentBatchCount] = toElement(value, columnBuffers[i].getClass().getComponentType());
+            } catch (RuntimeException e) {
+                // Leave the slot to be overwritten by the next record
+                throw new SQLException("Cannot bind value for column " + columnNames.get(i) + ": " + e.getMessage(), e);
+            }
+        }
+        currentBatchCount++;
+
+        if (currentBatchCount >= getBatchSize()) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Coerce a converted value to the element class of its column buffer.
+     */
+    static Object toElement(Object value, Class<?> elementClass) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof LocalDateTime) {
+            value = Timestamp.valueOf((LocalDateTime) value);
+        } else if (value instanceof OffsetDateTime) {
+            // Sent as text through the array cast, which would drop the offset for timestamp columns
+            value = Timestamp.from(((OffsetDateTime) value).toInstant());
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            value = bytes;
+        }
+        if (elementClass.isInstance(value)) {
+            return value;
+        }
+        if (elementClass == String.class) {
+            return value.toString();
+        }
+        if (value instanceof Number) {
+            Number n = (Number) value;
+            if (elementClass == Long.class)
+                return n.longValue();
+            if (elementClass == Integer.class)
+                return n.intValue();
+            if (elementClass == Short.class)
+                return n.shortValue();
+            if (elementClass == Double.class)
+                return n.doubleValue();
+            if (elementClass == Float.class)
+                return n.floatValue();
+        }
+        if (elementClass == Boolean.class && value instanceof String) {
+            return Boolean.parseBoolean((String) value);
+        }
+        throw new IllegalArgumentException(
+                "value of type " + value.getClass().getSimpleName() + " for " + elementClass.getSimpleName() + "[]");
+    }
+
+    @Override
+    public int[] flush() throws SQLException {
+        if (currentBatchCount == 0) {
+            return new int[0];
+        }
+        long start = System.nanoTime();
+        try {
+            int updated;
+            try {
+                updated = executeAndCommit();
+            } catch (SQLException e) {
+                if (!YugabyteUpsertStatement.isConnectionFailureState(e) && !batchConnection.isClosed()) {
+                    throw e;
+                }
+                logger.warn(
+                        "Connection failure while executing batch of {} records ({}), replaying on a new connection",
+                        currentBatchCount, e.getMessage());
+                reconnect();
+                updated = executeAndCommit();
+            }
+
+            long latencyNanos = System.nanoTime() - start;
+            CentralizedPerformanceLogger.recordBatch(currentBatchCount, latencyNanos);
+            if (batchSizer != null) {
+                batchSizer.onSuccess(latencyNanos);
+            }
+            totalRecordsWritten += currentBatchCount;
+            totalBatchesExecuted++;
+            if (logger.isDebugEnabled()) {
+                logger.debug("Flushed UNNEST batch: {} records (total: {} records, {} batches)", currentBatchCount,
+                        totalRecordsWritten, totalBatchesExecuted);
+            }
+            return new int[] { updated };
+        } catch (SQLException e) {
+            try {
+                batchConnection.rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Error during rollback", rollbackEx);
+            }
+            logger.error("Error executing UNNEST batch (batch size: {})", currentBatchCount, e);
+            if (batchSizer != null) {
+                batchSizer.onFailure(e);
+            }
+            throw e;
+        } finally {
+            resetBuffers();
+        }
+    }
+
+    private int executeAndCommit() throws SQLException {
+        List<Array> arrays = new ArrayList<>(columnBuffers.length);
+        try {
+            for (int i = 0; i < columnBuffers.length; i++) {
+                // The driver encodes the elements in createArrayOf, so a full buffer can be passed without a copy
+                Object[] elements = (currentBatchCount == columnBuffers[i].length) ? columnBuffers[i]
+                        : Arrays.copyOf(columnBuffers[i], currentBatchCount);
+                Array array = batchConnection.createArrayOf(elementTypes.get(i), elements);
+                arrays.add(array);
+                statement.setArray(i + 1, array);
+            }
+            int updated = statement.executeUpdate();
+            batchConnection.commit();
+            return updated;
+        } finally {
+            for (Array array : arrays) {
+                try {
+                    array.free();
+                } catch (SQLException | UnsupportedOperationException e) {
+                    // Nothing to release
+                }
+            }
+        }
+    }
+
+    @Override
+    public void discardBatch() {
+        resetBuffers();
+    }
+
+    private void resetBuffers() {
+        // Drop references to the values of this batch so they can be collected
+        for (Object[] buffer : columnBuffers) {
+            Arrays.fill(buffer, 0, currentBatchCount, null);
+        }
+        currentBatchCount = 0;
+    }
+
+    @Override
+    public int getCurrentBatchCount() {
+        return currentBatchCount;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return (batchSizer != null) ? batchSizer.getBatchSize() : batchSize;
+    }
+
+    @Override
+    public int getTotalRecordsWritten() {
+        return totalRecordsWritten;
+    }
+
+    @Override
+    public int getTotalBatchesExecuted() {
+        return totalBatchesExecuted;
+    }
+
+    @Override
+    public String getSQL() {
+        return unnestSQL;
+    }
+
+    @Override
+    public void close() {
+        if (currentBatchCount > 0) {
+            try {
+                flush();
+            } catch (SQLException e) {
+                logger.error("Error flushing remaining batch records on close", e);
+            }
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error closing UNNEST PreparedStatement", e);
+        }
+        try {
+            batchConnection.setAutoCommit(true); // Reset auto-commit before returning to pool
+            batchConnection.close();
+        } catch (SQLException e) {
+            logger.error("Error closing batch connection", e);
+        }
+        logger.info("YugabyteUnnestStatement closed. Total records written: {}, Total batches: {}", totalRecordsWritten,
+                totalBatchesExecuted);
+    }
+}
@@ -21,9 +21,13 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,8 +40,8 @@ import com.datastax.cdm.properties.IPropertyHelper;
 import com.datastax.cdm.properties.KnownProperties;
 import com.datastax.cdm.schema.YugabyteTable;
 import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.error.CentralizedPerformanceLogger;
 import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
-import com.datastax.oss.driver.api.core.cql.Row;
 import com.zaxxer.hikari.HikariDataSource;
 
 /**
@@ -52,7 +56,7 @@ import com.zaxxer.hikari.HikariDataSource;
  *
  * Expected total improvement: 10-50x faster than original implementation
  */
-public class YugabyteUpsertStatement {
+public class YugabyteUpsertStatement implements YugabyteBatchWriter {
     private static final Logger logger = LoggerFactory.getLogger(YugabyteUpsertStatement.class);
 
     private final IPropertyHelper propertyHelper;
@@ -67,6 +71,7 @@ public class YugabyteUpsertStatement {
     private final ConstantColumns constantColumnFeature;
     private final Map<String, Object> constantColumnParsedValues = new HashMap<>();
     private final Map<String, Integer> constantColumnIndexMap = new HashMap<>();
+    private final YugabyteBindPlan bindPlan;
 
     // Phase 1: Reusable PreparedStatement (created once, reused for all records)
     private PreparedStatement reusableStatement;
@@ -74,10 +79,34 @@ public class YugabyteUpsertStatement {
 
     // Phase 2: Batch processing
     private final int batchSize;
+    private final AdaptiveBatchSizer batchSizer; // Null when the batch size is fixed
+    private final YugabyteRetryPolicy retryPolicy;
+    private long totalRetries = 0;
+    private final YugabyteWriteMode writeMode;
     private int currentBatchCount = 0;
     private int totalRecordsWritten = 0;
     private int totalBatchesExecuted = 0;
 
+    // Records bound into the current JDBC batch, kept so the batch can be replayed after a reconnect
+    private final List<Record> pendingRecords = new ArrayList<>();
+
+    // Commit grouping: batches written since the last commit, committed together once the group is complete
+    private final int commitGroupBatches;
+    private final long commitGroupMaxNanos;
+    private final int commitGroupMaxRows;
+    private final List<Record> groupRecords = new ArrayList<>(); // Records of the uncommitted batches
+    private int groupBatches = 0;
+    private long groupStartNanos;
+    private final List<Record> rolledBackRecords = new ArrayList<>();
+    private final long idleValidationMs;
+    private long lastSuccessfulUse = System.currentTimeMillis();
+
+    // Explicit multi-row VALUES statements, one prepared statement per shape (row count), largest shape first.
+    // Null when disabled, in which case rows are sent with addBatch() on the single-row statement.
+    private final int[] multiRowShapes;
+    private final Map<Integer, PreparedStatement> shapeStatements = new HashMap<>();
+    private final Map<Integer, Long> shapeExecutions = new TreeMap<>();
+
     public YugabyteUpsertStatement(IPropertyHelper propertyHelper, YugabyteSession session) {
         this.propertyHelper = propertyHelper;
         this.session = session;
@@ -90,13 +119,39 @@ public class YugabyteUpsertStatement {
         this.constantColumnFeature = (ConstantColumns) FeatureFactory.getFeature(Featureset.CONSTANT_COLUMNS);
         if (constantColumnFeature != null) {
             constantColumnFeature.loadProperties(propertyHelper);
-            initializeConstantColumns();
+            constantColumnParsedValues.putAll(parseConstantColumns(constantColumnFeature, columnNames, bindClasses));
+            for (String columnName : constantColumnParsedValues.keySet()) {
+                constantColumnIndexMap.put(columnName, columnNames.indexOf(columnName));
+            }
         }
+        this.bindPlan = new YugabyteBindPlan(columnNames, bindClasses, dataTypeMapper,
+                (constantColumnFeature != null && constantColumnFeature.isEnabled()) ? constantColumnFeature.getNames()
+                        : null,
+                constantColumnParsedValues, YugabyteBindPlan.bindsByPosition(propertyHelper),
+                YugabyteBindPlan.collectionStringColumns(propertyHelper, yugabyteTable, columnNames));
 
         // Get batch size from configuration
         Number configuredBatchSize = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE);
         this.batchSize = (configuredBatchSize != null) ? configuredBatchSize.intValue() : 25;
-
+        this.batchSizer = AdaptiveBatchSizer.fromProperties(propertyHelper, batchSize);
+        this.retryPolicy = YugabyteRetryPolicy.fromProperties(propertyHelper);
+        Number configuredIdleValidation = propertyHelper
+                .getNumber(KnownProperties.TARGET_YUGABYTE_CONNECTION_IDLE_VALIDATION_MS);
+        this.idleValidationMs = (configuredIdleValidation != null) ? configuredIdleValidation.longValue() : 30000L;
+
+        List<Number> configuredShapes = propertyHelper.getNumberList(KnownProperties.TARGET_YUGABYTE_MULTI_ROW_SHAPES);
+        this.multiRowShapes = (configuredShapes != null && !configuredShapes.isEmpty())
+                ? YugabyteSqlBuilder.normalizeShapes(configuredShapes, columnNames.size()) : null;
+
+        Number configuredGroupBatches = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES);
+        this.commitGroupBatches = (configuredGroupBatches != null) ? Math.max(1, configuredGroupBatches.intValue()) : 1;
+        Number configuredGroupMs = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_MAX_MS);
+        this.commitGroupMaxNanos = (configuredGroupMs != null) ? configuredGroupMs.longValue() * 1_000_000L : 0L;
+        Number configuredGroupRows = propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_MAX_ROWS);
+        this.commitGroupMaxRows = (configuredGroupRows != null && configuredGroupRows.intValue() > 0)
+                ? configuredGroupRows.intValue() : 5000;
+
+        this.writeMode = YugabyteWriteMode.fromProperties(propertyHelper);
         this.upsertSQL = buildUpsertStatement();
 
         // Phase 1: Initialize reusable PreparedStatement
@@ -107,61 +162,58 @@ public class YugabyteUpsertStatement {
         logger.info("  PreparedStatement Reuse: ENABLED (Phase 1)");
         logger.info("  JDBC Batching: ENABLED (Phase 2)");
         logger.info("  Batch Size: {} records per batch", batchSize);
+        if (batchSizer != null) {
+            logger.info("  Adaptive Batch Size: ENABLED ({})", batchSizer.getName());
+        }
+        if (multiRowShapes != null) {
+            logger.info("  Multi-row VALUES shapes: {} rows per statement", Arrays.toString(multiRowShapes));
+        }
+        if (commitGroupBatches > 1) {
+            logger.info("  Commit Groups: up to {} batches / {} rows{}", commitGroupBatches, commitGroupMaxRows,
+                    commitGroupMaxNanos > 0 ? " / " + commitGroupMaxNanos / 1_000_000 + " ms" : "");
+        }
         if (constantColumnFeature != null && constantColumnFeature.isEnabled()) {
             logger.info("  Constant Columns: ENABLED ({} columns)", constantColumnFeature.getNames().size());
         }
+        logger.info("  Write Mode: {}", writeMode);
         logger.info("  SQL: {}", upsertSQL);
         logger.info("=========================================================================");
     }
 
     private String buildUpsertStatement() {
-        StringBuilder sql = new StringBuilder();
         // In YugabyteDB, use schema.table format (e.g., public.table_name or my_schema.table_name)
         // The database is already set in the connection URL
-        String schema = yugabyteTable.getSchemaName();
-        String tableName = schema + "." + yugabyteTable.getTableName();
-        sql.append("INSERT INTO ").append(tableName).append(" (");
-
-        // Add column names
-        for (int i = 0; i < columnNames.size(); i++) {
-            if (i > 0)
-                sql.append(", ");
-            sql.append(columnNames.get(i));
-        }
-
-        sql.append(") VALUES (");
-
-        // Add placeholders
-        for (int i = 0; i < columnNames.size(); i++) {
-            if (i > 0)
-                sql.append(", ");
-            sql.append("?");
-        }
+        return buildUpsertStatement(1);
+    }
 
-        sql.append(") ON CONFLICT (");
+    private String buildUpsertStatement(int rows) {
+        return YugabyteSqlBuilder.buildUpsert(yugabyteTable.getSchemaName(), yugabyteTable.getTableName(), columnNames,
+                yugabyteTable.getPrimaryKeyNames(), rows, writeMode);
+    }
 
-        // Add primary key columns for ON CONFLICT
-        List<String> primaryKeys = yugabyteTable.getPrimaryKeyNames();
-        for (int i = 0; i < primaryKeys.size(); i++) {
-            if (i > 0)
-                sql.append(", ");
-            sql.append(primaryKeys.get(i));
+    /**
+     * Get the prepared multi-row statement for a shape, preparing it on the batch connection on first use.
+     */
+    private PreparedStatement getShapeStatement(int rows) throws SQLException {
+        PreparedStatement statement = shapeStatements.get(rows);
+        if (statement == null) {
+            statement = (rows == 1) ? reusableStatement : batchConnection.prepareStatement(buildUpsertStatement(rows));
+            shapeStatements.put(rows, statement);
         }
+        return statement;
+    }
 
-        sql.append(") DO UPDATE SET ");
-
-        // Add non-primary key columns for UPDATE
-        boolean first = true;
-        for (String columnName : columnNames) {
-            if (!primaryKeys.contains(columnName)) {
-                if (!first)
-                    sql.append(", ");
-                sql.append(columnName).append(" = EXCLUDED.").append(columnName);
-                first = false;
+    private void closeShapeStatements() {
+        for (PreparedStatement statement : shapeStatements.values()) {
+            if (statement != reusableStatement) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.debug("Error closing multi-row statement", e);
+                }
             }
         }
-
-        return sql.toString();
+        shapeStatements.clear();
     }
 
     /**
@@ -189,42 +241,83 @@ public class YugabyteUpsertStatement {
     }
 
     /**
-     * Check if connection is valid, reconnect if needed
+     * Make sure the connection can be used for a new batch. This is deliberately cheap: a closed connection is
+     * replaced, and the network round trip of {@link Connection#isValid(int)} is only paid when the connection has been
+     * idle for longer than the configured validation interval. Broken connections are otherwise detected when
+     * executeBatch()/commit() fails, see {@link #flush()}.
      */
-    private void ensureConnectionValid() throws SQLException {
+    private void ensureConnectionUsable() throws SQLException {
         if (batchConnection == null || batchConnection.isClosed()) {
             logger.warn("Connection is closed, reinitializing PreparedStatement");
-            initializeReusablePreparedStatement();
-        } else {
-            // Validate connection is still alive
+            reconnect();
+            rewriteGroup();
+            return;
+        }
+        if (idleValidationMs > 0 && System.currentTimeMillis() - lastSuccessfulUse > idleValidationMs) {
+            boolean valid;
             try {
-                if (!batchConnection.isValid(5)) { // 5 second timeout for validation
-                    logger.warn("Connection validation failed, reinitializing PreparedStatement");
-                    // Close old connection
-                    try {
-                        if (reusableStatement != null) {
-                            reusableStatement.close();
-                        }
-                        batchConnection.close();
-                    } catch (SQLException e) {
-                        logger.debug("Error closing old connection", e);
-                    }
-                    initializeReusablePreparedStatement();
-                }
+                valid = batchConnection.isValid(5); // 5 second timeout for validation
             } catch (SQLException e) {
-                logger.warn("Connection validation check failed, reinitializing: {}", e.getMessage());
-                // Reinitialize on validation failure
-                try {
-                    if (reusableStatement != null) {
-                        reusableStatement.close();
-                    }
-                    batchConnection.close();
-                } catch (SQLException closeEx) {
-                    logger.debug("Error closing old connection", closeEx);
-                }
-                initializeReusablePreparedStatement();
+                logger.warn("Connection validation check failed: {}", e.getMessage());
+                valid = false;
+            }
+            if (!valid) {
+                logger.warn("Idle connection failed validation, reinitializing PreparedStatement");
+                reconnect();
+                rewriteGroup();
+            } else {
+                lastSuccessfulUse = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Discard the current connection and statement and prepare the statement on a fresh pooled connection.
+     */
+    private void reconnect() {
+        closeShapeStatements();
+        try {
+            if (reusableStatement != null) {
+                reusableStatement.close();
+            }
+        } catch (SQLException e) {
+            logger.debug("Error closing old statement", e);
+        }
+        try {
+            if (batchConnection != null) {
+                batchConnection.close();
+            }
+        } catch (SQLException e) {
+            logger.debug("Error closing old connection", e);
+        }
+        initializeReusablePreparedStatement();
+        lastSuccessfulUse = System.currentTimeMillis();
+    }
+
+    /**
+     * Whether a failed executeBatch()/commit() was caused by the connection rather than by the data, in which case the
+     * batch can be replayed on a new connection. SQLSTATE class 08 is a connection exception and 57P0x means the server
+     * is shutting down or not accepting connections.
+     */
+    private boolean isConnectionFailure(SQLException e) {
+        if (isConnectionFailureState(e)) {
+            return true;
+        }
+        try {
+            return batchConnection == null || batchConnection.isClosed();
+        } catch (SQLException closedCheck) {
+            return true;
+        }
+    }
+
+    static boolean isConnectionFailureState(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            String sqlState = current.getSQLState();
+            if (sqlState != null && (sqlState.startsWith("08") || sqlState.startsWith("57P0"))) {
+                return true;
             }
         }
+        return false;
     }
 
     /**
@@ -239,74 +332,28 @@ public class YugabyteUpsertStatement {
      *             if there's a database error
      */
     public boolean addToBatch(Record record) throws SQLException {
-        // Ensure connection is valid before adding to batch
-        ensureConnectionValid();
         if (record == null) {
             throw new RuntimeException("Record is null");
         }
-
-        Row originRow = record.getOriginRow();
-        if (originRow == null) {
+        if (record.getOriginRow() == null) {
             throw new RuntimeException("Origin row is null");
         }
 
-        // Clear parameters and bind new values (reusing the PreparedStatement)
-        reusableStatement.clearParameters();
-
-        // Bind values from origin row to YugabyteDB statement
-        for (int i = 0; i < columnNames.size(); i++) {
-            String columnName = columnNames.get(i);
-            Class<?> bindClass = bindClasses.get(i);
-
-            Object value;
-            boolean isConstantColumn = false;
-
-            // Check if this is a constant column
-            if (constantColumnFeature != null && constantColumnFeature.isEnabled()
-                    && constantColumnFeature.getNames().contains(columnName)) {
-                // Use constant value instead of origin row value
-                value = constantColumnParsedValues.get(columnName);
-                isConstantColumn = true;
-                if (value == null) {
-                    logger.warn("Constant column {} has no parsed value, using null", columnName);
-                }
-            } else {
-                // Get value from origin row
-                value = getValueFromOriginRow(originRow, columnName);
-            }
-
-            // Convert value to appropriate type (skip conversion for constant columns as they're already parsed)
-            Object convertedValue;
-            if (isConstantColumn && value != null) {
-                // Constant values are already parsed to the correct type, use directly
-                convertedValue = value;
-            } else {
-                // Convert value from origin row to appropriate type
-                convertedValue = dataTypeMapper.convertValue(value, null, bindClass);
-            }
-
-            // Set parameter (JDBC uses 1-based indexing)
-            // Use type-specific setters for better type handling
-            if (convertedValue == null) {
-                reusableStatement.setObject(i + 1, null);
-            } else if (convertedValue instanceof Timestamp) {
-                reusableStatement.setTimestamp(i + 1, (Timestamp) convertedValue);
-            } else if (convertedValue instanceof LocalDateTime) {
-                // Convert LocalDateTime to Timestamp for JDBC
-                reusableStatement.setTimestamp(i + 1, Timestamp.valueOf((LocalDateTime) convertedValue));
-            } else if (convertedValue instanceof java.sql.Date) {
-                reusableStatement.setDate(i + 1, (java.sql.Date) convertedValue);
-            } else {
-                reusableStatement.setObject(i + 1, convertedValue);
-            }
+        // Only check the connection when a new batch starts, never per record
+        if (currentBatchCount == 0) {
+            ensureConnectionUsable();
         }
 
-        // Add to batch (not executed yet)
-        reusableStatement.addBatch();
+        if (multiRowShapes == null) {
+            bindRecord(reusableStatement, 0, record);
+            reusableStatement.addBatch();
+        }
+        // In multi-row mode records are bound when the batch is flushed, once the shapes are known
+        pendingRecords.add(record);
         currentBatchCount++;
 
         // Check if we should flush the batch
-        if (currentBatchCount >= batchSize) {
+        if (currentBatchCount >= getBatchSize()) {
             flush();
             return true; // Batch was flushed
         }
@@ -315,7 +362,19 @@ public class YugabyteUpsertStatement {
     }
 
     /**
-     * Execute all pending batched records.
+     * Bind the values of a record to a statement, starting after the given number of parameters (0 for the single-row
+     * statement, row * columns for a row of a multi-row statement).
+     */
+    private void bindRecord(PreparedStatement statement, int parameterOffset, Record record) throws SQLException {
+        bindPlan.bind(statement, parameterOffset, record.getOriginRow());
+    }
+
+    /**
+     * Execute all pending batched records, and commit them with the earlier batches of the commit group once the group
+     * is complete. After a transient failure (a broken connection, a transaction conflict or read restart) the whole
+     * uncommitted group is replayed in a new transaction, on a new connection if needed, as the
+     * {@link YugabyteRetryPolicy} allows. When the batch fails for good, the earlier batches of the group are written
+     * again on their own, so the error only concerns this batch.
      *
      * @return Array of update counts from executeBatch()
      *
@@ -327,17 +386,28 @@ public class YugabyteUpsertStatement {
             return new int[0];
         }
 
+        long start = System.nanoTime();
         try {
-            // Ensure connection is valid before executing batch
-            ensureConnectionValid();
-
-            // Execute all batched statements at once
-            int[] results = reusableStatement.executeBatch();
-
-            // Commit the transaction
-            batchConnection.commit();
+            int[] results;
+            int batches = groupBatches + 1;
+            try {
+                results = executePending();
+                groupBatches = batches;
+                if (isGroupComplete()) {
+                    commitGroup(groupBatches);
+                } else {
+                    groupRecords.addAll(pendingRecords);
+                }
+            } catch (SQLException e) {
+                results = retryGroup(e, new ArrayList<>(pendingRecords), batches);
+            }
 
             // Update statistics
+            long latencyNanos = System.nanoTime() - start;
+            CentralizedPerformanceLogger.recordBatch(currentBatchCount, latencyNanos);
+            if (batchSizer != null) {
+                batchSizer.onSuccess(latencyNanos);
+            }
             totalRecordsWritten += currentBatchCount;
             totalBatchesExecuted++;
 
@@ -348,23 +418,256 @@ public class YugabyteUpsertStatement {
 
             // Reset batch counter
             currentBatchCount = 0;
+            pendingRecords.clear();
 
             return results;
 
         } catch (SQLException e) {
             // Rollback on error
-            try {
-                batchConnection.rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Error during rollback", rollbackEx);
-            }
+            rollbackQuietly();
 
             logger.error("Error executing batch (batch size: {})", currentBatchCount, e);
+            if (batchSizer != null) {
+                batchSizer.onFailure(e);
+            }
             currentBatchCount = 0; // Reset counter even on error
+            pendingRecords.clear();
+            clearBatches();
+            if (isConnectionFailure(e)) {
+                reconnect();
+            }
+            try {
+                rewriteGroup();
+            } catch (SQLException groupEx) {
+                logger.debug("Earlier batches of the failed commit group could not be written again", groupEx);
+            }
             throw e;
         }
     }
 
+    /**
+     * Commit the batches of the open commit group. If the commit fails, the batches are written again once in a new
+     * transaction; records that still fail are left for {@link #takeRolledBackRecords()}.
+     */
+    @Override
+    public void commit() throws SQLException {
+        if (groupBatches == 0) {
+            return;
+        }
+        try {
+            commitGroup(groupBatches);
+        } catch (SQLException e) {
+            logger.warn("Commit of {} batches ({} records) failed ({})", groupBatches, groupRecords.size(),
+                    e.getMessage());
+            try {
+                retryGroup(e, Collections.emptyList(), groupBatches);
+            } catch (SQLException retryFailure) {
+                rollbackQuietly();
+                if (isConnectionFailure(retryFailure)) {
+                    reconnect();
+                }
+                rewriteGroup();
+            }
+        }
+    }
+
+    @Override
+    public void discardBatch() {
+        currentBatchCount = 0;
+        pendingRecords.clear();
+        clearBatches();
+    }
+
+    @Override
+    public int rollbackGroup() {
+        discardBatch();
+        int dropped = groupRecords.size() + rolledBackRecords.size();
+        if (groupBatches > 0) {
+            rollbackQuietly();
+        }
+        groupBatches = 0;
+        groupRecords.clear();
+        rolledBackRecords.clear();
+        return dropped;
+    }
+
+    @Override
+    public List<Record> takeRolledBackRecords() {
+        if (rolledBackRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Record> records = new ArrayList<>(rolledBackRecords);
+        rolledBackRecords.clear();
+        return records;
+    }
+
+    private boolean isGroupComplete() {
+        return groupBatches >= commitGroupBatches || groupRecords.size() + currentBatchCount >= commitGroupMaxRows
+                || (commitGroupMaxNanos > 0 && System.nanoTime() - groupStartNanos >= commitGroupMaxNanos);
+    }
+
+    /**
+     * Execute the pending records as one batch of the open commit group.
+     */
+    private int[] executePending() throws SQLException {
+        if (groupBatches == 0) {
+            groupStartNanos = System.nanoTime();
+        }
+        long start = System.nanoTime();
+        // Execute all batched statements at once
+        int[] results = (multiRowShapes == null) ? reusableStatement.executeBatch() : executeMultiRow();
+        CentralizedPerformanceLogger.recordExecute(System.nanoTime() - start);
+        lastSuccessfulUse = System.currentTimeMillis();
+        return results;
+    }
+
+    private void commitGroup(int batches) throws SQLException {
+        long start = System.nanoTime();
+        batchConnection.commit();
+        CentralizedPerformanceLogger.recordCommit(batches, System.nanoTime() - start);
+        groupRecords.clear();
+        groupBatches = 0;
+        lastSuccessfulUse = System.currentTimeMillis();
+    }
+
+    /**
+     * Retry the uncommitted group together with the given batch, as one batch in a new transaction, while the failure
+     * is transient and the retry policy allows it.
+     *
+     * @throws SQLException
+     *             the last failure, once the batch is not retried any more; the group is left as it was
+     */
+    private int[] retryGroup(SQLException cause, List<Record> batch, int batches) throws SQLException {
+        SQLException failure = cause;
+        for (int attempt = 1;; attempt++) {
+            boolean retryable = YugabyteRetryPolicy.isTransient(failure) || isConnectionFailure(failure);
+            if (!retryPolicy.awaitRetry(retryable, attempt)) {
+                throw failure;
+            }
+            totalRetries++;
+            logger.warn("{} while writing {} records ({}), retry {} of {}",
+                    isConnectionFailure(failure) ? "Connection failure" : "Transient failure",
+                    groupRecords.size() + batch.size(), failure.getMessage(), attempt, retryPolicy.getMaxAttempts());
+            try {
+                return replayGroup(failure, batch, batches);
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private int[] replayGroup(SQLException cause, List<Record> batch, int batches) throws SQLException {
+        rollbackQuietly();
+        if (isConnectionFailure(cause)) {
+            reconnect();
+        } else {
+            clearBatches();
+        }
+        pendingRecords.clear();
+        pendingRecords.addAll(groupRecords);
+        pendingRecords.addAll(batch);
+        bindPending();
+        int[] results = executePending();
+        commitGroup(batches);
+        return results;
+    }
+
+    /**
+     * Write the records of the uncommitted group again, in a transaction of their own, after the transaction they were
+     * written in was lost (a failed batch or commit, or a broken connection). If that fails too they are moved to the
+     * rolled back records.
+     */
+    private void rewriteGroup() throws SQLException {
+        int batches = groupBatches;
+        groupBatches = 0;
+        if (groupRecords.isEmpty()) {
+            return;
+        }
+        List<Record> records = new ArrayList<>(groupRecords);
+        groupRecords.clear();
+        pendingRecords.clear();
+        pendingRecords.addAll(records);
+        try {
+            bindPending();
+            executePending();
+            commitGroup(batches);
+            logger.info("Wrote the {} records of the earlier batches of the rolled back commit group again",
+                    records.size());
+        } catch (SQLException e) {
+            logger.error("Could not write the {} records of the rolled back commit group again", records.size(), e);
+            rollbackQuietly();
+            clearBatches();
+            groupBatches = 0;
+            groupRecords.clear();
+            rolledBackRecords.addAll(records);
+            throw e;
+        } finally {
+            pendingRecords.clear();
+        }
+    }
+
+    /**
+     * Bind the pending records into the single-row statement; multi-row statements are bound when executed.
+     */
+    private void bindPending() throws SQLException {
+        if (multiRowShapes == null) {
+            for (Record record : pendingRecords) {
+                bindRecord(reusableStatement, 0, record);
+                reusableStatement.addBatch();
+            }
+        }
+    }
+
+    private void rollbackQuietly() {
+        try {
+            batchConnection.rollback();
+        } catch (SQLException rollbackEx) {
+            logger.error("Error during rollback", rollbackEx);
+        }
+    }
+
+    private void clearBatches() {
+        try {
+            reusableStatement.clearBatch();
+            for (PreparedStatement statement : shapeStatements.values()) {
+                statement.clearBatch();
+            }
+        } catch (SQLException clearEx) {
+            logger.debug("Error clearing failed batch", clearEx);
+        }
+    }
+
+    /**
+     * Bind the pending records into the cached multi-row statements, largest shape first, and execute them. Each shape
+     * statement is sent as one JDBC batch, so a flush costs one round trip per shape used.
+     */
+    private int[] executeMultiRow() throws SQLException {
+        List<Integer> plan = YugabyteSqlBuilder.planShapes(pendingRecords.size(), multiRowShapes);
+        List<PreparedStatement> used = new ArrayList<>();
+        int columnCount = columnNames.size();
+        int next = 0;
+        for (int rows : plan) {
+            PreparedStatement statement = getShapeStatement(rows);
+            statement.clearParameters();
+            for (int r = 0; r < rows; r++) {
+                bindRecord(statement, r * columnCount, pendingRecords.get(next++));
+            }
+            statement.addBatch();
+            if (!used.contains(statement)) {
+                used.add(statement);
+            }
+            shapeExecutions.merge(rows, 1L, Long::sum);
+        }
+
+        List<Integer> counts = new ArrayList<>();
+        for (PreparedStatement statement : used) {
+            for (int count : statement.executeBatch()) {
+                counts.add(count);
+            }
+        }
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
     /**
      * Legacy method for backward compatibility. Executes a single record immediately (not batched).
      *
@@ -379,6 +682,7 @@ public class YugabyteUpsertStatement {
     public void execute(Record record) throws SQLException {
         addToBatch(record);
         flush();
+        commit();
     }
 
     /**
@@ -389,10 +693,24 @@ public class YugabyteUpsertStatement {
     }
 
     /**
-     * Get the configured batch size.
+     * Get the batch size: the configured one, or the current size chosen by the adaptive controller.
      */
     public int getBatchSize() {
-        return batchSize;
+        return (batchSizer != null) ? batchSizer.getBatchSize() : batchSize;
+    }
+
+    /**
+     * Get the adaptive batch size controller, or null when the batch size is fixed.
+     */
+    public AdaptiveBatchSizer getBatchSizer() {
+        return batchSizer;
+    }
+
+    /**
+     * Parsed values of the configured constant columns, keyed by target column name.
+     */
+    public Map<String, Object> getConstantColumnValues() {
+        return Collections.unmodifiableMap(constantColumnParsedValues);
     }
 
     /**
@@ -402,6 +720,13 @@ public class YugabyteUpsertStatement {
         return totalRecordsWritten;
     }
 
+    /**
+     * Number of multi-row statements executed per shape (rows per statement), empty in single-row mode.
+     */
+    public Map<Integer, Long> getShapeExecutions() {
+        return Collections.unmodifiableMap(shapeExecutions);
+    }
+
     /**
      * Get total number of batches executed since initialization.
      */
@@ -409,30 +734,21 @@ public class YugabyteUpsertStatement {
         return totalBatchesExecuted;
     }
 
-    private Object getValueFromOriginRow(Row originRow, String columnName) {
-        try {
-            // Try to get value by column name
-            return originRow.getObject(columnName);
-        } catch (Exception e) {
-            // If that fails, try to get by index
-            try {
-                int index = columnNames.indexOf(columnName);
-                if (index >= 0) {
-                    return originRow.getObject(index);
-                }
-            } catch (Exception e2) {
-                logger.warn("Could not get value for column {} from origin row", columnName);
-            }
-            return null;
-        }
+    @Override
+    public long getTotalRetries() {
+        return totalRetries;
     }
 
     /**
      * Initialize constant columns by parsing their string values into appropriate Java types.
+     *
+     * @return parsed values keyed by column name; columns whose value cannot be parsed are left out
      */
-    private void initializeConstantColumns() {
+    static Map<String, Object> parseConstantColumns(ConstantColumns constantColumnFeature, List<String> columnNames,
+            List<Class<?>> bindClasses) {
+        Map<String, Object> constantColumnParsedValues = new HashMap<>();
         if (constantColumnFeature == null || !constantColumnFeature.isEnabled()) {
-            return;
+            return constantColumnParsedValues;
         }
 
         List<String> constantNames = constantColumnFeature.getNames();
@@ -440,7 +756,7 @@ public class YugabyteUpsertStatement {
 
         if (constantNames == null || constantValues == null || constantNames.size() != constantValues.size()) {
             logger.warn("Constant columns configuration is invalid, skipping initialization");
-            return;
+            return constantColumnParsedValues;
         }
 
         for (int i = 0; i < constantNames.size(); i++) {
@@ -458,7 +774,6 @@ public class YugabyteUpsertStatement {
 
             if (parsedValue != null) {
                 constantColumnParsedValues.put(columnName, parsedValue);
-                constantColumnIndexMap.put(columnName, columnIndex);
                 logger.info("Initialized constant column {} with value {} (type: {}, original: '{}')", columnName,
                         parsedValue, bindClass.getSimpleName(), stringValue);
             } else {
@@ -471,12 +786,13 @@ public class YugabyteUpsertStatement {
             logger.info("Initialized {} constant columns: {}", constantColumnParsedValues.size(),
                     constantColumnParsedValues.keySet());
         }
+        return constantColumnParsedValues;
     }
 
     /**
      * Parse a constant value string into the appropriate Java type.
      */
-    private Object parseConstantValue(String stringValue, Class<?> targetClass) {
+    private static Object parseConstantValue(String stringValue, Class<?> targetClass) {
         if (stringValue == null || stringValue.isEmpty()) {
             return null;
         }
@@ -551,7 +867,7 @@ public class YugabyteUpsertStatement {
      * Close resources. Must be called when done with the statement.
      */
     public void close() {
-        // Flush any remaining records in the batch
+        // Flush any remaining records in the batch and commit the open group
         if (currentBatchCount > 0) {
             try {
                 flush();
@@ -559,8 +875,18 @@ public class YugabyteUpsertStatement {
                 logger.error("Error flushing remaining batch records on close", e);
             }
         }
+        try {
+            commit();
+        } catch (SQLException e) {
+            logger.error("Error committing remaining batches on close", e);
+        }
+        if (!rolledBackRecords.isEmpty()) {
+            logger.error("{} records of a rolled back commit group could not be written on close",
+                    rolledBackRecords.size());
+        }
 
-        // Close PreparedStatement
+        // Close PreparedStatements
+        closeShapeStatements();
         if (reusableStatement != null) {
             try {
                 reusableStatement.close();
@@ -581,5 +907,8 @@ public class YugabyteUpsertStatement {
 
         logger.info("YugabyteUpsertStatement closed. Total records written: {}, Total batches: {}", totalRecordsWritten,
                 totalBatchesExecuted);
+        if (multiRowShapes != null) {
+            logger.info("Multi-row statements executed per shape (rows=count): {}", shapeExecutions);
+        }
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+/**
+ * How the INSERT and UNNEST writers handle rows that already exist in the target table.
+ *
+ * <ul>
+ * <li>{@link #INSERT}: plain INSERT. No conflict handling, so existing rows fail with a unique violation. Not safe to
+ * re-run over already loaded data.</li>
+ * <li>{@link #DO_NOTHING}: {@code ON CONFLICT DO NOTHING}. Existing rows are kept as they are; safe to re-run, but rows
+ * changed at the origin since the last run are not refreshed.</li>
+ * <li>{@link #DO_UPDATE} (default): {@code ON CONFLICT (pk) DO UPDATE SET col = EXCLUDED.col}. Existing rows are
+ * overwritten; safe to re-run. YugabyteDB reads the row before every write.</li>
+ * <li>{@link #UPSERT_MODE}: plain INSERT on connections with {@code yb_enable_upsert_mode=true}, which turns every
+ * INSERT into a blind overwrite without the read. Safe to re-run; only for tables without secondary indexes, which
+ * are not updated for the overwritten values.</li>
+ * </ul>
+ *
+ * Independently, {@code yb_disable_transactional_writes=true} can be set on the connections: each row is then written
+ * on its own instead of in a distributed transaction, so a failed batch may be partially applied. That is harmless for
+ * the modes that are safe to re-run, but leaves INSERT batches that cannot be retried.
+ */
+public enum YugabyteWriteMode {
+    INSERT(false, false), DO_NOTHING(true, false), DO_UPDATE(true, true), UPSERT_MODE(true, true);
+
+    private final boolean rerunSafe;
+    private final boolean overwritesExisting;
+
+    YugabyteWriteMode(boolean rerunSafe, boolean overwritesExisting) {
+        this.rerunSafe = rerunSafe;
+        this.overwritesExisting = overwritesExisting;
+    }
+
+    /**
+     * Read the configured write mode, {@link #DO_UPDATE} when none is set.
+     *
+     * @throws IllegalArgumentException
+     *             if the configured mode is not one of the write modes, rather than loading with a mode that was not
+     *             asked for
+     */
+    public static YugabyteWriteMode fromProperties(IPropertyHelper propertyHelper) {
+        String configured = propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_WRITE_MODE);
+        if (configured == null || configured.trim().isEmpty()) {
+            return DO_UPDATE;
+        }
+        try {
+            return valueOf(configured.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + KnownProperties.TARGET_YUGABYTE_WRITE_MODE + " '"
+                    + configured + "', expected one of " + Arrays.toString(values()), e);
+        }
+    }
+
+    public static boolean isNonTransactional(IPropertyHelper propertyHelper) {
+        Boolean nonTransactional = propertyHelper
+                .getBoolean(KnownProperties.TARGET_YUGABYTE_NON_TRANSACTIONAL_WRITES);
+        return nonTransactional != null && nonTransactional;
+    }
+
+    /**
+     * Session settings to apply on every pooled connection for this mode, as {@code name=value} pairs.
+     */
+    public static List<String> sessionSettings(IPropertyHelper propertyHelper) {
+        List<String> settings = new ArrayList<>();
+        if (fromProperties(propertyHelper) == UPSERT_MODE) {
+            settings.add("yb_enable_upsert_mode=true");
+        }
+        if (isNonTransactional(propertyHelper)) {
+            settings.add("yb_disable_transactional_writes=true");
+        }
+        return settings;
+    }
+
+    /**
+     * Whether a run over rows already written by a previous (possibly partial) run succeeds and leaves the target
+     * consistent.
+     */
+    public boolean isRerunSafe() {
+        return rerunSafe;
+    }
+
+    /**
+     * Whether rows that already exist take the values of the new write.
+     */
+    public boolean overwritesExisting() {
+        return overwritesExisting;
+    }
+
+    /**
+     * Whether the statement carries an ON CONFLICT clause.
+     */
+    public boolean hasConflictClause() {
+        return this == DO_NOTHING || this == DO_UPDATE;
+    }
+}
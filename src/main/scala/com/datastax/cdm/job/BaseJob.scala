@@ -102,13 +102,25 @@ abstract class BaseJob[T: ClassTag] extends App {
     this.parts = getParts(numSplits)
     abstractLogger.info("PARAM Calculated -- Total Partitions: " + parts.size())
     if (parts.size() > 0) {
-      this.slices = sContext.parallelize(parts.asScala.toSeq, parts.size);
+      this.slices = toSlices(parts)
 	  abstractLogger.info("Spark parallelize created : " + slices.getNumPartitions + " slices!");
     }
   }
 
+  /**
+   * One Spark partition per part. Slices with known replica hosts are scheduled on executors running on those hosts
+   * when there are any.
+   */
+  protected def toSlices(parts: util.Collection[T]): RDD[T] = {
+    val located = parts.asScala.toSeq.map(part => (part, getPreferredLocations(part)))
+    if (located.exists(_._2.nonEmpty)) sContext.makeRDD(located)
+    else sContext.parallelize(parts.asScala.toSeq, parts.size)
+  }
+
   def getParts(pieces: Int): util.Collection[T]
 
+  def getPreferredLocations(part: T): Seq[String] = Nil
+
   protected def finish() = {
     spark.stop()
     logBanner(jobName + " - Stopped")
@@ -17,8 +17,10 @@ package com.datastax.cdm.job
 
 import java.util
 import scala.reflect.io.File
+import scala.collection.JavaConverters._
 import com.datastax.cdm.feature.TrackRun
 import com.datastax.cdm.properties.KnownProperties
+import com.datastax.oss.driver.api.core.CqlIdentifier
 
 abstract class BasePartitionJob extends BaseJob[PartitionRange] {
   var trackRunFeature: TrackRun = _
@@ -44,12 +46,51 @@ abstract class BasePartitionJob extends BaseJob[PartitionRange] {
       } catch {
         case e: RunNotStartedException => {
           abstractLogger.warn(e.getMessage)
-          SplitPartitions.getRandomSubPartitions(pieces, minPartition, maxPartition, coveragePercent, jobType)
+          getSubPartitions(pieces)
         }
       }
+    } else {
+      getSubPartitions(pieces)
+    }
+  }
+
+  // Whether replica-aligned and size-estimated splits are used when they are not configured
+  protected def clusterAwareSplitsByDefault: Boolean = false
+
+  private def isEnabled(propertyName: String): Boolean =
+    Option(propertyHelper.getBoolean(propertyName)).map(_.booleanValue()).getOrElse(clusterAwareSplitsByDefault)
+
+  private def getSubPartitions(pieces: Int): util.Collection[PartitionRange] = {
+    val originKeyspaceTable = Option(propertyHelper.getString(KnownProperties.ORIGIN_KEYSPACE_TABLE))
+      .filter(_.contains(".")).map(_.split("\\.", 2))
+    val replicaAligned: Boolean = isEnabled(KnownProperties.PERF_REPLICA_ALIGNED_SPLITS)
+    val estimates = originKeyspaceTable
+      .filter(_ => isEnabled(KnownProperties.PERF_SIZE_ESTIMATED_SPLITS))
+      .map(kt => getSizeEstimates(kt(0), kt(1), replicaAligned))
+      .getOrElse(new util.ArrayList[SplitPartitions.SizeEstimate]())
+    val tokenMap = originConnection.withSessionDo(_.getMetadata.getTokenMap)
+    if (!estimates.isEmpty) {
+      SplitPartitions.getBalancedSubPartitions(estimates, pieces, coveragePercent, jobType)
+    } else if (replicaAligned && originKeyspaceTable.isDefined && tokenMap.isPresent) {
+      SplitPartitions.getReplicaAlignedSubPartitions(tokenMap.get, CqlIdentifier.fromCql(originKeyspaceTable.get.head),
+        pieces, minPartition, maxPartition, coveragePercent, jobType)
     } else {
       SplitPartitions.getRandomSubPartitions(pieces, minPartition, maxPartition, coveragePercent, jobType)
     }
   }
 
+  // Size estimates of Cassandra, or a sample of the table when there are none yet
+  private def getSizeEstimates(keyspace: String, table: String,
+                               withLocations: Boolean): util.List[SplitPartitions.SizeEstimate] = {
+    originConnection.withSessionDo(session => {
+      val estimates = SplitPartitions.readSizeEstimates(session, keyspace, table, minPartition, maxPartition,
+        withLocations)
+      if (!estimates.isEmpty) estimates
+      else SplitPartitions.sampleSizeEstimates(session, keyspace, table, minPartition, maxPartition,
+        propertyHelper.getInteger(KnownProperties.PERF_SIZE_ESTIMATE_SAMPLES))
+    })
+  }
+
+  override def getPreferredLocations(part: PartitionRange): Seq[String] = part.getPreferredLocations.asScala.toSeq
+
 }
\ No newline at end of file
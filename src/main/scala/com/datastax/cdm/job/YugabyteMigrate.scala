@@ -18,18 +18,37 @@ package com.datastax.cdm.job
 import com.datastax.cdm.job.IJobSessionFactory.JobType
 import com.datastax.cdm.properties.KnownProperties
 import com.datastax.cdm.data.PKFactory.Side
+import com.datastax.cdm.yugabyte.OriginProjection
+import com.datastax.cdm.yugabyte.YugabyteIndexManager
+import com.datastax.cdm.yugabyte.YugabyteSessionRegistry
 import com.datastax.cdm.yugabyte.error.CentralizedPerformanceLogger
+import com.datastax.cdm.yugabyte.statement.YugabyteWriteMode
+
+import scala.collection.JavaConverters._
 
 object YugabyteMigrate extends BasePartitionJob {
   jobType = JobType.MIGRATE
   setup("YugabyteDB Migrate Job", new YugabyteCopyJobSessionFactory())
   execute()
   finish()
+
+  // Replica-aligned and size-estimated splits are on unless configured otherwise
+  override protected def clusterAwareSplitsByDefault: Boolean = true
   
   protected def execute(): Unit = {
     if (!parts.isEmpty()) {
-      originConnection.withSessionDo(originSession => 
-        jobFactory.getInstance(originSession, null, propertyHelper).initCdmRun(runId, prevRunId, parts, trackRunFeature, jobType))
+      // Leave out the origin columns the target does not use, before the properties are sent to the executors
+      originConnection.withSessionDo(originSession => OriginProjection.apply(propertyHelper, originSession))
+      originConnection.withSessionDo(originSession => {
+        val initSession = jobFactory.getInstance(originSession, null, propertyHelper)
+        initSession.initCdmRun(runId, prevRunId, parts, trackRunFeature, jobType)
+        initSession.close()
+      })
+      // Secondary indexes are dropped for the load and rebuilt once every slice has been written
+      val indexManager = YugabyteIndexManager.fromProperties(propertyHelper)
+      if (indexManager != null) {
+        indexManager.deferIndexes()
+      }
       var ma = new CDMMetricsAccumulator(jobType)
       sContext.register(ma, "CDMMetricsAccumulator")
       
@@ -40,19 +59,73 @@ object YugabyteMigrate extends BasePartitionJob {
       val bcKeyspaceTableValue = sContext.broadcast(keyspaceTableValue)
       val bcRunId = sContext.broadcast(runId)
 
-      slices.foreach(slice => {
-        if (null == originConnection) {
+      val progress = sContext.collectionAccumulator[RangeProgress]("RangeProgress")
+      val runSlice = (slice: PartitionRange) => {
+          if (null == originConnection) {
     		originConnection = bcConnectionFetcher.value.getConnection(bcOriginConfig.value, Side.ORIGIN, bcPropHelper.value.getString(KnownProperties.READ_CL), bcRunId.value)
-            trackRunFeature = null // No track run for YugabyteDB target
-        }
-        originConnection.withSessionDo(originSession => {
-            bcJobFactory.value.getInstance(originSession, null, bcPropHelper.value)
-              .processPartitionRange(slice, trackRunFeature, bcRunId.value)
+              trackRunFeature = null // No track run for YugabyteDB target
+          }
+          originConnection.withSessionDo(originSession => {
+              // The YugabyteDB pool and statements are shared across slices; close() only releases this slice's reference
+              val jobSession = bcJobFactory.value.getInstance(originSession, null, bcPropHelper.value)
+              try {
+                jobSession.processPartitionRange(slice, trackRunFeature, bcRunId.value)
+              } finally {
+                jobSession.close()
+              }
               ma.add(slice.getJobCounter())
-        })
-      })
+              if (slice.getProgress != null) {
+                progress.add(slice.getProgress)
+              }
+          })
+      }
+
+      // With range stealing, slices that fall behind leave the rest of their range behind; it is split into new
+      // slices that run as the next round, until no slice is cut off or the last round ran them to completion.
+      // A round is a single job: running slices follow the cut-off of their executor (see SkewMonitor), starting
+      // from the one computed from the earlier rounds
+      val stealRatio = SkewMonitor.stealRatio(propertyHelper)
+      if (stealRatio <= 0) {
+        slices.foreach(runSlice)
+      } else {
+        val stealRounds = propertyHelper.getNumber(KnownProperties.PERF_STEAL_MAX_ROUNDS)
+        val maxRounds = if (stealRounds != null) math.max(1, stealRounds.intValue()) else 3
+        var round = 0
+        var roundParts: Seq[PartitionRange] = parts.asScala.toSeq
+        while (roundParts.nonEmpty) {
+          val reported = progress.value.size
+          // The slices of the last round are never cut off
+          val cutOffMillis = if (round < maxRounds) SkewMonitor.cutOffMillis(progress.value, stealRatio) else -1L
+          roundParts.foreach(_.setCutOffMillis(cutOffMillis))
+          toSlices(roundParts.asJava).foreach(runSlice)
+
+          val cut = progress.value.asScala.drop(reported).filter(_.isCut)
+          roundParts = Seq.empty
+          if (cut.nonEmpty) {
+            round += 1
+            cut.foreach(p => abstractLogger.info("Slice fell behind: " + p))
+            val remainders = cut.flatMap(_.getRemainders.asScala)
+            roundParts = SplitPartitions.splitRemainders(remainders.asJava,
+              math.max(2, sContext.defaultParallelism / remainders.size), jobType).asScala.toSeq
+            abstractLogger.info(s"Range stealing round $round: ${remainders.size} unfinished ranges run as ${roundParts.size} slices")
+          }
+        }
+        // Job slices that were cut off count once, as passed or failed, now that all of their slices have run
+        ma.add(SkewMonitor.cutOffSliceCounts(progress.value, jobType))
+      }
       
       ma.value.printMetrics(runId, trackRunFeature);
+
+      // Failed slices are only counted, so check them: the state file keeps the DDL until a run loads every slice
+      if (indexManager != null) {
+        val failedSlices = ma.value.getCount(JobCounter.CounterType.PARTITIONS_FAILED)
+        if (failedSlices == 0) {
+          indexManager.rebuildIndexes()
+        } else {
+          abstractLogger.error(s"$failedSlices slice(s) failed: secondary indexes are not rebuilt, their DDL is kept " +
+            s"in ${propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE)} for the next run")
+        }
+      }
       
       // Add configuration parameters to summary
       val configParams = buildConfigurationSummary();
@@ -66,6 +139,8 @@ object YugabyteMigrate extends BasePartitionJob {
   override def finish(): Unit = {
     // Close centralized performance logger
     CentralizedPerformanceLogger.close();
+    // Close shared YugabyteDB sessions held by the driver JVM (executors close theirs on shutdown)
+    YugabyteSessionRegistry.closeAll();
     super.finish();
   }
   
@@ -138,6 +213,12 @@ object YugabyteMigrate extends BasePartitionJob {
     sb.append(s"  Batch Size: ${if (yugabyteBatchSize != null) yugabyteBatchSize else (if (batchSize != null) batchSize else "25")}\n");
     sb.append(s"  Fetch Size: ${if (fetchSize != null) fetchSize else "1000"}\n");
     sb.append(s"  Number of Partitions: ${if (numParts != null) numParts else "40"}\n");
+    val writeMode = YugabyteWriteMode.fromProperties(propertyHelper);
+    sb.append(s"  Write Mode: ${writeMode} (safe to re-run: ${if (writeMode.isRerunSafe()) "yes" else "NO"})\n");
+    sb.append(s"  Non-transactional Writes: ${YugabyteWriteMode.isNonTransactional(propertyHelper)}\n");
+    val deferIndexes = propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES)
+    val indexRebuild = getPropertyOrDefault(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_REBUILD, "NONCONCURRENTLY")
+    sb.append(s"  Deferred Secondary Indexes: ${if (deferIndexes != null && deferIndexes) s"yes (rebuild $indexRebuild)" else "no"}\n");
     
     // Connection Configuration
     sb.append("\nConnection Configuration:\n");
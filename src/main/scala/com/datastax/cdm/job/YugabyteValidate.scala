@@ -18,6 +18,7 @@ package com.datastax.cdm.job
 import com.datastax.cdm.job.IJobSessionFactory.JobType
 import com.datastax.cdm.properties.KnownProperties
 import com.datastax.cdm.data.PKFactory.Side
+import com.datastax.cdm.yugabyte.YugabyteSessionRegistry
 
 object YugabyteValidate extends BasePartitionJob {
   jobType = JobType.VALIDATE
@@ -27,8 +28,11 @@ object YugabyteValidate extends BasePartitionJob {
   
   protected def execute(): Unit = {
     if (!parts.isEmpty()) {
-      originConnection.withSessionDo(originSession =>
-        jobFactory.getInstance(originSession, null, propertyHelper).initCdmRun(runId, prevRunId, parts, trackRunFeature, jobType))
+      originConnection.withSessionDo(originSession => {
+        val initSession = jobFactory.getInstance(originSession, null, propertyHelper)
+        initSession.initCdmRun(runId, prevRunId, parts, trackRunFeature, jobType)
+        initSession.close()
+      })
       var ma = new CDMMetricsAccumulator(jobType)
       sContext.register(ma, "CDMMetricsAccumulator")
       
@@ -45,8 +49,12 @@ object YugabyteValidate extends BasePartitionJob {
           trackRunFeature = null // No target session for YugabyteDB validation
         }
         originConnection.withSessionDo(originSession => {
-          bcJobFactory.value.getInstance(originSession, null, bcPropHelper.value)
-            .processPartitionRange(slice, trackRunFeature, bcRunId.value)
+          val jobSession = bcJobFactory.value.getInstance(originSession, null, bcPropHelper.value)
+          try {
+            jobSession.processPartitionRange(slice, trackRunFeature, bcRunId.value)
+          } finally {
+            jobSession.close()
+          }
           ma.add(slice.getJobCounter())
         })
       })
@@ -54,4 +62,10 @@ object YugabyteValidate extends BasePartitionJob {
       ma.value.printMetrics(runId, trackRunFeature);
     }
   }
+
+  override def finish(): Unit = {
+    // Close shared YugabyteDB sessions held by the driver JVM (executors close theirs on shutdown)
+    YugabyteSessionRegistry.closeAll();
+    super.finish();
+  }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.cql;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+
+public class StatementRegistryTest {
+
+    private static final String CQL = "SELECT * FROM ks.tbl WHERE TOKEN(k) >= ? AND TOKEN(k) <= ?";
+
+    @AfterEach
+    public void tearDown() {
+        StatementRegistry.clear();
+    }
+
+    @Test
+    public void preparesEachStatementOncePerSession() {
+        CqlSession cqlSession = mock(CqlSession.class);
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(cqlSession.prepare(CQL)).thenReturn(prepared);
+
+        StatementRegistry registry = StatementRegistry.forSession(cqlSession);
+        assertSame(prepared, registry.prepare(CQL));
+        assertSame(prepared, StatementRegistry.forSession(cqlSession).prepare(CQL));
+        assertSame(prepared, registry.prepare(CQL));
+
+        verify(cqlSession, times(1)).prepare(CQL);
+        assertEquals(1, registry.getMisses());
+        assertEquals(2, registry.getHits());
+
+        // Another session prepares its own
+        CqlSession otherSession = mock(CqlSession.class);
+        when(otherSession.prepare(CQL)).thenReturn(mock(PreparedStatement.class));
+        assertNotSame(prepared, StatementRegistry.forSession(otherSession).prepare(CQL));
+    }
+
+    @Test
+    public void keysPreparedStatementsByKeyspace() {
+        CqlSession cqlSession = mock(CqlSession.class);
+        when(cqlSession.prepare(CQL)).thenReturn(mock(PreparedStatement.class), mock(PreparedStatement.class));
+        StatementRegistry registry = StatementRegistry.forSession(cqlSession);
+
+        when(cqlSession.getKeyspace()).thenReturn(Optional.of(CqlIdentifier.fromCql("ks1")));
+        PreparedStatement inKs1 = registry.prepare(CQL);
+        when(cqlSession.getKeyspace()).thenReturn(Optional.of(CqlIdentifier.fromCql("ks2")));
+        PreparedStatement inKs2 = registry.prepare(CQL);
+
+        assertNotSame(inKs1, inKs2);
+        assertEquals(2, registry.getMisses());
+    }
+
+    @Test
+    public void dropsTheRegistriesOfClosedSessions() {
+        CqlSession cqlSession = mock(CqlSession.class);
+        StatementRegistry registry = StatementRegistry.forSession(cqlSession);
+        when(cqlSession.isClosed()).thenReturn(true);
+
+        StatementRegistry.forSession(mock(CqlSession.class));
+
+        assertNotSame(registry, StatementRegistry.forSession(cqlSession));
+    }
+}
@@ -19,11 +19,19 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.datastax.cdm.cql.CommonMocks;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.Token;
 
 public class OriginSelectByPartitionRangeStatementTest extends CommonMocks {
 
@@ -117,4 +125,48 @@ public class OriginSelectByPartitionRangeStatementTest extends CommonMocks {
                         "invalid second"));
     }
 
+    private TokenMap stubTokenMap() {
+        Metadata metadata = mock(Metadata.class);
+        TokenMap tokenMap = mock(TokenMap.class);
+        when(originCqlSession.getMetadata()).thenReturn(metadata);
+        when(metadata.getTokenMap()).thenReturn(Optional.of(tokenMap));
+        when(boundStatement.setRoutingKeyspace(any(CqlIdentifier.class))).thenReturn(boundStatement);
+        when(boundStatement.setRoutingToken(any(Token.class))).thenReturn(boundStatement);
+        return tokenMap;
+    }
+
+    @Test
+    public void bind_routesToTheReplicasOfTheRange() {
+        // Ring range (100, 300] is owned by node B, so the replica-aligned split [101, 300] is read from B
+        TokenMap tokenMap = stubTokenMap();
+        CqlIdentifier keyspace = CqlIdentifier.fromInternal(originKeyspaceName);
+        Token end = mock(Token.class);
+        Set<Node> nodeB = Collections.singleton(mock(Node.class));
+        when(tokenMap.parse("300")).thenReturn(end);
+        when(tokenMap.getReplicas(keyspace, end)).thenReturn(nodeB);
+
+        originSelectByPartitionRangeStatement.bind(BigInteger.valueOf(101), BigInteger.valueOf(300));
+
+        verify(boundStatement).setRoutingKeyspace(keyspace);
+        verify(boundStatement).setRoutingToken(end);
+        // The driver sends the query to a replica of the split, which reads it without another hop
+        assertEquals(nodeB, tokenMap.getReplicas(keyspace, end));
+    }
+
+    @Test
+    public void bind_withoutTokenMap_leavesRoutingToTheDriver() {
+        originSelectByPartitionRangeStatement.bind(BigInteger.valueOf(101), BigInteger.valueOf(300));
+
+        verify(boundStatement, never()).setRoutingToken(any(Token.class));
+    }
+
+    @Test
+    public void bind_withUnparseableToken_leavesRoutingToTheDriver() {
+        TokenMap tokenMap = stubTokenMap();
+        when(tokenMap.parse(anyString())).thenThrow(new IllegalArgumentException("Invalid token"));
+
+        originSelectByPartitionRangeStatement.bind(BigInteger.valueOf(101), BigInteger.valueOf(300));
+
+        verify(boundStatement, never()).setRoutingToken(any(Token.class));
+    }
 }
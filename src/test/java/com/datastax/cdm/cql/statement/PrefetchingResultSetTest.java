@@ -0,0 +1,107 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.cql.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+public class PrefetchingResultSetTest {
+
+    private final Row row1 = mock(Row.class);
+    private final Row row2 = mock(Row.class);
+    private final Row row3 = mock(Row.class);
+
+    private AsyncResultSet page(int responseSize, Row... rows) {
+        AsyncResultSet page = mock(AsyncResultSet.class);
+        ExecutionInfo info = mock(ExecutionInfo.class);
+        when(info.getResponseSizeInBytes()).thenReturn(responseSize);
+        when(page.getExecutionInfo()).thenReturn(info);
+        when(page.currentPage()).thenReturn(Arrays.asList(rows));
+        return page;
+    }
+
+    private static void chain(AsyncResultSet page, AsyncResultSet next) {
+        when(page.hasMorePages()).thenReturn(true);
+        when(page.fetchNextPage()).thenReturn(CompletableFuture.completedFuture(next));
+    }
+
+    @Test
+    public void requestsPagesAheadOfTheReader() {
+        AsyncResultSet first = page(100, row1);
+        AsyncResultSet second = page(100, row2);
+        AsyncResultSet third = page(100, row3);
+        chain(first, second);
+        chain(second, third);
+
+        PrefetchingResultSet resultSet = new PrefetchingResultSet(CompletableFuture.completedFuture(first), 2, 0);
+
+        // Up to two pages are waiting before any row is read
+        verify(first).fetchNextPage();
+        verify(second, never()).fetchNextPage();
+
+        Iterator<Row> rows = resultSet.iterator();
+        assertSame(row1, rows.next());
+        verify(second).fetchNextPage();
+
+        List<Row> rest = new ArrayList<>();
+        rows.forEachRemaining(rest::add);
+        assertEquals(Arrays.asList(row2, row3), rest);
+        assertTrue(resultSet.isFullyFetched());
+        assertEquals(3, resultSet.getExecutionInfos().size());
+    }
+
+    @Test
+    public void stopsPrefetchingAtTheMemoryBound() {
+        AsyncResultSet first = page(1000, row1);
+        AsyncResultSet second = page(1000, row2);
+        chain(first, second);
+
+        PrefetchingResultSet resultSet = new PrefetchingResultSet(CompletableFuture.completedFuture(first), 4, 500);
+
+        verify(first, never()).fetchNextPage();
+        List<Row> rows = resultSet.all();
+        assertEquals(Arrays.asList(row1, row2), rows);
+        verify(first).fetchNextPage();
+    }
+
+    @Test
+    public void failedPageIsThrownToTheReader() {
+        AsyncResultSet first = page(100, row1);
+        DriverTimeoutException timeout = new DriverTimeoutException("Query timed out");
+        CompletableFuture<AsyncResultSet> failed = new CompletableFuture<>();
+        failed.completeExceptionally(timeout);
+        when(first.hasMorePages()).thenReturn(true);
+        when(first.fetchNextPage()).thenReturn(failed);
+
+        Iterator<Row> rows = new PrefetchingResultSet(CompletableFuture.completedFuture(first), 2, 0).iterator();
+
+        assertSame(row1, rows.next());
+        assertSame(timeout, assertThrows(DriverTimeoutException.class, rows::hasNext));
+    }
+}
@@ -86,10 +86,11 @@ public class JobCounterTest {
     public void printMetricsMigrate() {
         jobCounter = new JobCounter(JobType.MIGRATE);
 
-        String expected = "Read: 10; Write: 7; Skipped: 1; Error: 2; Partitions Passed: 3; Partitions Failed: 2";
+        String expected = "Read: 10; Write: 7; Skipped: 1; Error: 2; Retries: 4; Partitions Passed: 3; Partitions Failed: 2";
         jobCounter.increment(JobCounter.CounterType.READ, 10);
         jobCounter.increment(JobCounter.CounterType.WRITE, 7);
         jobCounter.increment(JobCounter.CounterType.ERROR, 2);
+        jobCounter.increment(JobCounter.CounterType.RETRIES, 4);
         jobCounter.increment(JobCounter.CounterType.SKIPPED, 1);
         jobCounter.increment(JobCounter.CounterType.UNFLUSHED, 3);
         jobCounter.increment(JobCounter.CounterType.PARTITIONS_PASSED, 3);
@@ -0,0 +1,252 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.job;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.job.IJobSessionFactory.JobType;
+
+public class SkewMonitorTest {
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final int ROWS_PER_MILLI = 1;
+
+    // Synthetic skewed table: 200 rows per token, 50 times as many in the hot range [700, 799]
+    private static int rowsAt(long token) {
+        return (token >= 700 && token < 800) ? 50 * 200 : 200;
+    }
+
+    /**
+     * Scan the range the way a slice does, checking after every token, and report its progress as the driver gets it.
+     */
+    private static RangeProgress scan(PartitionRange range) {
+        SkewMonitor monitor = new SkewMonitor(range.getCutOffMillis(), 0L);
+        long elapsedMillis = 0;
+        for (long token = range.getMin().longValue(); token <= range.getMax().longValue(); token++) {
+            if (monitor.isBehind(elapsedMillis * NANOS_PER_MILLI) && token > range.getMin().longValue()) {
+                PartitionRange remainder = new PartitionRange(BigInteger.valueOf(token), range.getMax(),
+                        JobType.MIGRATE);
+                remainder.setSlice(range.getSlice());
+                return new RangeProgress(range, token - range.getMin().longValue(), elapsedMillis, false,
+                        Collections.singletonList(remainder));
+            }
+            elapsedMillis += rowsAt(token) / ROWS_PER_MILLI;
+        }
+        return new RangeProgress(range, range.getMax().subtract(range.getMin()).longValue() + 1, elapsedMillis, false,
+                Collections.emptyList());
+    }
+
+    private static PartitionRange range(long min, long max) {
+        return new PartitionRange(BigInteger.valueOf(min), BigInteger.valueOf(max), JobType.MIGRATE);
+    }
+
+    /**
+     * Run a round of slices the way one Spark job does: each core takes the next slice as soon as it is free, and a
+     * running slice polls the executor's slice times before every token. Time is simulated, one event per token.
+     *
+     * @return the time in ms at which the last slice of the round completed
+     */
+    private static long runRound(List<PartitionRange> slices, int cores, int ratio, SkewMonitor.SliceTimes times,
+            List<RangeProgress> reported) {
+        Queue<PartitionRange> pending = new ArrayDeque<>(slices);
+        PartitionRange[] running = new PartitionRange[cores];
+        SkewMonitor[] monitors = new SkewMonitor[cores];
+        long[] next = new long[cores]; // Next token of the running slice
+        long[] started = new long[cores];
+        PriorityQueue<long[]> events = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (int core = 0; core < cores; core++) {
+            events.add(new long[] { 0L, core });
+        }
+        long end = 0;
+        while (!events.isEmpty()) {
+            long[] event = events.poll();
+            long now = event[0];
+            int core = (int) event[1];
+            PartitionRange range = running[core];
+            if (range == null) {
+                range = pending.poll();
+                if (range == null) {
+                    end = Math.max(end, now);
+                    continue;
+                }
+                running[core] = range;
+                // As in the job session, a slice with a negative cut-off is never cut off
+                monitors[core] = (range.getCutOffMillis() >= 0)
+                        ? new SkewMonitor(ratio, range.getCutOffMillis(), times, now * NANOS_PER_MILLI)
+                        : new SkewMonitor(0L, now * NANOS_PER_MILLI);
+                next[core] = range.getMin().longValue();
+                started[core] = now;
+            }
+            long token = next[core];
+            RangeProgress progress = null;
+            if (token > range.getMax().longValue()) {
+                progress = new RangeProgress(range, token - range.getMin().longValue(), now - started[core], false,
+                        Collections.emptyList());
+            } else if (token > range.getMin().longValue() && monitors[core].isBehind(now * NANOS_PER_MILLI)) {
+                PartitionRange remainder = new PartitionRange(BigInteger.valueOf(token), range.getMax(),
+                        JobType.MIGRATE);
+                remainder.setSlice(range.getSlice());
+                progress = new RangeProgress(range, token - range.getMin().longValue(), now - started[core], false,
+                        Collections.singletonList(remainder));
+            }
+            if (progress != null) {
+                times.add(progress);
+                reported.add(progress);
+                running[core] = null;
+                events.add(new long[] { now, core });
+            } else {
+                next[core] = token + 1;
+                events.add(new long[] { now + rowsAt(token) / ROWS_PER_MILLI, core });
+            }
+        }
+        return end;
+    }
+
+    // 64 slices of 50 tokens, the two hot slices first as they are the largest
+    private static List<PartitionRange> skewedSlices() {
+        List<PartitionRange> slices = new ArrayList<>();
+        slices.add(range(700, 749));
+        slices.add(range(750, 799));
+        for (long min = 0; min < 3200; min += 50) {
+            if (min < 700 || min >= 800) {
+                slices.add(range(min, min + 49));
+            }
+        }
+        return slices;
+    }
+
+    @Test
+    public void runningSlicesAreCutOffOnceTheOthersComplete() {
+        // Without range stealing, the round lasts as long as a hot slice: 500s, the others take 10s
+        assertEquals(500_000L,
+                runRound(skewedSlices(), 8, 0, new SkewMonitor.SliceTimes(), new ArrayList<RangeProgress>()));
+
+        // The hot slices start before any slice has completed, with no cut-off from the driver
+        List<RangeProgress> reported = new ArrayList<>();
+        SkewMonitor.SliceTimes times = new SkewMonitor.SliceTimes();
+        long firstRound = runRound(skewedSlices(), 8, 3, times, reported);
+
+        assertEquals(10_000L, times.getMedianMillis());
+        List<PartitionRange> remainders = new ArrayList<>();
+        for (RangeProgress progress : reported) {
+            assertEquals(progress.getMin().longValue() >= 700 && progress.getMax().longValue() < 800,
+                    progress.isCut(), progress.toString());
+            remainders.addAll(progress.getRemainders());
+        }
+        assertEquals(2, remainders.size());
+        assertTrue(firstRound <= 100_000L, "first round took " + firstRound);
+
+        // The next round spreads the rest of the hot slices over all cores and runs to completion
+        List<PartitionRange> pieces = SplitPartitions.splitRemainders(remainders, 8, JobType.MIGRATE);
+        for (PartitionRange piece : pieces) {
+            piece.setCutOffMillis(-1L);
+        }
+        long secondRound = runRound(pieces, 8, 3, times, reported);
+        assertTrue(firstRound + secondRound < 250_000L, "rounds took " + firstRound + " + " + secondRound);
+        assertEquals(2, SkewMonitor.cutOffSliceCounts(reported, JobType.MIGRATE)
+                .getCount(JobCounter.CounterType.PARTITIONS_PASSED));
+    }
+
+    @Test
+    public void hotRangeIsCutOffAfterRatioTimesTheMedian() {
+        List<RangeProgress> reported = new ArrayList<>();
+        for (long min = 0; min < 700; min += 100) {
+            PartitionRange slice = range(min, min + 99);
+            slice.setCutOffMillis(SkewMonitor.cutOffMillis(reported, 3));
+            reported.add(scan(slice));
+            assertFalse(reported.get(reported.size() - 1).isCut());
+        }
+        assertEquals(20_000L, SkewMonitor.medianMillis(reported));
+
+        // The hot slice would run 1000s; it is cut once it ran over 3 x 20s
+        PartitionRange hot = range(700, 799);
+        hot.setCutOffMillis(SkewMonitor.cutOffMillis(reported, 3));
+        assertEquals(60_000L, hot.getCutOffMillis());
+        RangeProgress hotProgress = scan(hot);
+        assertTrue(hotProgress.isCut());
+        PartitionRange remainder = hotProgress.getRemainders().get(0);
+        assertEquals(BigInteger.valueOf(707), remainder.getMin());
+        assertEquals(BigInteger.valueOf(799), remainder.getMax());
+        reported.add(hotProgress);
+
+        // Split among idle cores, the rest of the hot range takes little more than the median
+        List<PartitionRange> pieces = SplitPartitions.splitRemainders(Collections.singletonList(remainder), 16,
+                JobType.MIGRATE);
+        assertEquals(16, pieces.size());
+        for (PartitionRange piece : pieces) {
+            assertTrue(piece.isLeftOver());
+            assertEquals(hot.getSlice(), piece.getSlice());
+            RangeProgress pieceProgress = scan(piece);
+            assertTrue(pieceProgress.getElapsedMillis() <= 60_000L, pieceProgress.toString());
+            reported.add(pieceProgress);
+        }
+        // The smaller left-over slices do not lower the median
+        assertEquals(20_000L, SkewMonitor.medianMillis(reported));
+    }
+
+    @Test
+    public void noSliceIsBehindWithoutEnoughCompletedSlices() {
+        List<RangeProgress> reported = new ArrayList<>();
+        for (int i = 1; i < SkewMonitor.MIN_SAMPLES; i++) {
+            reported.add(new RangeProgress(range(i * 10, i * 10 + 9), 10, 1_000L, false, Collections.emptyList()));
+        }
+        // Failed slices do not count
+        reported.add(new RangeProgress(range(100, 109), 10, 1_000L, true, Collections.emptyList()));
+        assertEquals(-1L, SkewMonitor.medianMillis(reported));
+        assertEquals(0L, SkewMonitor.cutOffMillis(reported, 2));
+        assertFalse(new SkewMonitor(0L, 0L).isBehind(3_600_000L * NANOS_PER_MILLI));
+
+        reported.add(new RangeProgress(range(200, 209), 10, 1_000L, false, Collections.emptyList()));
+        // Short slices are never cut, whatever the median
+        long cutOffMillis = SkewMonitor.cutOffMillis(reported, 2);
+        assertEquals(SkewMonitor.MIN_RUNTIME_MILLIS, cutOffMillis);
+        assertTrue(new SkewMonitor(cutOffMillis, 0L).isBehind(3_600_000L * NANOS_PER_MILLI));
+        assertFalse(new SkewMonitor(cutOffMillis, 0L).isBehind((cutOffMillis - 1) * NANOS_PER_MILLI));
+    }
+
+    @Test
+    public void cutOffSliceIsCountedOnce() {
+        PartitionRange passed = range(0, 99);
+        PartitionRange failed = range(100, 199);
+        List<RangeProgress> reported = new ArrayList<>();
+        for (PartitionRange slice : new PartitionRange[] { passed, failed }) {
+            PartitionRange remainder = range(slice.getMin().longValue() + 50, slice.getMax().longValue());
+            remainder.setSlice(slice.getSlice());
+            reported.add(new RangeProgress(slice, 50, 60_000L, false, Collections.singletonList(remainder)));
+            for (PartitionRange piece : SplitPartitions.splitRemainders(Collections.singletonList(remainder), 4,
+                    JobType.MIGRATE)) {
+                reported.add(new RangeProgress(piece, 10, 1_000L, slice == failed && piece.getMin().longValue() > 180,
+                        Collections.emptyList()));
+            }
+        }
+        // A job slice that was not cut counts itself
+        reported.add(new RangeProgress(range(200, 299), 100, 1_000L, false, Collections.emptyList()));
+
+        JobCounter counts = SkewMonitor.cutOffSliceCounts(reported, JobType.MIGRATE);
+        assertEquals(1L, counts.getCount(JobCounter.CounterType.PARTITIONS_PASSED));
+        assertEquals(1L, counts.getCount(JobCounter.CounterType.PARTITIONS_FAILED));
+    }
+}
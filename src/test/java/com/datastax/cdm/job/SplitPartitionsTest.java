@@ -15,15 +15,42 @@
 package com.datastax.cdm.job;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import com.datastax.cdm.job.IJobSessionFactory.JobType;
 import com.datastax.cdm.properties.PropertyHelper;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.EndPoint;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.Token;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
 
 public class SplitPartitionsTest {
     @AfterEach
@@ -48,4 +75,167 @@ public class SplitPartitionsTest {
         assertEquals(8, partitions.size());
     }
 
+    @Test
+    void getReplicaAlignedSubPartitionsTest() {
+        TokenMap tokenMap = mock(TokenMap.class);
+        CqlIdentifier keyspace = CqlIdentifier.fromCql("ks");
+        Token minToken = token(tokenMap, Long.MIN_VALUE);
+        Token low = token(tokenMap, -100);
+        Token high = token(tokenMap, 100);
+        TokenRange inner = range(low, high);
+        TokenRange wrapping = range(high, low);
+        List<TokenRange> unwrapped = Arrays.asList(range(high, minToken), range(minToken, low));
+        when(wrapping.unwrap()).thenReturn(unwrapped);
+        when(tokenMap.getTokenRanges()).thenReturn(new LinkedHashSet<>(Arrays.asList(inner, wrapping)));
+        // Nodes are stubbed before the stubbing that returns them starts
+        Node innerReplica = node("10.0.0.1");
+        Node wrappingReplica = node("10.0.0.2");
+        when(tokenMap.getReplicas(keyspace, inner)).thenReturn(Collections.singleton(innerReplica));
+        when(tokenMap.getReplicas(keyspace, wrapping)).thenReturn(Collections.singleton(wrappingReplica));
+
+        List<PartitionRange> partitions = SplitPartitions.getReplicaAlignedSubPartitions(tokenMap, keyspace, 2,
+                BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE), 100, JobType.MIGRATE);
+
+        BigInteger innerMin = BigInteger.valueOf(-99);
+        BigInteger innerMax = BigInteger.valueOf(100);
+        for (PartitionRange partition : partitions) {
+            boolean inInner = partition.getMin().compareTo(innerMin) >= 0
+                    && partition.getMax().compareTo(innerMax) <= 0;
+            boolean outsideInner = partition.getMax().compareTo(innerMin) < 0
+                    || partition.getMin().compareTo(innerMax) > 0;
+            assertTrue(inInner || outsideInner, "Partition crosses a replica boundary: " + partition);
+            assertEquals(Collections.singletonList(inInner ? "10.0.0.1" : "10.0.0.2"),
+                    partition.getPreferredLocations());
+        }
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE + 1),
+                partitions.stream().map(PartitionRange::getMin).min(Comparator.naturalOrder()).get());
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE),
+                partitions.stream().map(PartitionRange::getMax).max(Comparator.naturalOrder()).get());
+    }
+
+    private static Token token(TokenMap tokenMap, long value) {
+        Token token = mock(Token.class);
+        when(tokenMap.format(token)).thenReturn(Long.toString(value));
+        return token;
+    }
+
+    private static TokenRange range(Token start, Token end) {
+        TokenRange range = mock(TokenRange.class);
+        when(range.getStart()).thenReturn(start);
+        when(range.getEnd()).thenReturn(end);
+        when(range.unwrap()).thenReturn(Collections.singletonList(range));
+        return range;
+    }
+
+    private static Node node(String address) {
+        Node node = mock(Node.class);
+        EndPoint endPoint = mock(EndPoint.class);
+        when(endPoint.resolve()).thenReturn(new InetSocketAddress(address, 9042));
+        when(node.getEndPoint()).thenReturn(endPoint);
+        return node;
+    }
+
+    @Test
+    void getBalancedSubPartitionsTest() {
+        List<SplitPartitions.SizeEstimate> estimates = Arrays.asList(
+                new SplitPartitions.SizeEstimate(BigInteger.valueOf(1000), BigInteger.valueOf(1999), 60, 0,
+                        Collections.singletonList("10.0.0.2")),
+                new SplitPartitions.SizeEstimate(BigInteger.valueOf(2000), BigInteger.valueOf(2999), 40, 0,
+                        Collections.singletonList("10.0.0.2")),
+                new SplitPartitions.SizeEstimate(BigInteger.valueOf(0), BigInteger.valueOf(999), 800, 0,
+                        Collections.singletonList("10.0.0.1")));
+
+        List<PartitionRange> partitions = SplitPartitions.getBalancedSubPartitions(estimates, 5, 100,
+                JobType.MIGRATE);
+
+        // The dense range is cut in five, the two sparse ranges with the same replicas are joined and come last
+        assertEquals(6, partitions.size());
+        for (PartitionRange partition : partitions.subList(0, 5)) {
+            assertEquals(199, partition.getMax().subtract(partition.getMin()).intValue());
+            assertEquals(Collections.singletonList("10.0.0.1"), partition.getPreferredLocations());
+        }
+        assertEquals(BigInteger.valueOf(1000), partitions.get(5).getMin());
+        assertEquals(BigInteger.valueOf(2999), partitions.get(5).getMax());
+    }
+
+    @Test
+    void completeSizeEstimatesTest() {
+        List<SplitPartitions.SizeEstimate> estimates = new ArrayList<>();
+        // (900, 100] wraps around the ring [0, 999]
+        SplitPartitions.addSizeEstimate(estimates, BigInteger.valueOf(900), BigInteger.valueOf(100), 200, 0,
+                Collections.emptyList(), BigInteger.ZERO, BigInteger.valueOf(999));
+        SplitPartitions.addSizeEstimate(estimates, BigInteger.valueOf(100), BigInteger.valueOf(500), 400, 0,
+                Collections.emptyList(), BigInteger.ZERO, BigInteger.valueOf(999));
+
+        List<SplitPartitions.SizeEstimate> complete = SplitPartitions.completeSizeEstimates(estimates, BigInteger.ZERO,
+                BigInteger.valueOf(999));
+
+        assertEquals(4, complete.size());
+        BigInteger next = BigInteger.ZERO;
+        for (SplitPartitions.SizeEstimate estimate : complete) {
+            assertEquals(next, estimate.getMin());
+            next = estimate.getMax().add(BigInteger.ONE);
+        }
+        assertEquals(BigInteger.valueOf(1000), next);
+        // The gap (500, 900] has no estimate and gets the average density of the rest
+        assertEquals(BigInteger.valueOf(501), complete.get(2).getMin());
+        assertEquals(400, complete.get(2).getPartitions(), 1);
+
+        assertTrue(SplitPartitions.completeSizeEstimates(Collections.emptyList(), BigInteger.ZERO,
+                BigInteger.valueOf(999)).isEmpty());
+    }
+
+    @Test
+    void splitRemaindersTest() {
+        List<String> hosts = Arrays.asList("10.0.0.1");
+        List<PartitionRange> remainders = Arrays.asList(
+                new PartitionRange(BigInteger.valueOf(250), BigInteger.valueOf(499), JobType.MIGRATE, hosts),
+                new PartitionRange(BigInteger.valueOf(900), BigInteger.valueOf(901), JobType.MIGRATE));
+
+        List<PartitionRange> pieces = SplitPartitions.splitRemainders(remainders, 4, JobType.MIGRATE);
+
+        // At most one piece per token
+        assertEquals(6, pieces.size());
+        BigInteger next = BigInteger.valueOf(250);
+        for (PartitionRange piece : pieces.subList(0, 4)) {
+            assertEquals(next, piece.getMin());
+            assertEquals(hosts, piece.getPreferredLocations());
+            assertEquals("250 to 499", piece.getSlice());
+            next = piece.getMax().add(BigInteger.ONE);
+        }
+        assertEquals(BigInteger.valueOf(500), next);
+        assertEquals(BigInteger.valueOf(900), pieces.get(4).getMin());
+        assertEquals(BigInteger.valueOf(901), pieces.get(5).getMax());
+    }
+
+    @Test
+    void sampleSizeEstimatesFallsBackOnUnreadableTokens() {
+        CqlSession session = mock(CqlSession.class);
+        Metadata metadata = mock(Metadata.class);
+        KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        TableMetadata table = mock(TableMetadata.class);
+        ColumnMetadata key = mock(ColumnMetadata.class);
+        when(session.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace(CqlIdentifier.fromCql("ks"))).thenReturn(Optional.of(keyspace));
+        when(metadata.getTokenMap()).thenReturn(Optional.empty());
+        when(keyspace.getTable(CqlIdentifier.fromCql("t"))).thenReturn(Optional.of(table));
+        when(table.getPartitionKey()).thenReturn(Collections.singletonList(key));
+        when(table.getKeyspace()).thenReturn(CqlIdentifier.fromCql("ks"));
+        when(table.getName()).thenReturn(CqlIdentifier.fromCql("t"));
+        when(key.getName()).thenReturn(CqlIdentifier.fromCql("id"));
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        BoundStatement bound = mock(BoundStatement.class);
+        when(session.prepare(anyString())).thenReturn(statement);
+        when(statement.bind(any(), any())).thenReturn(bound);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(session.execute(bound)).thenReturn(resultSet);
+        // A full window, whose last token is read back to extrapolate, but is not a number
+        Row row = mock(Row.class);
+        when(row.getObject(0)).thenReturn("not a token");
+        when(resultSet.all()).thenReturn(Collections.nCopies(SplitPartitions.SAMPLE_ROWS, row));
+
+        assertTrue(SplitPartitions.sampleSizeEstimates(session, "ks", "t", BigInteger.valueOf(Long.MIN_VALUE),
+                BigInteger.valueOf(Long.MAX_VALUE), 4).isEmpty());
+    }
 }
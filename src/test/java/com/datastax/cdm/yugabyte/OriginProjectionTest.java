@@ -0,0 +1,76 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+public class OriginProjectionTest {
+
+    private final IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+    private final List<String> originColumns = Arrays.asList("id", "ts", "Name", "payload", "notes", "attrs");
+    private final List<String> keyColumns = Arrays.asList("id", "ts");
+
+    @Test
+    public void unusedColumns_areTheOriginColumnsMissingFromTheTarget() {
+        List<String> targetColumns = Arrays.asList("id", "ts", "name");
+
+        assertEquals(Arrays.asList("payload", "notes", "attrs"),
+                OriginProjection.unusedColumns(originColumns, keyColumns, targetColumns, propertyHelper));
+    }
+
+    @Test
+    public void unusedColumns_keepsKeyAndFeatureColumns() {
+        when(propertyHelper.getString(KnownProperties.FILTER_COLUMN_NAME)).thenReturn("notes");
+        when(propertyHelper.getString(KnownProperties.EXPLODE_MAP_ORIGIN_COLUMN_NAME)).thenReturn("attrs");
+        when(propertyHelper.getString(KnownProperties.EXPLODE_MAP_TARGET_KEY_COLUMN_NAME)).thenReturn("attr_key");
+        when(propertyHelper.getString(KnownProperties.EXPLODE_MAP_TARGET_VALUE_COLUMN_NAME)).thenReturn("attr_value");
+        when(propertyHelper.getStringList(KnownProperties.CONSTANT_COLUMN_NAMES))
+                .thenReturn(Collections.singletonList("region"));
+        List<String> targetColumns = Arrays.asList("id", "attr_key", "attr_value", "region");
+
+        // The key column ts is read although the target does not have it
+        assertEquals(Arrays.asList("Name", "payload"),
+                OriginProjection.unusedColumns(originColumns, keyColumns, targetColumns, propertyHelper));
+    }
+
+    @Test
+    public void unusedColumns_prunesAlsoWhenATargetColumnHasNoOriginColumn() {
+        List<String> targetColumns = Arrays.asList("id", "ts", "full_name");
+
+        assertEquals(Arrays.asList("Name", "payload", "notes", "attrs"),
+                OriginProjection.unusedColumns(originColumns, keyColumns, targetColumns, propertyHelper));
+    }
+
+    @Test
+    public void unusedColumns_keepsRenamedColumns() {
+        when(propertyHelper.getStringList(KnownProperties.ORIGIN_COLUMN_NAMES_TO_TARGET))
+                .thenReturn(Collections.singletonList("notes:remarks"));
+        List<String> targetColumns = Arrays.asList("id", "ts", "remarks");
+
+        assertEquals(Arrays.asList("Name", "payload", "attrs"),
+                OriginProjection.unusedColumns(originColumns, keyColumns, targetColumns, propertyHelper));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+public class YugabyteIndexManagerTest {
+
+    private static final String IDX_DDL = "CREATE INDEX idx_name ON public.t USING lsm (name HASH)";
+
+    @TempDir
+    Path tempDir;
+
+    private Path stateFile;
+    private YugabyteIndexManager manager;
+    private Connection connection;
+    private Statement statement;
+    private ResultSet catalog;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        stateFile = tempDir.resolve("indexes.state");
+        IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE))
+                .thenReturn(stateFile.toString());
+        manager = new YugabyteIndexManager(propertyHelper, false);
+
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        catalog = mock(ResultSet.class);
+        PreparedStatement listIndexes = mock(PreparedStatement.class);
+        when(listIndexes.executeQuery()).thenReturn(catalog);
+        when(connection.prepareStatement(YugabyteIndexManager.LIST_INDEXES_SQL)).thenReturn(listIndexes);
+    }
+
+    private void catalogHas(boolean valid) throws SQLException {
+        when(catalog.next()).thenReturn(true, false);
+        when(catalog.getString(1)).thenReturn("idx_name");
+        when(catalog.getBoolean(2)).thenReturn(valid);
+        when(catalog.getString(3)).thenReturn(IDX_DDL);
+    }
+
+    @Test
+    public void defer_savesDdlThenDrops_andRebuildRestoresIt() throws SQLException {
+        catalogHas(true);
+
+        assertEquals(1, manager.deferIndexes(connection, "public", "t"));
+
+        verify(statement).execute("DROP INDEX IF EXISTS \"public\".\"idx_name\"");
+        assertEquals(Collections.singletonMap("idx_name", IDX_DDL), YugabyteIndexManager.readState(stateFile));
+
+        when(catalog.next()).thenReturn(false); // Dropped
+        assertEquals(1, manager.rebuildIndexes(connection, "public", "t"));
+
+        verify(statement).execute("CREATE INDEX NONCONCURRENTLY idx_name ON public.t USING lsm (name HASH)");
+        assertFalse(Files.exists(stateFile));
+    }
+
+    @Test
+    public void defer_afterCrash_keepsSavedDdl() throws SQLException {
+        // The earlier run dropped the index and died before rebuilding it
+        YugabyteIndexManager.writeState(stateFile, Collections.singletonMap("idx_name", IDX_DDL));
+        when(catalog.next()).thenReturn(false);
+
+        assertEquals(1, manager.deferIndexes(connection, "public", "t"));
+        verify(statement, never()).execute(anyString());
+
+        assertEquals(1, manager.rebuildIndexes(connection, "public", "t"));
+        verify(statement).execute(startsWith("CREATE INDEX NONCONCURRENTLY idx_name"));
+    }
+
+    @Test
+    public void rebuild_replacesInvalidIndexAndSkipsValidOnes() throws SQLException {
+        Map<String, String> state = new LinkedHashMap<>();
+        state.put("idx_name", IDX_DDL);
+        YugabyteIndexManager.writeState(stateFile, state);
+        catalogHas(false);
+
+        assertEquals(1, manager.rebuildIndexes(connection, "public", "t"));
+
+        InOrder inOrder = inOrder(statement);
+        inOrder.verify(statement).execute("DROP INDEX IF EXISTS \"public\".\"idx_name\"");
+        inOrder.verify(statement).execute(startsWith("CREATE INDEX NONCONCURRENTLY"));
+    }
+
+    @Test
+    public void rebuild_failureKeepsStateForTheNextRun() throws SQLException {
+        YugabyteIndexManager.writeState(stateFile, Collections.singletonMap("idx_name", IDX_DDL));
+        when(catalog.next()).thenReturn(false);
+        when(statement.execute(anyString())).thenThrow(new SQLException("could not create unique index", "23505"));
+
+        assertThrows(SQLException.class, () -> manager.rebuildIndexes(connection, "public", "t"));
+
+        assertEquals(Collections.singletonMap("idx_name", IDX_DDL), YugabyteIndexManager.readState(stateFile));
+    }
+
+    @Test
+    public void listIndexes_leavesUniqueAndConstraintIndexesInPlace() {
+        assertTrue(YugabyteIndexManager.LIST_INDEXES_SQL.contains("NOT x.indisunique"));
+        assertTrue(YugabyteIndexManager.LIST_INDEXES_SQL.contains("k.conindid = x.indexrelid"));
+    }
+
+    @Test
+    public void toRebuildDdl_setsTheBuildMode() {
+        assertEquals("CREATE UNIQUE INDEX CONCURRENTLY u ON public.t USING lsm (a HASH)",
+                YugabyteIndexManager.toRebuildDdl("CREATE UNIQUE INDEX u ON public.t USING lsm (a HASH)", true));
+        assertEquals("CREATE INDEX NONCONCURRENTLY i ON public.t (a)",
+                YugabyteIndexManager.toRebuildDdl("CREATE INDEX i ON public.t (a)", false));
+        // Already explicit
+        assertEquals("CREATE INDEX CONCURRENTLY i ON public.t (a)",
+                YugabyteIndexManager.toRebuildDdl("CREATE INDEX CONCURRENTLY i ON public.t (a)", false));
+    }
+
+    @Test
+    public void fromProperties_requiresAStateFile() {
+        IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES)).thenReturn(true);
+        assertThrows(IllegalArgumentException.class, () -> YugabyteIndexManager.fromProperties(propertyHelper));
+
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES_STATE_FILE))
+                .thenReturn(stateFile.toString());
+        assertNotNull(YugabyteIndexManager.fromProperties(propertyHelper));
+
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_DEFER_INDEXES)).thenReturn(false);
+        assertNull(YugabyteIndexManager.fromProperties(propertyHelper));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+
+public class YugabytePoolSizerTest {
+
+    @Test
+    public void poolSize_followsTheWritersOfTheExecutor() {
+        // One connection per task thread, plus one for metadata
+        assertEquals(9, YugabytePoolSizer.poolSize(8, 0, 1, 1, 10, 0));
+        // One per writer worker of each task thread
+        assertEquals(33, YugabytePoolSizer.poolSize(8, 4, 1, 1, 10, 0));
+        // COPY writers also hold their upsert fallback
+        assertEquals(65, YugabytePoolSizer.poolSize(8, 4, 2, 1, 10, 0));
+    }
+
+    @Test
+    public void poolSize_spreadsEvenlyAcrossTservers() {
+        assertEquals(12, YugabytePoolSizer.poolSize(8, 0, 1, 4, 1, 0));
+        assertEquals(9, YugabytePoolSizer.poolSize(8, 0, 1, 9, 1, 0));
+    }
+
+    @Test
+    public void poolSize_isCappedByTheExecutorsShareOfTheBudget() {
+        assertEquals(32, YugabytePoolSizer.poolSize(8, 4, 1, 1, 10, 320));
+        assertEquals(9, YugabytePoolSizer.poolSize(8, 0, 1, 1, 10, 1000));
+        // The budget may cut the tserver rounding, not the connections the writers hold
+        assertEquals(10, YugabytePoolSizer.poolSize(8, 0, 1, 4, 1, 10));
+    }
+
+    @Test
+    public void poolSize_refusesABudgetBelowTheHeldConnections() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> YugabytePoolSizer.poolSize(8, 4, 1, 1, 10, 200));
+        assertTrue(e.getMessage().contains("at least 320"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> YugabytePoolSizer.poolSize(8, 0, 1, 1, 100, 10));
+    }
+
+    @Test
+    public void localThreads_followsTheLocalMaster() {
+        assertEquals(1, YugabytePoolSizer.localThreads("local", 16));
+        assertEquals(4, YugabytePoolSizer.localThreads("local[4]", 16));
+        assertEquals(4, YugabytePoolSizer.localThreads("local[4,2]", 16));
+        assertEquals(16, YugabytePoolSizer.localThreads("local[*]", 16));
+        assertEquals(16, YugabytePoolSizer.localThreads("spark://master:7077", 16));
+    }
+
+    @Test
+    public void countTservers_fallsBackToOneWithoutYbServers() throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        ResultSet rs = mock(ResultSet.class);
+        when(statement.executeQuery(YugabytePoolSizer.COUNT_TSERVERS_SQL)).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(6);
+
+        assertEquals(6, YugabytePoolSizer.countTservers(connection));
+
+        when(statement.executeQuery(YugabytePoolSizer.COUNT_TSERVERS_SQL))
+                .thenThrow(new SQLException("function yb_servers() does not exist", "42883"));
+        assertEquals(1, YugabytePoolSizer.countTservers(connection));
+    }
+
+    @Test
+    public void warmUp_opensConnectionsAndReturnsThem() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection).thenThrow(new SQLException("too many clients"))
+                .thenReturn(connection);
+
+        assertEquals(2, YugabytePoolSizer.warmUp(dataSource, 3));
+
+        verify(dataSource, times(3)).getConnection();
+        verify(connection, times(2)).close();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+public class YugabyteSessionRegistryTest {
+
+    private Function<IPropertyHelper, YugabyteSession> originalFactory;
+    private List<YugabyteSession> created;
+
+    @BeforeEach
+    public void setup() {
+        originalFactory = YugabyteSessionRegistry.sessionFactory;
+        created = new ArrayList<>();
+        YugabyteSessionRegistry.sessionFactory = propertyHelper -> {
+            YugabyteSession session = mock(YugabyteSession.class);
+            synchronized (created) {
+                created.add(session);
+            }
+            return session;
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        YugabyteSessionRegistry.closeAll();
+        YugabyteSessionRegistry.sessionFactory = originalFactory;
+    }
+
+    private IPropertyHelper properties(String host, long idleTimeoutMs) {
+        IPropertyHelper propertyHelper = properties(host, "ks.t");
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_SESSION_IDLE_TIMEOUT_MS))
+                .thenReturn(idleTimeoutMs);
+        return propertyHelper;
+    }
+
+    private IPropertyHelper properties(String host, String targetTable) {
+        IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+        when(propertyHelper.getString(KnownProperties.TARGET_HOST)).thenReturn(host);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_PORT)).thenReturn(5433L);
+        when(propertyHelper.getString(KnownProperties.TARGET_DATABASE)).thenReturn("yugabyte");
+        when(propertyHelper.getString(KnownProperties.TARGET_USERNAME)).thenReturn("yugabyte");
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_SCHEMA)).thenReturn("public");
+        when(propertyHelper.getString(KnownProperties.TARGET_KEYSPACE_TABLE)).thenReturn(targetTable);
+        when(propertyHelper.getString(KnownProperties.ORIGIN_KEYSPACE_TABLE)).thenReturn("ks.origin_table");
+        return propertyHelper;
+    }
+
+    @Test
+    public void sameConnectionPropertiesShareKey() {
+        assertEquals(YugabyteSessionRegistry.getKey(properties("host1", "ks.t")),
+                YugabyteSessionRegistry.getKey(properties("host1", "ks.t")));
+    }
+
+    @Test
+    public void differentHostGetsDifferentKey() {
+        assertNotEquals(YugabyteSessionRegistry.getKey(properties("host1", "ks.t")),
+                YugabyteSessionRegistry.getKey(properties("host2", "ks.t")));
+    }
+
+    @Test
+    public void targetTableFallsBackToOrigin() {
+        assertEquals(YugabyteSessionRegistry.getKey(properties("host1", "ks.origin_table")),
+                YugabyteSessionRegistry.getKey(properties("host1", null)));
+    }
+
+    @Test
+    public void everySessionPropertyIsPartOfTheKey() {
+        String key = YugabyteSessionRegistry.getKey(properties("host1", "ks.t"));
+        for (String property : new String[] { KnownProperties.TARGET_PASSWORD,
+                KnownProperties.TARGET_YUGABYTE_POOL_MAX_SIZE, KnownProperties.TARGET_YUGABYTE_BATCH_SIZE,
+                KnownProperties.TARGET_YUGABYTE_WRITE_MODE,
+                KnownProperties.TARGET_YUGABYTE_NON_TRANSACTIONAL_WRITES }) {
+            IPropertyHelper changed = properties("host1", "ks.t");
+            when(changed.getAsString(property)).thenReturn("changed");
+            assertNotEquals(key, YugabyteSessionRegistry.getKey(changed), property);
+        }
+    }
+
+    @Test
+    public void keyDoesNotShowThePassword() {
+        IPropertyHelper propertyHelper = properties("host1", "ks.t");
+        when(propertyHelper.getAsString(KnownProperties.TARGET_PASSWORD)).thenReturn("secret");
+
+        assertFalse(YugabyteSessionRegistry.getKey(propertyHelper).contains("secret"));
+    }
+
+    @Test
+    public void releaseOfNullIsIgnored() {
+        YugabyteSessionRegistry.release(null);
+        assertEquals(0, YugabyteSessionRegistry.size());
+    }
+
+    @Test
+    public void sameConnectionPropertiesShareOneSession() {
+        YugabyteSession first = YugabyteSessionRegistry.acquire(properties("host1", 0L));
+        YugabyteSession second = YugabyteSessionRegistry.acquire(properties("host1", 0L));
+
+        assertSame(first, second);
+        assertEquals(1, created.size());
+        assertEquals(1, YugabyteSessionRegistry.size());
+    }
+
+    @Test
+    public void differentConnectionPropertiesGetDifferentSessions() {
+        YugabyteSession first = YugabyteSessionRegistry.acquire(properties("host1", 0L));
+        YugabyteSession second = YugabyteSessionRegistry.acquire(properties("host2", 0L));
+
+        assertNotSame(first, second);
+        assertEquals(2, YugabyteSessionRegistry.size());
+    }
+
+    @Test
+    public void concurrentAcquiresCreateOneSession() throws Exception {
+        IPropertyHelper propertyHelper = properties("host1", 0L);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<YugabyteSession>> acquires = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                acquires.add(() -> YugabyteSessionRegistry.acquire(propertyHelper));
+            }
+            for (Future<YugabyteSession> session : executor.invokeAll(acquires)) {
+                assertSame(created.get(0), session.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, created.size());
+    }
+
+    @Test
+    public void sessionStaysOpenWhileReferenced() {
+        YugabyteSession session = YugabyteSessionRegistry.acquire(properties("host1", 0L));
+        YugabyteSessionRegistry.acquire(properties("host1", 0L));
+
+        YugabyteSessionRegistry.release(session);
+        YugabyteSessionRegistry.release(session);
+
+        // Without an idle timeout the released session is kept until closeAll()
+        verify(session, never()).close();
+        assertEquals(1, YugabyteSessionRegistry.size());
+
+        YugabyteSessionRegistry.closeAll();
+        verify(session, times(1)).close();
+        assertEquals(0, YugabyteSessionRegistry.size());
+    }
+
+    @Test
+    public void idleSessionIsReaped() {
+        YugabyteSession session = YugabyteSessionRegistry.acquire(properties("host1", 50L));
+        YugabyteSessionRegistry.release(session);
+
+        verify(session, timeout(5000)).close();
+        assertEquals(0, YugabyteSessionRegistry.size());
+
+        // The next acquire builds a new session
+        assertNotSame(session, YugabyteSessionRegistry.acquire(properties("host1", 50L)));
+    }
+
+    @Test
+    public void reacquiredSessionIsNotReaped() throws InterruptedException {
+        YugabyteSession session = YugabyteSessionRegistry.acquire(properties("host1", 50L));
+        YugabyteSessionRegistry.release(session);
+        assertSame(session, YugabyteSessionRegistry.acquire(properties("host1", 50L)));
+
+        Thread.sleep(300);
+        verify(session, never()).close();
+        assertEquals(1, YugabyteSessionRegistry.size());
+    }
+
+    @Test
+    public void releaseOfUnmanagedSessionClosesIt() {
+        YugabyteSession session = mock(YugabyteSession.class);
+        YugabyteSessionRegistry.release(session);
+
+        verify(session).close();
+        assertEquals(0, YugabyteSessionRegistry.size());
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.data.EnhancedPK;
+import com.datastax.cdm.data.Record;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+public class YugabyteWritePipelineTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Record record(int bytes) {
+        Row row = mock(Row.class);
+        when(row.size()).thenReturn(1);
+        when(row.getBytesUnsafe(0)).thenReturn(ByteBuffer.allocate(bytes));
+        return new Record(mock(EnhancedPK.class), row, null);
+    }
+
+    @Test
+    public void allRecordsAreWrittenInBatches() {
+        AtomicInteger batches = new AtomicInteger();
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 3, 10, 1000, Long.MAX_VALUE, batch -> {
+            batches.incrementAndGet();
+            return batch.size();
+        });
+        pipeline.start();
+        for (int i = 0; i < 95; i++) {
+            pipeline.submit(record(10));
+        }
+        pipeline.finish();
+
+        assertEquals(95, pipeline.getWritten());
+        assertEquals(0, pipeline.getErrors());
+        assertEquals(10, batches.get());
+        assertEquals(0, pipeline.getBudget().getRows());
+        assertEquals(0, pipeline.getBudget().getBytes());
+    }
+
+    @Test
+    public void severalReadersShareThePipeline() throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 2, 10, 40, Long.MAX_VALUE, batch -> {
+            batchSizes.add(batch.size());
+            return batch.size();
+        });
+        List<List<Record>> readerRecords = new ArrayList<>();
+        for (int reader = 0; reader < 4; reader++) {
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                records.add(record(10));
+            }
+            readerRecords.add(records);
+        }
+        pipeline.start();
+        List<Future<?>> readers = new ArrayList<>();
+        for (List<Record> records : readerRecords) {
+            readers.add(executor.submit(() -> records.forEach(pipeline::submit)));
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        pipeline.finish();
+
+        assertEquals(1000, pipeline.getWritten());
+        assertEquals(100, batchSizes.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size == 10));
+    }
+
+    @Test
+    public void inFlightRowsAreCapped() {
+        AtomicLong maxSeen = new AtomicLong();
+        YugabyteWritePipeline[] holder = new YugabyteWritePipeline[1];
+        holder[0] = new YugabyteWritePipeline(executor, 4, 5, 10, Long.MAX_VALUE, batch -> {
+            maxSeen.accumulateAndGet(holder[0].getBudget().getRows(), Math::max);
+            Thread.sleep(2);
+            return batch.size();
+        });
+        holder[0].start();
+        for (int i = 0; i < 200; i++) {
+            holder[0].submit(record(10));
+        }
+        holder[0].finish();
+
+        assertEquals(200, holder[0].getWritten());
+        assertTrue(maxSeen.get() <= 10, "in-flight rows exceeded the cap: " + maxSeen.get());
+    }
+
+    @Test
+    public void inFlightBytesAreCapped() {
+        long rowBytes = 100 + YugabyteWritePipeline.ROW_OVERHEAD_BYTES;
+        AtomicLong maxSeen = new AtomicLong();
+        YugabyteWritePipeline[] holder = new YugabyteWritePipeline[1];
+        holder[0] = new YugabyteWritePipeline(executor, 4, 2, 1000, 4 * rowBytes, batch -> {
+            maxSeen.accumulateAndGet(holder[0].getBudget().getBytes(), Math::max);
+            Thread.sleep(2);
+            return batch.size();
+        });
+        holder[0].start();
+        for (int i = 0; i < 50; i++) {
+            holder[0].submit(record(100));
+        }
+        holder[0].finish();
+
+        assertEquals(50, holder[0].getWritten());
+        assertTrue(maxSeen.get() <= 4 * rowBytes, "in-flight bytes exceeded the cap: " + maxSeen.get());
+    }
+
+    @Test
+    public void partiallyWrittenBatchesAreCountedAsErrors() {
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 2, 4, 100, Long.MAX_VALUE,
+                batch -> batch.size() - 1);
+        pipeline.start();
+        for (int i = 0; i < 8; i++) {
+            pipeline.submit(record(1));
+        }
+        pipeline.finish();
+
+        assertEquals(6, pipeline.getWritten());
+        assertEquals(2, pipeline.getErrors());
+    }
+
+    @Test
+    public void groupedBatchesOnlyHoldOneGroup() {
+        Map<Record, Integer> groups = new ConcurrentHashMap<>();
+        AtomicInteger mixedBatches = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 2, 5, 1000, Long.MAX_VALUE, batch -> {
+            batches.incrementAndGet();
+            if (batch.stream().map(groups::get).distinct().count() > 1) {
+                mixedBatches.incrementAndGet();
+            }
+            return batch.size();
+        }, groups::get, 1000);
+        pipeline.start();
+        for (int i = 0; i < 40; i++) {
+            Record r = record(10);
+            groups.put(r, i % 4);
+            pipeline.submit(r);
+        }
+        pipeline.finish();
+
+        assertEquals(40, pipeline.getWritten());
+        assertEquals(8, batches.get());
+        assertEquals(0, mixedBatches.get());
+    }
+
+    @Test
+    public void openGroupedRowsAreCapped() {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger index = new AtomicInteger();
+        Map<Record, Integer> groups = new ConcurrentHashMap<>();
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 1, 100, 1000, Long.MAX_VALUE, batch -> {
+            batchSizes.add(batch.size());
+            return batch.size();
+        }, r -> groups.computeIfAbsent(r, k -> index.getAndIncrement() % 10), 100);
+        pipeline.start();
+        for (int i = 0; i < 101; i++) {
+            pipeline.submit(record(1));
+        }
+        pipeline.finish();
+
+        // No group reached 100 rows: the 101st open row hands over the largest open batch, the rest go on finish
+        assertEquals(101, pipeline.getWritten());
+        assertEquals(10, batchSizes.size());
+        assertEquals(11, batchSizes.get(0));
+    }
+
+    @Test
+    public void openGroupedRowsCountAgainstTheBudget() {
+        AtomicLong maxSeen = new AtomicLong();
+        AtomicInteger index = new AtomicInteger();
+        Map<Record, Integer> groups = new ConcurrentHashMap<>();
+        YugabyteWritePipeline[] holder = new YugabyteWritePipeline[1];
+        holder[0] = new YugabyteWritePipeline(executor, 1, 100, 20, Long.MAX_VALUE, batch -> {
+            maxSeen.accumulateAndGet(holder[0].getBudget().getRows(), Math::max);
+            return batch.size();
+        }, r -> groups.computeIfAbsent(r, k -> index.getAndIncrement() % 10), 1000);
+        holder[0].start();
+        for (int i = 0; i < 200; i++) {
+            holder[0].submit(record(1));
+        }
+        holder[0].finish();
+
+        // No group fills a batch of 100: open batches are handed over once they hold the whole budget
+        assertEquals(200, holder[0].getWritten());
+        assertTrue(maxSeen.get() <= 20, "rows held exceeded the cap: " + maxSeen.get());
+        assertEquals(0, holder[0].getBudget().getRows());
+    }
+
+    @Test
+    public void rowCapBelowTheBatchSizeCutsTheBatches() {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 1, 100, 30, Long.MAX_VALUE, batch -> {
+            batchSizes.add(batch.size());
+            return batch.size();
+        });
+        pipeline.start();
+        for (int i = 0; i < 100; i++) {
+            pipeline.submit(record(1));
+        }
+        pipeline.finish();
+
+        assertEquals(100, pipeline.getWritten());
+        assertEquals(Arrays.asList(30, 30, 30, 10), batchSizes);
+    }
+
+    @Test
+    public void abortFailsABlockedReader() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 1, 1, 2, Long.MAX_VALUE, batch -> {
+            writing.countDown();
+            proceed.await();
+            return batch.size();
+        });
+        pipeline.start();
+        Future<?> reader = executor.submit(() -> {
+            for (int i = 0; i < 10; i++) {
+                pipeline.submit(record(1));
+            }
+        });
+        writing.await();
+
+        // The blocked reader does not hold the pipeline, so abort gets through
+        Future<?> abort = executor.submit(pipeline::abort);
+        Thread.sleep(50);
+        proceed.countDown();
+        abort.get(5, TimeUnit.SECONDS);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> reader.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("aborted"));
+        assertEquals(0, pipeline.getBudget().getRows());
+    }
+
+    @Test
+    public void writerFailureIsReportedToReader() {
+        YugabyteWritePipeline pipeline = new YugabyteWritePipeline(executor, 2, 1, 100, Long.MAX_VALUE, batch -> {
+            throw new IllegalStateException("boom");
+        });
+        pipeline.start();
+        pipeline.submit(record(1));
+
+        RuntimeException e = assertThrows(RuntimeException.class, pipeline::finish);
+        assertTrue(e.getMessage().contains("boom"));
+    }
+
+    @Test
+    public void estimateBytes_sumsSerializedColumns() {
+        Row row = mock(Row.class);
+        when(row.size()).thenReturn(3);
+        when(row.getBytesUnsafe(0)).thenReturn(ByteBuffer.allocate(8));
+        when(row.getBytesUnsafe(1)).thenReturn(null);
+        when(row.getBytesUnsafe(2)).thenReturn(ByteBuffer.allocate(20));
+
+        assertEquals(28 + YugabyteWritePipeline.ROW_OVERHEAD_BYTES, YugabyteWritePipeline.estimateBytes(row));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.mapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.datastax.oss.driver.api.core.data.TupleValue;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+public class CqlCollectionConverterTest {
+
+    @Test
+    public void toJson_writesNestedCollectionsAndTuples() {
+        CqlCollectionConverter converter = new CqlCollectionConverter();
+        Map<Integer, Object> map = new LinkedHashMap<>();
+        map.put(1, Arrays.asList("a", null));
+        map.put(2, Double.NaN);
+        TupleValue tuple = DataTypes.tupleOf(DataTypes.INT, DataTypes.TEXT).newValue(7, "x");
+
+        assertEquals("{\"1\":[\"a\",null],\"2\":\"NaN\"}", converter.toJson(map));
+        assertEquals("[7,\"x\"]", converter.toJson(tuple));
+        // The buffer is reused, documents do not run into each other
+        assertEquals("[\"AQI=\"]",
+                converter.toJson(Collections.singletonList(ByteBuffer.wrap(new byte[] { 1, 2 }))));
+    }
+
+    @Test
+    public void arrayElementType_onlyForScalarListsAndSets() {
+        assertEquals("int4", CqlCollectionConverter.arrayElementType(DataTypes.listOf(DataTypes.INT)));
+        assertEquals("text", CqlCollectionConverter.arrayElementType(DataTypes.setOf(DataTypes.ASCII)));
+        assertNull(CqlCollectionConverter.arrayElementType(DataTypes.listOf(DataTypes.listOf(DataTypes.INT))));
+        assertNull(CqlCollectionConverter.arrayElementType(DataTypes.mapOf(DataTypes.INT, DataTypes.INT)));
+    }
+
+    @Test
+    public void toArrayLiteral_quotesElements() {
+        assertEquals("{\"a\",\"b\\\"c\",NULL}",
+                CqlCollectionConverter.toArrayLiteral(Arrays.asList("a", "b\"c", null)));
+        assertEquals("{\"\\\\x0aff\"}", CqlCollectionConverter
+                .toArrayLiteral(Collections.singletonList(ByteBuffer.wrap(new byte[] { 0x0a, (byte) 0xff }))));
+        assertEquals("{}", CqlCollectionConverter.toArrayLiteral(Collections.emptyList()));
+    }
+
+    @Test
+    public void mapCassandraToPostgres_collections() {
+        assertEquals("integer[]", DataTypeMapper.mapCassandraToPostgres("list<int>"));
+        assertEquals("text[]", DataTypeMapper.mapCassandraToPostgres("frozen<set<text>>"));
+        assertEquals("jsonb", DataTypeMapper.mapCassandraToPostgres("list<frozen<list<int>>>"));
+        assertEquals("jsonb", DataTypeMapper.mapCassandraToPostgres("map<text, int>"));
+        assertEquals("jsonb", DataTypeMapper.mapCassandraToPostgres("frozen<address>"));
+    }
+}
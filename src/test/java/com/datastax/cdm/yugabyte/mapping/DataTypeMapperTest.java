@@ -0,0 +1,49 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.mapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class DataTypeMapperTest {
+
+    private final DataTypeMapper mapper = new DataTypeMapper();
+
+    @Test
+    public void convertValue_toBigDecimalKeepsPrecision() {
+        BigInteger varint = new BigInteger("123456789012345678901234567890");
+        assertEquals(new BigDecimal(varint), mapper.convertValue(varint, null, BigDecimal.class));
+        assertEquals(new BigDecimal("9007199254740993"),
+                mapper.convertValue(9007199254740993L, null, BigDecimal.class));
+        assertEquals(new BigDecimal("0.1"), mapper.convertValue(0.1f, null, BigDecimal.class));
+    }
+
+    @Test
+    public void convertValue_inetAndBlob() throws UnknownHostException {
+        InetAddress address = InetAddress.getByAddress("db-1", new byte[] { 10, 0, 0, 1 });
+        assertEquals("10.0.0.1", mapper.convertValue(address, null, String.class));
+        byte[] frame = new byte[] { 9, 1, 2, 9 };
+        assertArrayEquals(new byte[] { 1, 2 },
+                (byte[]) mapper.convertValue(ByteBuffer.wrap(frame, 1, 2), null, byte[].class));
+    }
+}
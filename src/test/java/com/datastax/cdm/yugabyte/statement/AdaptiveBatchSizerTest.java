@@ -0,0 +1,111 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+public class AdaptiveBatchSizerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(150);
+    private static final long VERY_SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    public void growsAdditivelyUpToMax() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(20, 10, 40, 10, 100);
+
+        sizer.onSuccess(FAST);
+        assertEquals(30, sizer.getBatchSize());
+        sizer.onSuccess(FAST);
+        sizer.onSuccess(FAST);
+        assertEquals(40, sizer.getBatchSize());
+        assertEquals(2, sizer.getIncreases());
+    }
+
+    @Test
+    public void holdsBetweenTargetAndTwiceTarget() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(20, 10, 40, 10, 100);
+
+        sizer.onSuccess(SLOW);
+        assertEquals(20, sizer.getBatchSize());
+        sizer.onSuccess(VERY_SLOW);
+        assertEquals(10, sizer.getBatchSize());
+    }
+
+    @Test
+    public void halvesOnTimeoutsAndConflictsDownToMin() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 1000, 5, 100);
+
+        sizer.onFailure(new SQLTimeoutException("timeout"));
+        assertEquals(50, sizer.getBatchSize());
+        sizer.onFailure(new SQLException("canceling statement due to statement timeout", "57014"));
+        assertEquals(25, sizer.getBatchSize());
+        sizer.onFailure(new SQLException("could not serialize access", "40001"));
+        assertEquals(12, sizer.getBatchSize());
+        sizer.onFailure(new SQLException("deadlock detected", "40P01"));
+        assertEquals(10, sizer.getBatchSize());
+        // Already at the minimum: not a decrease
+        sizer.onFailure(new SQLTimeoutException("timeout"));
+        assertEquals(10, sizer.getBatchSize());
+        assertEquals(3, sizer.getTimeouts());
+        assertEquals(2, sizer.getConflicts());
+        // 100 -> 50 -> 25 -> 12 -> 10
+        assertEquals(4, sizer.getDecreases());
+    }
+
+    @Test
+    public void ignoresDataErrors() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 1000, 5, 100);
+
+        sizer.onFailure(new SQLException("value too long", "22001"));
+        assertEquals(100, sizer.getBatchSize());
+    }
+
+    @Test
+    public void classifiesNestedBatchErrors() {
+        // Batch errors carry the server error as the next exception
+        BatchUpdateException batchError = new BatchUpdateException("Batch entry 0 was aborted", new int[0]);
+        batchError.setNextException(new SQLException("Restart read required", "40001"));
+        assertTrue(AdaptiveBatchSizer.isConflict(batchError));
+        assertFalse(AdaptiveBatchSizer.isTimeout(batchError));
+        assertTrue(AdaptiveBatchSizer.isTimeout(new SQLException("I/O error", "08006")));
+    }
+
+    @Test
+    public void fromProperties_disabledByDefault() {
+        IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+        assertNull(AdaptiveBatchSizer.fromProperties(propertyHelper, 25));
+        assertEquals(25, AdaptiveBatchSizer.getMaxBatchSize(propertyHelper, 25));
+
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE)).thenReturn(true);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_MAX)).thenReturn(500);
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.fromProperties(propertyHelper, 25);
+        assertNotNull(sizer);
+        assertEquals(25, sizer.getBatchSize());
+        assertEquals(500, AdaptiveBatchSizer.getMaxBatchSize(propertyHelper, 25));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.data.Record;
+
+public class BatchBisectorTest {
+
+    /**
+     * Writer that fails every batch containing a poison record, every record that cannot be bound, or every batch when
+     * the target is down. Failing commits roll back the batches written since the last commit, like a commit group.
+     */
+    private static class FakeWriter implements YugabyteBatchWriter {
+        private final Set<Record> poison = new HashSet<>();
+        private final Set<Record> unbindable = new HashSet<>();
+        private final List<Record> pending = new ArrayList<>();
+        private final Set<Record> committed = new HashSet<>();
+        private final List<Record> writes = new ArrayList<>();
+        private final List<Record> uncommitted = new ArrayList<>();
+        private final List<Record> rolledBack = new ArrayList<>();
+        private SQLException outage;
+        private int batches = 0;
+        private int batchSize = Integer.MAX_VALUE;
+        private int failingCommits = 0;
+
+        @Override
+        public boolean addToBatch(Record record) throws SQLException {
+            if (unbindable.contains(record)) {
+                throw new SQLException("Cannot bind value", "22023");
+            }
+            pending.add(record);
+            if (pending.size() >= batchSize) {
+                flush();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void commit() throws SQLException {
+            if (failingCommits > 0) {
+                failingCommits--;
+                committed.removeAll(uncommitted);
+                rolledBack.addAll(uncommitted);
+                uncommitted.clear();
+                throw new SQLException("Commit failed", "40001");
+            }
+            uncommitted.clear();
+        }
+
+        @Override
+        public List<Record> takeRolledBackRecords() {
+            List<Record> records = new ArrayList<>(rolledBack);
+            rolledBack.clear();
+            return records;
+        }
+
+        @Override
+        public int[] flush() throws SQLException {
+            batches++;
+            List<Record> batch = new ArrayList<>(pending);
+            pending.clear();
+            if (outage != null) {
+                throw outage;
+            }
+            for (Record r : batch) {
+                if (poison.contains(r)) {
+                    throw new SQLException("invalid input syntax", "22P02");
+                }
+            }
+            committed.addAll(batch);
+            uncommitted.addAll(batch);
+            writes.addAll(batch);
+            return new int[batch.size()];
+        }
+
+        @Override
+        public void discardBatch() {
+            pending.clear();
+        }
+
+        @Override
+        public int getCurrentBatchCount() {
+            return pending.size();
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public int getTotalRecordsWritten() {
+            return committed.size();
+        }
+
+        @Override
+        public int getTotalBatchesExecuted() {
+            return batches;
+        }
+
+        @Override
+        public String getSQL() {
+            return "";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<Record> records(int count) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(mock(Record.class));
+        }
+        return records;
+    }
+
+    @Test
+    public void isolatesPoisonRecordsAndCommitsTheRest() {
+        FakeWriter writer = new FakeWriter();
+        List<Record> batch = records(16);
+        writer.poison.add(batch.get(3));
+        writer.poison.add(batch.get(12));
+        List<Record> failed = new ArrayList<>();
+
+        long written = new BatchBisector(10).recover(writer, batch, new SQLException("batch failed", "22P02"),
+                (r, e) -> failed.add(r));
+
+        assertEquals(14, written);
+        assertEquals(2, failed.size());
+        assertTrue(failed.contains(batch.get(3)));
+        assertTrue(failed.contains(batch.get(12)));
+        assertEquals(14, writer.committed.size());
+    }
+
+    @Test
+    public void stopsAtMaxDepth() {
+        FakeWriter writer = new FakeWriter();
+        List<Record> batch = records(16);
+        writer.poison.add(batch.get(0));
+        List<Record> failed = new ArrayList<>();
+
+        // Depth 1: the two halves are retried once, the failing half is given up on
+        long written = new BatchBisector(1).recover(writer, batch, new SQLException("batch failed", "22P02"),
+                (r, e) -> failed.add(r));
+
+        assertEquals(8, written);
+        assertEquals(8, failed.size());
+        assertEquals(2, writer.batches);
+    }
+
+    @Test
+    public void doesNotBisectConnectionFailures() {
+        FakeWriter writer = new FakeWriter();
+        writer.outage = new SQLException("connection refused", "08001");
+        List<Record> batch = records(16);
+        List<Record> failed = new ArrayList<>();
+
+        long written = new BatchBisector(10).recover(writer, batch, writer.outage, (r, e) -> failed.add(r));
+
+        assertEquals(0, written);
+        assertEquals(16, failed.size());
+        assertEquals(0, writer.batches);
+    }
+
+    @Test
+    public void disabledLogsTheWholeBatch() {
+        FakeWriter writer = new FakeWriter();
+        List<Record> failed = new ArrayList<>();
+
+        long written = new BatchBisector(0).recover(writer, records(4), new SQLException("batch failed", "22P02"),
+                (r, e) -> failed.add(r));
+
+        assertEquals(0, written);
+        assertEquals(4, failed.size());
+        assertEquals(0, writer.batches);
+    }
+
+    @Test
+    public void pendingRecordsOfABindFailureAreWrittenOnce() throws SQLException {
+        FakeWriter writer = new FakeWriter();
+        List<Record> batch = records(4);
+        writer.unbindable.add(batch.get(2));
+        List<Record> failed = new ArrayList<>();
+
+        // The bind failure of the third record leaves the first two pending
+        writer.addToBatch(batch.get(0));
+        writer.addToBatch(batch.get(1));
+        SQLException cause = assertThrows(SQLException.class, () -> writer.addToBatch(batch.get(2)));
+
+        long written = new BatchBisector(10).recover(writer, batch, cause, (r, e) -> failed.add(r));
+
+        assertEquals(3, written);
+        assertEquals(List.of(batch.get(2)), failed);
+        // Each record is written by the bisection only, never twice
+        assertEquals(3, writer.writes.size());
+        assertEquals(3, new HashSet<>(writer.writes).size());
+    }
+
+    @Test
+    public void rolledBackBatchesAreCountedAsFailed() {
+        FakeWriter writer = new FakeWriter();
+        writer.batchSize = 2;
+        writer.failingCommits = 1;
+        List<Record> batch = records(8);
+        writer.poison.add(batch.get(7));
+        List<Record> failed = new ArrayList<>();
+
+        // The commit of the first half fails after its two batches were written: both are rolled back
+        long written = new BatchBisector(10).recover(writer, batch, new SQLException("batch failed", "22P02"),
+                (r, e) -> failed.add(r));
+
+        assertEquals(3, written);
+        assertEquals(5, failed.size());
+        assertTrue(failed.containsAll(batch.subList(0, 4)));
+        assertTrue(failed.contains(batch.get(7)));
+        assertEquals(3, writer.committed.size());
+        assertTrue(writer.takeRolledBackRecords().isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class CopyBufferTest {
+
+    private static String text(CopyBuffer buffer) {
+        return new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writeText_escapesCopySpecialCharacters() {
+        CopyBuffer buffer = new CopyBuffer(4);
+        buffer.writeText("a\tb\nc\rd\\e");
+        assertEquals("a\\tb\\nc\\rd\\\\e", text(buffer));
+    }
+
+    @Test
+    public void writeUtf8_matchesStringGetBytes() {
+        String value = "café € 😀";
+        CopyBuffer buffer = new CopyBuffer(4);
+        int written = buffer.writeUtf8(value);
+        byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, written);
+        assertArrayEquals(expected, Arrays.copyOf(buffer.array(), buffer.size()));
+    }
+
+    @Test
+    public void writeByteaText_usesEscapedHexFormat() {
+        CopyBuffer buffer = new CopyBuffer(4);
+        buffer.writeByteaText(ByteBuffer.wrap(new byte[] { 0x00, (byte) 0xAB, 0x7F }));
+        assertEquals("\\\\x00ab7f", text(buffer));
+    }
+
+    @Test
+    public void binaryIntegers_areBigEndian() {
+        CopyBuffer buffer = new CopyBuffer(4);
+        buffer.writeShort(0x0102).writeInt(0x03040506).writeLong(0x0708090A0B0C0D0EL);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14 },
+                Arrays.copyOf(buffer.array(), buffer.size()));
+    }
+
+    @Test
+    public void reserveInt_isPatchedWithLength() {
+        CopyBuffer buffer = new CopyBuffer(4);
+        int position = buffer.reserveInt();
+        buffer.putInt(position, buffer.writeUtf8("abc"));
+        assertArrayEquals(new byte[] { 0, 0, 0, 3, 'a', 'b', 'c' }, Arrays.copyOf(buffer.array(), buffer.size()));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+/**
+ * Manual benchmark comparing the per-value DataTypeMapper conversion with the converters the bind plan selects once
+ * per column. It needs no database and is not run by the build.
+ *
+ * Usage: {@code ScalarConverterBenchmark [valuesPerRound] [rounds]}
+ */
+public class ScalarConverterBenchmark {
+
+    private static Object sink;
+
+    public static void main(String[] args) throws UnknownHostException {
+        int values = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        DataTypeMapper mapper = new DataTypeMapper();
+        YugabyteBindPlan plan = new YugabyteBindPlan(Collections.emptyList(), Collections.emptyList(), mapper, null,
+                null);
+        byte[] frame = new byte[256];
+
+        run("timestamp", values, rounds, mapper, plan, DataTypes.TIMESTAMP, "timestamp", LocalDateTime.class,
+                Instant.parse("2024-01-02T03:04:05.678Z"));
+        run("varint", values, rounds, mapper, plan, DataTypes.VARINT, "varint", BigDecimal.class,
+                new BigInteger("123456789012345678901234567890"));
+        run("blob", values, rounds, mapper, plan, DataTypes.BLOB, "blob", byte[].class,
+                ByteBuffer.wrap(frame, 16, 128).slice());
+        run("inet", values, rounds, mapper, plan, DataTypes.INET, "inet", String.class,
+                InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }));
+    }
+
+    private static void run(String name, int values, int rounds, DataTypeMapper mapper, YugabyteBindPlan plan,
+            DataType cqlType, String cqlTypeName, Class<?> bindClass, Object value) {
+        YugabyteBindPlan.ValueConverter selected = plan.converterFor(cqlType, bindClass);
+        long mapperNanos = Long.MAX_VALUE;
+        long selectedNanos = Long.MAX_VALUE;
+        // The first round warms up both paths; the best round is reported
+        for (int round = 0; round <= rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < values; i++) {
+                sink = mapper.convertValue(value, cqlTypeName, bindClass);
+            }
+            long mapperRound = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < values; i++) {
+                sink = selected.convert(value);
+            }
+            long selectedRound = System.nanoTime() - start;
+            if (round > 0) {
+                mapperNanos = Math.min(mapperNanos, mapperRound);
+                selectedNanos = Math.min(selectedNanos, selectedRound);
+            }
+        }
+        System.out.printf("%-10s DataTypeMapper %6.1f ns/value, bind plan %6.1f ns/value (%s)%n", name,
+                (double) mapperNanos / values, (double) selectedNanos / values,
+                sink == null ? "" : sink.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Manual benchmark comparing the addBatch() upsert path with the columnar UNNEST path against a live YugabyteDB. It is
+ * not run by the build.
+ *
+ * Usage: {@code UnnestWriteBenchmark <jdbcUrl> <user> <password> [rows] [batchSize]}
+ */
+public class UnnestWriteBenchmark {
+
+    private static final String SCHEMA = "public";
+    private static final String TABLE = "cdm_unnest_benchmark";
+    private static final List<String> COLUMNS = Arrays.asList("id", "name", "amount", "flag");
+    private static final List<String> TYPES = Arrays.asList("int8", "text", "float8", "bool");
+    private static final List<String> PKS = Collections.singletonList("id");
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 3) {
+            System.err.println("Usage: UnnestWriteBenchmark <jdbcUrl> <user> <password> [rows] [batchSize]");
+            System.exit(1);
+        }
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            connection.setAutoCommit(false);
+            recreateTable(connection);
+            report("addBatch", rows, runAddBatch(connection, rows, batchSize));
+            recreateTable(connection);
+            report("UNNEST", rows, runUnnest(connection, rows, batchSize));
+            try (Statement ddl = connection.createStatement()) {
+                ddl.execute("DROP TABLE IF EXISTS " + SCHEMA + "." + TABLE);
+            }
+            connection.commit();
+        }
+    }
+
+    private static void recreateTable(Connection connection) throws SQLException {
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS " + SCHEMA + "." + TABLE);
+            ddl.execute("CREATE TABLE " + SCHEMA + "." + TABLE
+                    + " (id bigint PRIMARY KEY, name text, amount double precision, flag boolean)");
+        }
+        connection.commit();
+    }
+
+    private static long runAddBatch(Connection connection, int rows, int batchSize) throws SQLException {
+        String sql = YugabyteSqlBuilder.buildUpsert(SCHEMA, TABLE, COLUMNS, PKS, 1);
+        long start = System.nanoTime();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (long id = 0; id < rows; id++) {
+                statement.setLong(1, id);
+                statement.setString(2, "name-" + id);
+                statement.setDouble(3, id * 0.5);
+                statement.setBoolean(4, id % 2 == 0);
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    connection.commit();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+                connection.commit();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runUnnest(Connection connection, int rows, int batchSize) throws SQLException {
+        String sql = YugabyteSqlBuilder.buildUnnestUpsert(SCHEMA, TABLE, COLUMNS, TYPES, PKS);
+        Long[] ids = new Long[batchSize];
+        String[] names = new String[batchSize];
+        Double[] amounts = new Double[batchSize];
+        Boolean[] flags = new Boolean[batchSize];
+        long start = System.nanoTime();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (long id = 0; id < rows; id++) {
+                ids[pending] = id;
+                names[pending] = "name-" + id;
+                amounts[pending] = id * 0.5;
+                flags[pending] = id % 2 == 0;
+                if (++pending == batchSize || id == rows - 1) {
+                    Object[][] columns = { Arrays.copyOf(ids, pending), Arrays.copyOf(names, pending),
+                            Arrays.copyOf(amounts, pending), Arrays.copyOf(flags, pending) };
+                    for (int i = 0; i < columns.length; i++) {
+                        Array array = connection.createArrayOf(TYPES.get(i), columns[i]);
+                        statement.setArray(i + 1, array);
+                    }
+                    statement.executeUpdate();
+                    connection.commit();
+                    pending = 0;
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, int rows, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("%-10s %,d rows in %.2fs (%,.0f rows/s)%n", name, rows, seconds, rows / seconds);
+    }
+}
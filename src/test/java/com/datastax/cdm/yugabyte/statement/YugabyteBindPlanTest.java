@@ -0,0 +1,317 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+public class YugabyteBindPlanTest {
+
+    private ColumnDefinitions definitions;
+    private PreparedStatement statement;
+
+    @BeforeEach
+    public void setup() {
+        definitions = mock(ColumnDefinitions.class);
+        statement = mock(PreparedStatement.class);
+    }
+
+    private void defineOriginColumns(String[] names, DataType[] types) {
+        when(definitions.size()).thenReturn(names.length);
+        when(definitions.firstIndexOf(anyString())).thenReturn(-1);
+        for (int i = 0; i < names.length; i++) {
+            when(definitions.firstIndexOf(names[i])).thenReturn(i);
+            ColumnDefinition definition = mock(ColumnDefinition.class);
+            when(definition.getType()).thenReturn(types[i]);
+            when(definitions.get(i)).thenReturn(definition);
+        }
+    }
+
+    private Row row() {
+        Row row = mock(Row.class);
+        when(row.getColumnDefinitions()).thenReturn(definitions);
+        return row;
+    }
+
+    @Test
+    public void primitiveColumns_useResolvedIndexAndPrimitiveSetters() throws SQLException {
+        // Origin columns are in a different order than the target columns
+        defineOriginColumns(new String[] { "amount", "id", "flag" },
+                new DataType[] { DataTypes.DOUBLE, DataTypes.BIGINT, DataTypes.BOOLEAN });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("id", "amount", "flag"),
+                Arrays.asList(Long.class, Double.class, Boolean.class), new DataTypeMapper(), null, null);
+        Row row = row();
+        when(row.getLong(1)).thenReturn(42L);
+        when(row.getDouble(0)).thenReturn(1.5);
+        when(row.isNull(2)).thenReturn(true);
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setLong(1, 42L);
+        verify(statement).setDouble(2, 1.5);
+        verify(statement).setNull(3, Types.BOOLEAN);
+        verify(row, never()).getObject(anyInt());
+        verify(row, never()).getObject(anyString());
+        assertEquals(42L, plan.getValue(row, 0));
+        assertNull(plan.getValue(row, 2));
+    }
+
+    @Test
+    public void primitiveColumns_widenIntToLong() throws SQLException {
+        defineOriginColumns(new String[] { "id" }, new DataType[] { DataTypes.INT });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Collections.singletonList("id"),
+                Collections.singletonList(Long.class), new DataTypeMapper(), null, null);
+        Row row = row();
+        when(row.getInt(0)).thenReturn(7);
+
+        plan.bind(statement, 3, row);
+
+        verify(statement).setLong(4, 7L);
+    }
+
+    @Test
+    public void objectColumns_useChosenConverterAndSetter() throws SQLException {
+        defineOriginColumns(new String[] { "key", "ts", "name" },
+                new DataType[] { DataTypes.UUID, DataTypes.TIMESTAMP, DataTypes.TEXT });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("key", "ts", "name"),
+                Arrays.asList(UUID.class, LocalDateTime.class, String.class), new DataTypeMapper(), null, null);
+        UUID key = UUID.randomUUID();
+        Instant instant = Instant.parse("2024-01-02T03:04:05Z");
+        Row row = row();
+        when(row.getObject(0)).thenReturn(key);
+        when(row.getObject(1)).thenReturn(instant);
+        when(row.getObject(2)).thenReturn(null);
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setObject(1, key, Types.OTHER);
+        verify(statement).setObject(2, instant.atOffset(ZoneOffset.UTC));
+        verify(statement).setNull(3, Types.OTHER);
+    }
+
+    @Test
+    public void constantColumns_areBoundWithoutReadingTheRow() throws SQLException {
+        defineOriginColumns(new String[] { "id" }, new DataType[] { DataTypes.INT });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("id", "region"),
+                Arrays.asList(Integer.class, String.class), new DataTypeMapper(), Collections.singletonList("region"),
+                Collections.singletonMap("region", "eu"));
+        Row row = row();
+        when(row.getInt(0)).thenReturn(1);
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setInt(1, 1);
+        verify(statement).setString(2, "eu");
+        assertEquals("eu", plan.getValue(row, 1));
+    }
+
+    @Test
+    public void missingColumns_areBoundByPosition() throws SQLException {
+        defineOriginColumns(new String[] { "id", "total" }, new DataType[] { DataTypes.INT, DataTypes.BIGINT });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("id", "amount"),
+                Arrays.asList(Integer.class, Long.class), new DataTypeMapper(), null, null);
+        Row row = row();
+        when(row.getInt(0)).thenReturn(1);
+        when(row.getLong(1)).thenReturn(5L);
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setInt(1, 1);
+        verify(statement).setLong(2, 5L);
+    }
+
+    @Test
+    public void missingColumns_ofAPrunedRowAreBoundAsNull() throws SQLException {
+        // The second origin column is not the one of the second target column once columns are pruned
+        defineOriginColumns(new String[] { "id", "payload" }, new DataType[] { DataTypes.INT, DataTypes.BIGINT });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("id", "amount"),
+                Arrays.asList(Integer.class, Long.class), new DataTypeMapper(), null, null, false);
+        Row row = row();
+        when(row.getInt(0)).thenReturn(1);
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setInt(1, 1);
+        verify(statement).setNull(2, Types.BIGINT);
+        verify(row, never()).getLong(1);
+        assertNull(plan.getValue(row, 1));
+    }
+
+    @Test
+    public void bindsByPosition_unlessProjectionPrunedColumns() {
+        IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+        assertTrue(YugabyteBindPlan.bindsByPosition(propertyHelper));
+
+        when(propertyHelper.getStringList(KnownProperties.PERF_PROJECTION_PRUNED_COLUMNS))
+                .thenReturn(Collections.singletonList("payload"));
+        assertFalse(YugabyteBindPlan.bindsByPosition(propertyHelper));
+    }
+
+    @Test
+    public void planIsCompiledOnce() throws SQLException {
+        defineOriginColumns(new String[] { "id" }, new DataType[] { DataTypes.INT });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Collections.singletonList("id"),
+                Collections.singletonList(Integer.class), new DataTypeMapper(), null, null);
+
+        plan.bind(statement, 0, row());
+        plan.bind(statement, 0, row());
+
+        verify(definitions, times(1)).firstIndexOf("id");
+    }
+
+    @Test
+    public void setter_fallsBackToValueTypeForUnconvertedValues() throws SQLException {
+        // The mapper returns a string when it cannot convert to the bind class
+        YugabyteBindPlan.setterFor(Integer.class).set(statement, 1, "not-a-number");
+        verify(statement).setObject(1, "not-a-number");
+    }
+
+    @Test
+    public void collectionColumns_bindScalarListsAsArraysAndMapsAsJson() throws SQLException {
+        defineOriginColumns(new String[] { "tags", "attrs" },
+                new DataType[] { DataTypes.listOf(DataTypes.INT), DataTypes.mapOf(DataTypes.TEXT, DataTypes.INT) });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("tags", "attrs"),
+                Arrays.asList(java.sql.Array.class, String.class), new DataTypeMapper(), null, null);
+        Row row = row();
+        when(row.getObject(0)).thenReturn(Arrays.asList(1, 2, 3));
+        Map<String, Integer> attrs = new LinkedHashMap<>();
+        attrs.put("a", 1);
+        attrs.put("b\"", 2);
+        when(row.getObject(1)).thenReturn(attrs);
+        Connection connection = mock(Connection.class);
+        java.sql.Array array = mock(java.sql.Array.class);
+        when(statement.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(eq("int4"), any(Object[].class))).thenReturn(array);
+
+        plan.bind(statement, 0, row);
+
+        verify(connection).createArrayOf("int4", new Object[] { 1, 2, 3 });
+        verify(statement).setArray(1, array);
+        verify(statement).setObject(2, "{\"a\":1,\"b\\\"\":2}", Types.OTHER);
+    }
+
+    @Test
+    public void collectionColumns_writeNestedListsAsJson() throws SQLException {
+        defineOriginColumns(new String[] { "matrix" },
+                new DataType[] { DataTypes.listOf(DataTypes.listOf(DataTypes.INT)) });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Collections.singletonList("matrix"),
+                Collections.singletonList(String.class), new DataTypeMapper(), null, null);
+        Row row = row();
+        when(row.getObject(0)).thenReturn(Arrays.asList(Arrays.asList(1, 2), Collections.emptyList()));
+
+        assertEquals("[[1,2],[]]", plan.getValue(row, 0));
+    }
+
+    @Test
+    public void collectionColumns_keepTheDriverStringFormInTextColumns() throws SQLException {
+        defineOriginColumns(new String[] { "tags", "attrs" },
+                new DataType[] { DataTypes.listOf(DataTypes.INT), DataTypes.mapOf(DataTypes.TEXT, DataTypes.INT) });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("tags", "attrs"),
+                Arrays.asList(String.class, String.class), new DataTypeMapper(), null, null, true,
+                Collections.singleton("tags"));
+        Row row = row();
+        when(row.getObject(0)).thenReturn(Arrays.asList(1, 2, 3));
+        when(row.getObject(1)).thenReturn(Collections.singletonMap("a", 1));
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setString(1, "[1, 2, 3]");
+        verify(statement).setObject(2, "{\"a\":1}", Types.OTHER);
+    }
+
+    @Test
+    public void collectionStringColumns_areTextColumnsUnlessJsonInTextIsSet() {
+        YugabyteTable table = mock(YugabyteTable.class);
+        doReturn(String.class).when(table).getBindClass("note");
+        when(table.getPostgresType("note")).thenReturn("text");
+        doReturn(String.class).when(table).getBindClass("doc");
+        when(table.getPostgresType("doc")).thenReturn("jsonb");
+        doReturn(java.sql.Array.class).when(table).getBindClass("tags");
+        when(table.getPostgresType("tags")).thenReturn("_int4");
+        IPropertyHelper propertyHelper = mock(IPropertyHelper.class);
+
+        assertEquals(new HashSet<>(Collections.singletonList("note")), YugabyteBindPlan
+                .collectionStringColumns(propertyHelper, table, Arrays.asList("note", "doc", "tags")));
+
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_COLLECTIONS_JSON_IN_TEXT)).thenReturn(true);
+        assertTrue(YugabyteBindPlan.collectionStringColumns(propertyHelper, table, Arrays.asList("note", "doc", "tags"))
+                .isEmpty());
+    }
+
+    @Test
+    public void scalarColumns_keepPrecisionAndAvoidCopies() throws SQLException {
+        defineOriginColumns(new String[] { "big", "data", "addr" },
+                new DataType[] { DataTypes.VARINT, DataTypes.BLOB, DataTypes.INET });
+        YugabyteBindPlan plan = new YugabyteBindPlan(Arrays.asList("big", "data", "addr"),
+                Arrays.asList(BigDecimal.class, byte[].class, String.class), new DataTypeMapper(), null, null);
+        BigInteger big = new BigInteger("123456789012345678901234567890");
+        byte[] frame = new byte[] { 9, 1, 2, 3, 9 };
+        Row row = row();
+        when(row.getObject(0)).thenReturn(big);
+        when(row.getObject(1)).thenReturn(ByteBuffer.wrap(frame, 1, 3).slice());
+        when(row.getObject(2)).thenReturn(InetAddress.getLoopbackAddress());
+
+        plan.bind(statement, 0, row);
+
+        verify(statement).setBigDecimal(1, new BigDecimal(big));
+        verify(statement).setBinaryStream(eq(2), any(ByteArrayInputStream.class), eq(3));
+        verify(statement, never()).setBytes(eq(2), any());
+        verify(statement).setObject(3, InetAddress.getLoopbackAddress().getHostAddress(), Types.OTHER);
+    }
+
+    @Test
+    public void setBytes_bindsWholeArraysDirectly() throws SQLException {
+        byte[] bytes = new byte[] { 1, 2 };
+
+        YugabyteBindPlan.setBytes(statement, 1, ByteBuffer.wrap(bytes));
+
+        verify(statement).setBytes(1, bytes);
+    }
+}
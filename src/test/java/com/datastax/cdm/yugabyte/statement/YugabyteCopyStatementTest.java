@@ -0,0 +1,255 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.data.EnhancedPK;
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.yugabyte.PGConnection;
+import com.yugabyte.copy.CopyIn;
+import com.yugabyte.copy.CopyManager;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class YugabyteCopyStatementTest {
+
+    private IPropertyHelper propertyHelper;
+    private YugabyteSession session;
+    private CopyManager copyManager;
+    private CopyIn copyIn;
+    private ByteArrayOutputStream copied;
+    private ColumnDefinitions definitions;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        propertyHelper = mock(IPropertyHelper.class);
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_COPY_FORMAT)).thenReturn("TEXT");
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COPY_CHUNK_SIZE)).thenReturn(2);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COPY_ROWS_PER_TRANSACTION)).thenReturn(500);
+
+        YugabyteTable table = mock(YugabyteTable.class);
+        when(table.getDataTypeMapper()).thenReturn(new DataTypeMapper());
+        when(table.getAllColumnNames()).thenReturn(Arrays.asList("id", "val"));
+        when(table.getBindClasses()).thenReturn(Arrays.asList(Integer.class, String.class));
+        when(table.getSchemaName()).thenReturn("public");
+        when(table.getTableName()).thenReturn("t");
+        when(table.getPostgresType("id")).thenReturn("int4");
+        when(table.getPostgresType("val")).thenReturn("text");
+
+        definitions = mock(ColumnDefinitions.class);
+        when(definitions.size()).thenReturn(2);
+        when(definitions.firstIndexOf("id")).thenReturn(0);
+        when(definitions.firstIndexOf("val")).thenReturn(1);
+        ColumnDefinition idDefinition = mock(ColumnDefinition.class);
+        when(idDefinition.getType()).thenReturn(DataTypes.INT);
+        ColumnDefinition valDefinition = mock(ColumnDefinition.class);
+        when(valDefinition.getType()).thenReturn(DataTypes.TEXT);
+        when(definitions.get(0)).thenReturn(idDefinition);
+        when(definitions.get(1)).thenReturn(valDefinition);
+
+        copied = new ByteArrayOutputStream();
+        copyIn = mock(CopyIn.class);
+        doAnswer(invocation -> {
+            copied.write((byte[]) invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        when(copyIn.isActive()).thenReturn(true);
+        copyManager = mock(CopyManager.class);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        Connection connection = mock(Connection.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        HikariDataSource dataSource = mock(HikariDataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        session = mock(YugabyteSession.class);
+        when(session.getYugabyteTable()).thenReturn(table);
+        when(session.getDataSource()).thenReturn(dataSource);
+    }
+
+    private Record record(Integer id, String val) {
+        Row row = mock(Row.class);
+        when(row.getColumnDefinitions()).thenReturn(definitions);
+        when(row.isNull(0)).thenReturn(id == null);
+        when(row.isNull(1)).thenReturn(val == null);
+        if (id != null) {
+            when(row.getInt(0)).thenReturn(id);
+        }
+        when(row.getString(1)).thenReturn(val);
+        return new Record(mock(EnhancedPK.class), row, null);
+    }
+
+    @Test
+    public void textChunk_isEncodedAndCompletedAtChunkSize() throws SQLException {
+        YugabyteCopyStatement statement = new YugabyteCopyStatement(propertyHelper, session, null);
+
+        assertFalse(statement.addToChunk(record(1, "a\tb")));
+        assertTrue(statement.addToChunk(record(2, null)));
+
+        assertEquals("COPY public.t (id, val) FROM STDIN WITH (FORMAT text, ROWS_PER_TRANSACTION 500)",
+                statement.getSQL());
+        assertEquals("1\ta\\tb\n2\t\\N\n", new String(copied.toByteArray(), StandardCharsets.UTF_8));
+        verify(copyIn).endCopy();
+        assertEquals(2, statement.getTotalRecordsWritten());
+        assertEquals(0, statement.getCurrentChunkCount());
+    }
+
+    @Test
+    public void constantColumn_isWrittenAsText() throws SQLException {
+        YugabyteCopyStatement statement = new YugabyteCopyStatement(propertyHelper, session,
+                Collections.singletonMap("val", "fixed"));
+
+        statement.addToChunk(record(7, "ignored"));
+        statement.flush();
+
+        assertEquals("7\tfixed\n", new String(copied.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void binaryFormat_isUsedWhenAllColumnsSupportIt() throws SQLException {
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_COPY_FORMAT)).thenReturn("BINARY");
+        YugabyteCopyStatement statement = new YugabyteCopyStatement(propertyHelper, session, null);
+
+        statement.addToChunk(record(1, "x"));
+        statement.flush();
+
+        assertEquals(YugabyteCopyStatement.Format.BINARY, statement.getFormat());
+        byte[] bytes = copied.toByteArray();
+        // signature(11) + flags(4) + extension(4) + fieldCount(2) + int4(4+4) + text(4+1) + trailer(2)
+        assertEquals(36, bytes.length);
+        assertEquals('P', bytes[0]);
+        assertEquals(-1, (short) (((bytes[34] & 0xFF) << 8) | (bytes[35] & 0xFF)));
+    }
+
+    @Test
+    public void failedChunk_isCancelledAndReported() throws SQLException {
+        when(copyIn.endCopy()).thenThrow(new SQLException("duplicate key", "23505"));
+        YugabyteCopyStatement statement = new YugabyteCopyStatement(propertyHelper, session, null);
+
+        statement.addToChunk(record(1, "a"));
+        assertThrows(SQLException.class, () -> statement.addToChunk(record(2, "b")));
+
+        verify(copyIn).cancelCopy();
+        assertEquals(0, statement.getCurrentChunkCount());
+        assertEquals(1, statement.getTotalChunksFailed());
+        assertEquals(0, statement.getTotalRecordsWritten());
+    }
+
+    // Loads a row whose origin has no "val" column through COPY and through the upsert statement
+    private PreparedStatement loadRowWithoutValColumn() throws SQLException {
+        when(definitions.firstIndexOf("val")).thenReturn(-1);
+        Record record = record(1, "payload");
+        when(record.getOriginRow().getObject(1)).thenReturn("payload");
+        PreparedStatement upsert = mock(PreparedStatement.class);
+        when(session.getDataSource().getConnection().prepareStatement(anyString())).thenReturn(upsert);
+
+        YugabyteCopyStatement copy = new YugabyteCopyStatement(propertyHelper, session, null);
+        copy.addToChunk(record);
+        copy.flush();
+        new YugabyteUpsertStatement(propertyHelper, session).addToBatch(record);
+        return upsert;
+    }
+
+    @Test
+    public void missingColumn_isLoadedByPositionThroughCopyAndUpsert() throws SQLException {
+        PreparedStatement upsert = loadRowWithoutValColumn();
+
+        assertEquals("1\tpayload\n", new String(copied.toByteArray(), StandardCharsets.UTF_8));
+        verify(upsert).setString(2, "payload");
+    }
+
+    @Test
+    public void missingColumn_ofAPrunedRowIsLoadedAsNullThroughCopyAndUpsert() throws SQLException {
+        when(propertyHelper.getStringList(KnownProperties.PERF_PROJECTION_PRUNED_COLUMNS))
+                .thenReturn(Collections.singletonList("payload"));
+        PreparedStatement upsert = loadRowWithoutValColumn();
+
+        assertEquals("1\t\\N\n", new String(copied.toByteArray(), StandardCharsets.UTF_8));
+        verify(upsert).setNull(2, Types.OTHER);
+        verify(upsert, never()).setString(eq(2), any());
+    }
+
+    // Loads a row whose "val" text column comes from a list<int> origin column through COPY and the upsert statement
+    private PreparedStatement loadListIntoTextColumn() throws SQLException {
+        YugabyteTable table = session.getYugabyteTable();
+        doReturn(String.class).when(table).getBindClass("val");
+        ColumnDefinition listDefinition = mock(ColumnDefinition.class);
+        when(listDefinition.getType()).thenReturn(DataTypes.listOf(DataTypes.INT));
+        when(definitions.get(1)).thenReturn(listDefinition);
+        Record record = record(1, null);
+        when(record.getOriginRow().isNull(1)).thenReturn(false);
+        when(record.getOriginRow().getObject(1)).thenReturn(Arrays.asList(1, 2));
+        PreparedStatement upsert = mock(PreparedStatement.class);
+        when(session.getDataSource().getConnection().prepareStatement(anyString())).thenReturn(upsert);
+
+        YugabyteCopyStatement copy = new YugabyteCopyStatement(propertyHelper, session, null);
+        copy.addToChunk(record);
+        copy.flush();
+        new YugabyteUpsertStatement(propertyHelper, session).addToBatch(record);
+        return upsert;
+    }
+
+    @Test
+    public void collectionInTextColumn_keepsTheDriverStringFormByDefault() throws SQLException {
+        PreparedStatement upsert = loadListIntoTextColumn();
+
+        assertEquals("1\t[1, 2]\n", new String(copied.toByteArray(), StandardCharsets.UTF_8));
+        verify(upsert).setString(2, "[1, 2]");
+    }
+
+    @Test
+    public void collectionInTextColumn_isWrittenAsJsonWhenEnabled() throws SQLException {
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_COLLECTIONS_JSON_IN_TEXT)).thenReturn(true);
+        PreparedStatement upsert = loadListIntoTextColumn();
+
+        assertEquals("1\t[1,2]\n", new String(copied.toByteArray(), StandardCharsets.UTF_8));
+        verify(upsert).setObject(2, "[1,2]", Types.OTHER);
+    }
+
+    @Test
+    public void toPgMicros_usesPostgresEpoch() {
+        assertEquals(0L, YugabyteCopyStatement.toPgMicros(Instant.parse("2000-01-01T00:00:00Z")));
+        assertEquals(1_500_000L, YugabyteCopyStatement.toPgMicros(Instant.parse("2000-01-01T00:00:01.5Z")));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class YugabyteRetryPolicyTest {
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        YugabyteRetryPolicy.resetStormWindow();
+    }
+
+    @Test
+    public void isTransient_classifiesBySqlStateAndYugabyteMessage() {
+        assertTrue(YugabyteRetryPolicy.isTransient(new SQLException("could not serialize access", "40001")));
+        assertTrue(YugabyteRetryPolicy.isTransient(new SQLException("deadlock detected", "40P01")));
+        assertTrue(YugabyteRetryPolicy.isTransient(new SQLException("I/O error", "08006")));
+        assertTrue(YugabyteRetryPolicy.isTransient(
+                new SQLException("ERROR: Query error: Restart read required at: { read: ... }", "XX000")));
+        assertTrue(YugabyteRetryPolicy.isTransient(new SQLException("Try again: Leader not ready", "XX000")));
+
+        assertFalse(YugabyteRetryPolicy.isTransient(new SQLException("duplicate key value", "23505")));
+        assertFalse(YugabyteRetryPolicy.isTransient(new SQLException("value too long", "22001")));
+    }
+
+    @Test
+    public void awaitRetry_backsOffWithinTheBudget() {
+        YugabyteRetryPolicy policy = new YugabyteRetryPolicy(3, 100, 250, 0, sleeps::add);
+
+        assertTrue(policy.awaitRetry(true, 1));
+        assertTrue(policy.awaitRetry(true, 2));
+        assertTrue(policy.awaitRetry(true, 3));
+        assertFalse(policy.awaitRetry(true, 4));
+        assertFalse(policy.awaitRetry(false, 1));
+
+        assertEquals(3, sleeps.size());
+        assertTrue(sleeps.get(0) <= 100);
+        assertTrue(sleeps.get(1) <= 200);
+        assertTrue(sleeps.get(2) <= 250); // Capped
+    }
+
+    @Test
+    public void awaitRetry_stopsRetryingInARetryStorm() {
+        YugabyteRetryPolicy first = new YugabyteRetryPolicy(5, 0, 0, 2, sleeps::add);
+        YugabyteRetryPolicy second = new YugabyteRetryPolicy(5, 0, 0, 2, sleeps::add);
+
+        assertTrue(first.awaitRetry(true, 1));
+        assertTrue(second.awaitRetry(true, 1));
+        // The limit is shared by all writers of the executor
+        assertFalse(first.awaitRetry(true, 2));
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void acquireStormPermit_startsANewWindowEveryMinute() {
+        assertTrue(YugabyteRetryPolicy.acquireStormPermit(1, 1_000_000L));
+        assertFalse(YugabyteRetryPolicy.acquireStormPermit(1, 1_000_001L));
+        assertTrue(YugabyteRetryPolicy.acquireStormPermit(1, 1_060_000L));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class YugabyteSqlBuilderTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("id", "name", "age");
+    private static final List<String> PKS = Collections.singletonList("id");
+
+    @Test
+    public void buildUpsert_singleRow() {
+        assertEquals(
+                "INSERT INTO public.t (id, name, age) VALUES (?, ?, ?) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, age = EXCLUDED.age",
+                YugabyteSqlBuilder.buildUpsert("public", "t", COLUMNS, PKS, 1));
+    }
+
+    @Test
+    public void buildUpsert_multiRow() {
+        assertEquals(
+                "INSERT INTO s.t (id, name, age) VALUES (?, ?, ?), (?, ?, ?) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, age = EXCLUDED.age",
+                YugabyteSqlBuilder.buildUpsert("s", "t", COLUMNS, PKS, 2));
+    }
+
+    @Test
+    public void buildUnnestUpsert_bindsOneArrayPerColumn() {
+        assertEquals(
+                "INSERT INTO s.t (id, name, age) SELECT * FROM UNNEST(?::int8[], ?::varchar[], ?::int4[]) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, age = EXCLUDED.age",
+                YugabyteSqlBuilder.buildUnnestUpsert("s", "t", COLUMNS, Arrays.asList("int8", "varchar", "int4"), PKS));
+    }
+
+    @Test
+    public void buildUpsert_followsWriteMode() {
+        assertEquals("INSERT INTO s.t (id, name, age) VALUES (?, ?, ?)",
+                YugabyteSqlBuilder.buildUpsert("s", "t", COLUMNS, PKS, 1, YugabyteWriteMode.INSERT));
+        assertEquals("INSERT INTO s.t (id, name, age) VALUES (?, ?, ?)",
+                YugabyteSqlBuilder.buildUpsert("s", "t", COLUMNS, PKS, 1, YugabyteWriteMode.UPSERT_MODE));
+        assertEquals("INSERT INTO s.t (id, name, age) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+                YugabyteSqlBuilder.buildUpsert("s", "t", COLUMNS, PKS, 1, YugabyteWriteMode.DO_NOTHING));
+        assertEquals(
+                "INSERT INTO s.t (id, name, age) SELECT * FROM UNNEST(?::int8[], ?::varchar[], ?::int4[]) ON CONFLICT DO NOTHING",
+                YugabyteSqlBuilder.buildUnnestUpsert("s", "t", COLUMNS, Arrays.asList("int8", "varchar", "int4"), PKS,
+                        YugabyteWriteMode.DO_NOTHING));
+    }
+
+    @Test
+    public void normalizeShapes_addsOneSortsAndDeduplicates() {
+        assertArrayEquals(new int[] { 128, 32, 8, 1 },
+                YugabyteSqlBuilder.normalizeShapes(Arrays.asList(8, 128, 32, 8, 0, -5), 3));
+    }
+
+    @Test
+    public void normalizeShapes_capsAtBindParameterLimit() {
+        // 1000 columns allow at most 32 rows per statement
+        assertArrayEquals(new int[] { 32, 8, 1 }, YugabyteSqlBuilder.normalizeShapes(Arrays.asList(8, 128), 1000));
+        assertArrayEquals(new int[] { 1 }, YugabyteSqlBuilder.normalizeShapes(null, 5));
+    }
+
+    @Test
+    public void planShapes_usesLargestShapesFirst() {
+        int[] shapes = { 128, 32, 8, 1 };
+        assertEquals(Arrays.asList(32, 32, 32, 1, 1, 1, 1), YugabyteSqlBuilder.planShapes(100, shapes));
+        assertEquals(Arrays.asList(128, 128, 8, 1), YugabyteSqlBuilder.planShapes(265, shapes));
+        assertTrue(YugabyteSqlBuilder.planShapes(0, shapes).isEmpty());
+    }
+}
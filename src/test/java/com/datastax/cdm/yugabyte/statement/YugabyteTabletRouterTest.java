@@ -0,0 +1,121 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+
+public class YugabyteTabletRouterTest {
+
+    private Connection connection;
+    private YugabyteTable table;
+    private ResultSet serverHash;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        table = mock(YugabyteTable.class);
+        when(table.getSchemaName()).thenReturn("public");
+        when(table.getTableName()).thenReturn("t");
+        when(table.getPrimaryKeyNames()).thenReturn(Arrays.asList("id", "seq"));
+        when(table.getPostgresType("id")).thenReturn("int4");
+        doReturn(Integer.class).when(table).getBindClass("id");
+        when(table.getDataTypeMapper()).thenReturn(new DataTypeMapper());
+
+        connection = mock(Connection.class);
+        ResultSet properties = mock(ResultSet.class);
+        when(properties.next()).thenReturn(true);
+        when(properties.getInt(1)).thenReturn(4);
+        when(properties.getInt(2)).thenReturn(1);
+        PreparedStatement propertiesStatement = mock(PreparedStatement.class);
+        when(propertiesStatement.executeQuery()).thenReturn(properties);
+        when(connection.prepareStatement(contains("yb_table_properties"))).thenReturn(propertiesStatement);
+
+        when(connection.prepareStatement(contains("yb_local_tablets")))
+                .thenThrow(new SQLException("relation \"yb_local_tablets\" does not exist", "42P01"));
+
+        serverHash = mock(ResultSet.class);
+        when(serverHash.next()).thenReturn(true);
+        PreparedStatement hashStatement = mock(PreparedStatement.class);
+        when(hashStatement.executeQuery()).thenReturn(serverHash);
+        when(connection.prepareStatement(contains("yb_hash_code"))).thenReturn(hashStatement);
+    }
+
+    @Test
+    public void load_routesWhenClientHashMatchesServer() throws SQLException {
+        when(serverHash.getInt(1)).thenReturn(YugabyteTabletRouter.hash(new Object[] { -123456789 }));
+
+        YugabyteTabletRouter router = YugabyteTabletRouter.load(connection, table);
+
+        assertNotNull(router);
+        assertEquals(4, router.getTabletCount());
+    }
+
+    @Test
+    public void load_doesNotRouteOnHashMismatch() throws SQLException {
+        when(serverHash.getInt(1)).thenReturn(YugabyteTabletRouter.hash(new Object[] { -123456789 }) ^ 1);
+
+        assertNull(YugabyteTabletRouter.load(connection, table));
+    }
+
+    @Test
+    public void load_doesNotRouteUnsupportedHashKeyTypes() {
+        when(table.getPostgresType("id")).thenReturn("numeric");
+
+        assertNull(YugabyteTabletRouter.load(connection, table));
+    }
+
+    @Test
+    public void tabletOf_findsTheTabletContainingTheHash() {
+        YugabyteTabletRouter router = new YugabyteTabletRouter(null, null, null, new int[] { 0, 100, 200 });
+
+        assertEquals(0, router.tabletOf(0));
+        assertEquals(0, router.tabletOf(99));
+        assertEquals(1, router.tabletOf(100));
+        assertEquals(2, router.tabletOf(YugabyteTabletRouter.MAX_HASH));
+    }
+
+    @Test
+    public void evenSplit_andPartitionKeys() {
+        assertArrayEquals(new int[] { 0, 21845, 43690 }, YugabyteTabletRouter.evenSplit(3));
+        assertEquals(0, YugabyteTabletRouter.decodePartitionKey(new byte[0]));
+        assertEquals(0x5555, YugabyteTabletRouter.decodePartitionKey(new byte[] { 0x55, 0x55 }));
+    }
+
+    @Test
+    public void hash_isStableAndWithinHashSpace() {
+        int hash = YugabyteTabletRouter.hash(new Object[] { 42, "key" });
+
+        assertEquals(hash, YugabyteTabletRouter.hash(new Object[] { 42, "key" }));
+        assertNotEquals(hash, YugabyteTabletRouter.hash(new Object[] { 43, "key" }));
+        assertTrue(hash >= 0 && hash <= YugabyteTabletRouter.MAX_HASH);
+        // Keys longer than one 24-byte block go through the block loop
+        int longHash = YugabyteTabletRouter.hash(new Object[] { "a key that is longer than twenty-four bytes" });
+        assertTrue(longHash >= 0 && longHash <= YugabyteTabletRouter.MAX_HASH);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.nio.ByteBuffer;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.data.EnhancedPK;
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class YugabyteUnnestStatementTest {
+
+    private IPropertyHelper propertyHelper;
+    private YugabyteSession session;
+    private Connection connection;
+    private PreparedStatement statement;
+    // Snapshot of every array passed to createArrayOf, since the statement reuses its buffers
+    private final List<Object[]> createdArrays = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        propertyHelper = mock(IPropertyHelper.class);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE)).thenReturn(3);
+
+        YugabyteTable table = mock(YugabyteTable.class);
+        when(table.getDataTypeMapper()).thenReturn(new DataTypeMapper());
+        when(table.getAllColumnNames()).thenReturn(Arrays.asList("id", "val"));
+        when(table.getBindClasses()).thenReturn(Arrays.asList(Integer.class, String.class));
+        when(table.getPostgresType("id")).thenReturn("int4");
+        when(table.getPostgresType("val")).thenReturn("varchar");
+        when(table.getPrimaryKeyNames()).thenReturn(Arrays.asList("id"));
+        when(table.getSchemaName()).thenReturn("public");
+        when(table.getTableName()).thenReturn("t");
+
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.createArrayOf(anyString(), any())).thenAnswer(invocation -> {
+            Object[] elements = invocation.getArgument(1);
+            createdArrays.add(Arrays.copyOf(elements, elements.length, elements.getClass()));
+            return mock(Array.class);
+        });
+
+        HikariDataSource dataSource = mock(HikariDataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        session = mock(YugabyteSession.class);
+        when(session.getYugabyteTable()).thenReturn(table);
+        when(session.getDataSource()).thenReturn(dataSource);
+    }
+
+    private Record record(int id) {
+        Row row = mock(Row.class);
+        when(row.getObject("id")).thenReturn(id);
+        when(row.getObject("val")).thenReturn("v" + id);
+        return new Record(mock(EnhancedPK.class), row, null);
+    }
+
+    @Test
+    public void fullBatch_isWrittenAsOneStatementWithTypedArrays() throws SQLException {
+        YugabyteUnnestStatement unnest = new YugabyteUnnestStatement(propertyHelper, session);
+        when(statement.executeUpdate()).thenReturn(3);
+        assertEquals(
+                "INSERT INTO public.t (id, val) SELECT * FROM UNNEST(?::int4[], ?::varchar[]) ON CONFLICT (id) DO UPDATE SET val = EXCLUDED.val",
+                unnest.getSQL());
+
+        assertFalse(unnest.addToBatch(record(1)));
+        assertFalse(unnest.addToBatch(record(2)));
+        assertTrue(unnest.addToBatch(record(3)));
+
+        verify(connection).createArrayOf(eq("int4"), any());
+        verify(connection).createArrayOf(eq("varchar"), any());
+        assertArrayEquals(new Integer[] { 1, 2, 3 }, createdArrays.get(0));
+        assertEquals(Integer[].class, createdArrays.get(0).getClass());
+        assertArrayEquals(new String[] { "v1", "v2", "v3" }, createdArrays.get(1));
+        verify(statement, times(2)).setArray(anyInt(), any(Array.class));
+        verify(statement).executeUpdate();
+        verify(connection).commit();
+        assertEquals(3, unnest.getTotalRecordsWritten());
+        assertEquals(0, unnest.getCurrentBatchCount());
+    }
+
+    @Test
+    public void partialBatch_sendsOnlyBufferedRows() throws SQLException {
+        YugabyteUnnestStatement unnest = new YugabyteUnnestStatement(propertyHelper, session);
+        when(statement.executeUpdate()).thenReturn(3, 1);
+        unnest.addToBatch(record(1));
+        unnest.addToBatch(record(2));
+        unnest.addToBatch(record(3));
+
+        // The buffers are reused, the second batch must not carry rows of the first
+        unnest.addToBatch(record(4));
+        unnest.flush();
+
+        verify(connection, times(2)).createArrayOf(eq("int4"), any());
+        assertArrayEquals(new Integer[] { 4 }, createdArrays.get(2));
+        assertEquals(4, unnest.getTotalRecordsWritten());
+        assertEquals(2, unnest.getTotalBatchesExecuted());
+    }
+
+    @Test
+    public void failedBatch_isRolledBackAndBuffersCleared() throws SQLException {
+        YugabyteUnnestStatement unnest = new YugabyteUnnestStatement(propertyHelper, session);
+        when(statement.executeUpdate()).thenThrow(new SQLException("duplicate key", "23505"));
+        unnest.addToBatch(record(1));
+
+        assertThrows(SQLException.class, unnest::flush);
+        verify(connection).rollback();
+        assertEquals(0, unnest.getCurrentBatchCount());
+        assertEquals(0, unnest.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void toElement_coercesToColumnElementClass() {
+        assertEquals(5L, YugabyteUnnestStatement.toElement(5, Long.class));
+        assertEquals((short) 7, YugabyteUnnestStatement.toElement(7L, Short.class));
+        assertEquals("12", YugabyteUnnestStatement.toElement(12, String.class));
+        assertEquals(Boolean.TRUE, YugabyteUnnestStatement.toElement("true", Boolean.class));
+        assertNull(YugabyteUnnestStatement.toElement(null, Integer.class));
+
+        LocalDateTime time = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+        assertEquals(Timestamp.valueOf(time), YugabyteUnnestStatement.toElement(time, Object.class));
+        Instant instant = Instant.parse("2024-01-02T03:04:05Z");
+        assertEquals(Timestamp.from(instant),
+                YugabyteUnnestStatement.toElement(instant.atOffset(ZoneOffset.UTC), Object.class));
+        assertArrayEquals(new byte[] { 1, 2 },
+                (byte[]) YugabyteUnnestStatement.toElement(ByteBuffer.wrap(new byte[] { 1, 2 }), byte[].class));
+        assertThrows(IllegalArgumentException.class, () -> YugabyteUnnestStatement.toElement("x", Integer.class));
+    }
+
+    @Test
+    public void getElementType_mapsSerialsAndRejectsArrays() {
+        assertEquals("int8", YugabyteUnnestStatement.getElementType("id", "bigserial"));
+        assertEquals("text", YugabyteUnnestStatement.getElementType("c", null));
+        assertEquals("jsonb", YugabyteUnnestStatement.getElementType("c", "jsonb"));
+        assertThrows(RuntimeException.class, () -> YugabyteUnnestStatement.getElementType("tags", "_text"));
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.data.EnhancedPK;
+import com.datastax.cdm.data.Record;
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+import com.datastax.cdm.schema.YugabyteTable;
+import com.datastax.cdm.yugabyte.YugabyteSession;
+import com.datastax.cdm.yugabyte.mapping.DataTypeMapper;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class YugabyteUpsertStatementTest {
+
+    private IPropertyHelper propertyHelper;
+    private YugabyteSession session;
+    private HikariDataSource dataSource;
+    private Connection firstConnection;
+    private PreparedStatement firstStatement;
+    private Connection secondConnection;
+    private PreparedStatement secondStatement;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        propertyHelper = mock(IPropertyHelper.class);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE)).thenReturn(2);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_CONNECTION_IDLE_VALIDATION_MS)).thenReturn(0);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_RETRY_BACKOFF_MS)).thenReturn(0);
+        YugabyteRetryPolicy.resetStormWindow();
+
+        YugabyteTable table = mock(YugabyteTable.class);
+        when(table.getDataTypeMapper()).thenReturn(new DataTypeMapper());
+        when(table.getAllColumnNames()).thenReturn(Arrays.asList("id", "val"));
+        when(table.getBindClasses()).thenReturn(Arrays.asList(Integer.class, String.class));
+        when(table.getPrimaryKeyNames()).thenReturn(Arrays.asList("id"));
+        when(table.getSchemaName()).thenReturn("public");
+        when(table.getTableName()).thenReturn("t");
+
+        firstConnection = mock(Connection.class);
+        firstStatement = mock(PreparedStatement.class);
+        when(firstConnection.prepareStatement(anyString())).thenReturn(firstStatement);
+        secondConnection = mock(Connection.class);
+        secondStatement = mock(PreparedStatement.class);
+        when(secondConnection.prepareStatement(anyString())).thenReturn(secondStatement);
+
+        dataSource = mock(HikariDataSource.class);
+        when(dataSource.getConnection()).thenReturn(firstConnection, secondConnection);
+
+        session = mock(YugabyteSession.class);
+        when(session.getYugabyteTable()).thenReturn(table);
+        when(session.getDataSource()).thenReturn(dataSource);
+    }
+
+    private Record record(int id) {
+        Row row = mock(Row.class);
+        when(row.getObject("id")).thenReturn(id);
+        when(row.getObject("val")).thenReturn("v" + id);
+        return new Record(mock(EnhancedPK.class), row, null);
+    }
+
+    @Test
+    public void addToBatch_doesNotValidateConnectionPerRecord() throws SQLException {
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 });
+
+        statement.addToBatch(record(1));
+        assertTrue(statement.addToBatch(record(2)));
+
+        verify(firstConnection, never()).isValid(anyInt());
+        verify(firstStatement, times(2)).addBatch();
+        verify(firstConnection).commit();
+        assertEquals(2, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void flush_replaysBatchOnNewConnectionAfterConnectionFailure() throws SQLException {
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenThrow(new SQLException("I/O error", "08006"));
+        when(secondStatement.executeBatch()).thenReturn(new int[] { 1, 1 });
+
+        statement.addToBatch(record(1));
+        statement.addToBatch(record(2));
+
+        verify(firstConnection).close();
+        verify(secondStatement, times(2)).addBatch();
+        verify(secondConnection).commit();
+        assertEquals(2, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void flush_retriesConflictsInANewTransaction() throws SQLException {
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenThrow(new SQLException("Restart read required", "40001"))
+                .thenReturn(new int[] { 1, 1 });
+
+        statement.addToBatch(record(1));
+        assertTrue(statement.addToBatch(record(2)));
+
+        verify(firstConnection).rollback();
+        verify(firstStatement, times(4)).addBatch();
+        verify(firstConnection).commit();
+        verify(dataSource, times(1)).getConnection();
+        assertEquals(1, statement.getTotalRetries());
+        assertEquals(2, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void flush_givesUpAfterTheRetryBudget() throws SQLException {
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_RETRY_MAX_ATTEMPTS)).thenReturn(2);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenThrow(new SQLException("deadlock detected", "40P01"));
+
+        statement.addToBatch(record(1));
+        assertThrows(SQLException.class, () -> statement.addToBatch(record(2)));
+
+        verify(firstStatement, times(3)).executeBatch();
+        assertEquals(2, statement.getTotalRetries());
+        assertEquals(0, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void flush_doesNotReplayDataErrors() throws SQLException {
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenThrow(new SQLException("duplicate key", "23505"));
+
+        statement.addToBatch(record(1));
+        assertThrows(SQLException.class, () -> statement.addToBatch(record(2)));
+
+        verify(firstConnection).rollback();
+        verify(dataSource, times(1)).getConnection();
+        assertEquals(0, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void multiRowShapes_bindBatchIntoLargestStatement() throws SQLException {
+        when(propertyHelper.getNumberList(KnownProperties.TARGET_YUGABYTE_MULTI_ROW_SHAPES))
+                .thenReturn(Arrays.asList(2, 8));
+        PreparedStatement twoRowStatement = mock(PreparedStatement.class);
+        when(firstConnection.prepareStatement(contains("(?, ?), (?, ?)"))).thenReturn(twoRowStatement);
+        when(twoRowStatement.executeBatch()).thenReturn(new int[] { 2 });
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+
+        statement.addToBatch(record(1));
+        statement.addToBatch(record(2));
+
+        verify(twoRowStatement).setInt(1, 1);
+        verify(twoRowStatement).setString(2, "v1");
+        verify(twoRowStatement).setInt(3, 2);
+        verify(twoRowStatement).setString(4, "v2");
+        verify(twoRowStatement).addBatch();
+        verify(firstStatement, never()).addBatch();
+        verify(firstConnection).commit();
+        assertEquals(1L, statement.getShapeExecutions().get(2));
+        assertEquals(2, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void adaptiveBatchSize_growsAfterFastBatchesAndHalvesOnConflict() throws SQLException {
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_ADAPTIVE)).thenReturn(true);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_MIN)).thenReturn(1);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_INCREMENT)).thenReturn(1);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_BATCH_SIZE_TARGET_LATENCY_MS)).thenReturn(60000);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 })
+                .thenThrow(new SQLException("could not serialize access", "40001"));
+
+        statement.addToBatch(record(1));
+        assertTrue(statement.addToBatch(record(2)));
+        assertEquals(3, statement.getBatchSize());
+
+        statement.addToBatch(record(3));
+        statement.addToBatch(record(4));
+        assertThrows(SQLException.class, () -> statement.addToBatch(record(5)));
+        assertEquals(1, statement.getBatchSize());
+    }
+
+    @Test
+    public void commitGroup_commitsEveryNBatches() throws SQLException {
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES)).thenReturn(2);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 });
+
+        statement.addToBatch(record(1));
+        statement.addToBatch(record(2));
+        verify(firstConnection, never()).commit();
+
+        statement.addToBatch(record(3));
+        statement.addToBatch(record(4));
+        verify(firstConnection, times(1)).commit();
+
+        statement.addToBatch(record(5));
+        statement.addToBatch(record(6));
+        statement.commit();
+        verify(firstConnection, times(2)).commit();
+        assertEquals(6, statement.getTotalRecordsWritten());
+    }
+
+    @Test
+    public void commitGroup_maxRowsBoundsTheTransaction() throws SQLException {
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES)).thenReturn(10);
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_MAX_ROWS)).thenReturn(4);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 });
+
+        for (int id = 1; id <= 4; id++) {
+            statement.addToBatch(record(id));
+        }
+
+        verify(firstConnection, times(1)).commit();
+    }
+
+    @Test
+    public void commitGroup_failedBatchWritesEarlierBatchesAgain() throws SQLException {
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES)).thenReturn(3);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 })
+                .thenThrow(new SQLException("duplicate key", "23505")).thenReturn(new int[] { 1, 1 });
+
+        statement.addToBatch(record(1));
+        statement.addToBatch(record(2));
+        statement.addToBatch(record(3));
+        assertThrows(SQLException.class, () -> statement.addToBatch(record(4)));
+
+        // Records 1 and 2 are bound again after the rollback and committed on their own
+        verify(firstConnection).rollback();
+        verify(firstStatement, times(6)).addBatch();
+        verify(firstStatement, times(3)).executeBatch();
+        verify(firstConnection, times(1)).commit();
+        assertTrue(statement.takeRolledBackRecords().isEmpty());
+    }
+
+    @Test
+    public void commit_leavesRecordsThatCannotBeWrittenAgainForTheCaller() throws SQLException {
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES)).thenReturn(3);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 })
+                .thenThrow(new SQLException("duplicate key", "23505"));
+        doThrow(new SQLException("transaction aborted", "40001")).when(firstConnection).commit();
+
+        statement.addToBatch(record(1));
+        statement.addToBatch(record(2));
+        assertThrows(SQLException.class, statement::commit);
+
+        assertEquals(1, statement.getTotalRetries());
+        assertEquals(2, statement.takeRolledBackRecords().size());
+        assertTrue(statement.takeRolledBackRecords().isEmpty());
+    }
+
+    @Test
+    public void rollbackGroup_dropsWhatTheWriterHoldsForTheNextSlice() throws SQLException {
+        when(propertyHelper.getNumber(KnownProperties.TARGET_YUGABYTE_COMMIT_GROUP_BATCHES)).thenReturn(3);
+        YugabyteUpsertStatement statement = new YugabyteUpsertStatement(propertyHelper, session);
+        when(firstStatement.executeBatch()).thenReturn(new int[] { 1, 1 });
+
+        statement.addToBatch(record(1));
+        statement.addToBatch(record(2));
+        statement.addToBatch(record(3));
+
+        // Records 1 and 2 were flushed into the open group, record 3 is pending
+        assertEquals(2, statement.rollbackGroup());
+        verify(firstConnection).rollback();
+        assertEquals(0, statement.getCurrentBatchCount());
+
+        // The next slice commits only its own records
+        statement.addToBatch(record(4));
+        statement.commit();
+        verify(firstConnection, never()).commit();
+        assertEquals(0, statement.rollbackGroup());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.cdm.yugabyte.statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.datastax.cdm.properties.IPropertyHelper;
+import com.datastax.cdm.properties.KnownProperties;
+
+public class YugabyteWriteModeTest {
+
+    private IPropertyHelper propertyHelper;
+
+    @BeforeEach
+    public void setup() {
+        propertyHelper = mock(IPropertyHelper.class);
+    }
+
+    /**
+     * Re-run matrix: what happens when a mode writes a row that a previous run already wrote.
+     */
+    @Test
+    public void rerunMatrix() {
+        // mode, safe to re-run, existing row takes the new values
+        assertMode(YugabyteWriteMode.INSERT, false, false);
+        assertMode(YugabyteWriteMode.DO_NOTHING, true, false);
+        assertMode(YugabyteWriteMode.DO_UPDATE, true, true);
+        assertMode(YugabyteWriteMode.UPSERT_MODE, true, true);
+    }
+
+    private static void assertMode(YugabyteWriteMode mode, boolean rerunSafe, boolean overwritesExisting) {
+        assertEquals(rerunSafe, mode.isRerunSafe(), mode + " re-run safety");
+        assertEquals(overwritesExisting, mode.overwritesExisting(), mode + " overwrite");
+        // Only a conflict clause (or upsert mode) makes a duplicate key succeed
+        assertEquals(rerunSafe, mode.hasConflictClause() || mode == YugabyteWriteMode.UPSERT_MODE);
+    }
+
+    @Test
+    public void fromProperties_defaultsToDoUpdate() {
+        assertEquals(YugabyteWriteMode.DO_UPDATE, YugabyteWriteMode.fromProperties(propertyHelper));
+
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_WRITE_MODE)).thenReturn("do-nothing");
+        assertEquals(YugabyteWriteMode.DO_NOTHING, YugabyteWriteMode.fromProperties(propertyHelper));
+
+    }
+
+    @Test
+    public void fromProperties_rejectsUnknownModes() {
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_WRITE_MODE)).thenReturn("bogus");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> YugabyteWriteMode.fromProperties(propertyHelper));
+        assertTrue(e.getMessage().contains("'bogus'"), e.getMessage());
+        assertTrue(e.getMessage().contains("[INSERT, DO_NOTHING, DO_UPDATE, UPSERT_MODE]"), e.getMessage());
+    }
+
+    @Test
+    public void sessionSettings_forUpsertModeAndNonTransactionalWrites() {
+        assertEquals(Collections.emptyList(), YugabyteWriteMode.sessionSettings(propertyHelper));
+
+        when(propertyHelper.getString(KnownProperties.TARGET_YUGABYTE_WRITE_MODE)).thenReturn("UPSERT_MODE");
+        when(propertyHelper.getBoolean(KnownProperties.TARGET_YUGABYTE_NON_TRANSACTIONAL_WRITES)).thenReturn(true);
+        assertEquals(Arrays.asList("yb_enable_upsert_mode=true", "yb_disable_transactional_writes=true"),
+                YugabyteWriteMode.sessionSettings(propertyHelper));
+    }
+}